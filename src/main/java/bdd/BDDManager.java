@@ -0,0 +1,552 @@
+package bdd;
+
+import java.util.Arrays;
+
+/**
+ * Reduced ordered binary decision diagrams over a fixed number of variables.
+ *
+ * A BDD is an int handle into the node table of its manager. FALSE and TRUE are the
+ * terminals; every other node is (var, low, high) and is unique, so two functions are
+ * equal exactly if their handles are. The variable order is the order of the variable
+ * indices, variable 0 at the top.
+ *
+ * Nodes are hash consed through a unique table and the results of the recursive operations
+ * are kept in a direct-mapped operation cache. Nodes are never freed while an operation runs:
+ * the table grows instead. Garbage is only collected by gc() or collectGarbageIfNeeded(),
+ * which keep the nodes reachable from handles with a positive reference count, so callers
+ * ref() every handle they still need before calling them.
+ * */
+public class BDDManager {
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    // operation codes for the cache
+    private static final int OP_AND = 0;
+    private static final int OP_OR = 1;
+    private static final int OP_DIFF = 2;
+    private static final int OP_NOT = 3;
+    private static final int OP_EXISTS = 4;
+    private static final int OP_REL_PROD = 5;
+    private static final int OP_REPLACE = 6;
+
+    private final int varCount;
+
+    // node table, a node is free if its var is -1
+    private int[] var;
+    private int[] low;
+    private int[] high;
+    private int[] refs;
+    private int[] next;
+    private int[] buckets;
+    private int freeList;
+    private int freeCount;
+
+    // operation cache: key (op, a, b, c) and result per slot
+    private int[] cacheKey;
+    private int[] cacheA;
+    private int[] cacheB;
+    private int[] cacheC;
+    private int[] cacheResult;
+
+    // variable maps of replace(), registered by id
+    private int[][] maps = new int[0][];
+
+    private int gcCount;
+
+    /**
+     * Create a manager.
+     * @param varCount number of variables
+     * @param initialNodes initial size of the node table, it grows when needed
+     * */
+    public BDDManager(int varCount, int initialNodes) {
+        this.varCount = varCount;
+        int capacity = Integer.highestOneBit(Math.max(initialNodes, 1024) - 1) << 1;
+        allocate(capacity);
+        // the terminals sit below every variable
+        var[FALSE] = varCount;
+        var[TRUE] = varCount;
+        freeList = 2;
+        freeCount = capacity - 2;
+        allocateCache(capacity);
+    }
+
+    private void allocate(int capacity) {
+        var = new int[capacity];
+        low = new int[capacity];
+        high = new int[capacity];
+        refs = new int[capacity];
+        next = new int[capacity];
+        buckets = new int[capacity];
+        Arrays.fill(buckets, -1);
+        for (int i = 2; i < capacity; i++) {
+            var[i] = -1;
+            next[i] = i + 1 < capacity ? i + 1 : -1;
+        }
+    }
+
+    private void allocateCache(int size) {
+        cacheKey = new int[size];
+        cacheA = new int[size];
+        cacheB = new int[size];
+        cacheC = new int[size];
+        cacheResult = new int[size];
+        Arrays.fill(cacheKey, -1);
+    }
+
+    public int getVarCount() {
+        return varCount;
+    }
+
+    /**
+     * Returns the number of live nodes, including garbage that has not been collected.
+     * @return number of nodes in the table
+     * */
+    public int getNodeCount() {
+        return var.length - freeCount;
+    }
+
+    /**
+     * Returns how often garbage has been collected.
+     * @return number of collections
+     * */
+    public int getGcCount() {
+        return gcCount;
+    }
+
+    // --- nodes ---
+
+    /**
+     * Returns the variable at the top of a BDD.
+     * @param f BDD
+     * @return variable index, or getVarCount() for the terminals
+     * */
+    public int var(int f) {
+        return var[f];
+    }
+
+    public int low(int f) {
+        return low[f];
+    }
+
+    public int high(int f) {
+        return high[f];
+    }
+
+    /**
+     * Returns the function that is true exactly if a variable is.
+     * @param v variable index
+     * @return BDD of the variable
+     * */
+    public int ithVar(int v) {
+        return mk(v, FALSE, TRUE);
+    }
+
+    /**
+     * Returns the function that is true exactly if a variable is false.
+     * @param v variable index
+     * @return BDD of the negated variable
+     * */
+    public int nithVar(int v) {
+        return mk(v, TRUE, FALSE);
+    }
+
+    /**
+     * Returns the unique node for (v, lo, hi), creating it if needed.
+     * lo and hi must have variables below v.
+     * @param v variable index
+     * @param lo BDD if the variable is false
+     * @param hi BDD if the variable is true
+     * @return BDD of the node
+     * */
+    public int mk(int v, int lo, int hi) {
+        if (lo == hi) {
+            return lo;
+        }
+        int bucket = hash(v, lo, hi) & (buckets.length - 1);
+        for (int n = buckets[bucket]; n >= 0; n = next[n]) {
+            if (var[n] == v && low[n] == lo && high[n] == hi) {
+                return n;
+            }
+        }
+        if (freeList < 0) {
+            grow();
+            bucket = hash(v, lo, hi) & (buckets.length - 1);
+        }
+        int n = freeList;
+        freeList = next[n];
+        freeCount--;
+        var[n] = v;
+        low[n] = lo;
+        high[n] = hi;
+        refs[n] = 0;
+        next[n] = buckets[bucket];
+        buckets[bucket] = n;
+        return n;
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+        return h ^ (h >>> 15);
+    }
+
+    // double the node table, keeping every node at its index
+    private void grow() {
+        int oldCapacity = var.length;
+        int capacity = oldCapacity * 2;
+        var = Arrays.copyOf(var, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+        next = Arrays.copyOf(next, capacity);
+        for (int i = oldCapacity; i < capacity; i++) {
+            var[i] = -1;
+            next[i] = i + 1 < capacity ? i + 1 : -1;
+        }
+        freeList = oldCapacity;
+        freeCount += capacity - oldCapacity;
+        rehash();
+        allocateCache(capacity);
+    }
+
+    private void rehash() {
+        buckets = new int[var.length];
+        Arrays.fill(buckets, -1);
+        for (int n = 2; n < var.length; n++) {
+            if (var[n] >= 0) {
+                int bucket = hash(var[n], low[n], high[n]) & (buckets.length - 1);
+                next[n] = buckets[bucket];
+                buckets[bucket] = n;
+            }
+        }
+    }
+
+    // --- garbage collection ---
+
+    /**
+     * Keep a BDD alive across garbage collections.
+     * @param f BDD
+     * @return f
+     * */
+    public int ref(int f) {
+        if (f > TRUE) {
+            refs[f]++;
+        }
+        return f;
+    }
+
+    /**
+     * Release a reference taken with ref().
+     * @param f BDD
+     * */
+    public void deref(int f) {
+        if (f > TRUE && refs[f] > 0) {
+            refs[f]--;
+        }
+    }
+
+    /**
+     * Collect garbage if more than three quarters of the node table are in use.
+     * Only call this when every BDD that is still needed is referenced.
+     * */
+    public void collectGarbageIfNeeded() {
+        if (freeCount < var.length / 4) {
+            gc();
+        }
+    }
+
+    /**
+     * Free every node that is not reachable from a referenced BDD and clear the operation cache.
+     * Only call this when every BDD that is still needed is referenced.
+     * */
+    public void gc() {
+        gcCount++;
+        boolean[] marked = new boolean[var.length];
+        marked[FALSE] = true;
+        marked[TRUE] = true;
+        for (int n = 2; n < var.length; n++) {
+            if (var[n] >= 0 && refs[n] > 0) {
+                mark(n, marked);
+            }
+        }
+
+        freeList = -1;
+        freeCount = 0;
+        for (int n = var.length - 1; n >= 2; n--) {
+            if (!marked[n]) {
+                var[n] = -1;
+                next[n] = freeList;
+                freeList = n;
+                freeCount++;
+            }
+        }
+        rehash();
+        Arrays.fill(cacheKey, -1);
+    }
+
+    private void mark(int f, boolean[] marked) {
+        while (!marked[f]) {
+            marked[f] = true;
+            mark(low[f], marked);
+            f = high[f];
+        }
+    }
+
+    // --- cache ---
+
+    private int cacheSlot(int op, int a, int b, int c) {
+        return (hash(a, b, c) + op) & (cacheKey.length - 1);
+    }
+
+    private int cached(int slot, int op, int a, int b, int c) {
+        if (cacheKey[slot] == op && cacheA[slot] == a && cacheB[slot] == b && cacheC[slot] == c) {
+            return cacheResult[slot];
+        }
+        return -1;
+    }
+
+    private int store(int op, int a, int b, int c, int result) {
+        int slot = cacheSlot(op, a, b, c);
+        cacheKey[slot] = op;
+        cacheA[slot] = a;
+        cacheB[slot] = b;
+        cacheC[slot] = c;
+        cacheResult[slot] = result;
+        return result;
+    }
+
+    // --- boolean operations ---
+
+    public int and(int a, int b) {
+        if (a == FALSE || b == FALSE) {
+            return FALSE;
+        }
+        if (a == TRUE || a == b) {
+            return b;
+        }
+        if (b == TRUE) {
+            return a;
+        }
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int result = cached(cacheSlot(OP_AND, a, b, 0), OP_AND, a, b, 0);
+        if (result >= 0) {
+            return result;
+        }
+        int v = Math.min(var[a], var[b]);
+        int lo = and(var[a] == v ? low[a] : a, var[b] == v ? low[b] : b);
+        int hi = and(var[a] == v ? high[a] : a, var[b] == v ? high[b] : b);
+        return store(OP_AND, a, b, 0, mk(v, lo, hi));
+    }
+
+    public int or(int a, int b) {
+        if (a == TRUE || b == TRUE) {
+            return TRUE;
+        }
+        if (a == FALSE || a == b) {
+            return b;
+        }
+        if (b == FALSE) {
+            return a;
+        }
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int result = cached(cacheSlot(OP_OR, a, b, 0), OP_OR, a, b, 0);
+        if (result >= 0) {
+            return result;
+        }
+        int v = Math.min(var[a], var[b]);
+        int lo = or(var[a] == v ? low[a] : a, var[b] == v ? low[b] : b);
+        int hi = or(var[a] == v ? high[a] : a, var[b] == v ? high[b] : b);
+        return store(OP_OR, a, b, 0, mk(v, lo, hi));
+    }
+
+    /**
+     * Returns a and not b.
+     * */
+    public int diff(int a, int b) {
+        if (a == FALSE || b == TRUE || a == b) {
+            return FALSE;
+        }
+        if (b == FALSE) {
+            return a;
+        }
+        if (a == TRUE) {
+            return not(b);
+        }
+        int result = cached(cacheSlot(OP_DIFF, a, b, 0), OP_DIFF, a, b, 0);
+        if (result >= 0) {
+            return result;
+        }
+        int v = Math.min(var[a], var[b]);
+        int lo = diff(var[a] == v ? low[a] : a, var[b] == v ? low[b] : b);
+        int hi = diff(var[a] == v ? high[a] : a, var[b] == v ? high[b] : b);
+        return store(OP_DIFF, a, b, 0, mk(v, lo, hi));
+    }
+
+    public int not(int f) {
+        if (f <= TRUE) {
+            return f ^ 1;
+        }
+        int result = cached(cacheSlot(OP_NOT, f, 0, 0), OP_NOT, f, 0, 0);
+        if (result >= 0) {
+            return result;
+        }
+        return store(OP_NOT, f, 0, 0, mk(var[f], not(low[f]), not(high[f])));
+    }
+
+    // --- quantification and renaming ---
+
+    /**
+     * Returns the conjunction of the positive variables, used as the set of variables to quantify.
+     * @param vars variable indices
+     * @return cube of the variables
+     * */
+    public int cube(int[] vars) {
+        int[] sorted = vars.clone();
+        Arrays.sort(sorted);
+        int result = TRUE;
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            result = mk(sorted[i], FALSE, result);
+        }
+        return result;
+    }
+
+    /**
+     * Existentially quantify the variables of a cube.
+     * @param f BDD
+     * @param cube cube of the variables, see cube()
+     * @return exists vars. f
+     * */
+    public int exists(int f, int cube) {
+        if (f <= TRUE || cube == TRUE) {
+            return f;
+        }
+        // skip the variables of the cube above f
+        while (cube != TRUE && var[cube] < var[f]) {
+            cube = high[cube];
+        }
+        if (cube == TRUE) {
+            return f;
+        }
+        int result = cached(cacheSlot(OP_EXISTS, f, cube, 0), OP_EXISTS, f, cube, 0);
+        if (result >= 0) {
+            return result;
+        }
+        int lo = exists(low[f], cube);
+        int hi;
+        if (var[cube] == var[f]) {
+            hi = lo == TRUE ? TRUE : exists(high[f], cube);
+            result = or(lo, hi);
+        } else {
+            hi = exists(high[f], cube);
+            result = mk(var[f], lo, hi);
+        }
+        return store(OP_EXISTS, f, cube, 0, result);
+    }
+
+    /**
+     * Relational product, the conjunction of two BDDs with the variables of a cube quantified away,
+     * without building the conjunction first.
+     * @param a BDD
+     * @param b BDD
+     * @param cube cube of the variables to quantify
+     * @return exists vars. a and b
+     * */
+    public int relProd(int a, int b, int cube) {
+        if (a == FALSE || b == FALSE) {
+            return FALSE;
+        }
+        if (a == TRUE && b == TRUE) {
+            return TRUE;
+        }
+        if (a == TRUE || a == b) {
+            return exists(b, cube);
+        }
+        if (b == TRUE) {
+            return exists(a, cube);
+        }
+        int v = Math.min(var[a], var[b]);
+        while (cube != TRUE && var[cube] < v) {
+            cube = high[cube];
+        }
+        if (cube == TRUE) {
+            return and(a, b);
+        }
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int result = cached(cacheSlot(OP_REL_PROD, a, b, cube), OP_REL_PROD, a, b, cube);
+        if (result >= 0) {
+            return result;
+        }
+        int aLow = var[a] == v ? low[a] : a;
+        int aHigh = var[a] == v ? high[a] : a;
+        int bLow = var[b] == v ? low[b] : b;
+        int bHigh = var[b] == v ? high[b] : b;
+        if (var[cube] == v) {
+            int lo = relProd(aLow, bLow, high[cube]);
+            result = lo == TRUE ? TRUE : or(lo, relProd(aHigh, bHigh, high[cube]));
+        } else {
+            result = mk(v, relProd(aLow, bLow, cube), relProd(aHigh, bHigh, cube));
+        }
+        return store(OP_REL_PROD, a, b, cube, result);
+    }
+
+    /**
+     * Register a renaming of variables for replace().
+     * The renaming must keep the order of the variables that occur in the BDDs it is applied to.
+     * @param map new index of every variable, map.length == getVarCount()
+     * @return id of the renaming
+     * */
+    public int registerMap(int[] map) {
+        maps = Arrays.copyOf(maps, maps.length + 1);
+        maps[maps.length - 1] = map.clone();
+        return maps.length - 1;
+    }
+
+    /**
+     * Rename the variables of a BDD.
+     * @param f BDD
+     * @param mapId renaming returned by registerMap()
+     * @return f with every variable v replaced by map[v]
+     * */
+    public int replace(int f, int mapId) {
+        if (f <= TRUE) {
+            return f;
+        }
+        int result = cached(cacheSlot(OP_REPLACE, f, mapId, 0), OP_REPLACE, f, mapId, 0);
+        if (result >= 0) {
+            return result;
+        }
+        int lo = replace(low[f], mapId);
+        int hi = replace(high[f], mapId);
+        return store(OP_REPLACE, f, mapId, 0, mk(maps[mapId][var[f]], lo, hi));
+    }
+
+    // --- counting ---
+
+    /**
+     * Returns the number of nodes of a BDD, without the terminals.
+     * @param f BDD
+     * @return node count
+     * */
+    public int nodeCount(int f) {
+        return countNodes(f, new boolean[var.length]);
+    }
+
+    private int countNodes(int f, boolean[] seen) {
+        if (f <= TRUE || seen[f]) {
+            return 0;
+        }
+        seen[f] = true;
+        return 1 + countNodes(low[f], seen) + countNodes(high[f], seen);
+    }
+}
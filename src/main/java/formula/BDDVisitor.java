@@ -0,0 +1,26 @@
+package formula;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.ThereExists;
+
+// visitor pattern, as in Visitor, but over sets of states encoded as BDD handles of a bdd.BDDManager
+
+public interface BDDVisitor {
+    int visit(Visitable visitable, int states);
+    int visitBoolProp(BoolProp formula, int states);
+    int visitAtomicProp(AtomicProp formula, int states);
+    int visitAnd(And formula, int states);
+    int visitNot(Not formula, int states);
+    int visitThereExists(ThereExists formula, int states);
+    int visitForAll(ForAll formula, int states);
+    int visitNext(Next formula, int states);
+    int visitUntil(Until formula, int states);
+    int visitAlways(Always formula, int states);
+}
@@ -14,6 +14,8 @@ import formula.stateFormula.StateFormula;
 import formula.stateFormula.ThereExists;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -23,17 +25,69 @@ import java.util.Set;
  * See: Baier and Katoen (2008). Principles of Model Checking. (p. 332)
  *
  * This is extended to asCTL as explained in the report
+ *
+ * The subformulas are converted bottom up, without recursion, so that the depth of a formula is
+ * not limited by the stack: each convert method finds the ENF of its operands already computed.
  * */
 public class ENFConverter {
+    private final FormulaFactory factory;
+
+    // keep AX, AF, AG and AU for an evaluator that computes them directly
+    private boolean keepUniversal;
+
+    // ENF of the subformulas of the formula being converted
+    private final Map<StateFormula, StateFormula> converted = new IdentityHashMap<>();
+
+    /**
+     * Create a converter whose output is hash-consed by a factory of its own,
+     * so a subformula that occurs several times in the ENF is one node.
+     * */
+    public ENFConverter() {
+        this(new FormulaFactory());
+    }
+
+    /**
+     * Create a converter that builds its output with a given factory,
+     * e.g. to share subformulas between the ENFs of several formulas.
+     * @param factory factory for the nodes of the ENF
+     * */
+    public ENFConverter(FormulaFactory factory) {
+        this.factory = factory;
+    }
+
+    public FormulaFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Set whether ForAll formulas are kept instead of being expanded into negated ThereExists
+     * formulas; only their subformulas are converted then. IndexedSatSetComputer evaluates the
+     * kept operators directly, the other computers via their ENF.
+     * @param keepUniversal true to keep ForAll
+     * */
+    public void setKeepUniversal(boolean keepUniversal) {
+        this.keepUniversal = keepUniversal;
+    }
 
     /**
      * Convert a formula to ENF.
      * */
     public StateFormula convertToENF(StateFormula formula) {
-        // visitor pattern:
-        // this method calls the convertToENF method of the formula, which in turn calls the appropriate ENF
-        // conversion method in this ENFConverter class.
-        return formula.convertToENF(this);
+        StateFormula enf = converted.get(formula);
+        if (enf != null) {
+            return enf;
+        }
+        try {
+            // visitor pattern:
+            // this method calls the convertToENF method of each node, which in turn calls the appropriate ENF
+            // conversion method in this ENFConverter class, after the nodes below it.
+            for (StateFormula node : Subformulas.postorder(formula)) {
+                converted.put(node, node.convertToENF(this));
+            }
+            return converted.get(formula);
+        } finally {
+            converted.clear();
+        }
     }
 
     /**
@@ -42,7 +96,7 @@ public class ENFConverter {
      * @return ENF of the state formula
      */
     public And convertAnd(And formula) {
-        return new And(convertToENF(formula.left), convertToENF(formula.right));
+        return factory.and(convertToENF(formula.left), convertToENF(formula.right));
     }
 
     /**
@@ -51,7 +105,7 @@ public class ENFConverter {
      * @return ENF of the atomic proposition
      */
     public AtomicProp convertAtomicProp(AtomicProp formula) {
-        return formula;
+        return factory.atomicProp(formula.label);
     }
 
     /**
@@ -64,11 +118,11 @@ public class ENFConverter {
     public StateFormula convertBoolProp(BoolProp formula) {
         // if the boolean proposition is true, return the property
         if (formula.value) {
-            return formula;
+            return factory.boolProp(true);
         }
         // else return the negation of true (Not (true))
         else {
-            return new Not(new BoolProp(true));
+            return factory.not(factory.boolProp(true));
         }
     }
 
@@ -99,9 +153,12 @@ public class ENFConverter {
      * @param formula the AG formula to convert
      * @return ENF of the AG formula
      */
-    public Not convertForAllNext(Next formula) {
-        Next next = new Next(new Not(convertToENF(formula.stateFormula)), formula.getActions());
-        return new Not(new ThereExists(next));
+    public StateFormula convertForAllNext(Next formula) {
+        if (keepUniversal) {
+            return factory.forAll(factory.next(convertToENF(formula.stateFormula), formula.getActions()));
+        }
+        Next next = factory.next(factory.not(convertToENF(formula.stateFormula)), formula.getActions());
+        return factory.not(factory.thereExists(next));
     }
 
     /**
@@ -111,8 +168,8 @@ public class ENFConverter {
      * @return ENF of the EX state formula
      */
     public ThereExists convertThereExistsNext(Next formula) {
-        Next next = new Next(convertToENF(formula.stateFormula), formula.getActions());
-        return new ThereExists(next);
+        Next next = factory.next(convertToENF(formula.stateFormula), formula.getActions());
+        return factory.thereExists(next);
     }
 
     /**
@@ -121,12 +178,16 @@ public class ENFConverter {
      * @param formula the AG formula to convert
      * @return ENF of the AG formula
      */
-    public Not convertForAllAlways(Always formula) {
+    public StateFormula convertForAllAlways(Always formula) {
+        if (keepUniversal) {
+            return factory.forAll(factory.always(convertToENF(formula.stateFormula), formula.getActions()));
+        }
+
         // AG phi = !EF !phi = !E (true U phi)
         Set<String> preActions = new HashSet<>();
         Set<String> postActions = formula.getActions();
-        Until until = new Until(new BoolProp(true), convertToENF(formula.stateFormula), preActions, postActions);
-        return new Not(new ThereExists(until));
+        Until until = factory.until(factory.boolProp(true), convertToENF(formula.stateFormula), preActions, postActions);
+        return factory.not(factory.thereExists(until));
     }
 
     /**
@@ -136,7 +197,7 @@ public class ENFConverter {
      * @return ENF of the EG formula
      */
     public ThereExists convertThereExistsAlways(Always formula) {
-        return new ThereExists(new Always(convertToENF(formula.stateFormula), formula.getActions()));
+        return factory.thereExists(factory.always(convertToENF(formula.stateFormula), formula.getActions()));
     }
 
     /**
@@ -148,21 +209,26 @@ public class ENFConverter {
      * @param formula the AU formula to convert
      * @return ENF of the AU formula
      */
-    public And convertForAllUntil(Until formula) {
+    public StateFormula convertForAllUntil(Until formula) {
 
         StateFormula left = convertToENF(formula.left);
         StateFormula right = convertToENF(formula.right);
+        if (keepUniversal) {
+            return factory.forAll(factory.until(left, right, formula.getLeftActions(), formula.getRightActions()));
+        }
+
+        // !enf(phi2) is one node, shared by both sides
+        Not notRight = factory.not(right);
 
         // left side: ( !enf(phi2) U ( !enf(phi1) & !enf(phi2) ))
-        Not leftSideUntil = new Not(right);
-        And rightSideUntil = new And(new Not(left), new Not(right));
-        Until until = new Until(leftSideUntil, rightSideUntil, formula.getLeftActions(), formula.getRightActions());
+        And rightSideUntil = factory.and(factory.not(left), notRight);
+        Until until = factory.until(notRight, rightSideUntil, formula.getLeftActions(), formula.getRightActions());
 
         // right side : G ( !enf(phi2) )
-        Always always = new Always(new Not(right), formula.getRightActions());
+        Always always = factory.always(notRight, formula.getRightActions());
 
         // combine the two sides
-        return new And(new Not(new ThereExists(until)), new Not(new ThereExists(always)));
+        return factory.and(factory.not(factory.thereExists(until)), factory.not(factory.thereExists(always)));
     }
 
     /**
@@ -174,7 +240,7 @@ public class ENFConverter {
     public ThereExists convertThereExistsUntil(Until formula) {
         StateFormula left = convertToENF(formula.left);
         StateFormula right = convertToENF(formula.right);
-        return new ThereExists(new Until(left, right, formula.getLeftActions(), formula.getRightActions()));
+        return factory.thereExists(factory.until(left, right, formula.getLeftActions(), formula.getRightActions()));
     }
 
     /**
@@ -183,9 +249,13 @@ public class ENFConverter {
      * @param formula the AF formula to convert
      * @return ENF of the AF formula
      * */
-    public Not convertForAllEventually(Eventually formula) {
-        Always inner = new Always(new Not(convertToENF(formula.stateFormula)), formula.getRightActions());
-        return new Not(new ThereExists(inner));
+    public StateFormula convertForAllEventually(Eventually formula) {
+        if (keepUniversal) {
+            return factory.forAll(factory.eventually(convertToENF(formula.stateFormula),
+                    formula.getLeftActions(), formula.getRightActions()));
+        }
+        Always inner = factory.always(factory.not(convertToENF(formula.stateFormula)), formula.getRightActions());
+        return factory.not(factory.thereExists(inner));
     }
 
     /**
@@ -195,8 +265,8 @@ public class ENFConverter {
      * @return ENF of the EF formula
      * */
     public ThereExists convertThereExistsEventually(Eventually formula) {
-        Until inner = new Until(new BoolProp(true), convertToENF(formula.stateFormula), formula.getLeftActions(), formula.getRightActions());
-        return new ThereExists(inner);
+        Until inner = factory.until(factory.boolProp(true), convertToENF(formula.stateFormula), formula.getLeftActions(), formula.getRightActions());
+        return factory.thereExists(inner);
     }
 
     /**
@@ -205,16 +275,18 @@ public class ENFConverter {
      * @return ENF of the Not state formula
      * */
     public Not convertNot(Not formula) {
-        return new Not(convertToENF(formula.stateFormula));
+        return factory.not(convertToENF(formula.stateFormula));
     }
 
     /**
      * Convert a Or state formula to ENF.
-     * A || B -> ! (!A && !B)
+     * A || B -> ! (!enf(A) && !enf(B))
      * @param formula the Or state formula to convert
      * @return ENF of the Or state formula
      */
     public Not convertOr(Or formula) {
-        return new Not(new And(new Not(formula.left), new Not(formula.right)));
+        StateFormula left = convertToENF(formula.left);
+        StateFormula right = convertToENF(formula.right);
+        return factory.not(factory.and(factory.not(left), factory.not(right)));
     }
 }
@@ -0,0 +1,113 @@
+package formula;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Eventually;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates hash-consed formulas: asking twice for the same node, i.e. the same operator over the
+ * same subformulas and action sets, gives the same object. Formulas built by one factory are
+ * therefore DAGs in which every distinct subformula exists once, and equal subformulas can be
+ * recognised by identity.
+ *
+ * The action sets are interned as well, as unmodifiable copies.
+ * */
+public class FormulaFactory {
+    private final Map<Object, Object> nodes = new HashMap<>();
+    private final Map<Set<String>, Set<String>> actionSets = new HashMap<>();
+
+    /**
+     * Get the interned copy of an action set.
+     * @param actions set of actions
+     * @return unmodifiable set with the same actions, the same object for equal sets
+     * */
+    public Set<String> actions(Set<String> actions) {
+        Set<String> interned = actionSets.get(actions);
+        if (interned == null) {
+            interned = Collections.unmodifiableSet(new HashSet<>(actions));
+            actionSets.put(interned, interned);
+        }
+        return interned;
+    }
+
+    public AtomicProp atomicProp(String label) {
+        return intern(new AtomicProp(label));
+    }
+
+    public BoolProp boolProp(boolean value) {
+        return intern(new BoolProp(value));
+    }
+
+    public And and(StateFormula left, StateFormula right) {
+        return intern(new And(left, right));
+    }
+
+    public Or or(StateFormula left, StateFormula right) {
+        return intern(new Or(left, right));
+    }
+
+    public Not not(StateFormula formula) {
+        return intern(new Not(formula));
+    }
+
+    public ThereExists thereExists(PathFormula pathFormula) {
+        return intern(new ThereExists(pathFormula));
+    }
+
+    public ForAll forAll(PathFormula pathFormula) {
+        return intern(new ForAll(pathFormula));
+    }
+
+    public Next next(StateFormula formula, Set<String> actions) {
+        return intern(new Next(formula, actions(actions)));
+    }
+
+    public Always always(StateFormula formula, Set<String> actions) {
+        return intern(new Always(formula, actions(actions)));
+    }
+
+    public Until until(StateFormula left, StateFormula right, Set<String> leftActions, Set<String> rightActions) {
+        return intern(new Until(left, right, actions(leftActions), actions(rightActions)));
+    }
+
+    public Eventually eventually(StateFormula formula, Set<String> leftActions, Set<String> rightActions) {
+        return intern(new Eventually(formula, actions(leftActions), actions(rightActions)));
+    }
+
+    /**
+     * Number of distinct nodes created so far, state and path formulas.
+     * */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the node equal to a new one if there is one already, else register the new one.
+     * Its subformulas come from this factory, so comparing them stops at identity.
+     * */
+    @SuppressWarnings("unchecked")
+    private <T> T intern(T node) {
+        Object existing = nodes.get(node);
+        if (existing == null) {
+            nodes.put(node, node);
+            return node;
+        }
+        return (T) existing;
+    }
+}
@@ -3,13 +3,12 @@ package formula;
 import java.util.*;
 import java.io.*;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import formula.pathFormula.*;
-import formula.stateFormula.AtomicProp;
 import formula.stateFormula.*;
 
 /**
@@ -18,6 +17,12 @@ import formula.stateFormula.*;
  * Call parse to get the formula as a Java instance. Also use static method
  * parseRawFormulaString() if you which to directly parse a formula from a given
  * string.
+ *
+ * The formula field may hold several formulas separated by ';', or be an array of formulas, which
+ * parseAll() returns. The parser works on the characters of the formula without recursion, so
+ * the nesting depth is not limited by the stack. The formulas are built by a FormulaFactory, so
+ * equal subformulas, identifiers and action sets are one object each. Errors give the line and
+ * column they are found at.
  */
 public class FormulaParser {
     private static final String JSON_FORMULA_FIELD = "formula";
@@ -34,16 +39,66 @@ public class FormulaParser {
     public static final char ALWAYS_TOKEn = 'G';
     public static final char THEREEXISTS_TOKEN = 'E';
     public static final char FORALL_TOKEN = 'A';
+    public static final char SEPARATOR_TOKEN = ';';
+
+    /**
+     * Operators waiting for a state formula while a formula is parsed.
+     * */
+    private enum Pending {
+        // '(' before the first formula, which may be followed by ')', '&&' or '||'
+        BRACKET, AND, OR, NOT, ALWAYS, NEXT, EVENTUALLY, UNTIL_LEFT, UNTIL_RIGHT
+    }
+
+    private static class Frame {
+        Pending pending;
+        boolean forAll;
+        StateFormula left;
+        Set<String> leftActions;
+        Set<String> rightActions;
+
+        Frame(Pending pending) {
+            this.pending = pending;
+        }
+    }
+
     private Reader reader;
-    Gson gson = new Gson();
-    private JsonObject jsonFormula;
+    private final JsonObject jsonFormula;
+    private final FormulaFactory factory = new FormulaFactory();
+    private final Map<String, String> identifiers = new HashMap<>();
+    private final Map<String, Set<String>> actionSets = new HashMap<>();
 
     public FormulaParser(String filePath) throws IOException {
-        JsonParser parser = new JsonParser();
-        JsonElement jsonElement = parser.parse(new FileReader(filePath));
-        jsonFormula = jsonElement.getAsJsonObject();
-        String formula = jsonFormula.get(JSON_FORMULA_FIELD).getAsString();
-        reader = new Reader(formula);
+        this(readJson(filePath));
+    }
+
+    /**
+     * Create a parser for a formula that has already been read from JSON, e.g. one element of
+     * an array of formulas, with its action sets.
+     * @param jsonFormula object with the formula field and the action sets it refers to
+     * @throws IOException if the object has no formula
+     */
+    public FormulaParser(JsonObject jsonFormula) throws IOException {
+        this.jsonFormula = jsonFormula;
+        JsonElement formula = jsonFormula.get(JSON_FORMULA_FIELD);
+        if (formula == null) {
+            throw new IOException("missing field '" + JSON_FORMULA_FIELD + "'");
+        }
+        if (formula.isJsonArray()) {
+            // one formula per line, so that errors are reported at the line of the formula
+            StringBuilder formulas = new StringBuilder();
+            for (JsonElement element : formula.getAsJsonArray()) {
+                formulas.append(element.getAsString()).append(SEPARATOR_TOKEN).append('\n');
+            }
+            reader = new Reader(formulas.toString());
+        } else {
+            reader = new Reader(formula.getAsString());
+        }
+    }
+
+    private static JsonObject readJson(String filePath) throws IOException {
+        try (FileReader in = new FileReader(filePath)) {
+            return new JsonParser().parse(in).getAsJsonObject();
+        }
     }
 
     private FormulaParser() {
@@ -51,20 +106,64 @@ public class FormulaParser {
         reader = null;
     }
 
+    /**
+     * Parse the first formula. What follows it is not read.
+     * @return the formula
+     * @throws IOException if the formula is malformed
+     * */
     public StateFormula parse() throws IOException {
         try {
-            return recursiveParseStateFormula();
+            return parseStateFormula();
         } catch (IOException e) {
-            throw new IOException("Error at character position " + reader.getPosition() + ":\n" + e.getMessage());
+            throw this.locate(e);
         }
     }
 
+    /**
+     * Parse all formulas, which are separated by ';'. As in parse(), what follows a formula
+     * without a separator is not read.
+     * @return the formulas in order
+     * @throws IOException if a formula is malformed
+     * */
+    public List<StateFormula> parseAll() throws IOException {
+        List<StateFormula> formulas = new ArrayList<>();
+        try {
+            do {
+                formulas.add(parseStateFormula());
+            } while (this.skipSeparator());
+        } catch (IOException e) {
+            throw this.locate(e);
+        }
+        return formulas;
+    }
+
+    /**
+     * Skip the separator after a formula.
+     * @return true if another formula follows
+     * */
+    private boolean skipSeparator() {
+        if (!reader.skipWhitespace()) {
+            return false;
+        }
+        char nextChar = reader.rawRead();
+        if (nextChar != SEPARATOR_TOKEN) {
+            reader.unread(nextChar);
+            return false;
+        }
+        return reader.skipWhitespace();
+    }
+
+    private IOException locate(IOException e) {
+        return new IOException("Error at line " + reader.getLine() + ", column " + reader.getColumn() + ":\n"
+                + e.getMessage());
+    }
+
     /**
      * Parses a formula from the given string. Does not expect JSON, only the
      * formula string itself. For this reason, no action constraints may be
      * included using this method. Action constraints must be specified in JSON
      * and parsed by creating an instance of this object.
-     * 
+     *
      * @param formula
      * @return
      * @throws IOException
@@ -75,98 +174,145 @@ public class FormulaParser {
         return parser.parse();
     }
 
-    public StateFormula recursiveParseStateFormula() throws IOException {
-        char nextChar = reader.nextChar();
-        if (nextChar == LEFT_BRACKET_TOKEN) {
-            return recursiveParseStateFormulaHelper();
-        } else {
-            return parseStateFormula(nextChar);
+    /**
+     * Parse one state formula. The operators read before a formula is complete are kept on a
+     * stack, and each complete formula is handed to the operators waiting for it.
+     * */
+    private StateFormula parseStateFormula() throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        while (true) {
+            StateFormula formula = this.parseOperand(stack);
+            if (formula != null) {
+                formula = this.complete(stack, formula);
+                if (formula != null) {
+                    return formula;
+                }
+            }
         }
     }
 
-    private StateFormula recursiveParseStateFormulaHelper() throws IOException {
-        StateFormula stateFormula;
-        StateFormula subformula = recursiveParseStateFormula();
+    /**
+     * Read an atomic formula, or an operator, which is pushed.
+     * @return the atomic formula or null after an operator
+     * */
+    private StateFormula parseOperand(Deque<Frame> stack) throws IOException {
         char nextChar = reader.nextChar();
         switch (nextChar) {
-        case RIGHT_BRACKET_TOKEN:
-            return subformula;
-        case OR_TOKEN: {
-            validateNextChars(OR_TOKEN);
-            StateFormula subformula2 = recursiveParseStateFormula();
-            stateFormula = new Or(subformula, subformula2);
-        }
-            break;
-        case AND_TOKEN: {
-            validateNextChars(AND_TOKEN);
-            StateFormula subformula2 = recursiveParseStateFormula();
-            stateFormula = new And(subformula, subformula2);
-        }
-            break;
-        default:
-            throw new IOException("unexpected character '" + nextChar + "'");
-        }
-        validateNextChars(RIGHT_BRACKET_TOKEN);
-        return stateFormula;
-    }
-
-    private StateFormula parseStateFormula(char nextChar) throws IOException {
-        switch (nextChar) {
+        case LEFT_BRACKET_TOKEN:
+            stack.push(new Frame(Pending.BRACKET));
+            return null;
         case NOT_TOKEN:
-            return new Not(recursiveParseStateFormula());
+            stack.push(new Frame(Pending.NOT));
+            return null;
         case FORALL_TOKEN:
-            return new ForAll(parsePathFormula());
         case THEREEXISTS_TOKEN:
-            return new ThereExists(parsePathFormula());
+            stack.push(parsePathOperator(nextChar == FORALL_TOKEN));
+            return null;
         case TRUE_TOKEN_PREFIX:
             validateNextChars("RUE".toCharArray());
-            return new BoolProp(true);
+            return factory.boolProp(true);
         case FALSE_TOKEN_PREFIX:
             validateNextChars("ALSE".toCharArray());
-            return new BoolProp(false);
+            return factory.boolProp(false);
         default:
             if (isLowerCase(nextChar)) {
                 reader.unread(nextChar);
-                String ident = parseOptionalIdentifier(true);
-                if (ident != null) {
-                    return new AtomicProp(ident);
-                }
+                return factory.atomicProp(this.intern(reader.readIdentifier()));
             }
             throw new IOException("Expected state formula at this position.");
         }
     }
 
-    private PathFormula parsePathFormula() throws IOException {
-        String actionSet1Identifier = parseOptionalIdentifier(true);
-        Set<String> actionSet1 = getActions(actionSet1Identifier);
+    /**
+     * Read the path operator after a quantifier, up to the state formula it applies to.
+     * */
+    private Frame parsePathOperator(boolean forAll) throws IOException {
+        reader.skipWhitespace();
+        Set<String> actionSet1 = getActions(reader.readIdentifier());
         char nextChar = reader.nextChar();
+        Frame frame;
         switch (nextChar) {
         case ALWAYS_TOKEn:
-            return new Always(recursiveParseStateFormula(), actionSet1);
+            frame = new Frame(Pending.ALWAYS);
+            break;
         case NEXT_TOKEN:
-            return new Next(recursiveParseStateFormula(), actionSet1);
+            frame = new Frame(Pending.NEXT);
+            break;
         case EVENTUALLY_TOKEN:
-            String actionSet2Identifier = parseOptionalIdentifier(false);
-            Set<String> actionSet2 = getActions(actionSet2Identifier);
-            return new Eventually(recursiveParseStateFormula(), actionSet1, actionSet2);
+            frame = new Frame(Pending.EVENTUALLY);
+            frame.rightActions = getActions(reader.readIdentifier());
+            break;
         case LEFT_BRACKET_TOKEN:
-            Until until = parseUntil();
-            validateNextChars(RIGHT_BRACKET_TOKEN);
-            return until;
+            // the action sets of Until follow its left formula
+            frame = new Frame(Pending.UNTIL_LEFT);
+            break;
         default:
             throw new IOException("Expected path quantifier");
         }
+        frame.forAll = forAll;
+        frame.leftActions = actionSet1;
+        return frame;
     }
 
-    private Until parseUntil() throws IOException {
-        StateFormula leftFormula = recursiveParseStateFormula();
-        String actionSet1Identifier = parseOptionalIdentifier(true);
-        validateNextChars(UNTIL_TOKEN);
-        String actionSet2Identifier = parseOptionalIdentifier(false);
-        StateFormula rightFormula = recursiveParseStateFormula();
-        Set<String> actionSet1 = getActions(actionSet1Identifier);
-        Set<String> actionSet2 = getActions(actionSet2Identifier);
-        return new Until(leftFormula, rightFormula, actionSet1, actionSet2);
+    /**
+     * Hand a complete formula to the operators waiting for it, as long as they are complete then.
+     * @return the whole formula, or null if an operator waits for another formula
+     * */
+    private StateFormula complete(Deque<Frame> stack, StateFormula formula) throws IOException {
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            switch (frame.pending) {
+            case BRACKET:
+                char nextChar = reader.nextChar();
+                if (nextChar == RIGHT_BRACKET_TOKEN) {
+                    break;
+                }
+                if (nextChar == OR_TOKEN || nextChar == AND_TOKEN) {
+                    validateNextChars(nextChar);
+                    frame.pending = nextChar == OR_TOKEN ? Pending.OR : Pending.AND;
+                    frame.left = formula;
+                    return null;
+                }
+                throw new IOException("unexpected character '" + nextChar + "'");
+            case AND:
+                validateNextChars(RIGHT_BRACKET_TOKEN);
+                formula = factory.and(frame.left, formula);
+                break;
+            case OR:
+                validateNextChars(RIGHT_BRACKET_TOKEN);
+                formula = factory.or(frame.left, formula);
+                break;
+            case NOT:
+                formula = factory.not(formula);
+                break;
+            case ALWAYS:
+                formula = quantify(frame, factory.always(formula, frame.leftActions));
+                break;
+            case NEXT:
+                formula = quantify(frame, factory.next(formula, frame.leftActions));
+                break;
+            case EVENTUALLY:
+                formula = quantify(frame, factory.eventually(formula, frame.leftActions, frame.rightActions));
+                break;
+            case UNTIL_LEFT:
+                reader.skipWhitespace();
+                frame.leftActions = getActions(reader.readIdentifier());
+                validateNextChars(UNTIL_TOKEN);
+                frame.rightActions = getActions(reader.readIdentifier());
+                frame.pending = Pending.UNTIL_RIGHT;
+                frame.left = formula;
+                return null;
+            default:
+                validateNextChars(RIGHT_BRACKET_TOKEN);
+                formula = quantify(frame, factory.until(frame.left, formula, frame.leftActions, frame.rightActions));
+            }
+            stack.pop();
+        }
+        return formula;
+    }
+
+    private StateFormula quantify(Frame frame, PathFormula pathFormula) {
+        return frame.forAll ? factory.forAll(pathFormula) : factory.thereExists(pathFormula);
     }
 
     private void validateNextChars(char... chars) throws IOException {
@@ -179,57 +325,44 @@ public class FormulaParser {
         }
     }
 
-    /**
-     * Parses sequence of lower case characters into a string. Keeps reading
-     * from stream until the next character to be read is not in the range a-z.
-     * 
-     * @return The string of lower case characters or null to denote that the
-     *         reader found no lower case characters at its position.
-     * @throws IOException
-     */
-    public String parseOptionalIdentifier(boolean allowWhitespacePrefix) throws IOException {
-        char nextChar;
-        if (allowWhitespacePrefix) {
-            nextChar = reader.nextChar();
-        } else {
-            nextChar = reader.rawRead();
-        }
-        if (isLowerCase(nextChar) || isNumericDigit(nextChar)) {
-            StringBuilder buffer = new StringBuilder(nextChar + "");
-            while (reader.ready()) {
-                nextChar = reader.rawRead();
-                if (isLowerCase(nextChar) || isNumericDigit(nextChar)) {
-                    buffer.append(nextChar + "");
-                } else {
-                    reader.unread(nextChar);
-                    break;
-                }
-            }
-            return buffer.toString();
-        } else {
-            reader.unread(nextChar);
-            return null;
-        }
-    }
-
-    private boolean isNumericDigit(char nextChar) {
-        return nextChar >= '0' && nextChar <= '9';
-    }
-
     public boolean isLowerCase(char charIn) {
         return (charIn >= 'a' && charIn <= 'z');
     }
 
-    private Set<String> getActions(String actionSetIdentifier) {
+    private String intern(String identifier) {
+        String interned = identifiers.get(identifier);
+        if (interned == null) {
+            identifiers.put(identifier, identifier);
+            interned = identifier;
+        }
+        return interned;
+    }
+
+    /**
+     * Returns the action set an identifier refers to, which is read from JSON once.
+     * */
+    private Set<String> getActions(String actionSetIdentifier) throws IOException {
         if (actionSetIdentifier == null) {
-            return new HashSet<String>();
+            return factory.actions(Collections.<String>emptySet());
         }
-        String[] actionsArray = gson.fromJson(jsonFormula.get(actionSetIdentifier), String[].class);
-        if (actionsArray == null) {
-            return new HashSet<String>();
-        } else {
-            return new HashSet<String>(Arrays.asList(actionsArray));
+        Set<String> actions = actionSets.get(actionSetIdentifier);
+        if (actions != null) {
+            return actions;
+        }
+        JsonElement json = jsonFormula != null ? jsonFormula.get(actionSetIdentifier) : null;
+        Set<String> actionSet = new HashSet<>();
+        if (json != null && !json.isJsonNull()) {
+            if (!json.isJsonArray()) {
+                throw new IOException("action set '" + actionSetIdentifier + "' is not an array");
+            }
+            JsonArray array = json.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                actionSet.add(this.intern(array.get(i).getAsString()));
+            }
         }
+        actions = factory.actions(actionSet);
+        actionSets.put(actionSetIdentifier, actions);
+        return actions;
     }
 
 }
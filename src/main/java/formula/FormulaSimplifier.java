@@ -0,0 +1,261 @@
+package formula;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Eventually;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simplify a formula in ENF before it is evaluated, so that no set is computed for a node whose
+ * result is known:
+ * !!phi = phi,
+ * phi & true = phi, phi & false = false, phi & phi = phi, phi & !phi = false,
+ * phi & (phi || psi) = phi, phi & (phi & psi) = phi & psi,
+ * EX false = E (phi U false) = EG false = false,
+ * E (false U phi) = phi and E (phi U true) = true without right actions,
+ * and AX true = A (phi U true) = AF true = true for the operators ENFConverter keeps.
+ * False is !true, as in ENF, since the computers read every BoolProp as true.
+ *
+ * A rule only applies where the action filters cannot change the result, so the simplified
+ * formula has the same satisfaction set on every model. The result is built by a FormulaFactory,
+ * in which the constants and equal subformulas are single nodes.
+ * */
+public class FormulaSimplifier {
+    private final FormulaFactory factory;
+    private final BoolProp trueProp;
+    private final Not falseProp;
+
+    // simplified node per node of the formula being simplified
+    private final Map<StateFormula, StateFormula> simplified = new IdentityHashMap<>();
+    private int removed;
+
+    public FormulaSimplifier() {
+        this(new FormulaFactory());
+    }
+
+    /**
+     * Create a simplifier that builds its output with a given factory, e.g. the one of the
+     * ENFConverter the formula comes from.
+     * @param factory factory for the nodes of the simplified formula
+     * */
+    public FormulaSimplifier(FormulaFactory factory) {
+        this.factory = factory;
+        this.trueProp = factory.boolProp(true);
+        this.falseProp = factory.not(trueProp);
+    }
+
+    /**
+     * Simplify a formula.
+     * @param formula formula in ENF, possibly with ForAll kept
+     * @return the simplified formula
+     * */
+    public StateFormula simplify(StateFormula formula) {
+        simplified.clear();
+        // bottom up, so that rewriting a node only looks up its operands
+        for (StateFormula node : Subformulas.postorder(formula)) {
+            this.rewrite(node);
+        }
+        StateFormula result = simplified.get(formula);
+        simplified.clear();
+        removed = countNodes(formula) - countNodes(result);
+        return result;
+    }
+
+    /**
+     * Number of nodes the last call of simplify() removed, counting every distinct node once.
+     * */
+    public int getRemovedCount() {
+        return removed;
+    }
+
+    private StateFormula rewrite(StateFormula formula) {
+        StateFormula result = simplified.get(formula);
+        if (result == null) {
+            result = this.rewriteNode(formula);
+            simplified.put(formula, result);
+        }
+        return result;
+    }
+
+    private StateFormula rewriteNode(StateFormula formula) {
+        if (formula instanceof AtomicProp) {
+            return factory.atomicProp(((AtomicProp) formula).label);
+        }
+        if (formula instanceof BoolProp) {
+            return factory.boolProp(((BoolProp) formula).value);
+        }
+        if (formula instanceof Not) {
+            return this.not(this.rewrite(((Not) formula).stateFormula));
+        }
+        if (formula instanceof And) {
+            And and = (And) formula;
+            return this.and(this.rewrite(and.left), this.rewrite(and.right));
+        }
+        if (formula instanceof Or) {
+            Or or = (Or) formula;
+            return factory.or(this.rewrite(or.left), this.rewrite(or.right));
+        }
+        if (formula instanceof ThereExists) {
+            return this.thereExists(((ThereExists) formula).pathFormula);
+        }
+        assert (formula instanceof ForAll);
+        return this.forAll(((ForAll) formula).pathFormula);
+    }
+
+    private StateFormula not(StateFormula formula) {
+        // !!phi = phi
+        if (formula instanceof Not) {
+            return ((Not) formula).stateFormula;
+        }
+        return factory.not(formula);
+    }
+
+    private StateFormula and(StateFormula left, StateFormula right) {
+        if (left == trueProp || left == right) {
+            return right;
+        }
+        if (right == trueProp) {
+            return left;
+        }
+        if (left == falseProp || right == falseProp || isNegation(left, right) || isNegation(right, left)) {
+            return falseProp;
+        }
+        if (absorbs(left, right)) {
+            return left;
+        }
+        if (absorbs(right, left)) {
+            return right;
+        }
+        if (contains(left, right)) {
+            return left;
+        }
+        if (contains(right, left)) {
+            return right;
+        }
+        return factory.and(left, right);
+    }
+
+    /**
+     * Whether a formula is !phi.
+     * */
+    private static boolean isNegation(StateFormula formula, StateFormula phi) {
+        return formula instanceof Not && ((Not) formula).stateFormula == phi;
+    }
+
+    /**
+     * Whether phi & formula = phi because formula is phi || psi, i.e. !(!phi & !psi) in ENF.
+     * */
+    private static boolean absorbs(StateFormula phi, StateFormula formula) {
+        if (!(formula instanceof Not) || !(((Not) formula).stateFormula instanceof And)) {
+            return false;
+        }
+        And and = (And) ((Not) formula).stateFormula;
+        return isNegation(and.left, phi) || isNegation(and.right, phi);
+    }
+
+    /**
+     * Whether formula is phi & psi or psi & phi.
+     * */
+    private static boolean contains(StateFormula formula, StateFormula phi) {
+        return formula instanceof And && (((And) formula).left == phi || ((And) formula).right == phi);
+    }
+
+    private StateFormula thereExists(PathFormula pathFormula) {
+        if (pathFormula instanceof Next) {
+            Next next = (Next) pathFormula;
+            StateFormula formula = this.rewrite(next.stateFormula);
+            if (formula == falseProp) {
+                return falseProp;
+            }
+            return factory.thereExists(factory.next(formula, next.getActions()));
+        }
+        if (pathFormula instanceof Until) {
+            Until until = (Until) pathFormula;
+            StateFormula left = this.rewrite(until.left);
+            StateFormula right = this.rewrite(until.right);
+            if (right == falseProp) {
+                return falseProp;
+            }
+            // without right actions, the right formula is not filtered
+            if (until.getRightActions().isEmpty()) {
+                if (right == trueProp) {
+                    return trueProp;
+                }
+                if (left == falseProp) {
+                    return right;
+                }
+            }
+            return factory.thereExists(factory.until(left, right, until.getLeftActions(), until.getRightActions()));
+        }
+        if (pathFormula instanceof Always) {
+            Always always = (Always) pathFormula;
+            StateFormula formula = this.rewrite(always.stateFormula);
+            if (formula == falseProp) {
+                return falseProp;
+            }
+            return factory.thereExists(factory.always(formula, always.getActions()));
+        }
+        Eventually eventually = (Eventually) pathFormula;
+        return factory.thereExists(factory.eventually(this.rewrite(eventually.stateFormula),
+                eventually.getLeftActions(), eventually.getRightActions()));
+    }
+
+    private StateFormula forAll(PathFormula pathFormula) {
+        if (pathFormula instanceof Next) {
+            Next next = (Next) pathFormula;
+            StateFormula formula = this.rewrite(next.stateFormula);
+            if (formula == trueProp) {
+                return trueProp;
+            }
+            return factory.forAll(factory.next(formula, next.getActions()));
+        }
+        if (pathFormula instanceof Until) {
+            Until until = (Until) pathFormula;
+            StateFormula left = this.rewrite(until.left);
+            StateFormula right = this.rewrite(until.right);
+            if (right == trueProp) {
+                return trueProp;
+            }
+            return factory.forAll(factory.until(left, right, until.getLeftActions(), until.getRightActions()));
+        }
+        if (pathFormula instanceof Eventually) {
+            Eventually eventually = (Eventually) pathFormula;
+            StateFormula formula = this.rewrite(eventually.stateFormula);
+            if (formula == trueProp) {
+                return trueProp;
+            }
+            return factory.forAll(factory.eventually(formula, eventually.getLeftActions(), eventually.getRightActions()));
+        }
+        Always always = (Always) pathFormula;
+        return factory.forAll(factory.always(this.rewrite(always.stateFormula), always.getActions()));
+    }
+
+    /**
+     * Number of distinct nodes of a formula, state and path formulas.
+     * */
+    private static int countNodes(StateFormula formula) {
+        List<StateFormula> nodes = Subformulas.postorder(formula);
+        Map<Object, Boolean> pathFormulas = new IdentityHashMap<>();
+        for (StateFormula node : nodes) {
+            if (node instanceof ThereExists) {
+                pathFormulas.put(((ThereExists) node).pathFormula, Boolean.TRUE);
+            } else if (node instanceof ForAll) {
+                pathFormulas.put(((ForAll) node).pathFormula, Boolean.TRUE);
+            }
+        }
+        return nodes.size() + pathFormulas.size();
+    }
+}
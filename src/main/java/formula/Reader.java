@@ -1,56 +1,125 @@
 package formula;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.PushbackReader;
 
+/**
+ * Characters of a formula, read from an array. The line and column of a position are only worked
+ * out for error messages, so reading does not keep track of them.
+ * */
 public class Reader {
-    private PushbackReader reader;
+    // returned by rawRead() past the end of the formula
+    public static final char EOF = (char) -1;
 
-    private int position = 1;
-
-    public Reader(InputStream inputStream) {
-        reader = new PushbackReader(new InputStreamReader(inputStream));
-    }
+    private final char[] chars;
+    private int position;
+    // index of the character read last, where errors are reported
+    private int last;
 
     public Reader(String formula) {
-        this(new ByteArrayInputStream(formula.getBytes()));
+        chars = formula.toCharArray();
     }
 
+    /**
+     * Read the next character that is not whitespace.
+     * @return the character
+     * @throws IOException at the end of the formula
+     * */
     public char nextChar() throws IOException {
-        while (reader.ready()) {
-            char nextChar = rawRead();
+        while (position < chars.length) {
+            char nextChar = chars[position++];
             switch (nextChar) {
             case ' ':
             case '\n':
+            case '\r':
             case '\t':
                 continue;
             default:
+                last = position - 1;
                 return nextChar;
             }
         }
+        last = chars.length;
         throw new IOException("Unexpected EOF.");
     }
 
-    public void unread(char charIn) throws IOException {
-        reader.unread(charIn);
+    public void unread(char charIn) {
         position--;
     }
 
-    public char rawRead() throws IOException {
-        char nextChar = (char) reader.read();
+    /**
+     * Read the next character, whitespace included.
+     * @return the character or EOF
+     * */
+    public char rawRead() {
+        last = Math.min(position, chars.length);
+        char nextChar = position < chars.length ? chars[position] : EOF;
         position++;
         return nextChar;
     }
 
-    public boolean ready() throws IOException {
-        return reader.ready();
+    public boolean ready() {
+        return position < chars.length;
+    }
+
+    /**
+     * Skip whitespace.
+     * @return true if there are characters left
+     * */
+    public boolean skipWhitespace() {
+        while (position < chars.length && Character.isWhitespace(chars[position])) {
+            position++;
+        }
+        return position < chars.length;
+    }
+
+    /**
+     * Read an identifier, a sequence of lower case letters and digits, at the current position.
+     * @return the identifier or null if the next character cannot start one
+     * */
+    public String readIdentifier() {
+        int start = position;
+        while (position < chars.length && isIdentifierChar(chars[position])) {
+            position++;
+        }
+        if (position == start) {
+            return null;
+        }
+        last = start;
+        return new String(chars, start, position - start);
+    }
+
+    public static boolean isIdentifierChar(char charIn) {
+        return (charIn >= 'a' && charIn <= 'z') || (charIn >= '0' && charIn <= '9');
     }
 
     public int getPosition() {
-        return position;
+        return position + 1;
+    }
+
+    /**
+     * Returns the line of the character read last, counted from 1.
+     * @return line number
+     * */
+    public int getLine() {
+        int line = 1;
+        for (int i = 0; i < last; i++) {
+            if (chars[i] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Returns the column of the character read last in its line, counted from 1.
+     * @return column number
+     * */
+    public int getColumn() {
+        int start = last;
+        while (start > 0 && chars[start - 1] != '\n') {
+            start--;
+        }
+        return last - start + 1;
     }
 
 }
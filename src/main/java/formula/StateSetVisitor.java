@@ -0,0 +1,27 @@
+package formula;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.ThereExists;
+import model.StateSet;
+
+// visitor pattern, as in Visitor, but over state id bitmaps instead of sets of state objects
+
+public interface StateSetVisitor {
+    StateSet visit(Visitable visitable, StateSet states);
+    StateSet visitBoolProp(BoolProp formula, StateSet states);
+    StateSet visitAtomicProp(AtomicProp formula, StateSet states);
+    StateSet visitAnd(And formula, StateSet states);
+    StateSet visitNot(Not formula, StateSet states);
+    StateSet visitThereExists(ThereExists formula, StateSet states);
+    StateSet visitForAll(ForAll formula, StateSet states);
+    StateSet visitNext(Next formula, StateSet states);
+    StateSet visitUntil(Until formula, StateSet states);
+    StateSet visitAlways(Always formula, StateSet states);
+}
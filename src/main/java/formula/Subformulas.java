@@ -0,0 +1,220 @@
+package formula;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Eventually;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Walks and compares formulas without recursion, so that the depth of a formula is not limited
+ * by the stack.
+ * */
+public final class Subformulas {
+    private static final StateFormula[] NONE = new StateFormula[0];
+
+    private Subformulas() {
+    }
+
+    /**
+     * Returns the state formulas an operator applies to, for a quantifier the ones of its path
+     * formula.
+     * @param formula state formula
+     * @return the operands, left to right
+     * */
+    public static StateFormula[] of(StateFormula formula) {
+        if (formula instanceof Not) {
+            return new StateFormula[]{((Not) formula).stateFormula};
+        }
+        if (formula instanceof And) {
+            return new StateFormula[]{((And) formula).left, ((And) formula).right};
+        }
+        if (formula instanceof Or) {
+            return new StateFormula[]{((Or) formula).left, ((Or) formula).right};
+        }
+        if (formula instanceof ThereExists) {
+            return of(((ThereExists) formula).pathFormula);
+        }
+        if (formula instanceof ForAll) {
+            return of(((ForAll) formula).pathFormula);
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the state formulas a path formula applies to.
+     * @param formula path formula
+     * @return the operands, left to right
+     * */
+    public static StateFormula[] of(PathFormula formula) {
+        if (formula instanceof Next) {
+            return new StateFormula[]{((Next) formula).stateFormula};
+        }
+        if (formula instanceof Until) {
+            return new StateFormula[]{((Until) formula).left, ((Until) formula).right};
+        }
+        if (formula instanceof Always) {
+            return new StateFormula[]{((Always) formula).stateFormula};
+        }
+        if (formula instanceof Eventually) {
+            return new StateFormula[]{((Eventually) formula).stateFormula};
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the distinct state formulas of a formula, each after its operands, so that a
+     * bottom-up pass over the list sees the result of every operand before the operator.
+     * Nodes are told apart by identity, so the structural hash is not needed.
+     * @param formula state formula
+     * @return the nodes, the formula itself last
+     * */
+    public static List<StateFormula> postorder(StateFormula formula) {
+        List<StateFormula> order = new ArrayList<>();
+        // false once the operands of a node are pushed, true once it is in the order
+        Map<StateFormula, Boolean> visited = new IdentityHashMap<>();
+        Deque<StateFormula> stack = new ArrayDeque<>();
+        stack.push(formula);
+        while (!stack.isEmpty()) {
+            StateFormula node = stack.peek();
+            Boolean done = visited.get(node);
+            if (done == null) {
+                visited.put(node, Boolean.FALSE);
+                StateFormula[] operands = of(node);
+                for (int i = operands.length - 1; i >= 0; i--) {
+                    if (!visited.containsKey(operands[i])) {
+                        stack.push(operands[i]);
+                    }
+                }
+            } else {
+                stack.pop();
+                if (!done) {
+                    visited.put(node, Boolean.TRUE);
+                    order.add(node);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Structural equality of two formulas, with the pairs of operands still to compare on a
+     * stack, so that deep formulas are not compared recursively.
+     * @param formula state formula
+     * @param other state formula
+     * @return true if both have the same structure, labels and action sets
+     * */
+    public static boolean equal(StateFormula formula, StateFormula other) {
+        Deque<StateFormula> stack = new ArrayDeque<>();
+        // pairs already compared, so that shared subformulas are compared once
+        Map<StateFormula, StateFormula> matched = null;
+        stack.push(formula);
+        stack.push(other);
+        while (!stack.isEmpty()) {
+            StateFormula right = stack.pop();
+            StateFormula left = stack.pop();
+            if (left == right || (matched != null && matched.get(left) == right)) {
+                continue;
+            }
+            if (left.hashCode() != right.hashCode() || !sameOperator(left, right)) {
+                return false;
+            }
+            if (matched != null) {
+                matched.put(left, right);
+            }
+            StateFormula[] leftOperands = of(left);
+            StateFormula[] rightOperands = of(right);
+            for (int i = 0; i < leftOperands.length; i++) {
+                if (leftOperands[i] != rightOperands[i]) {
+                    if (matched == null) {
+                        matched = new IdentityHashMap<>();
+                    }
+                    stack.push(leftOperands[i]);
+                    stack.push(rightOperands[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Structural equality of two path formulas, see equal(StateFormula, StateFormula).
+     * @param formula path formula
+     * @param other path formula
+     * @return true if both have the same structure, labels and action sets
+     * */
+    public static boolean equal(PathFormula formula, PathFormula other) {
+        if (formula == other) {
+            return true;
+        }
+        if (formula.hashCode() != other.hashCode() || !sameOperator(formula, other)) {
+            return false;
+        }
+        StateFormula[] operands = of(formula);
+        StateFormula[] otherOperands = of(other);
+        for (int i = 0; i < operands.length; i++) {
+            if (!equal(operands[i], otherOperands[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether two nodes have the same operator, label and action sets, without their operands.
+     * */
+    private static boolean sameOperator(StateFormula formula, StateFormula other) {
+        if (formula.getClass() != other.getClass()) {
+            return false;
+        }
+        if (formula instanceof AtomicProp) {
+            return ((AtomicProp) formula).label.equals(((AtomicProp) other).label);
+        }
+        if (formula instanceof BoolProp) {
+            return ((BoolProp) formula).value == ((BoolProp) other).value;
+        }
+        if (formula instanceof ThereExists) {
+            return sameOperator(((ThereExists) formula).pathFormula, ((ThereExists) other).pathFormula);
+        }
+        if (formula instanceof ForAll) {
+            return sameOperator(((ForAll) formula).pathFormula, ((ForAll) other).pathFormula);
+        }
+        return true;
+    }
+
+    private static boolean sameOperator(PathFormula formula, PathFormula other) {
+        if (formula.getClass() != other.getClass()) {
+            return false;
+        }
+        if (formula instanceof Next) {
+            return Objects.equals(((Next) formula).getActions(), ((Next) other).getActions());
+        }
+        if (formula instanceof Always) {
+            return Objects.equals(((Always) formula).getActions(), ((Always) other).getActions());
+        }
+        if (formula instanceof Until) {
+            Until until = (Until) formula;
+            return Objects.equals(until.getLeftActions(), ((Until) other).getLeftActions())
+                    && Objects.equals(until.getRightActions(), ((Until) other).getRightActions());
+        }
+        Eventually eventually = (Eventually) formula;
+        return Objects.equals(eventually.getLeftActions(), ((Eventually) other).getLeftActions())
+                && Objects.equals(eventually.getRightActions(), ((Eventually) other).getRightActions());
+    }
+}
@@ -1,6 +1,7 @@
 package formula;
 
 import model.State;
+import model.StateSet;
 import java.util.Set;
 
 // visitor pattern
@@ -8,4 +9,6 @@ import java.util.Set;
 
 public interface Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states);
+    public StateSet accept(StateSetVisitor visitor, StateSet states);
+    public int accept(BDDVisitor visitor, int states);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import formula.pathFormula.Until;
 import formula.stateFormula.And;
 import formula.stateFormula.AtomicProp;
 import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
 import formula.stateFormula.Not;
 import formula.stateFormula.ThereExists;
 import model.State;
@@ -22,6 +23,7 @@ public interface Visitor {
     Set<State> visitAnd(And formula, Set<State> states);
     Set<State> visitNot(Not formula, Set<State> states);
     Set<State> visitThereExists(ThereExists formula, Set<State> states);
+    Set<State> visitForAll(ForAll formula, Set<State> states);
     Set<State> visitNext(Next formula, Set<State> states);
     Set<State> visitUntil(Until formula, Set<State> states);
     Set<State> visitAlways(Always formula, Set<State> states);
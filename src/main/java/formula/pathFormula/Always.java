@@ -1,11 +1,14 @@
 package formula.pathFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
 import formula.FormulaParser;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import formula.stateFormula.*;
 import model.State;
+import model.StateSet;
 
 import java.util.*;
 
@@ -38,9 +41,23 @@ public class Always extends PathFormula implements Visitable {
         return converter.convertThereExistsAlways(this);
     }
 
-
     @Override
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitAlways(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitAlways(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitAlways(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Always", stateFormula, actions);
+    }
 }
@@ -41,5 +41,8 @@ public class Eventually extends PathFormula {
         return converter.convertThereExistsEventually(this);
     }
 
-
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Eventually", stateFormula, leftActions, rightActions);
+    }
 }
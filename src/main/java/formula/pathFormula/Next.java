@@ -1,12 +1,16 @@
 package formula.pathFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
 import formula.FormulaParser;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import formula.stateFormula.*;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class Next extends PathFormula implements Visitable {
@@ -38,9 +42,23 @@ public class Next extends PathFormula implements Visitable {
         return converter.convertThereExistsNext(this);
     }
 
-
     @Override
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitNext(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitNext(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitNext(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Next", stateFormula, actions);
+    }
 }
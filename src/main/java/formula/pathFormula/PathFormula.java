@@ -1,11 +1,38 @@
 package formula.pathFormula;
 
 import formula.ENFConverter;
+import formula.Subformulas;
 import formula.stateFormula.StateFormula;
 
+/**
+ * Path formula. Equal if the structure and the action sets are the same, as for StateFormula.
+ * */
 public abstract class PathFormula {
+    // structural hash, computed on first use since the subformulas do not change
+    private int hash;
+
     public abstract void writeToBuffer(StringBuilder buffer);
 
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHash();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PathFormula && Subformulas.equal(this, (PathFormula) o);
+    }
+
+    /**
+     * Compute the structural hash from the hashes of the subformulas and the action sets.
+     * */
+    protected abstract int computeHash();
+
     // visitor pattern : delegates to the method of the converter (visitor)
     public abstract StateFormula convertForAll(ENFConverter converter);
     public abstract StateFormula convertThereExists(ENFConverter converter);
@@ -3,7 +3,9 @@ package formula.pathFormula;
 import formula.*;
 import formula.stateFormula.*;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class Until extends PathFormula implements Visitable{
@@ -42,6 +44,16 @@ public class Until extends PathFormula implements Visitable{
         return visitor.visitUntil(this, states);
     }
 
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitUntil(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitUntil(this, states);
+    }
+
     @Override
     public StateFormula convertForAll(ENFConverter converter) {
         return converter.convertForAllUntil(this);
@@ -52,4 +64,8 @@ public class Until extends PathFormula implements Visitable{
         return converter.convertThereExistsUntil(this);
     }
 
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Until", left, right, leftActions, rightActions);
+    }
 }
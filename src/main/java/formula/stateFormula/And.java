@@ -1,10 +1,14 @@
 package formula.stateFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class And extends StateFormula implements Visitable {
@@ -34,4 +38,19 @@ public class And extends StateFormula implements Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitAnd(this, states);
     }
-}
\ No newline at end of file
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitAnd(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitAnd(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("And", left, right);
+    }
+}
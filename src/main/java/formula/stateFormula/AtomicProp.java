@@ -1,10 +1,14 @@
 package formula.stateFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class AtomicProp extends StateFormula implements Visitable {
@@ -28,4 +32,19 @@ public class AtomicProp extends StateFormula implements Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitAtomicProp(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitAtomicProp(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitAtomicProp(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("AtomicProp", label);
+    }
 }
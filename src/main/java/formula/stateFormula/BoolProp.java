@@ -1,9 +1,12 @@
 package formula.stateFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import model.State;
+import model.StateSet;
 
 import java.util.Set;
 
@@ -29,4 +32,19 @@ public class BoolProp extends StateFormula implements Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitBoolProp(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitBoolProp(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitBoolProp(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return value ? 1231 : 1237;
+    }
 }
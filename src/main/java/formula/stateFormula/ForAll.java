@@ -2,8 +2,13 @@ package formula.stateFormula;
 
 import formula.*;
 import formula.pathFormula.PathFormula;
+import model.State;
+import model.StateSet;
 
-public class ForAll extends StateFormula {
+import java.util.Objects;
+import java.util.Set;
+
+public class ForAll extends StateFormula implements Visitable {
     public final PathFormula pathFormula;
 
     public ForAll(PathFormula pathFormula) {
@@ -22,4 +27,24 @@ public class ForAll extends StateFormula {
     public StateFormula convertToENF(ENFConverter converter) {
         return converter.convertForAll(this);
     }
+
+    @Override
+    public Set<State> accept(Visitor visitor, Set<State> states) {
+        return visitor.visitForAll(this, states);
+    }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitForAll(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitForAll(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("ForAll", pathFormula);
+    }
 }
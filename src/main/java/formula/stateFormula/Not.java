@@ -1,11 +1,15 @@
 package formula.stateFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
 import formula.FormulaParser;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class Not extends StateFormula implements Visitable {
@@ -32,4 +36,19 @@ public class Not extends StateFormula implements Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitNot(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitNot(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitNot(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Not", stateFormula);
+    }
 }
@@ -2,6 +2,8 @@ package formula.stateFormula;
 
 import formula.ENFConverter;
 
+import java.util.Objects;
+
 public class Or extends StateFormula {
     public final StateFormula left;
     public final StateFormula right;
@@ -25,4 +27,8 @@ public class Or extends StateFormula {
         return converter.convertOr(this);
     }
 
-}
\ No newline at end of file
+    @Override
+    protected int computeHash() {
+        return Objects.hash("Or", left, right);
+    }
+}
@@ -1,8 +1,19 @@
 package formula.stateFormula;
 
 import formula.ENFConverter;
+import formula.Subformulas;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * State formula. Two formulas are equal if they have the same structure, including the action
+ * sets of their path formulas, so they can be hash-consed (FormulaFactory) and used as keys.
+ * */
 public abstract class StateFormula {
+    // structural hash, computed on first use since the subformulas do not change
+    private int hash;
+
     public abstract void writeToBuffer(StringBuilder buffer);
 
     @Override
@@ -12,6 +23,42 @@ public abstract class StateFormula {
         return buffer.toString();
     }
 
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            // hash the subformulas bottom up first, so that a deep formula is not hashed recursively
+            Deque<StateFormula> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                StateFormula node = stack.peek();
+                boolean ready = true;
+                for (StateFormula operand : Subformulas.of(node)) {
+                    if (operand.hash == 0) {
+                        stack.push(operand);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    // 0 marks a hash that is not computed yet
+                    int h = node.computeHash();
+                    node.hash = h != 0 ? h : 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StateFormula && Subformulas.equal(this, (StateFormula) o);
+    }
+
+    /**
+     * Compute the structural hash from the hashes of the subformulas.
+     * */
+    protected abstract int computeHash();
+
     // visitor pattern : delegates to the method of the converter (visitor)
     public abstract StateFormula convertToENF(ENFConverter converter);
 }
@@ -1,12 +1,16 @@
 package formula.stateFormula;
 
+import formula.BDDVisitor;
 import formula.ENFConverter;
 import formula.FormulaParser;
+import formula.StateSetVisitor;
 import formula.Visitable;
 import formula.Visitor;
 import formula.pathFormula.PathFormula;
 import model.State;
+import model.StateSet;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class ThereExists extends StateFormula implements Visitable {
@@ -33,4 +37,19 @@ public class ThereExists extends StateFormula implements Visitable {
     public Set<State> accept(Visitor visitor, Set<State> states) {
         return visitor.visitThereExists(this, states);
     }
+
+    @Override
+    public StateSet accept(StateSetVisitor visitor, StateSet states) {
+        return visitor.visitThereExists(this, states);
+    }
+
+    @Override
+    public int accept(BDDVisitor visitor, int states) {
+        return visitor.visitThereExists(this, states);
+    }
+
+    @Override
+    protected int computeHash() {
+        return Objects.hash("ThereExists", pathFormula);
+    }
 }
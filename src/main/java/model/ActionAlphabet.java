@@ -0,0 +1,87 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The actions of a model, interned to dense int ids when the model is loaded.
+ * Action sets of formulas are compiled against the alphabet into ActionMasks.
+ * */
+public class ActionAlphabet {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> actions = new ArrayList<>();
+
+    // compiled action sets of formulas, which are usually shared by many evaluations
+    private final Map<Set<String>, ActionMask> compiled = new HashMap<>();
+
+    /**
+     * Returns the id of an action, adding it to the alphabet if it is new.
+     * @param action name of the action
+     * @return action id
+     * */
+    public int intern(String action) {
+        Integer id = ids.get(action);
+        if (id == null) {
+            id = actions.size();
+            ids.put(action, id);
+            actions.add(action);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of an action.
+     * @param action name of the action
+     * @return action id or -1 if no transition has the action
+     * */
+    public int getId(String action) {
+        Integer id = ids.get(action);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the name of an action.
+     * @param id action id
+     * @return name of the action
+     * */
+    public String getAction(int id) {
+        return actions.get(id);
+    }
+
+    /**
+     * Returns the number of distinct actions.
+     * @return size of the alphabet
+     * */
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * Compile a set of actions of a formula to a mask over this alphabet.
+     * Actions that no transition has are dropped, as they can never match.
+     * The empty set places no restriction on the actions and compiles to ActionMask.ANY.
+     * @param actionSet set of action names
+     * @return compiled action set
+     * */
+    public synchronized ActionMask compile(Set<String> actionSet) {
+        if (actionSet.isEmpty()) {
+            return ActionMask.ANY;
+        }
+        ActionMask mask = compiled.get(actionSet);
+        if (mask == null) {
+            long[] words = new long[(actions.size() + 63) >>> 6];
+            for (String action : actionSet) {
+                int id = getId(action);
+                if (id >= 0) {
+                    words[id >>> 6] |= 1L << id;
+                }
+            }
+            mask = new ActionMask(words);
+            compiled.put(actionSet, mask);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,69 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A set of actions compiled against an ActionAlphabet, stored as a bitmap over the action ids.
+ * ANY stands for the empty action set of a formula, which places no restriction on the actions.
+ * */
+public class ActionMask {
+    public static final ActionMask ANY = new ActionMask(new long[0], true);
+
+    private final long[] words;
+    private final boolean any;
+
+    ActionMask(long[] words) {
+        this(words, false);
+    }
+
+    private ActionMask(long[] words, boolean any) {
+        this.words = words;
+        this.any = any;
+    }
+
+    /**
+     * Whether this is the unrestricted action set.
+     * @return true for ANY
+     * */
+    public boolean isAny() {
+        return any;
+    }
+
+    /**
+     * Whether the action with the given id is in the set.
+     * @param action action id
+     * @return true if the action is in the set (always for ANY)
+     * */
+    public boolean contains(int action) {
+        if (any) {
+            return true;
+        }
+        int w = action >>> 6;
+        return w < words.length && (words[w] & (1L << action)) != 0;
+    }
+
+    /**
+     * Returns the first 64 bits of the set, i.e. the whole set if the alphabet has at most 64 actions.
+     * @return bits of the action ids 0 ... 63
+     * */
+    long firstWord() {
+        if (any) {
+            return -1L;
+        }
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ActionMask)) {
+            return false;
+        }
+        ActionMask other = (ActionMask) o;
+        return any == other.any && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return any ? -1 : Arrays.hashCode(words);
+    }
+}
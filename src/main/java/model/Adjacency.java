@@ -0,0 +1,192 @@
+package model;
+
+import java.nio.IntBuffer;
+
+/**
+ * Compressed sparse row (CSR) adjacency of a transition relation.
+ * The neighbours of the state with id i are stored contiguously in
+ * neighbours[offsets[i]] ... neighbours[offsets[i + 1] - 1], together with the
+ * index of the transition that connects them.
+ *
+ * The arrays are int buffers, so that they can either wrap heap arrays or be
+ * mapped from a model snapshot file.
+ *
+ * Neighbours are best visited with a Cursor, which also works for the
+ * CompressedAdjacency that decodes its rows on the fly.
+ * */
+public class Adjacency {
+    private final IntBuffer offsets;
+    private final IntBuffer neighbours;
+    private final IntBuffer edges;
+
+    Adjacency(IntBuffer offsets, IntBuffer neighbours, IntBuffer edges) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.edges = edges;
+    }
+
+    /**
+     * Build the adjacency from a list of edges.
+     * Edge e goes from from[e] to to[e]; the neighbours of a state keep the order of the edges.
+     * @param stateCount number of states
+     * @param from state id each edge is grouped by
+     * @param to state id each edge points to
+     * @return adjacency grouped by the from ids
+     * */
+    public static Adjacency build(int stateCount, int[] from, int[] to) {
+        int[] offsets = new int[stateCount + 1];
+
+        // count the degree of each state
+        for (int f : from) {
+            offsets[f + 1]++;
+        }
+
+        // prefix sum of the degrees gives the start of each row
+        for (int i = 0; i < stateCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        // fill the rows, keeping a cursor per state
+        int[] cursor = new int[stateCount];
+        System.arraycopy(offsets, 0, cursor, 0, stateCount);
+        int[] neighbours = new int[from.length];
+        int[] edges = new int[from.length];
+        for (int e = 0; e < from.length; e++) {
+            int position = cursor[from[e]]++;
+            neighbours[position] = to[e];
+            edges[position] = e;
+        }
+
+        return new Adjacency(IntBuffer.wrap(offsets), IntBuffer.wrap(neighbours), IntBuffer.wrap(edges));
+    }
+
+    /**
+     * Returns the number of states in the adjacency.
+     * @return number of states
+     * */
+    public int getStateCount() {
+        return offsets.limit() - 1;
+    }
+
+    /**
+     * Returns the number of edges in the adjacency.
+     * @return number of edges
+     * */
+    public int getEdgeCount() {
+        return offsets.get(offsets.limit() - 1);
+    }
+
+    /**
+     * Returns the position of the first neighbour of a state.
+     * @param state state id
+     * @return first position (inclusive)
+     * */
+    public int start(int state) {
+        return offsets.get(state);
+    }
+
+    /**
+     * Returns the position after the last neighbour of a state.
+     * @param state state id
+     * @return last position (exclusive)
+     * */
+    public int end(int state) {
+        return offsets.get(state + 1);
+    }
+
+    /**
+     * Returns the number of neighbours of a state.
+     * @param state state id
+     * @return degree of the state
+     * */
+    public int degree(int state) {
+        return offsets.get(state + 1) - offsets.get(state);
+    }
+
+    /**
+     * Returns the neighbour stored at a position.
+     * @param position position between start(s) and end(s)
+     * @return state id of the neighbour
+     * */
+    public int neighbour(int position) {
+        return neighbours.get(position);
+    }
+
+    /**
+     * Returns the transition stored at a position.
+     * @param position position between start(s) and end(s)
+     * @return index of the transition in Model.getTransitions()
+     * */
+    public int edge(int position) {
+        return edges.get(position);
+    }
+
+    /**
+     * Returns a cursor over the neighbours of the states.
+     * A cursor is not thread safe, every thread needs its own.
+     * @return new cursor
+     * */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    // raw arrays, for writing snapshots
+    IntBuffer offsets() {
+        return offsets.duplicate();
+    }
+
+    IntBuffer neighbours() {
+        return neighbours.duplicate();
+    }
+
+    IntBuffer edges() {
+        return edges.duplicate();
+    }
+
+    /**
+     * Iterates over the neighbours of one state at a time:
+     * for (cursor.reset(s); cursor.next(); ) { cursor.neighbour(); cursor.edge(); }
+     * */
+    public static class Cursor {
+        private final Adjacency adjacency;
+        private int position;
+        private int end;
+
+        protected Cursor(Adjacency adjacency) {
+            this.adjacency = adjacency;
+        }
+
+        /**
+         * Move the cursor before the first neighbour of a state.
+         * @param state state id
+         * */
+        public void reset(int state) {
+            position = adjacency.start(state) - 1;
+            end = adjacency.end(state);
+        }
+
+        /**
+         * Move to the next neighbour.
+         * @return false if there are no more neighbours
+         * */
+        public boolean next() {
+            return ++position < end;
+        }
+
+        /**
+         * Returns the state id of the current neighbour.
+         * @return state id
+         * */
+        public int neighbour() {
+            return adjacency.neighbour(position);
+        }
+
+        /**
+         * Returns the transition to the current neighbour.
+         * @return index of the transition in Model.getTransitions()
+         * */
+        public int edge() {
+            return adjacency.edge(position);
+        }
+    }
+}
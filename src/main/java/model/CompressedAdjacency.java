@@ -0,0 +1,264 @@
+package model;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Adjacency whose rows are stored compressed and decoded while they are iterated.
+ *
+ * The neighbours of each state are sorted and stored as varints: the first neighbour as a
+ * zigzag delta to the state itself, the following ones as gaps to the previous neighbour,
+ * and every transition index as a zigzag delta to the previous one of the row. Neighbours
+ * of real models are clustered and transitions are mostly numbered by their source, so most
+ * entries take one or two bytes instead of the eight of the plain CSR arrays.
+ *
+ * Only the edge offsets and the byte offsets of the rows stay uncompressed, so start, end
+ * and degree are as fast as for the plain adjacency. neighbour(position) and edge(position)
+ * have to decode the row up to the position; use a cursor() to visit the neighbours instead.
+ * */
+public class CompressedAdjacency extends Adjacency {
+    // byte positions of the rows: a long for every block of 64 states, and an int relative to it for every state
+    private static final int BLOCK_BITS = 6;
+
+    // result of the throughput measurement, so that the decoding is not optimised away
+    private static volatile long sink;
+
+    private final VarInts bytes;
+    private final long[] blocks;
+    private final int[] rows;
+
+    private CompressedAdjacency(IntBuffer offsets, VarInts bytes, long[] blocks, int[] rows) {
+        super(offsets, null, null);
+        this.bytes = bytes;
+        this.blocks = blocks;
+        this.rows = rows;
+    }
+
+    /**
+     * Compress an adjacency.
+     * @param adjacency adjacency to compress
+     * @return compressed adjacency with the same rows, each sorted by neighbour
+     * */
+    public static CompressedAdjacency compress(Adjacency adjacency) {
+        if (adjacency instanceof CompressedAdjacency) {
+            return (CompressedAdjacency) adjacency;
+        }
+        int stateCount = adjacency.getStateCount();
+        int[] offsets = new int[stateCount + 1];
+        long[] blocks = new long[(stateCount >>> BLOCK_BITS) + 1];
+        int[] rows = new int[stateCount];
+        VarInts bytes = new VarInts();
+
+        long[] entries = new long[0];
+        for (int s = 0; s < stateCount; s++) {
+            offsets[s] = adjacency.start(s);
+            if ((s & ((1 << BLOCK_BITS) - 1)) == 0) {
+                blocks[s >>> BLOCK_BITS] = bytes.size();
+            }
+            long row = bytes.size() - blocks[s >>> BLOCK_BITS];
+            if (row > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Rows of states " + (s & ~((1 << BLOCK_BITS) - 1)) + " to " + s
+                        + " take more than 2 GB compressed");
+            }
+            rows[s] = (int) row;
+
+            // sort the row by neighbour, then by transition
+            int degree = adjacency.degree(s);
+            if (entries.length < degree) {
+                entries = new long[Math.max(degree, entries.length * 2)];
+            }
+            for (int i = 0; i < degree; i++) {
+                int position = adjacency.start(s) + i;
+                entries[i] = ((long) adjacency.neighbour(position) << 32) | (adjacency.edge(position) & 0xffffffffL);
+            }
+            Arrays.sort(entries, 0, degree);
+
+            int previousNeighbour = s;
+            int previousEdge = adjacency.start(s);
+            for (int i = 0; i < degree; i++) {
+                int neighbour = (int) (entries[i] >>> 32);
+                int edge = (int) entries[i];
+                bytes.write(i == 0 ? VarInts.zigzag(neighbour - s) : neighbour - previousNeighbour);
+                bytes.write(VarInts.zigzag(edge - previousEdge));
+                previousNeighbour = neighbour;
+                previousEdge = edge;
+            }
+        }
+        offsets[stateCount] = adjacency.getEdgeCount();
+        bytes.trim();
+        return new CompressedAdjacency(IntBuffer.wrap(offsets), bytes, blocks, rows);
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new DecodingCursor(this);
+    }
+
+    @Override
+    public int neighbour(int position) {
+        DecodingCursor cursor = this.seek(position);
+        return cursor.neighbour();
+    }
+
+    @Override
+    public int edge(int position) {
+        DecodingCursor cursor = this.seek(position);
+        return cursor.edge();
+    }
+
+    // decode the row that contains a position up to that position
+    private DecodingCursor seek(int position) {
+        if (position < 0 || position >= getEdgeCount()) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for " + getEdgeCount() + " edges");
+        }
+        // last state whose row starts at or before the position and is not empty
+        int low = 0;
+        int high = getStateCount() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (start(middle) <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        DecodingCursor cursor = new DecodingCursor(this);
+        cursor.reset(low);
+        for (int i = start(low); i <= position; i++) {
+            cursor.next();
+        }
+        return cursor;
+    }
+
+    /**
+     * Returns the number of bytes used by the compressed rows and the per state offsets.
+     * @return compressed size in bytes
+     * */
+    public long getCompressedBytes() {
+        return bytes.size() + 8L * blocks.length + 4L * rows.length + 4L * (rows.length + 1);
+    }
+
+    /**
+     * Returns the number of bytes the same rows take as plain CSR arrays.
+     * @return uncompressed size in bytes
+     * */
+    public long getUncompressedBytes() {
+        return 4L * (rows.length + 1) + 8L * getEdgeCount();
+    }
+
+    /**
+     * Returns how many times smaller the compressed rows are than the plain CSR arrays.
+     * @return compression ratio
+     * */
+    public double getCompressionRatio() {
+        return (double) getUncompressedBytes() / getCompressedBytes();
+    }
+
+    /**
+     * Decode every row a few times and measure how fast the edges are decoded.
+     * @return decoded edges per second
+     * */
+    public double measureDecodeThroughput() {
+        Cursor cursor = this.cursor();
+        long checksum = 0;
+        long edges = 0;
+        long start = System.nanoTime();
+        // at least three passes and a tenth of a second, so that the timing means something
+        for (int pass = 0; pass < 3 || System.nanoTime() - start < 100000000L; pass++) {
+            for (int s = 0; s < getStateCount(); s++) {
+                for (cursor.reset(s); cursor.next(); ) {
+                    checksum += cursor.neighbour() + cursor.edge();
+                }
+            }
+            edges += getEdgeCount();
+            if (getEdgeCount() == 0) {
+                break;
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        // keep the decoding from being optimised away
+        sink = checksum;
+        return edges * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return getStateCount() + " states, " + getEdgeCount() + " edges, " + getCompressedBytes()
+                + " bytes compressed, " + getUncompressedBytes() + " bytes as CSR (ratio "
+                + String.format("%.2f", getCompressionRatio()) + ")";
+    }
+
+    // decoded arrays, for writing snapshots
+    @Override
+    IntBuffer neighbours() {
+        return this.decode(true);
+    }
+
+    @Override
+    IntBuffer edges() {
+        return this.decode(false);
+    }
+
+    private IntBuffer decode(boolean neighbours) {
+        int[] values = new int[getEdgeCount()];
+        Cursor cursor = this.cursor();
+        for (int s = 0; s < getStateCount(); s++) {
+            int i = start(s);
+            for (cursor.reset(s); cursor.next(); ) {
+                values[i++] = neighbours ? cursor.neighbour() : cursor.edge();
+            }
+        }
+        return IntBuffer.wrap(values);
+    }
+
+    /**
+     * Cursor that decodes a row while moving through it.
+     * */
+    private static class DecodingCursor extends Cursor {
+        private final CompressedAdjacency adjacency;
+        private final VarInts.Reader reader;
+        private int state;
+        private int remaining;
+        private int neighbour;
+        private int edge;
+
+        DecodingCursor(CompressedAdjacency adjacency) {
+            super(adjacency);
+            this.adjacency = adjacency;
+            this.reader = adjacency.bytes.new Reader();
+        }
+
+        @Override
+        public void reset(int state) {
+            this.state = state;
+            this.remaining = adjacency.degree(state);
+            this.edge = adjacency.start(state);
+            this.neighbour = -1;
+            if (remaining > 0) {
+                reader.seek(adjacency.blocks[state >>> BLOCK_BITS] + adjacency.rows[state]);
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            int gap = reader.read();
+            neighbour = neighbour < 0 ? state + VarInts.unzigzag(gap) : neighbour + gap;
+            edge += VarInts.unzigzag(reader.read());
+            return true;
+        }
+
+        @Override
+        public int neighbour() {
+            return neighbour;
+        }
+
+        @Override
+        public int edge() {
+            return edge;
+        }
+    }
+}
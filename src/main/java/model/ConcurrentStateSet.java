@@ -0,0 +1,62 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of state ids that several threads can add to without locking.
+ *
+ * The bits are kept in the same layout as in StateSet, as an AtomicLongArray whose words are
+ * updated by compare and set, so exactly one of the threads adding a state is told it was new.
+ * */
+public class ConcurrentStateSet {
+    private final int size;
+    private final AtomicLongArray words;
+
+    /**
+     * Create a concurrent set with the states of a set.
+     * @param set initial states
+     * */
+    public ConcurrentStateSet(StateSet set) {
+        this.size = set.size();
+        this.words = new AtomicLongArray(set.words());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return (words.get(id >>> 6) & (1L << id)) != 0;
+    }
+
+    /**
+     * Add a state.
+     * @param id state id
+     * @return true if the state was not in the set, for exactly one of the threads adding it
+     * */
+    public boolean add(int id) {
+        int w = id >>> 6;
+        long bit = 1L << id;
+        while (true) {
+            long word = words.get(w);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(w, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Copy the states into a StateSet, once no thread adds to the set any more.
+     * @return the states of the set
+     * */
+    public StateSet toStateSet() {
+        long[] bits = new long[words.length()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = words.get(i);
+        }
+        return StateSet.wrap(size, bits);
+    }
+}
@@ -0,0 +1,302 @@
+package model;
+
+import utils.IntList;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The actions of every transition of a model, interned against the model's ActionAlphabet.
+ * With at most 64 actions each transition is a single long bitmask, so matching an
+ * action set is one AND. With more actions each transition is a sorted array of
+ * action ids, stored back to back with an offset per transition.
+ * Like Adjacency, the arrays are buffers so that they can be mapped from a snapshot.
+ *
+ * The dictionary-coded form from compress() stores every distinct action set once and
+ * gives each transition the 1, 2 or 4 byte code of its set.
+ * */
+public class EdgeActions {
+    // one mask per transition, or null if the alphabet is larger than 64
+    private final LongBuffer masks;
+    // otherwise, the sorted action ids of transition e are actions[offsets[e]] ... actions[offsets[e + 1] - 1]
+    private final IntBuffer offsets;
+    private final IntBuffer actions;
+
+    // dictionary-coded form: the distinct action sets, and the code of the set of every transition
+    private final EdgeActions dictionary;
+    private final byte[] byteCodes;
+    private final short[] shortCodes;
+    private final int[] intCodes;
+
+    EdgeActions(LongBuffer masks, IntBuffer offsets, IntBuffer actions) {
+        this.masks = masks;
+        this.offsets = offsets;
+        this.actions = actions;
+        this.dictionary = null;
+        this.byteCodes = null;
+        this.shortCodes = null;
+        this.intCodes = null;
+    }
+
+    private EdgeActions(EdgeActions dictionary, byte[] byteCodes, short[] shortCodes, int[] intCodes) {
+        this.masks = null;
+        this.offsets = null;
+        this.actions = null;
+        this.dictionary = dictionary;
+        this.byteCodes = byteCodes;
+        this.shortCodes = shortCodes;
+        this.intCodes = intCodes;
+    }
+
+    /**
+     * Intern the actions of all transitions and build their compiled form.
+     * @param alphabet alphabet to intern the actions into
+     * @param transitions transitions of the model
+     * @return actions of every transition
+     * */
+    public static EdgeActions build(ActionAlphabet alphabet, Transition[] transitions) {
+        int[] offsets = new int[transitions.length + 1];
+        for (int e = 0; e < transitions.length; e++) {
+            offsets[e + 1] = offsets[e] + transitions[e].getActions().length;
+        }
+        int[] actions = new int[offsets[transitions.length]];
+        for (int e = 0; e < transitions.length; e++) {
+            String[] names = transitions[e].getActions();
+            for (int i = 0; i < names.length; i++) {
+                actions[offsets[e] + i] = alphabet.intern(names[i]);
+            }
+        }
+        return build(alphabet.size(), offsets, actions);
+    }
+
+    /**
+     * Build the compiled form from already interned actions.
+     * @param alphabetSize number of distinct actions
+     * @param offsets the actions of transition e are actions[offsets[e]] ... actions[offsets[e + 1] - 1]
+     * @param actions action ids, sorted in place per transition
+     * @return actions of every transition
+     * */
+    public static EdgeActions build(int alphabetSize, int[] offsets, int[] actions) {
+        int edgeCount = offsets.length - 1;
+        if (alphabetSize > 64) {
+            for (int e = 0; e < edgeCount; e++) {
+                Arrays.sort(actions, offsets[e], offsets[e + 1]);
+            }
+            return new EdgeActions(null, IntBuffer.wrap(offsets), IntBuffer.wrap(actions));
+        }
+
+        long[] masks = new long[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            for (int i = offsets[e]; i < offsets[e + 1]; i++) {
+                masks[e] |= 1L << actions[i];
+            }
+        }
+        return new EdgeActions(LongBuffer.wrap(masks), null, null);
+    }
+
+    /**
+     * Whether a transition has at least one of the actions of the mask.
+     * @param edge index of the transition
+     * @param mask compiled action set
+     * @return true if the transition and the mask share an action
+     * */
+    public boolean matches(int edge, ActionMask mask) {
+        if (mask.isAny()) {
+            return true;
+        }
+        if (dictionary != null) {
+            return dictionary.matches(code(edge), mask);
+        }
+        if (masks != null) {
+            return (masks.get(edge) & mask.firstWord()) != 0;
+        }
+        for (int i = offsets.get(edge); i < offsets.get(edge + 1); i++) {
+            if (mask.contains(actions.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sorted action ids of a transition.
+     * @param edge index of the transition
+     * @return action ids
+     * */
+    public int[] getActions(int edge) {
+        if (dictionary != null) {
+            return dictionary.getActions(code(edge));
+        }
+        if (masks == null) {
+            int[] ids = new int[offsets.get(edge + 1) - offsets.get(edge)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = actions.get(offsets.get(edge) + i);
+            }
+            return ids;
+        }
+        long mask = masks.get(edge);
+        int[] ids = new int[Long.bitCount(mask)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return ids;
+    }
+
+    /**
+     * Whether every transition is stored as a single 64 bit mask.
+     * @return true if the alphabet has at most 64 actions
+     * */
+    public boolean isSingleWord() {
+        return dictionary != null ? dictionary.isSingleWord() : masks != null;
+    }
+
+    /**
+     * Returns the number of transitions.
+     * @return number of transitions
+     * */
+    public int getEdgeCount() {
+        if (dictionary != null) {
+            return byteCodes != null ? byteCodes.length : shortCodes != null ? shortCodes.length : intCodes.length;
+        }
+        return masks != null ? masks.limit() : offsets.limit() - 1;
+    }
+
+    /**
+     * Dictionary-code the action sets: every distinct set is stored once and
+     * each transition only keeps the code of its set.
+     * @return dictionary-coded actions, or this if they are coded already
+     * */
+    public EdgeActions compress() {
+        if (dictionary != null) {
+            return this;
+        }
+        int edgeCount = getEdgeCount();
+        Map<Object, Integer> codes = new HashMap<>();
+        int[] edgeCodes = new int[edgeCount];
+        IntList dictionaryOffsets = new IntList();
+        IntList dictionaryActions = new IntList();
+        dictionaryOffsets.add(0);
+        int alphabetSize = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            // a mask is its own key, action arrays are compared as lists
+            Object key;
+            if (masks != null) {
+                key = masks.get(e);
+            } else {
+                List<Integer> ids = new ArrayList<>();
+                for (int i = offsets.get(e); i < offsets.get(e + 1); i++) {
+                    ids.add(actions.get(i));
+                }
+                key = ids;
+            }
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = codes.size();
+                codes.put(key, code);
+                for (int id : getActions(e)) {
+                    dictionaryActions.add(id);
+                    alphabetSize = Math.max(alphabetSize, id + 1);
+                }
+                dictionaryOffsets.add(dictionaryActions.size());
+            }
+            edgeCodes[e] = code;
+        }
+
+        // keep the representation of the sets, only large alphabets use the action arrays
+        EdgeActions dictionary = build(isSingleWord() ? Math.min(alphabetSize, 64) : Math.max(alphabetSize, 65),
+                dictionaryOffsets.toArray(), dictionaryActions.toArray());
+        if (codes.size() <= 1 << 8) {
+            byte[] byteCodes = new byte[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                byteCodes[e] = (byte) edgeCodes[e];
+            }
+            return new EdgeActions(dictionary, byteCodes, null, null);
+        }
+        if (codes.size() <= 1 << 16) {
+            short[] shortCodes = new short[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                shortCodes[e] = (short) edgeCodes[e];
+            }
+            return new EdgeActions(dictionary, null, shortCodes, null);
+        }
+        return new EdgeActions(dictionary, null, null, edgeCodes);
+    }
+
+    /**
+     * Returns the number of distinct action sets of a dictionary-coded instance.
+     * @return size of the dictionary, or -1 if the actions are not dictionary-coded
+     * */
+    public int getDictionarySize() {
+        return dictionary == null ? -1 : dictionary.getEdgeCount();
+    }
+
+    /**
+     * Returns the number of bytes used by the actions of all transitions.
+     * @return size in bytes
+     * */
+    public long getByteSize() {
+        if (dictionary != null) {
+            long codes = byteCodes != null ? byteCodes.length : shortCodes != null ? 2L * shortCodes.length : 4L * intCodes.length;
+            return dictionary.getByteSize() + codes;
+        }
+        return masks != null ? 8L * masks.limit() : 4L * offsets.limit() + 4L * actions.limit();
+    }
+
+    private int code(int edge) {
+        if (byteCodes != null) {
+            return byteCodes[edge] & 0xff;
+        }
+        if (shortCodes != null) {
+            return shortCodes[edge] & 0xffff;
+        }
+        return intCodes[edge];
+    }
+
+    // plain form, for writing snapshots
+    private EdgeActions expand() {
+        if (dictionary == null) {
+            return this;
+        }
+        int edgeCount = getEdgeCount();
+        int[] offsets = new int[edgeCount + 1];
+        IntList actions = new IntList();
+        int alphabetSize = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            for (int id : getActions(e)) {
+                actions.add(id);
+                alphabetSize = Math.max(alphabetSize, id + 1);
+            }
+            offsets[e + 1] = actions.size();
+        }
+        return build(isSingleWord() ? Math.min(alphabetSize, 64) : Math.max(alphabetSize, 65),
+                offsets, actions.toArray());
+    }
+
+    // raw arrays, for writing snapshots
+    LongBuffer masks() {
+        if (dictionary != null) {
+            return expand().masks();
+        }
+        return masks == null ? null : masks.duplicate();
+    }
+
+    IntBuffer offsets() {
+        if (dictionary != null) {
+            return expand().offsets();
+        }
+        return offsets == null ? null : offsets.duplicate();
+    }
+
+    IntBuffer actions() {
+        if (dictionary != null) {
+            return expand().actions();
+        }
+        return actions == null ? null : actions.duplicate();
+    }
+}
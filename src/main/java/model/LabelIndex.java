@@ -0,0 +1,136 @@
+package model;
+
+import utils.IntList;
+
+import java.nio.LongBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from atomic propositions to the states labelled with them.
+ * Built once when the model is loaded, so that an atomic proposition is a lookup
+ * instead of a scan over the labels of every state.
+ *
+ * For a model opened from a snapshot, the bitmap of a label is only copied out of
+ * the mapped file the first time the label is looked up.
+ * */
+public class LabelIndex {
+    private final int stateCount;
+    private final Map<String, Integer> ids;
+    private final String[] labels;
+    private final int[] counts;
+    private final StateSet[] statesByLabel;
+
+    // bitmaps of all labels back to back, or null if the index was built in memory
+    private final LongBuffer bitmaps;
+
+    LabelIndex(int stateCount, String[] labels, int[] counts, StateSet[] statesByLabel, LongBuffer bitmaps) {
+        this.stateCount = stateCount;
+        this.labels = labels;
+        this.counts = counts;
+        this.statesByLabel = statesByLabel;
+        this.bitmaps = bitmaps;
+        this.ids = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            ids.put(labels[i], i);
+        }
+    }
+
+    /**
+     * Build the index from the states collected for every label.
+     * @param stateCount number of states in the model
+     * @param labels the atomic propositions
+     * @param statesPerLabel ids of the states labelled with labels[i]
+     * @return label index
+     * */
+    public static LabelIndex build(int stateCount, String[] labels, IntList[] statesPerLabel) {
+        int[] counts = new int[labels.length];
+        StateSet[] statesByLabel = new StateSet[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            statesByLabel[i] = new StateSet(stateCount);
+            for (int k = 0; k < statesPerLabel[i].size(); k++) {
+                statesByLabel[i].add(statesPerLabel[i].get(k));
+            }
+            counts[i] = statesByLabel[i].cardinality();
+        }
+        return new LabelIndex(stateCount, labels, counts, statesByLabel, null);
+    }
+
+    /**
+     * Returns the states labelled with an atomic proposition.
+     * The returned set is shared by all callers and must not be modified.
+     * @param label atomic proposition
+     * @return states with the label, empty if no state has it
+     * */
+    public StateSet getStates(String label) {
+        Integer id = ids.get(label);
+        return id == null ? new StateSet(stateCount) : getStates(id);
+    }
+
+    private synchronized StateSet getStates(int id) {
+        if (statesByLabel[id] == null) {
+            long[] words = new long[(stateCount + 63) >>> 6];
+            LongBuffer bitmap = bitmaps.duplicate();
+            bitmap.position(id * words.length);
+            bitmap.get(words);
+            statesByLabel[id] = StateSet.wrap(stateCount, words);
+        }
+        return statesByLabel[id];
+    }
+
+    /**
+     * Whether a state is labelled with the label of the given position in getLabelArray().
+     * Reads the mapped bitmap directly for snapshots, without loading the whole label.
+     * */
+    boolean hasLabel(int state, int id) {
+        if (bitmaps == null) {
+            return statesByLabel[id].contains(state);
+        }
+        int words = (stateCount + 63) >>> 6;
+        return (bitmaps.get(id * words + (state >>> 6)) & (1L << state)) != 0;
+    }
+
+    /**
+     * Returns the number of states labelled with an atomic proposition.
+     * @param label atomic proposition
+     * @return number of states with the label
+     * */
+    public int getCount(String label) {
+        Integer id = ids.get(label);
+        return id == null ? 0 : counts[id];
+    }
+
+    /**
+     * Returns the fraction of the states labelled with an atomic proposition.
+     * @param label atomic proposition
+     * @return selectivity between 0 and 1
+     * */
+    public double getSelectivity(String label) {
+        return stateCount == 0 ? 0 : (double) getCount(label) / stateCount;
+    }
+
+    /**
+     * Returns all atomic propositions that label at least one state.
+     * @return set of labels
+     * */
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    // labels in index order
+    String[] getLabelArray() {
+        return labels;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i++) {
+            sb.append(labels[i]).append(": ").append(counts[i]).append(" states (")
+                    .append(String.format("%.2f", 100 * getSelectivity(labels[i]))).append("%)\n");
+        }
+        return sb.toString();
+    }
+}
@@ -1,36 +1,189 @@
 package model;
 
-import java.io.FileReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import com.google.gson.Gson;
-
 /**
  * A model is consist of states and transitions
+ *
+ * States and transitions are stored as int ids in the adjacency and the indexes.
+ * State and Transition objects are only created when they are asked for.
+ *
+ * A model does not change once it is built, and the objects created on demand are created under
+ * its lock, so several threads can check formulas on the same model.
  */
 public class Model {
-    State[] states;
-    Transition[] transitions;
+    // state and transition objects, created on demand
+    private State[] states;
+    private Transition[] transitions;
+    private volatile boolean allStatesLoaded;
+
+    private final int stateCount;
+    private final StateSet initialStates;
+    private final Adjacency successors;
+    private final Adjacency predecessors;
+    private final ActionAlphabet alphabet;
+    private final EdgeActions edgeActions;
+    private final LabelIndex labelIndex;
+
+    // names of the states and end points of the transitions, to create the objects from
+    private final List<String> stateNames;
+    private final IntBuffer edgeSources;
+    private final IntBuffer edgeTargets;
+    private Map<String, Integer> stateIds;
+
+    // end points of the transitions of a compressed model, instead of edgeSources and edgeTargets
+    private final PackedIntArray packedSources;
+    private final PackedIntArray packedTargets;
+
+    Model(int stateCount, StateSet initialStates, Adjacency successors, Adjacency predecessors,
+          ActionAlphabet alphabet, EdgeActions edgeActions, LabelIndex labelIndex,
+          List<String> stateNames, IntBuffer edgeSources, IntBuffer edgeTargets, Map<String, Integer> stateIds) {
+        this.stateCount = stateCount;
+        this.initialStates = initialStates;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.alphabet = alphabet;
+        this.edgeActions = edgeActions;
+        this.labelIndex = labelIndex;
+        this.stateNames = stateNames;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.stateIds = stateIds;
+        this.packedSources = null;
+        this.packedTargets = null;
+    }
+
+    private Model(Model model, Adjacency successors, Adjacency predecessors, EdgeActions edgeActions,
+                  PackedIntArray packedSources, PackedIntArray packedTargets) {
+        this.stateCount = model.stateCount;
+        this.initialStates = model.initialStates;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.alphabet = model.alphabet;
+        this.edgeActions = edgeActions;
+        this.labelIndex = model.labelIndex;
+        this.stateNames = model.stateNames;
+        this.edgeSources = null;
+        this.edgeTargets = null;
+        this.stateIds = model.stateIds;
+        this.packedSources = packedSources;
+        this.packedTargets = packedTargets;
+    }
+
+    /**
+     * Load a model from either a JSON file (optionally gzipped) or a binary snapshot written by ModelSnapshot.
+     * The format is detected from the first bytes of the file.
+     * @param filePath path to the model
+     * @return the model
+     * @throws IOException if the file cannot be read
+     */
+    public static Model load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filePath))) {
+            if (Integer.reverseBytes(in.readInt()) == ModelSnapshot.MAGIC) {
+                return ModelSnapshot.open(filePath);
+            }
+        } catch (EOFException e) {
+            // too short to be a snapshot
+        }
+        return parseModel(filePath);
+    }
 
+    /**
+     * Parse a model from a JSON file (optionally gzipped) with the streaming ModelLoader.
+     * @param filePath path to the model
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a valid model
+     */
     public static Model parseModel(String filePath) throws IOException {
-        Gson gson = new Gson();
-        Model model = gson.fromJson(new FileReader(filePath), Model.class);
-        for (Transition t : model.transitions) {
-            System.out.println(t);
+        return new ModelLoader().load(filePath);
+    }
+
+    /**
+     * Explore a state space given by a successor function from its initial states and build a
+     * model of the reachable states, without going through a JSON file.
+     * @param space state space
+     * @param <S> type of the states
+     * @return the model
+     */
+    public static <S> Model explore(StateSpace<S> space) {
+        return new StateSpaceExplorer<>(space).toModel();
+    }
+
+    /**
+     * Returns a copy of this model with the transition relation compressed: the neighbour lists
+     * are gap and varint encoded (CompressedAdjacency), the action sets are dictionary-coded and
+     * the end points of the transitions are packed. The model checkers work on it unchanged,
+     * decoding the neighbours while they iterate over them.
+     * @return compressed model, or this model if it is compressed already
+     */
+    public Model compress() {
+        if (isCompressed()) {
+            return this;
         }
+        return new Model(this, CompressedAdjacency.compress(successors), CompressedAdjacency.compress(predecessors),
+                edgeActions.compress(), PackedIntArray.pack(edgeSources()), PackedIntArray.pack(edgeTargets()));
+    }
 
-        return model;
+    /**
+     * Whether the transition relation is stored compressed.
+     * @return true for models returned by compress()
+     */
+    public boolean isCompressed() {
+        return successors instanceof CompressedAdjacency;
+    }
+
+    /**
+     * Returns a short report of the memory used by the transition relation, with the compression
+     * ratio and the decode throughput of the neighbour lists if the model is compressed.
+     * @return memory report
+     */
+    public String getTransitionReport() {
+        StringBuilder sb = new StringBuilder();
+        long endPoints = packedSources != null
+                ? packedSources.byteSize() + packedTargets.byteSize() : 8L * successors.getEdgeCount();
+        sb.append("actions: ").append(edgeActions.getByteSize()).append(" bytes");
+        if (edgeActions.getDictionarySize() >= 0) {
+            sb.append(" (").append(edgeActions.getDictionarySize()).append(" distinct action sets)");
+        }
+        sb.append("\nend points: ").append(endPoints).append(" bytes\n");
+        if (isCompressed()) {
+            CompressedAdjacency[] directions = {(CompressedAdjacency) successors, (CompressedAdjacency) predecessors};
+            String[] names = {"successors", "predecessors"};
+            for (int i = 0; i < directions.length; i++) {
+                sb.append(names[i]).append(": ").append(directions[i]).append(", decoding ")
+                        .append(String.format("%.1f", directions[i].measureDecodeThroughput() / 1e6))
+                        .append(" M edges/s\n");
+            }
+        } else {
+            long csr = 4L * (stateCount + 1) + 8L * successors.getEdgeCount();
+            sb.append("successors: ").append(csr).append(" bytes as CSR\n");
+            sb.append("predecessors: ").append(csr).append(" bytes as CSR\n");
+        }
+        return sb.toString();
     }
 
     /**
      * Returns the list of the states
-     * 
+     *
      * @return list of state for the given model
      */
     public State[] getStates() {
+        if (!allStatesLoaded) {
+            for (int i = 0; i < stateCount; i++) {
+                loadState(i);
+            }
+            allStatesLoaded = true;
+        }
         return states;
     }
 
@@ -41,35 +194,189 @@ public class Model {
      */
     public Set<State> getStatesSet() {
         Set<State> states = new HashSet<>();
-        Collections.addAll(states, this.states);
+        Collections.addAll(states, this.getStates());
         return states;
     }
 
     /**
      * Returns the list of transitions
-     * 
+     *
      * @return list of transition for the given model
      */
-    public Transition[] getTransitions() {
+    public synchronized Transition[] getTransitions() {
+        if (transitions == null) {
+            transitions = new Transition[successors.getEdgeCount()];
+        }
+        for (int e = 0; e < successors.getEdgeCount(); e++) {
+            loadTransition(e);
+        }
         return transitions;
     }
 
+    /**
+     * Returns the transition with the given index.
+     * @param edge index of the transition, as stored in the adjacency
+     * @return transition at that position
+     */
+    public Transition getTransition(int edge) {
+        return loadTransition(edge);
+    }
+
     public State getStateByName(String name) {
-        for (State s : states) {
-            if (s.getName().equals(name)) {
-                return s;
+        Integer id = getStateIds().get(name);
+        return id == null ? null : getState(id);
+    }
+
+    /**
+     * Returns the id of the state with the given name.
+     * @param name name of the state
+     * @return state id or -1 if there is no such state
+     */
+    public int getStateId(String name) {
+        Integer id = getStateIds().get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the state with the given id.
+     * @param id state id
+     * @return state at that position
+     */
+    public State getState(int id) {
+        if (allStatesLoaded) {
+            return states[id];
+        }
+        return loadState(id);
+    }
+
+    /**
+     * Returns the name of the state with the given id, without creating the state object.
+     * @param id state id
+     * @return name of the state
+     */
+    public String getStateName(int id) {
+        return stateNames.get(id);
+    }
+
+    private synchronized Map<String, Integer> getStateIds() {
+        if (stateIds == null) {
+            stateIds = new HashMap<>(stateCount * 2);
+            for (int i = 0; i < stateCount; i++) {
+                stateIds.put(stateNames.get(i), i);
             }
         }
-        return null;
+        return stateIds;
     }
 
-    public Set<State> getInitialStates() {
-        Set<State> initialStates = new HashSet<>();
-        for (State s : states) {
-            if (s.isInit()) {
-                initialStates.add(s);
+    private synchronized State loadState(int id) {
+        if (states == null) {
+            states = new State[stateCount];
+        }
+        if (states[id] == null) {
+            String[] labels = labelIndex.getLabelArray();
+            int count = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (labelIndex.hasLabel(id, i)) {
+                    count++;
+                }
+            }
+            String[] label = new String[count];
+            count = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (labelIndex.hasLabel(id, i)) {
+                    label[count++] = labels[i];
+                }
+            }
+            states[id] = new State(id, stateNames.get(id), initialStates.contains(id), label);
+        }
+        return states[id];
+    }
+
+    private synchronized Transition loadTransition(int edge) {
+        if (transitions == null) {
+            transitions = new Transition[successors.getEdgeCount()];
+        }
+        if (transitions[edge] == null) {
+            int[] ids = edgeActions.getActions(edge);
+            String[] actions = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                actions[i] = alphabet.getAction(ids[i]);
             }
+            int source = packedSources != null ? packedSources.get(edge) : edgeSources.get(edge);
+            int target = packedTargets != null ? packedTargets.get(edge) : edgeTargets.get(edge);
+            transitions[edge] = new Transition(stateNames.get(source), stateNames.get(target), actions);
         }
-        return initialStates;
+        return transitions[edge];
+    }
+
+    /**
+     * Returns the adjacency from each state to its successors.
+     * The edges point into the transitions array.
+     * @return forward adjacency
+     */
+    public Adjacency getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * Returns the adjacency from each state to its predecessors.
+     * The edges point into the transitions array.
+     * @return reverse adjacency
+     */
+    public Adjacency getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Returns the alphabet the actions of the transitions are interned in.
+     * @return action alphabet
+     */
+    public ActionAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Returns the interned actions of the transitions, indexed like the transitions array.
+     * @return actions of every transition
+     */
+    public EdgeActions getEdgeActions() {
+        return edgeActions;
+    }
+
+    /**
+     * Returns the index from atomic propositions to the states labelled with them.
+     * @return label index
+     */
+    public LabelIndex getLabelIndex() {
+        return labelIndex;
+    }
+
+    /**
+     * Returns the number of states, i.e. the range of the state ids.
+     * @return number of states
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the initial states as a set of state ids.
+     * @return initial states
+     */
+    public StateSet getInitialStateSet() {
+        return initialStates.copy();
+    }
+
+    public Set<State> getInitialStates() {
+        return initialStates.toStates(this);
+    }
+
+    // source and target state id of every transition, for snapshots
+    IntBuffer edgeSources() {
+        return packedSources != null ? packedSources.unpack() : edgeSources.duplicate();
+    }
+
+    IntBuffer edgeTargets() {
+        return packedTargets != null ? packedTargets.unpack() : edgeTargets.duplicate();
     }
 }
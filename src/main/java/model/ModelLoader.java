@@ -0,0 +1,386 @@
+package model;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import utils.IntList;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming loader for JSON models.
+ * Reads the file with Gson's JsonReader and writes states and transitions straight into
+ * int arrays and the indexes, without building an object per state or transition.
+ * Transition end points are resolved to state ids in chunks on a thread pool while the
+ * rest of the file is still being parsed.
+ *
+ * Files starting with the gzip magic bytes are decompressed on the fly.
+ * Diagnostic output is off unless enabled with setVerbose or -Dmodel.verbose=true,
+ * and the transition relation can be compressed with setCompressed or -Dmodel.compressed=true.
+ * */
+public class ModelLoader {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private boolean verbose = Boolean.getBoolean("model.verbose");
+    private boolean compressed = Boolean.getBoolean("model.compressed");
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Print every transition and a summary while loading.
+     * @param verbose whether to print diagnostics
+     * @return this loader
+     * */
+    public ModelLoader setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    /**
+     * Compress the transition relation of the loaded model, see Model.compress().
+     * @param compressed whether to compress the model
+     * @return this loader
+     * */
+    public ModelLoader setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    /**
+     * Set the number of threads that resolve transitions, 1 to resolve them on the parsing thread.
+     * @param threads number of threads
+     * @return this loader
+     * */
+    public ModelLoader setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Load a model from a JSON file, which may be gzipped.
+     * @param filePath path to the model
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a valid model
+     * */
+    public Model load(String filePath) throws IOException {
+        try (InputStream file = new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE)) {
+            file.mark(2);
+            boolean gzip = file.read() == 0x1f && file.read() == 0x8b;
+            file.reset();
+            // closing the file closes the stream, so a corrupt gzip header does not leak it
+            InputStream in = gzip ? new GZIPInputStream(file, BUFFER_SIZE) : file;
+            return load(new InputStreamReader(in, Charset.forName("UTF-8")));
+        }
+    }
+
+    /**
+     * Load a model from JSON text.
+     * @param json reader over the JSON, should be buffered
+     * @return the model
+     * @throws IOException if the JSON is not a valid model
+     * */
+    public Model load(Reader json) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            Builder builder = new Builder(pool);
+            JsonReader reader = new JsonReader(json);
+            // as lenient as Gson.fromJson, which the models used to be read with
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("states") && reader.peek() != JsonToken.NULL) {
+                    readStates(reader, builder);
+                } else if (name.equals("transitions") && reader.peek() != JsonToken.NULL) {
+                    readTransitions(reader, builder);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            Model model = builder.build();
+            if (compressed) {
+                model = model.compress();
+            }
+            if (verbose) {
+                System.out.println("Loaded " + model.getStateCount() + " states and "
+                        + model.getSuccessors().getEdgeCount() + " transitions in "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+                System.out.print(model.getTransitionReport());
+            }
+            return model;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void readStates(JsonReader reader, Builder builder) throws IOException {
+        IntList labels = new IntList();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            boolean init = false;
+            labels.clear();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else if (field.equals("name")) {
+                    name = reader.nextString();
+                } else if (field.equals("init")) {
+                    init = reader.nextBoolean();
+                } else if (field.equals("label")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        labels.add(builder.label(reader.nextString()));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (name == null) {
+                throw new IOException("State without a name at " + reader);
+            }
+            builder.addState(name, init, labels);
+        }
+        reader.endArray();
+        builder.statesDone();
+    }
+
+    private void readTransitions(JsonReader reader, Builder builder) throws IOException {
+        List<String> actions = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String source = null;
+            String target = null;
+            actions.clear();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else if (field.equals("source")) {
+                    source = reader.nextString();
+                } else if (field.equals("target")) {
+                    target = reader.nextString();
+                } else if (field.equals("actions")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        actions.add(reader.nextString());
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (verbose) {
+                System.out.println(new Transition(source, target, actions.toArray(new String[actions.size()])));
+            }
+            builder.addTransition(source, target, actions);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Collects the parsed states and transitions of one load.
+     * */
+    private static class Builder {
+        private final ExecutorService pool;
+
+        // states
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> stateIds = new HashMap<>();
+        private final IntList initialStates = new IntList();
+        private final Map<String, Integer> labelIds = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<IntList> statesPerLabel = new ArrayList<>();
+        private boolean statesDone;
+
+        // transitions
+        private final ActionAlphabet alphabet = new ActionAlphabet();
+        private final IntList actionOffsets = new IntList();
+        private final IntList actionIds = new IntList();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private Chunk chunk = new Chunk();
+
+        Builder(ExecutorService pool) {
+            this.pool = pool;
+            actionOffsets.add(0);
+        }
+
+        int label(String label) {
+            Integer id = labelIds.get(label);
+            if (id == null) {
+                id = labels.size();
+                labelIds.put(label, id);
+                labels.add(label);
+                statesPerLabel.add(new IntList());
+            }
+            return id;
+        }
+
+        void addState(String name, boolean init, IntList stateLabels) {
+            int id = names.size();
+            names.add(name);
+            stateIds.put(name, id);
+            if (init) {
+                initialStates.add(id);
+            }
+            for (int i = 0; i < stateLabels.size(); i++) {
+                statesPerLabel.get(stateLabels.get(i)).add(id);
+            }
+        }
+
+        // the names of the states are known, so the waiting transitions can be resolved
+        void statesDone() {
+            statesDone = true;
+            for (Chunk waiting : chunks) {
+                submit(waiting);
+            }
+        }
+
+        void addTransition(String source, String target, List<String> actions) {
+            for (String action : actions) {
+                actionIds.add(alphabet.intern(action));
+            }
+            actionOffsets.add(actionIds.size());
+
+            chunk.add(source, target);
+            if (chunk.count == CHUNK_SIZE) {
+                chunks.add(chunk);
+                if (statesDone) {
+                    submit(chunk);
+                }
+                chunk = new Chunk();
+            }
+        }
+
+        private void submit(Chunk chunk) {
+            if (chunk.result == null) {
+                chunk.stateIds = stateIds;
+                chunk.result = pool == null ? null : pool.submit(chunk);
+            }
+        }
+
+        Model build() throws IOException {
+            if (chunk.count > 0) {
+                chunks.add(chunk);
+            }
+            statesDone();
+
+            // collect the resolved chunks
+            int stateCount = names.size();
+            int edgeCount = actionOffsets.size() - 1;
+            int[] sources = new int[edgeCount];
+            int[] targets = new int[edgeCount];
+            int base = 0;
+            for (Chunk resolved : chunks) {
+                resolved.await();
+                System.arraycopy(resolved.sources, 0, sources, base, resolved.count);
+                System.arraycopy(resolved.targets, 0, targets, base, resolved.count);
+                base += resolved.count;
+            }
+
+            StateSet initial = new StateSet(stateCount);
+            for (int i = 0; i < initialStates.size(); i++) {
+                initial.add(initialStates.get(i));
+            }
+            Adjacency successors = Adjacency.build(stateCount, sources, targets);
+            Adjacency predecessors = Adjacency.build(stateCount, targets, sources);
+            EdgeActions edgeActions = EdgeActions.build(alphabet.size(), actionOffsets.toArray(), actionIds.toArray());
+            LabelIndex labelIndex = LabelIndex.build(stateCount,
+                    labels.toArray(new String[labels.size()]), statesPerLabel.toArray(new IntList[labels.size()]));
+
+            return new Model(stateCount, initial, successors, predecessors, alphabet, edgeActions, labelIndex,
+                    Collections.unmodifiableList(names), IntBuffer.wrap(sources), IntBuffer.wrap(targets), stateIds);
+        }
+    }
+
+    /**
+     * A chunk of transitions whose end points are resolved from names to state ids.
+     * */
+    private static class Chunk implements Callable<Void> {
+        private String[] sourceNames = new String[CHUNK_SIZE];
+        private String[] targetNames = new String[CHUNK_SIZE];
+        private final int[] sources = new int[CHUNK_SIZE];
+        private final int[] targets = new int[CHUNK_SIZE];
+        private int count;
+        private Map<String, Integer> stateIds;
+        private Future<Void> result;
+
+        void add(String source, String target) {
+            sourceNames[count] = source;
+            targetNames[count] = target;
+            count++;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            for (int i = 0; i < count; i++) {
+                sources[i] = resolve(sourceNames[i], i);
+                targets[i] = resolve(targetNames[i], i);
+            }
+            // the names are not needed any more
+            sourceNames = null;
+            targetNames = null;
+            return null;
+        }
+
+        private int resolve(String name, int i) throws IOException {
+            Integer id = name == null ? null : stateIds.get(name);
+            if (id == null) {
+                throw new IOException("Transition " + sourceNames[i] + "->" + targetNames[i]
+                        + " refers to unknown state " + name);
+            }
+            return id;
+        }
+
+        // wait for the resolution, or resolve on this thread if there is no pool
+        void await() throws IOException {
+            if (result == null) {
+                call();
+                return;
+            }
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading the model", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+}
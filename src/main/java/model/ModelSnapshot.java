@@ -0,0 +1,411 @@
+package model;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+
+/**
+ * Binary snapshot of a model with all its indexes, for loading large models without parsing JSON.
+ *
+ * The file is opened through a memory-mapped FileChannel: the adjacency, action masks and
+ * label bitmaps are used directly from the mapping, and state and transition objects are only
+ * created when they are asked for. Loading time therefore depends on the pages that a check
+ * touches, and the operating system shares the pages between processes that open the same file.
+ *
+ * Layout (little endian, every section aligned to 8 bytes):
+ *   header:   magic, version, state count, transition count, action count, label count,
+ *             flags, 0, then (offset, length) as longs for each of the SECTIONS sections
+ *   sections: state names, action names, labels (string tables: int count, int offsets[count + 1], UTF-8 bytes),
+ *             initial state bitmap, forward and reverse CSR (offsets, neighbours, edges),
+ *             transition sources and targets, action masks or action offsets and ids,
+ *             state count per label, one state bitmap per label
+ *
+ * Convert a JSON model with: java model.ModelSnapshot model.json model.snapshot
+ * */
+public class ModelSnapshot {
+    public static final int MAGIC = 0x4C544341; // "ACTL"
+    public static final int VERSION = 1;
+
+    private static final int FLAG_SINGLE_WORD_ACTIONS = 1;
+
+    private static final int STATE_NAMES = 0;
+    private static final int ACTION_NAMES = 1;
+    private static final int LABEL_NAMES = 2;
+    private static final int INITIAL_STATES = 3;
+    private static final int FORWARD_OFFSETS = 4;
+    private static final int FORWARD_NEIGHBOURS = 5;
+    private static final int FORWARD_EDGES = 6;
+    private static final int REVERSE_OFFSETS = 7;
+    private static final int REVERSE_NEIGHBOURS = 8;
+    private static final int REVERSE_EDGES = 9;
+    private static final int EDGE_SOURCES = 10;
+    private static final int EDGE_TARGETS = 11;
+    private static final int ACTION_MASKS = 12;
+    private static final int ACTION_OFFSETS = 13;
+    private static final int ACTION_IDS = 14;
+    private static final int LABEL_COUNTS = 15;
+    private static final int LABEL_BITMAPS = 16;
+    private static final int SECTIONS = 17;
+
+    private static final int HEADER_SIZE = 8 * 4 + SECTIONS * 2 * 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ModelSnapshot() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java model.ModelSnapshot <model.json> <model.snapshot>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        Model model = Model.parseModel(args[0]);
+        write(model, args[1]);
+        System.out.println("Wrote " + model.getStateCount() + " states and " + model.getSuccessors().getEdgeCount()
+                + " transitions to " + args[1] + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Write a model with its indexes to a snapshot file.
+     * @param model model to write
+     * @param filePath path of the snapshot
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Model model, String filePath) throws IOException {
+        int stateCount = model.getStateCount();
+        Adjacency successors = model.getSuccessors();
+        Adjacency predecessors = model.getPredecessors();
+        ActionAlphabet alphabet = model.getAlphabet();
+        EdgeActions edgeActions = model.getEdgeActions();
+        LabelIndex labelIndex = model.getLabelIndex();
+        String[] labels = labelIndex.getLabelArray();
+        int edgeCount = successors.getEdgeCount();
+
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+            file.setLength(0);
+            Writer out = new Writer(file.getChannel(), HEADER_SIZE);
+            long[] sections = new long[SECTIONS * 2];
+
+            String[] names = new String[stateCount];
+            for (int i = 0; i < stateCount; i++) {
+                names[i] = model.getStateName(i);
+            }
+            String[] actions = new String[alphabet.size()];
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = alphabet.getAction(i);
+            }
+
+            out.begin(sections, STATE_NAMES);
+            out.putStrings(names);
+            out.begin(sections, ACTION_NAMES);
+            out.putStrings(actions);
+            out.begin(sections, LABEL_NAMES);
+            out.putStrings(labels);
+
+            out.begin(sections, INITIAL_STATES);
+            out.putLongs(model.getInitialStateSet().words());
+
+            out.begin(sections, FORWARD_OFFSETS);
+            out.putInts(successors.offsets());
+            out.begin(sections, FORWARD_NEIGHBOURS);
+            out.putInts(successors.neighbours());
+            out.begin(sections, FORWARD_EDGES);
+            out.putInts(successors.edges());
+            out.begin(sections, REVERSE_OFFSETS);
+            out.putInts(predecessors.offsets());
+            out.begin(sections, REVERSE_NEIGHBOURS);
+            out.putInts(predecessors.neighbours());
+            out.begin(sections, REVERSE_EDGES);
+            out.putInts(predecessors.edges());
+
+            // source and target of every transition, to recreate the transition objects
+            out.begin(sections, EDGE_SOURCES);
+            out.putInts(model.edgeSources());
+            out.begin(sections, EDGE_TARGETS);
+            out.putInts(model.edgeTargets());
+
+            if (edgeActions.isSingleWord()) {
+                out.begin(sections, ACTION_MASKS);
+                out.putLongs(edgeActions.masks());
+            } else {
+                out.begin(sections, ACTION_OFFSETS);
+                out.putInts(edgeActions.offsets());
+                out.begin(sections, ACTION_IDS);
+                out.putInts(edgeActions.actions());
+            }
+
+            int[] counts = new int[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                counts[i] = labelIndex.getCount(labels[i]);
+            }
+            out.begin(sections, LABEL_COUNTS);
+            out.putInts(IntBuffer.wrap(counts));
+            out.begin(sections, LABEL_BITMAPS);
+            for (String label : labels) {
+                out.putLongs(labelIndex.getStates(label).words());
+            }
+            out.end(sections);
+
+            // header last, now that the sections are known
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(stateCount).putInt(edgeCount)
+                    .putInt(actions.length).putInt(labels.length)
+                    .putInt(edgeActions.isSingleWord() ? FLAG_SINGLE_WORD_ACTIONS : 0).putInt(0);
+            for (long section : sections) {
+                header.putLong(section);
+            }
+            header.flip();
+            out.flush();
+            file.getChannel().write(header, 0);
+        }
+    }
+
+    /**
+     * Open a snapshot file as a model.
+     * Only the header, the action names and the labels are read eagerly; everything else is mapped.
+     * @param filePath path of the snapshot
+     * @return model backed by the mapped file
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static Model open(String filePath) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading the header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(filePath + " is not a model snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int stateCount = header.getInt();
+            header.getInt(); // transition count, implied by the adjacency
+            header.getInt(); // action count, implied by the string table
+            header.getInt(); // label count, implied by the string table
+            boolean singleWord = (header.getInt() & FLAG_SINGLE_WORD_ACTIONS) != 0;
+            header.getInt();
+            long[] sections = new long[SECTIONS * 2];
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = header.getLong();
+            }
+
+            Sections in = new Sections(channel, sections);
+
+            StateSet initialStates = StateSet.wrap(stateCount, in.longArray(INITIAL_STATES));
+
+            Adjacency successors = new Adjacency(
+                    in.ints(FORWARD_OFFSETS), in.ints(FORWARD_NEIGHBOURS), in.ints(FORWARD_EDGES));
+            Adjacency predecessors = new Adjacency(
+                    in.ints(REVERSE_OFFSETS), in.ints(REVERSE_NEIGHBOURS), in.ints(REVERSE_EDGES));
+
+            ActionAlphabet alphabet = new ActionAlphabet();
+            StringTable actions = in.strings(ACTION_NAMES);
+            for (int i = 0; i < actions.size(); i++) {
+                alphabet.intern(actions.get(i));
+            }
+            EdgeActions edgeActions = singleWord
+                    ? new EdgeActions(in.longs(ACTION_MASKS), null, null)
+                    : new EdgeActions(null, in.ints(ACTION_OFFSETS), in.ints(ACTION_IDS));
+
+            StringTable labelTable = in.strings(LABEL_NAMES);
+            String[] labels = new String[labelTable.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = labelTable.get(i);
+            }
+            int[] counts = new int[labels.length];
+            in.ints(LABEL_COUNTS).get(counts);
+            LabelIndex labelIndex = new LabelIndex(stateCount, labels, counts,
+                    new StateSet[labels.length], in.longs(LABEL_BITMAPS));
+
+            return new Model(stateCount, initialStates, successors, predecessors, alphabet, edgeActions, labelIndex,
+                    in.strings(STATE_NAMES), in.ints(EDGE_SOURCES), in.ints(EDGE_TARGETS), null);
+        }
+    }
+
+    /**
+     * Strings stored as byte offsets followed by the UTF-8 bytes, decoded on access.
+     * Used as the list of state names of a mapped model.
+     * */
+    private static class StringTable extends AbstractList<String> {
+        private final IntBuffer offsets;
+        private final ByteBuffer bytes;
+
+        StringTable(ByteBuffer section) {
+            section.order(ByteOrder.LITTLE_ENDIAN);
+            int count = section.getInt(0);
+            section.position(4);
+            ByteBuffer offsetBytes = section.slice().order(ByteOrder.LITTLE_ENDIAN);
+            offsetBytes.limit((count + 1) * 4);
+            this.offsets = offsetBytes.asIntBuffer();
+            section.position(4 + (count + 1) * 4);
+            this.bytes = section.slice();
+        }
+
+        @Override
+        public int size() {
+            return offsets.limit() - 1;
+        }
+
+        @Override
+        public String get(int i) {
+            int start = offsets.get(i);
+            byte[] utf8 = new byte[offsets.get(i + 1) - start];
+            ByteBuffer view = bytes.duplicate();
+            view.position(start);
+            view.get(utf8);
+            return new String(utf8, UTF_8);
+        }
+    }
+
+    /**
+     * Maps the sections of an open snapshot.
+     * Each section is mapped on its own, so that files larger than 2GB can be opened.
+     * */
+    private static class Sections {
+        private final FileChannel channel;
+        private final long[] sections;
+
+        Sections(FileChannel channel, long[] sections) {
+            this.channel = channel;
+            this.sections = sections;
+        }
+
+        ByteBuffer map(int section) throws IOException {
+            long offset = sections[2 * section];
+            long length = sections[2 * section + 1];
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        IntBuffer ints(int section) throws IOException {
+            return map(section).asIntBuffer();
+        }
+
+        LongBuffer longs(int section) throws IOException {
+            return map(section).asLongBuffer();
+        }
+
+        // copied to the heap, for small sections that are used as arrays
+        long[] longArray(int section) throws IOException {
+            LongBuffer mapped = longs(section);
+            long[] array = new long[mapped.remaining()];
+            mapped.get(array);
+            return array;
+        }
+
+        StringTable strings(int section) throws IOException {
+            return new StringTable(map(section));
+        }
+    }
+
+    /**
+     * Buffered little endian writer that keeps track of the sections.
+     * */
+    private static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        private int current = -1;
+        private long currentStart;
+
+        Writer(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        void begin(long[] sections, int section) throws IOException {
+            end(sections);
+            // align every section to 8 bytes
+            while (position % 8 != 0) {
+                putByte((byte) 0);
+            }
+            current = section;
+            currentStart = position;
+        }
+
+        void end(long[] sections) {
+            if (current >= 0) {
+                sections[2 * current] = currentStart;
+                sections[2 * current + 1] = position - currentStart;
+            }
+            current = -1;
+        }
+
+        void putByte(byte b) throws IOException {
+            ensure(1);
+            buffer.put(b);
+            position++;
+        }
+
+        void putInt(int i) throws IOException {
+            ensure(4);
+            buffer.putInt(i);
+            position += 4;
+        }
+
+        void putLong(long l) throws IOException {
+            ensure(8);
+            buffer.putLong(l);
+            position += 8;
+        }
+
+        void putInts(IntBuffer ints) throws IOException {
+            while (ints.hasRemaining()) {
+                putInt(ints.get());
+            }
+        }
+
+        void putLongs(LongBuffer longs) throws IOException {
+            while (longs.hasRemaining()) {
+                putLong(longs.get());
+            }
+        }
+
+        void putLongs(long[] longs) throws IOException {
+            for (long l : longs) {
+                putLong(l);
+            }
+        }
+
+        void putStrings(String[] strings) throws IOException {
+            byte[][] utf8 = new byte[strings.length][];
+            putInt(strings.length);
+            int offset = 0;
+            putInt(offset);
+            for (int i = 0; i < strings.length; i++) {
+                utf8[i] = strings[i].getBytes(UTF_8);
+                offset += utf8[i].length;
+                putInt(offset);
+            }
+            for (byte[] bytes : utf8) {
+                for (byte b : bytes) {
+                    putByte(b);
+                }
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            long at = position - buffer.remaining();
+            while (buffer.hasRemaining()) {
+                at += channel.write(buffer, at);
+            }
+            buffer.clear();
+        }
+    }
+}
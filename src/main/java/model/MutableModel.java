@@ -0,0 +1,344 @@
+package model;
+
+import utils.IntList;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A model whose transitions and labels can be edited, for checking the same formulas again after
+ * a few changes.
+ *
+ * The edits are kept apart from the last model built, and toModel() builds a new immutable
+ * model with them, the way ReachableSubmodel does. The states and the initial states do not change.
+ * The states touched by the edits since the last call of clearDirty() are tracked: the states
+ * whose labels changed, and both end points of every added or removed transition, as a
+ * transition changes the successors of its source and the incoming actions of its target.
+ * */
+public class MutableModel {
+    private Model model;
+    private final List<String> stateNames;
+
+    // edits since the model was built: removed transitions of the model by source and target,
+    // added transitions by source and changed labels by state
+    private final Set<Long> removed = new HashSet<>();
+    private final Map<Integer, List<Edge>> added = new HashMap<>();
+    private final Map<Integer, Set<String>> labels = new HashMap<>();
+
+    private final StateSet labelDirty;
+    private final StateSet edgeDirty;
+
+    /**
+     * An added transition.
+     * */
+    private static class Edge {
+        private final int target;
+        private final String[] actions;
+
+        Edge(int target, String[] actions) {
+            this.target = target;
+            this.actions = actions;
+        }
+    }
+
+    public MutableModel(Model model) {
+        this.model = model;
+        List<String> names = new ArrayList<>(model.getStateCount());
+        for (int s = 0; s < model.getStateCount(); s++) {
+            names.add(model.getStateName(s));
+        }
+        this.stateNames = Collections.unmodifiableList(names);
+        this.labelDirty = new StateSet(model.getStateCount());
+        this.edgeDirty = new StateSet(model.getStateCount());
+    }
+
+    public int getStateCount() {
+        return stateNames.size();
+    }
+
+    /**
+     * Returns the id of a state.
+     * @param name name of the state
+     * @return state id
+     * @throws IllegalArgumentException if there is no state with the name
+     * */
+    public int getStateId(String name) {
+        int id = model.getStateId(name);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown state " + name);
+        }
+        return id;
+    }
+
+    /**
+     * Add a transition.
+     * @param source id of the source state
+     * @param target id of the target state
+     * @param actions actions of the transition
+     * */
+    public void addTransition(int source, int target, String... actions) {
+        this.checkState(source);
+        this.checkState(target);
+        List<Edge> edges = added.get(source);
+        if (edges == null) {
+            edges = new ArrayList<>();
+            added.put(source, edges);
+        }
+        edges.add(new Edge(target, actions.clone()));
+        edgeDirty.add(source);
+        edgeDirty.add(target);
+    }
+
+    public void addTransition(String source, String target, String... actions) {
+        this.addTransition(this.getStateId(source), this.getStateId(target), actions);
+    }
+
+    /**
+     * Remove all transitions from one state to another.
+     * @param source id of the source state
+     * @param target id of the target state
+     * @return true if there was such a transition
+     * */
+    public boolean removeTransition(int source, int target) {
+        this.checkState(source);
+        this.checkState(target);
+        boolean found = false;
+        List<Edge> edges = added.get(source);
+        if (edges != null) {
+            for (Iterator<Edge> it = edges.iterator(); it.hasNext(); ) {
+                if (it.next().target == target) {
+                    it.remove();
+                    found = true;
+                }
+            }
+        }
+        long pair = ((long) source << 32) | target;
+        if (!removed.contains(pair)) {
+            Adjacency.Cursor cursor = model.getSuccessors().cursor();
+            for (cursor.reset(source); cursor.next(); ) {
+                if (cursor.neighbour() == target) {
+                    removed.add(pair);
+                    found = true;
+                    break;
+                }
+            }
+        }
+        if (found) {
+            edgeDirty.add(source);
+            edgeDirty.add(target);
+        }
+        return found;
+    }
+
+    public boolean removeTransition(String source, String target) {
+        return this.removeTransition(this.getStateId(source), this.getStateId(target));
+    }
+
+    /**
+     * Returns the labels of a state, with the edits.
+     * @param state state id
+     * @return atomic propositions that hold in the state
+     * */
+    public Set<String> getLabels(int state) {
+        this.checkState(state);
+        Set<String> stateLabels = labels.get(state);
+        if (stateLabels != null) {
+            return new TreeSet<>(stateLabels);
+        }
+        Set<String> result = new TreeSet<>();
+        LabelIndex labelIndex = model.getLabelIndex();
+        for (String label : labelIndex.getLabels()) {
+            if (labelIndex.getStates(label).contains(state)) {
+                result.add(label);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replace the labels of a state.
+     * @param state state id
+     * @param stateLabels atomic propositions that hold in the state
+     * */
+    public void setLabels(int state, Set<String> stateLabels) {
+        if (this.getLabels(state).equals(stateLabels)) {
+            return;
+        }
+        labels.put(state, new HashSet<>(stateLabels));
+        labelDirty.add(state);
+    }
+
+    public void addLabel(int state, String label) {
+        Set<String> stateLabels = this.getLabels(state);
+        stateLabels.add(label);
+        this.setLabels(state, stateLabels);
+    }
+
+    public void removeLabel(int state, String label) {
+        Set<String> stateLabels = this.getLabels(state);
+        stateLabels.remove(label);
+        this.setLabels(state, stateLabels);
+    }
+
+    /**
+     * Returns the states whose labels changed since the last call of clearDirty().
+     * @return copy of the set of states
+     * */
+    public StateSet getLabelDirtyStates() {
+        return labelDirty.copy();
+    }
+
+    /**
+     * Returns the sources and targets of the transitions added or removed since the last call of clearDirty().
+     * @return copy of the set of states
+     * */
+    public StateSet getEdgeDirtyStates() {
+        return edgeDirty.copy();
+    }
+
+    /**
+     * Returns all states touched by the edits since the last call of clearDirty().
+     * @return copy of the set of states
+     * */
+    public StateSet getDirtyStates() {
+        return labelDirty.copy().or(edgeDirty);
+    }
+
+    public boolean isDirty() {
+        return !labelDirty.isEmpty() || !edgeDirty.isEmpty();
+    }
+
+    /**
+     * Forget the states touched so far, e.g. once the formulas have been checked again.
+     * */
+    public void clearDirty() {
+        for (int s = labelDirty.nextSetBit(0); s >= 0; s = labelDirty.nextSetBit(s + 1)) {
+            labelDirty.remove(s);
+        }
+        for (int s = edgeDirty.nextSetBit(0); s >= 0; s = edgeDirty.nextSetBit(s + 1)) {
+            edgeDirty.remove(s);
+        }
+    }
+
+    /**
+     * Returns the model with the edits so far. The model is only built again after an edit.
+     * @return immutable model
+     * */
+    public Model toModel() {
+        if (removed.isEmpty() && added.isEmpty() && labels.isEmpty()) {
+            return model;
+        }
+        int stateCount = this.getStateCount();
+
+        // a new alphabet, as the old one may have compiled masks without the new actions
+        ActionAlphabet oldAlphabet = model.getAlphabet();
+        ActionAlphabet alphabet = new ActionAlphabet();
+        for (int a = 0; a < oldAlphabet.size(); a++) {
+            alphabet.intern(oldAlphabet.getAction(a));
+        }
+
+        // transitions of the model that were not removed, then the added ones, by source
+        EdgeActions edgeActions = model.getEdgeActions();
+        IntList sources = new IntList();
+        IntList targets = new IntList();
+        IntList actionOffsets = new IntList();
+        IntList actionIds = new IntList();
+        actionOffsets.add(0);
+        Adjacency.Cursor cursor = model.getSuccessors().cursor();
+        for (int s = 0; s < stateCount; s++) {
+            for (cursor.reset(s); cursor.next(); ) {
+                int t = cursor.neighbour();
+                if (!removed.isEmpty() && removed.contains(((long) s << 32) | t)) {
+                    continue;
+                }
+                sources.add(s);
+                targets.add(t);
+                for (int action : edgeActions.getActions(cursor.edge())) {
+                    actionIds.add(action);
+                }
+                actionOffsets.add(actionIds.size());
+            }
+            List<Edge> edges = added.get(s);
+            if (edges == null) {
+                continue;
+            }
+            for (Edge edge : edges) {
+                sources.add(s);
+                targets.add(edge.target);
+                int[] actions = new int[edge.actions.length];
+                for (int i = 0; i < actions.length; i++) {
+                    actions[i] = alphabet.intern(edge.actions[i]);
+                }
+                Arrays.sort(actions);
+                for (int i = 0; i < actions.length; i++) {
+                    if (i == 0 || actions[i] != actions[i - 1]) {
+                        actionIds.add(actions[i]);
+                    }
+                }
+                actionOffsets.add(actionIds.size());
+            }
+        }
+
+        // labels of the model, except for the states whose labels were replaced
+        Map<String, IntList> statesPerLabel = new HashMap<>();
+        LabelIndex labelIndex = model.getLabelIndex();
+        for (String label : labelIndex.getLabels()) {
+            IntList states = new IntList();
+            StateSet labelled = labelIndex.getStates(label);
+            for (int s = labelled.nextSetBit(0); s >= 0; s = labelled.nextSetBit(s + 1)) {
+                if (!labels.containsKey(s)) {
+                    states.add(s);
+                }
+            }
+            statesPerLabel.put(label, states);
+        }
+        for (Map.Entry<Integer, Set<String>> entry : labels.entrySet()) {
+            for (String label : entry.getValue()) {
+                IntList states = statesPerLabel.get(label);
+                if (states == null) {
+                    states = new IntList();
+                    statesPerLabel.put(label, states);
+                }
+                states.add(entry.getKey());
+            }
+        }
+        String[] labelArray = statesPerLabel.keySet().toArray(new String[statesPerLabel.size()]);
+        IntList[] labelStates = new IntList[labelArray.length];
+        for (int l = 0; l < labelArray.length; l++) {
+            labelStates[l] = statesPerLabel.get(labelArray[l]);
+        }
+
+        int[] from = sources.toArray();
+        int[] to = targets.toArray();
+        Model edited = new Model(stateCount, model.getInitialStateSet(), Adjacency.build(stateCount, from, to),
+                Adjacency.build(stateCount, to, from), alphabet,
+                EdgeActions.build(alphabet.size(), actionOffsets.toArray(), actionIds.toArray()),
+                LabelIndex.build(stateCount, labelArray, labelStates), stateNames,
+                IntBuffer.wrap(from), IntBuffer.wrap(to), null);
+        if (model.isCompressed()) {
+            edited = edited.compress();
+        }
+
+        // further edits apply to the new model
+        model = edited;
+        removed.clear();
+        added.clear();
+        labels.clear();
+        return model;
+    }
+
+    private void checkState(int state) {
+        if (state < 0 || state >= stateNames.size()) {
+            throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+}
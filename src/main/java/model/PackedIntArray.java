@@ -0,0 +1,87 @@
+package model;
+
+import java.nio.IntBuffer;
+
+/**
+ * Read-only int array stored as zigzag varint deltas in blocks of 64 values.
+ * Reading a value decodes at most one block, so random access stays cheap while
+ * sorted or clustered values, such as the sources of transitions, take about a byte each.
+ * */
+final class PackedIntArray {
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+
+    private final VarInts bytes;
+    private final long[] blocks;
+    private final int length;
+
+    private PackedIntArray(VarInts bytes, long[] blocks, int length) {
+        this.bytes = bytes;
+        this.blocks = blocks;
+        this.length = length;
+    }
+
+    /**
+     * Pack the remaining values of a buffer.
+     * @param values values to pack
+     * @return packed copy
+     * */
+    static PackedIntArray pack(IntBuffer values) {
+        int length = values.remaining();
+        VarInts bytes = new VarInts();
+        long[] blocks = new long[(length + BLOCK_MASK) >>> BLOCK_BITS];
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & BLOCK_MASK) == 0) {
+                blocks[i >>> BLOCK_BITS] = bytes.size();
+                previous = 0;
+            }
+            int value = values.get(values.position() + i);
+            bytes.write(VarInts.zigzag(value - previous));
+            previous = value;
+        }
+        bytes.trim();
+        return new PackedIntArray(bytes, blocks, length);
+    }
+
+    int get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        VarInts.Reader reader = bytes.new Reader();
+        reader.seek(blocks[index >>> BLOCK_BITS]);
+        int value = 0;
+        for (int i = index & ~BLOCK_MASK; i <= index; i++) {
+            value += VarInts.unzigzag(reader.read());
+        }
+        return value;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes used, including the block offsets.
+     * @return size in bytes
+     * */
+    long byteSize() {
+        return bytes.size() + 8L * blocks.length;
+    }
+
+    // unpacked copy, for writing snapshots
+    IntBuffer unpack() {
+        int[] values = new int[length];
+        VarInts.Reader reader = bytes.new Reader();
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & BLOCK_MASK) == 0) {
+                reader.seek(blocks[i >>> BLOCK_BITS]);
+                value = 0;
+            }
+            value += VarInts.unzigzag(reader.read());
+            values[i] = value;
+        }
+        return IntBuffer.wrap(values);
+    }
+}
@@ -0,0 +1,234 @@
+package model;
+
+import utils.IntList;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The part of a model that is reachable from its initial states, over transitions with any action,
+ * compacted into a model of its own with the states renumbered in breadth first order.
+ *
+ * The satisfaction of a formula at a reachable state only depends on its successors, with one
+ * exception: whether a state has an incoming transition with an action of a set, which asCTL asks
+ * for in next, until and always, may depend on transitions from states that are not reachable.
+ * All those transitions are therefore replaced by transitions from one extra, unreachable state,
+ * with the union of the actions of the transitions into the same state. An incoming transition
+ * matches an action set if and only if one of them did before, so the initial states satisfy
+ * the same formulas in the submodel as in the model.
+ * */
+public class ReachableSubmodel {
+    private final Model model;
+    private final Model submodel;
+    private final int[] originalIds;
+    private final int reachableCount;
+
+    private ReachableSubmodel(Model model, Model submodel, int[] originalIds, int reachableCount) {
+        this.model = model;
+        this.submodel = submodel;
+        this.originalIds = originalIds;
+        this.reachableCount = reachableCount;
+    }
+
+    /**
+     * Restrict a model to its reachable states.
+     * @param model model
+     * @return the submodel, which is the model itself if every state is reachable
+     * */
+    public static ReachableSubmodel of(Model model) {
+        int stateCount = model.getStateCount();
+
+        // breadth first numbering of the reachable states
+        int[] newIds = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            newIds[s] = -1;
+        }
+        IntList order = new IntList();
+        StateSet initial = model.getInitialStateSet();
+        for (int s = initial.nextSetBit(0); s >= 0; s = initial.nextSetBit(s + 1)) {
+            newIds[s] = order.size();
+            order.add(s);
+        }
+        Adjacency.Cursor cursor = model.getSuccessors().cursor();
+        for (int i = 0; i < order.size(); i++) {
+            cursor.reset(order.get(i));
+            while (cursor.next()) {
+                int t = cursor.neighbour();
+                if (newIds[t] < 0) {
+                    newIds[t] = order.size();
+                    order.add(t);
+                }
+            }
+        }
+        int reachableCount = order.size();
+        if (reachableCount == stateCount) {
+            int[] identity = new int[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                identity[s] = s;
+            }
+            return new ReachableSubmodel(model, model, identity, stateCount);
+        }
+
+        // transitions between reachable states, in the order of their sources
+        EdgeActions edgeActions = model.getEdgeActions();
+        IntList sources = new IntList();
+        IntList targets = new IntList();
+        IntList actionOffsets = new IntList();
+        IntList actionIds = new IntList();
+        actionOffsets.add(0);
+        for (int i = 0; i < reachableCount; i++) {
+            cursor.reset(order.get(i));
+            while (cursor.next()) {
+                sources.add(i);
+                targets.add(newIds[cursor.neighbour()]);
+                for (int action : edgeActions.getActions(cursor.edge())) {
+                    actionIds.add(action);
+                }
+                actionOffsets.add(actionIds.size());
+            }
+        }
+
+        // one transition from the extra state for every reachable state with unreachable predecessors
+        int extra = reachableCount;
+        int alphabetSize = model.getAlphabet().size();
+        boolean[] inUnion = new boolean[alphabetSize];
+        IntList union = new IntList();
+        Adjacency.Cursor predecessors = model.getPredecessors().cursor();
+        for (int i = 0; i < reachableCount; i++) {
+            boolean incoming = false;
+            predecessors.reset(order.get(i));
+            while (predecessors.next()) {
+                if (newIds[predecessors.neighbour()] >= 0) {
+                    continue;
+                }
+                incoming = true;
+                for (int action : edgeActions.getActions(predecessors.edge())) {
+                    if (!inUnion[action]) {
+                        inUnion[action] = true;
+                        union.add(action);
+                    }
+                }
+            }
+            if (!incoming) {
+                continue;
+            }
+            sources.add(extra);
+            targets.add(i);
+            int[] actions = union.toArray();
+            Arrays.sort(actions);
+            for (int action : actions) {
+                actionIds.add(action);
+                inUnion[action] = false;
+            }
+            union.clear();
+            actionOffsets.add(actionIds.size());
+        }
+        boolean hasExtra = sources.size() > 0 && sources.get(sources.size() - 1) == extra;
+        int count = hasExtra ? reachableCount + 1 : reachableCount;
+
+        // names, initial states and labels of the reachable states
+        List<String> names = new ArrayList<>(count);
+        int[] originalIds = new int[count];
+        for (int i = 0; i < reachableCount; i++) {
+            names.add(model.getStateName(order.get(i)));
+            originalIds[i] = order.get(i);
+        }
+        if (hasExtra) {
+            String name = "unreachable";
+            while (model.getStateId(name) >= 0) {
+                name = "_" + name;
+            }
+            names.add(name);
+            originalIds[extra] = -1;
+        }
+        StateSet initialStates = new StateSet(count);
+        for (int s = initial.nextSetBit(0); s >= 0; s = initial.nextSetBit(s + 1)) {
+            initialStates.add(newIds[s]);
+        }
+        Set<String> labelSet = model.getLabelIndex().getLabels();
+        String[] labels = labelSet.toArray(new String[labelSet.size()]);
+        IntList[] statesPerLabel = new IntList[labels.length];
+        for (int l = 0; l < labels.length; l++) {
+            statesPerLabel[l] = new IntList();
+            StateSet states = model.getLabelIndex().getStates(labels[l]);
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                if (newIds[s] >= 0) {
+                    statesPerLabel[l].add(newIds[s]);
+                }
+            }
+        }
+
+        int[] from = sources.toArray();
+        int[] to = targets.toArray();
+        Model submodel = new Model(count, initialStates, Adjacency.build(count, from, to),
+                Adjacency.build(count, to, from), model.getAlphabet(),
+                EdgeActions.build(alphabetSize, actionOffsets.toArray(), actionIds.toArray()),
+                LabelIndex.build(count, labels, statesPerLabel), Collections.unmodifiableList(names),
+                IntBuffer.wrap(from), IntBuffer.wrap(to), null);
+        if (model.isCompressed()) {
+            submodel = submodel.compress();
+        }
+        return new ReachableSubmodel(model, submodel, originalIds, reachableCount);
+    }
+
+    /**
+     * Returns the model the submodel was taken from.
+     * @return original model
+     * */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the reachable part of the model, with the extra state if one was needed.
+     * @return submodel
+     * */
+    public Model getSubmodel() {
+        return submodel;
+    }
+
+    /**
+     * Returns the number of reachable states; they are the states 0 ... getReachableCount() - 1 of the submodel.
+     * @return number of reachable states
+     * */
+    public int getReachableCount() {
+        return reachableCount;
+    }
+
+    /**
+     * Whether some states of the model are not reachable, i.e. the submodel is smaller.
+     * @return true if states were removed
+     * */
+    public boolean isReduced() {
+        return submodel != model;
+    }
+
+    /**
+     * Returns the id in the original model of a state of the submodel.
+     * @param id state id in the submodel
+     * @return state id in the model, or -1 for the extra state
+     * */
+    public int getOriginalId(int id) {
+        return originalIds[id];
+    }
+
+    /**
+     * Map a set of states of the submodel to the original model, dropping the extra state.
+     * @param states states of the submodel
+     * @return the same states in the model
+     * */
+    public StateSet toOriginal(StateSet states) {
+        if (!isReduced()) {
+            return states;
+        }
+        StateSet original = new StateSet(model.getStateCount());
+        for (int s = states.nextSetBit(0); s >= 0 && s < reachableCount; s = states.nextSetBit(s + 1)) {
+            original.add(originalIds[s]);
+        }
+        return original;
+    }
+}
@@ -1,6 +1,5 @@
 package model;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -11,6 +10,18 @@ public class State {
     private boolean init;
     private String name;
     private String [] label;
+    private transient int id;
+
+    // used by Gson
+    private State() {
+    }
+
+    State(int id, String name, boolean init, String[] label) {
+        this.id = id;
+        this.name = name;
+        this.init = init;
+        this.label = label;
+    }
 	
     /**
      * Is state an initial state
@@ -36,6 +47,18 @@ public class State {
 	return label;
     }
 
+    /**
+     * Returns the id of the state, i.e. its position in the model.
+     * @return int id
+     * */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * For a model, get the incoming transitions into this state.
      * @param model Model to get the transitions from
@@ -43,10 +66,9 @@ public class State {
      */
     public Set<Transition> getIncomingTransitions(Model model) {
         Set<Transition> incomingTransitions = new HashSet<>();
-        for (Transition transition : model.getTransitions()) {
-            if (transition.getTarget().equals(this.name)) {
-                incomingTransitions.add(transition);
-            }
+        Adjacency.Cursor predecessors = model.getPredecessors().cursor();
+        for (predecessors.reset(id); predecessors.next(); ) {
+            incomingTransitions.add(model.getTransition(predecessors.edge()));
         }
         return incomingTransitions;
     }
@@ -58,10 +80,9 @@ public class State {
      */
     public Set<Transition> getOutgoingTransitions(Model model) {
         Set<Transition> outgoingTransitions = new HashSet<>();
-        for (Transition transition : model.getTransitions()) {
-            if (transition.getSource().equals(this.name)) {
-                outgoingTransitions.add(transition);
-            }
+        Adjacency.Cursor successors = model.getSuccessors().cursor();
+        for (successors.reset(id); successors.next(); ) {
+            outgoingTransitions.add(model.getTransition(successors.edge()));
         }
         return outgoingTransitions;
     }
@@ -73,8 +94,9 @@ public class State {
      */
     public Set<State> getPostStates(Model model) {
         Set<State> postStates = new HashSet<>();
-        for (Transition transition: this.getOutgoingTransitions(model)) {
-            postStates.add(model.getStateByName(transition.getTarget()));
+        Adjacency.Cursor successors = model.getSuccessors().cursor();
+        for (successors.reset(id); successors.next(); ) {
+            postStates.add(model.getState(successors.neighbour()));
         }
         return postStates;
     }
@@ -86,30 +108,33 @@ public class State {
      */
     public Set<State> getPreStates(Model model) {
         Set<State> preStates = new HashSet<>();
-        for (Transition transition: this.getIncomingTransitions(model)) {
-            preStates.add(model.getStateByName(transition.getSource()));
+        Adjacency.Cursor predecessors = model.getPredecessors().cursor();
+        for (predecessors.reset(id); predecessors.next(); ) {
+            preStates.add(model.getState(predecessors.neighbour()));
         }
         return preStates;
     }
 
     /**
      * Get the set of predecessors that can reach this state via a set of actions.
+     * A predecessor is dropped if any of its transitions into this state has none of the actions.
      * @param model Model to get the states from
      * @param actions Set of actions to reach this state
      * */
     public Set<State> getPreStatesWithActions(Model model, Set<String> actions) {
-        Set<State> preStates = this.getPreStates(model);
         if (actions.isEmpty()) {
-            return preStates;
+            return this.getPreStates(model);
         }
+        ActionMask mask = model.getAlphabet().compile(actions);
+        EdgeActions edgeActions = model.getEdgeActions();
+        Set<State> preStates = new HashSet<>();
         Set<State> toRemove = new HashSet<>();
-        for (State s : preStates) {
-            for (Transition t: s.getOutgoingTransitions(model)) {
-                if (t.getTarget().equals(this.name)) {
-                    if (Collections.disjoint(t.getActionsSet(), actions)) {
-                        toRemove.add(s);
-                    }
-                }
+        Adjacency.Cursor predecessors = model.getPredecessors().cursor();
+        for (predecessors.reset(id); predecessors.next(); ) {
+            State s = model.getState(predecessors.neighbour());
+            preStates.add(s);
+            if (!edgeActions.matches(predecessors.edge(), mask)) {
+                toRemove.add(s);
             }
         }
         preStates.removeAll(toRemove);
@@ -0,0 +1,293 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of states of one model, stored as a bitmap over the state ids.
+ * Bit i of the words is set iff the state with id i is in the set.
+ * Set operations are word-wise and in place, so that no intermediate sets are allocated.
+ * */
+public class StateSet {
+    private final int size;
+    private final long[] words;
+
+    /**
+     * Create an empty set over the state ids 0 ... size - 1.
+     * @param size number of states in the model
+     * */
+    public StateSet(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    private StateSet(int size, long[] words) {
+        this.size = size;
+        this.words = words;
+    }
+
+    /**
+     * Create a set from the words of a bitmap, e.g. as stored in a snapshot.
+     * @param size number of states in the model
+     * @param words bitmap with (size + 63) / 64 words, taken over by the set
+     * @return set backed by the words
+     * */
+    static StateSet wrap(int size, long[] words) {
+        return new StateSet(size, words);
+    }
+
+    // the bitmap itself, for writing snapshots
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * Create the set containing all state ids 0 ... size - 1.
+     * @param size number of states in the model
+     * @return full set
+     * */
+    public static StateSet full(int size) {
+        StateSet set = new StateSet(size);
+        Arrays.fill(set.words, -1L);
+        set.clearTail();
+        return set;
+    }
+
+    /**
+     * Create a set from state objects of a model.
+     * @param states states, which must have been indexed by the model
+     * @param size number of states in the model
+     * @return set of the state ids
+     * */
+    public static StateSet of(Collection<State> states, int size) {
+        StateSet set = new StateSet(size);
+        for (State s : states) {
+            set.add(s.getId());
+        }
+        return set;
+    }
+
+    /**
+     * Returns the states of the model that are in this set.
+     * @param model model the ids refer to
+     * @return set of state objects
+     * */
+    public Set<State> toStates(Model model) {
+        Set<State> states = new HashSet<>();
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            states.add(model.getState(i));
+        }
+        return states;
+    }
+
+    /**
+     * Returns the number of states the ids range over (not the number of members).
+     * @return size of the universe
+     * */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return (words[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Add a state to the set.
+     * @param id state id
+     * @return true if the state was not in the set before
+     * */
+    public boolean add(int id) {
+        int w = id >>> 6;
+        long bit = 1L << id;
+        if ((words[w] & bit) != 0) {
+            return false;
+        }
+        words[w] |= bit;
+        return true;
+    }
+
+    /**
+     * Remove a state from the set.
+     * @param id state id
+     * @return true if the state was in the set before
+     * */
+    public boolean remove(int id) {
+        int w = id >>> 6;
+        long bit = 1L << id;
+        if ((words[w] & bit) == 0) {
+            return false;
+        }
+        words[w] &= ~bit;
+        return true;
+    }
+
+    public StateSet copy() {
+        return new StateSet(size, words.clone());
+    }
+
+    /**
+     * Intersection in place: this = this & other.
+     * @param other set over the same model
+     * @return this set
+     * */
+    public StateSet and(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Difference in place: this = this & !other.
+     * @param other set over the same model
+     * @return this set
+     * */
+    public StateSet andNot(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Union in place: this = this | other.
+     * @param other set over the same model
+     * @return this set
+     * */
+    public StateSet or(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Symmetric difference in place: this = this ^ other, e.g. the complement of a subset of other.
+     * @param other set over the same model
+     * @return this set
+     * */
+    public StateSet xor(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] ^= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Overwrite this set with another one, reusing its bitmap.
+     * @param other set over the same model
+     * @return this set
+     * */
+    public StateSet assign(StateSet other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+        return this;
+    }
+
+    /**
+     * Returns the number of states in the set.
+     * @return cardinality
+     * */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether every state of the other set is in this set.
+     * @param other set over the same model
+     * @return true if other is a subset of this
+     * */
+    public boolean containsAll(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            if ((other.words[i] & ~words[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the two sets have a state in common.
+     * @param other set over the same model
+     * @return true if the intersection is not empty
+     * */
+    public boolean intersects(StateSet other) {
+        for (int i = 0; i < words.length; i++) {
+            if ((other.words[i] & words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the first state id in the set that is greater or equal to from.
+     * Iterate with: for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+     * @param from id to start from
+     * @return next id in the set or -1 if there is none
+     * */
+    public int nextSetBit(int from) {
+        if (from >= size) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    // bits beyond size must stay zero for cardinality and equality
+    private void clearTail() {
+        if ((size & 63) != 0) {
+            words[words.length - 1] &= (1L << size) - 1;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StateSet)) {
+            return false;
+        }
+        StateSet other = (StateSet) o;
+        return size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(i);
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.util.Collection;
+
+/**
+ * A state space given by a successor function instead of a list of states and transitions.
+ * The states of type S are explored from the initial states by a StateSpaceExplorer, which
+ * identifies them by equals() and hashCode(), so they should be small immutable values.
+ * @param <S> type of the states
+ * */
+public interface StateSpace<S> {
+
+    /**
+     * Returns the initial states.
+     * @return initial states
+     * */
+    Collection<S> getInitialStates();
+
+    /**
+     * Returns the name of a state, which has to be unique in the state space.
+     * @param state state
+     * @return name of the state
+     * */
+    String getName(S state);
+
+    /**
+     * Returns the atomic propositions that hold in a state.
+     * @param state state
+     * @return labels of the state
+     * */
+    String[] getLabels(S state);
+
+    /**
+     * Add the transitions leaving a state to the successors.
+     * @param state state
+     * @param successors receives the target and the actions of every transition
+     * */
+    void getSuccessors(S state, Successors<S> successors);
+
+    /**
+     * Receives the transitions leaving a state.
+     * @param <S> type of the states
+     * */
+    interface Successors<S> {
+        /**
+         * Add a transition.
+         * @param target target state
+         * @param actions actions of the transition
+         * */
+        void add(S target, String... actions);
+    }
+}
@@ -0,0 +1,326 @@
+package model;
+
+import utils.IntList;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explores a StateSpace on demand.
+ *
+ * States get dense int ids in the order they are discovered, through an open addressing hash
+ * table of ids, so that no boxed keys are stored. A state is expanded, i.e. its successor
+ * function is called, only when expand() is asked for it; the transitions found so far are
+ * kept in the arrays the ModelLoader builds a model from, so toModel() turns the explored
+ * space into a model with the same adjacency layout as a loaded one.
+ * @param <S> type of the states
+ * */
+public class StateSpaceExplorer<S> {
+    private static final int UNEXPANDED = -1;
+
+    private final StateSpace<S> space;
+
+    // discovered states, and the hash table from states to their ids + 1 (0 is an empty slot)
+    private Object[] states = new Object[16];
+    private int[] hashes = new int[16];
+    private int[] table = new int[32];
+    private int stateCount;
+    private final IntList initialStates = new IntList();
+
+    // labels of the discovered states
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private final List<IntList> statesPerLabel = new ArrayList<>();
+
+    // transitions of the expanded states; those of state s are rowStarts[s] ... rowEnds[s] - 1
+    private int[] rowStarts = new int[16];
+    private int[] rowEnds = new int[16];
+    private int expandedCount;
+    private final IntList sources = new IntList();
+    private final IntList targets = new IntList();
+    private final ActionAlphabet alphabet = new ActionAlphabet();
+    private final IntList actionOffsets = new IntList();
+    private final IntList actionIds = new IntList();
+
+    // receives the successors of the state being expanded
+    private final Collector collector = new Collector();
+
+    /**
+     * Create an explorer and discover the initial states.
+     * @param space state space to explore
+     * */
+    public StateSpaceExplorer(StateSpace<S> space) {
+        this.space = space;
+        actionOffsets.add(0);
+        for (S state : space.getInitialStates()) {
+            // a state that is not new is listed twice
+            int discovered = stateCount;
+            int id = this.intern(state);
+            if (stateCount > discovered) {
+                initialStates.add(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of states discovered so far.
+     * @return number of discovered states
+     * */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the number of states whose successors are known.
+     * @return number of expanded states
+     * */
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    /**
+     * Returns the number of transitions found so far.
+     * @return number of transitions of the expanded states
+     * */
+    public int getTransitionCount() {
+        return targets.size();
+    }
+
+    /**
+     * Returns the ids of the initial states.
+     * @return initial state ids
+     * */
+    public int[] getInitialStates() {
+        return initialStates.toArray();
+    }
+
+    /**
+     * Returns a discovered state.
+     * @param id state id
+     * @return the state
+     * */
+    @SuppressWarnings("unchecked")
+    public S getState(int id) {
+        if (id < 0 || id >= stateCount) {
+            throw new IndexOutOfBoundsException("No state with id " + id + ", " + stateCount + " discovered");
+        }
+        return (S) states[id];
+    }
+
+    /**
+     * Returns the id of a state.
+     * @param state state
+     * @return id of the state, or -1 if it has not been discovered
+     * */
+    public int getId(S state) {
+        int hash = hash(state);
+        for (int slot = hash & (table.length - 1); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && states[id].equals(state)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the successors of a state are known.
+     * @param id state id
+     * @return true if the state has been expanded
+     * */
+    public boolean isExpanded(int id) {
+        return rowStarts[id] != UNEXPANDED;
+    }
+
+    /**
+     * Compute the successors of a state, unless they are known already.
+     * Successors that have not been seen before get new ids.
+     * @param id state id
+     * */
+    public void expand(int id) {
+        if (this.isExpanded(id)) {
+            return;
+        }
+        int start = targets.size();
+        collector.source = id;
+        space.getSuccessors(this.getState(id), collector);
+        rowStarts[id] = start;
+        rowEnds[id] = targets.size();
+        expandedCount++;
+    }
+
+    /**
+     * Returns the first transition of an expanded state.
+     * @param id state id
+     * @return index of the first transition leaving the state
+     * */
+    public int getFirstTransition(int id) {
+        this.checkExpanded(id);
+        return rowStarts[id];
+    }
+
+    /**
+     * Returns the end of the transitions of an expanded state.
+     * @param id state id
+     * @return index after the last transition leaving the state
+     * */
+    public int getEndTransition(int id) {
+        this.checkExpanded(id);
+        return rowEnds[id];
+    }
+
+    private void checkExpanded(int id) {
+        if (!this.isExpanded(id)) {
+            throw new IllegalStateException("State " + space.getName(this.getState(id)) + " has not been expanded");
+        }
+    }
+
+    /**
+     * Returns the target of a transition.
+     * @param transition index of the transition
+     * @return id of the target state
+     * */
+    public int getTarget(int transition) {
+        return targets.get(transition);
+    }
+
+    /**
+     * Returns the actions of a transition.
+     * @param transition index of the transition
+     * @return names of the actions
+     * */
+    public String[] getActions(int transition) {
+        String[] actions = new String[actionOffsets.get(transition + 1) - actionOffsets.get(transition)];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = alphabet.getAction(actionIds.get(actionOffsets.get(transition) + i));
+        }
+        return actions;
+    }
+
+    /**
+     * Expand all states reachable from the initial states, in the order they were discovered.
+     * @return number of states
+     * */
+    public int exploreAll() {
+        // expanding discovers new states, which are picked up by the same loop
+        for (int id = 0; id < stateCount; id++) {
+            this.expand(id);
+        }
+        return stateCount;
+    }
+
+    /**
+     * Explore the whole state space and build a model from it, with the same layout as a model
+     * loaded by the ModelLoader. The states are named by StateSpace.getName().
+     * @return model of the reachable state space
+     * */
+    public Model toModel() {
+        this.exploreAll();
+
+        String[] names = new String[stateCount];
+        for (int id = 0; id < stateCount; id++) {
+            names[id] = space.getName(this.getState(id));
+        }
+        StateSet initial = new StateSet(stateCount);
+        for (int i = 0; i < initialStates.size(); i++) {
+            initial.add(initialStates.get(i));
+        }
+
+        int[] from = sources.toArray();
+        int[] to = targets.toArray();
+        Adjacency successors = Adjacency.build(stateCount, from, to);
+        Adjacency predecessors = Adjacency.build(stateCount, to, from);
+        EdgeActions edgeActions = EdgeActions.build(alphabet.size(), actionOffsets.toArray(), actionIds.toArray());
+        LabelIndex labelIndex = LabelIndex.build(stateCount,
+                labels.toArray(new String[labels.size()]), statesPerLabel.toArray(new IntList[labels.size()]));
+
+        return new Model(stateCount, initial, successors, predecessors, alphabet, edgeActions, labelIndex,
+                Collections.unmodifiableList(Arrays.asList(names)), IntBuffer.wrap(from), IntBuffer.wrap(to), null);
+    }
+
+    private static int hash(Object state) {
+        int h = state.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the id of a state, assigning the next id if it is new.
+     * */
+    private int intern(S state) {
+        int hash = hash(state);
+        int slot = hash & (table.length - 1);
+        for (; table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && states[id].equals(state)) {
+                return id;
+            }
+        }
+
+        int id = stateCount++;
+        if (id == states.length) {
+            int capacity = states.length * 2;
+            states = Arrays.copyOf(states, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            rowStarts = Arrays.copyOf(rowStarts, capacity);
+            rowEnds = Arrays.copyOf(rowEnds, capacity);
+        }
+        states[id] = state;
+        hashes[id] = hash;
+        rowStarts[id] = UNEXPANDED;
+        table[slot] = id + 1;
+        // keep the table at most half full
+        if (2 * stateCount > table.length) {
+            this.rehash();
+        }
+
+        for (String label : space.getLabels(state)) {
+            this.label(label).add(id);
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int id = 0; id < stateCount; id++) {
+            int slot = hashes[id] & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private IntList label(String label) {
+        Integer id = labelIds.get(label);
+        if (id == null) {
+            id = labels.size();
+            labelIds.put(label, id);
+            labels.add(label);
+            statesPerLabel.add(new IntList());
+        }
+        return statesPerLabel.get(id);
+    }
+
+    /**
+     * Adds the transitions reported by the successor function.
+     * */
+    private class Collector implements StateSpace.Successors<S> {
+        int source;
+
+        @Override
+        public void add(S target, String... actions) {
+            int id = intern(target);
+            sources.add(source);
+            targets.add(id);
+            for (String action : actions) {
+                actionIds.add(alphabet.intern(action));
+            }
+            actionOffsets.add(actionIds.size());
+        }
+    }
+}
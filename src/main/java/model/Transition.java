@@ -1,6 +1,7 @@
 package model;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -12,6 +13,17 @@ public class  Transition {
     private String source;
     private String target;
     private String [] actions;
+    private transient Set<String> actionsSet;
+
+    // used by Gson
+    private Transition() {
+    }
+
+    Transition(String source, String target, String[] actions) {
+        this.source = source;
+        this.target = target;
+        this.actions = actions;
+    }
 	
     /**
      * Returns the source state of a transition.
@@ -36,11 +48,15 @@ public class  Transition {
     }
 
     /**
-     * Returns the set of actions in a transition as a set
+     * Returns the set of actions in a transition as a set.
+     * The set is created once and cannot be modified.
      * @return a set of actions.
      * */
     public Set<String> getActionsSet() {
-        return new HashSet<>(Arrays.asList(actions));
+        if (actionsSet == null) {
+            actionsSet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(actions)));
+        }
+        return actionsSet;
     }
 	
     @Override
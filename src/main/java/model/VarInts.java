@@ -0,0 +1,107 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Append-only byte storage for variable length ints (LEB128, 7 bits per byte).
+ * The bytes are kept in pages of 16 MB and addressed by a long position, so the
+ * storage is not limited to the 2 GB of a single array.
+ * */
+final class VarInts {
+    private static final int PAGE_BITS = 24;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private byte[][] pages = new byte[0][];
+    private byte[] page;
+    private long size;
+
+    /**
+     * Append an int as an unsigned varint, 1 to 5 bytes.
+     * @param value value to append, negative values take 5 bytes
+     * */
+    void write(int value) {
+        while ((value & ~0x7f) != 0) {
+            writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeByte(int b) {
+        int index = (int) (size & PAGE_MASK);
+        if (index == 0) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            page = new byte[PAGE_SIZE];
+            pages[pages.length - 1] = page;
+        }
+        page[index] = (byte) b;
+        size++;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     * @return size in bytes
+     * */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Shrink the last page to the bytes that are used, once everything has been written.
+     * */
+    void trim() {
+        int used = (int) (size & PAGE_MASK);
+        if (used != 0) {
+            pages[pages.length - 1] = Arrays.copyOf(page, used);
+        }
+        page = null;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Sequential decoder over the storage. Not thread safe, every thread needs its own reader.
+     * */
+    final class Reader {
+        private byte[] current;
+        private int pageIndex;
+        private int index;
+
+        /**
+         * Move the reader to a position.
+         * @param position byte position of the next varint
+         * */
+        void seek(long position) {
+            pageIndex = (int) (position >>> PAGE_BITS);
+            index = (int) (position & PAGE_MASK);
+            current = pageIndex < pages.length ? pages[pageIndex] : null;
+        }
+
+        /**
+         * Decode the next varint.
+         * @return decoded value
+         * */
+        int read() {
+            int result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (index == current.length) {
+                    current = pages[++pageIndex];
+                    index = 0;
+                }
+                b = current[index++];
+                result |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return result;
+        }
+    }
+}
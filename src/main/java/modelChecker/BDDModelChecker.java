@@ -0,0 +1,60 @@
+package modelChecker;
+
+import bdd.BDDManager;
+import formula.ENFConverter;
+import formula.stateFormula.StateFormula;
+import model.Model;
+
+/**
+ * Symbolic model checker: the model is encoded as BDDs and the satisfaction sets are computed
+ * as fixpoints over them by the BDDSatSetComputer. Gives the same answers as SimpleModelChecker.
+ * The encoding of the last model is kept, so checking several formulas against one model only
+ * builds it once.
+ *
+ * A check under a constraint is done by SimpleModelChecker, as the BDD fixpoints do not take the
+ * fair paths, see Fairness.
+ * */
+public class BDDModelChecker implements ModelChecker {
+
+    private SymbolicModel symbolicModel;
+
+    @Override
+    public boolean check(Model model, StateFormula constraint, StateFormula query) {
+
+        if (constraint != null) {
+            return new SimpleModelChecker().check(model, constraint, query);
+        }
+
+        // convert the formula ENF
+        ENFConverter enfConverter = new ENFConverter();
+        StateFormula enf = enfConverter.convertToENF(query);
+
+        // encode the model, unless it is the one of the previous check
+        if (symbolicModel == null || symbolicModel.getModel() != model) {
+            symbolicModel = new SymbolicModel(model);
+        }
+
+        // get satisfying set
+        BDDManager manager = symbolicModel.getManager();
+        BDDSatSetComputer satSetComputer = new BDDSatSetComputer(symbolicModel);
+        int satSet = satSetComputer.computeSatSet(enf, symbolicModel.all());
+
+        // every initial state must be in the satisfying set
+        boolean check = manager.diff(symbolicModel.initial(), satSet) == BDDManager.FALSE;
+        manager.deref(satSet);
+        return check;
+    }
+
+    /**
+     * Returns the symbolic encoding of the model of the last check.
+     * @return encoding, or null before the first check
+     * */
+    public SymbolicModel getSymbolicModel() {
+        return symbolicModel;
+    }
+
+    @Override
+    public String[] getTrace() {
+        return null;
+    }
+}
@@ -0,0 +1,255 @@
+package modelChecker;
+
+import bdd.BDDManager;
+import formula.BDDVisitor;
+import formula.ENFConverter;
+import formula.Visitable;
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+
+import java.util.Set;
+
+/**
+ * Compute satisfaction sets symbolically, as BDDs over the encoding of a SymbolicModel.
+ * Runs the same operators as IndexedSatSetComputer, with the worklist algorithms replaced
+ * by image and pre-image fixpoints over the transition relation.
+ *
+ * Every visit method returns a referenced BDD, which the caller has to deref() when it no
+ * longer needs it.
+ * */
+public class BDDSatSetComputer implements BDDVisitor {
+
+    private final SymbolicModel symbolicModel;
+    private final BDDManager manager;
+
+    // explicit engine for the Always fixpoints that cannot be expressed with sets, created on demand
+    private IndexedSatSetComputer explicit;
+
+    public BDDSatSetComputer(SymbolicModel symbolicModel) {
+        this.symbolicModel = symbolicModel;
+        this.manager = symbolicModel.getManager();
+    }
+
+    /**
+     * Compute satisfaction set for a state formula.
+     * Formula is assumed to be in ENF.
+     * @param formula state formula
+     * @param states BDD of the states to compute the satisfaction set over
+     * @return referenced BDD of the states satisfying the formula
+     * */
+    public int computeSatSet(StateFormula formula, int states) {
+        assert (formula instanceof Visitable);
+        return this.visit((Visitable) formula, states);
+    }
+
+    /**
+     * Method for the visitor interface.
+     * Delegates to the appropriate method for the formula.
+     * */
+    @Override
+    public int visit(Visitable visitable, int states) {
+        // the BDDs of the callers are referenced at this point
+        manager.collectGarbageIfNeeded();
+        return visitable.accept(this, states);
+    }
+
+    /**
+     * Sat Set for boolean proposition.
+     * This is true in ENF.
+     * */
+    @Override
+    public int visitBoolProp(BoolProp formula, int states) {
+        return manager.ref(states);
+    }
+
+    /**
+     * Sat Set for atomic proposition.
+     * */
+    @Override
+    public int visitAtomicProp(AtomicProp formula, int states) {
+        return manager.ref(manager.and(symbolicModel.label(formula.label), states));
+    }
+
+    /**
+     * Sat Set for conjunction.
+     * */
+    @Override
+    public int visitAnd(And formula, int states) {
+        int satSetLeft = computeSatSet(formula.left, states);
+        int satSetRight = computeSatSet(formula.right, states);
+        int result = manager.ref(manager.and(satSetLeft, satSetRight));
+        manager.deref(satSetLeft);
+        manager.deref(satSetRight);
+        return result;
+    }
+
+    /**
+     * Sat Set for negation.
+     * */
+    @Override
+    public int visitNot(Not formula, int states) {
+        int satSet = computeSatSet(formula.stateFormula, states);
+        int result = manager.ref(manager.diff(states, satSet));
+        manager.deref(satSet);
+        return result;
+    }
+
+    /**
+     * Sat Set for There Exists.
+     * */
+    @Override
+    public int visitThereExists(ThereExists formula, int states) {
+        PathFormula pathFormula = formula.pathFormula;
+
+        // must be one of the following
+        assert (pathFormula instanceof Next || pathFormula instanceof Until || pathFormula instanceof Always);
+
+        // delegate to the appropriate path formula visitor
+        return this.visit((Visitable) pathFormula, states);
+    }
+
+    /**
+     * Sat Set for For All, which is only left in a formula that is not fully in ENF:
+     * computed as the satisfaction set of its ENF.
+     * */
+    @Override
+    public int visitForAll(ForAll formula, int states) {
+        return computeSatSet(new ENFConverter().convertToENF(formula), states);
+    }
+
+    /**
+     * Sat Set for Next: the pre-image of the satisfaction set that can be reached via
+     * the actions, restricted to the states that can leave via the actions.
+     * */
+    @Override
+    public int visitNext(Next formula, int states) {
+        ActionMask actions = this.compile(formula.getActions());
+        int satSet = computeSatSet(formula.stateFormula, states);
+
+        int reachable = manager.and(satSet, symbolicModel.incoming(actions));
+        int preSet = symbolicModel.preImage(reachable, symbolicModel.pairs());
+        int result = manager.ref(manager.and(preSet, symbolicModel.outgoing(actions)));
+        manager.deref(satSet);
+        return result;
+    }
+
+    /**
+     * Sat Set for Until: least fixpoint Z = right or (left and pre(Z)), where pre follows the
+     * pairs of State.getPreStatesWithActions for the left actions.
+     * */
+    @Override
+    public int visitUntil(Until formula, int states) {
+        ActionMask leftActions = this.compile(formula.getLeftActions());
+        ActionMask rightActions = this.compile(formula.getRightActions());
+
+        int right = computeSatSet(formula.right, states);
+        int satSetRight = manager.ref(manager.and(right, symbolicModel.incoming(rightActions)));
+        manager.deref(right);
+        int left = computeSatSet(formula.left, states);
+        int satSetLeft = manager.ref(manager.and(left, symbolicModel.outgoing(leftActions)));
+        manager.deref(left);
+        int preRelation = symbolicModel.preRelation(leftActions);
+
+        // add the left states that reach the frontier until nothing new is found
+        int T = manager.ref(satSetRight);
+        int frontier = manager.ref(satSetRight);
+        while (frontier != BDDManager.FALSE) {
+            int candidates = manager.diff(satSetLeft, T);
+            int added = manager.ref(manager.and(candidates, symbolicModel.preImage(frontier, preRelation)));
+            int next = manager.ref(manager.or(T, added));
+            manager.deref(T);
+            manager.deref(frontier);
+            T = next;
+            frontier = added;
+            manager.collectGarbageIfNeeded();
+        }
+
+        manager.deref(frontier);
+        manager.deref(satSetRight);
+        manager.deref(satSetLeft);
+        return T;
+    }
+
+    /**
+     * Sat Set for Always.
+     *
+     * A state leaves the filtered satisfaction set T once as many of its predecessor pairs point
+     * to removed states as it has distinct successors with the right actions. If these two sets
+     * of successors are the same for every state of T, that is the case exactly if all its
+     * successors are removed, which is a greatest fixpoint over sets. Otherwise the counting is
+     * done by the explicit algorithm on the states of T.
+     * */
+    @Override
+    public int visitAlways(Always formula, int states) {
+        ActionMask actions = this.compile(formula.getActions());
+
+        // satisfaction set barring the actions
+        int satSetOrig = computeSatSet(formula.stateFormula, states);
+
+        // filter incoming, but keep the initial states, then filter outgoing
+        int filtered = manager.or(manager.and(satSetOrig, symbolicModel.incoming(actions)),
+                manager.and(symbolicModel.initial(), satSetOrig));
+        int satSet = manager.ref(manager.and(filtered, symbolicModel.outgoing(actions)));
+        manager.deref(satSetOrig);
+
+        // successors that are counted, and pairs along which removals are propagated
+        int actionStates = manager.and(symbolicModel.incoming(actions), symbolicModel.outgoing(actions));
+        int counted = manager.ref(manager.and(symbolicModel.pairs(), symbolicModel.toNext(actionStates)));
+        int preRelation = symbolicModel.preRelation(actions);
+
+        int result;
+        if (manager.and(counted, satSet) == manager.and(preRelation, satSet)) {
+            result = this.removeWithoutSuccessors(satSet, states, counted);
+        } else {
+            if (explicit == null) {
+                explicit = new IndexedSatSetComputer(symbolicModel.getModel());
+            }
+            result = manager.ref(symbolicModel.fromStateSet(explicit.removeWithoutSuccessors(
+                    symbolicModel.toStateSet(satSet), symbolicModel.toStateSet(states), actions)));
+        }
+        manager.deref(counted);
+        manager.deref(satSet);
+        return result;
+    }
+
+    /**
+     * Remove from satSet the states with a counted successor all of whose counted successors are
+     * outside of satSet or removed, until nothing changes.
+     * */
+    private int removeWithoutSuccessors(int satSet, int states, int counted) {
+        int outside = manager.ref(manager.diff(states, satSet));
+        int T = manager.ref(satSet);
+        while (true) {
+            int removed = manager.and(T, symbolicModel.allSuccessorsIn(outside, counted));
+            if (removed == BDDManager.FALSE) {
+                break;
+            }
+            int nextOutside = manager.ref(manager.or(outside, removed));
+            int next = manager.ref(manager.diff(T, removed));
+            manager.deref(outside);
+            manager.deref(T);
+            outside = nextOutside;
+            T = next;
+            manager.collectGarbageIfNeeded();
+        }
+        manager.deref(outside);
+        return T;
+    }
+
+    /**
+     * Compile a set of actions of a formula against the alphabet of the model.
+     * */
+    private ActionMask compile(Set<String> actions) {
+        return symbolicModel.getModel().getAlphabet().compile(actions);
+    }
+}
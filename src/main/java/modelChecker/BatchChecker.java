@@ -0,0 +1,337 @@
+package modelChecker;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import formula.ENFConverter;
+import formula.FormulaParser;
+import formula.FormulaSimplifier;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.StateSet;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Check many formulas against one model.
+ *
+ * The model is loaded once, and all queries are evaluated by IndexedSatSetComputers that share
+ * its action filters and Always subgraphs. The queries run in parallel on a fixed thread pool,
+ * each one on a single thread. A query holds if all initial states satisfy it, as in
+ * SimpleModelChecker.
+ *
+ * Usage: java modelChecker.BatchChecker model.json|model.snapshot formulas [threads]
+ * where formulas is a directory of formula files, a formula file, or a JSON array of formula
+ * objects with their action sets, optionally named by a "name" field.
+ * Prints one line per query with the verdict and the time it took.
+ * */
+public class BatchChecker {
+    private final Model model;
+    private final IndexedSatSetComputer satSetComputer;
+    private final StateSet states;
+    private int threads = Integer.getInteger("batch.threads", Runtime.getRuntime().availableProcessors());
+    private boolean nativeUniversal = Boolean.getBoolean("checker.nativeUniversal");
+    private boolean simplify = !"false".equals(System.getProperty("checker.simplify"));
+    private boolean fair;
+
+    public BatchChecker(Model model) {
+        this.model = model;
+        this.satSetComputer = new IndexedSatSetComputer(model);
+        // the parallelism is across the queries
+        this.satSetComputer.setThreads(1);
+        this.states = StateSet.full(model.getStateCount());
+    }
+
+    /**
+     * Set the number of queries that are checked at the same time.
+     * The default is the number of processors, or -Dbatch.threads.
+     * @param threads number of threads
+     * */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set whether AX, AF, AG and AU are computed directly, see SimpleModelChecker.setNativeUniversal().
+     * */
+    public void setNativeUniversal(boolean nativeUniversal) {
+        this.nativeUniversal = nativeUniversal;
+    }
+
+    /**
+     * Set whether the ENF is simplified before it is evaluated, see SimpleModelChecker.setSimplify().
+     * */
+    public void setSimplify(boolean simplify) {
+        this.simplify = simplify;
+    }
+
+    /**
+     * Check all queries under fairness constraints, see SimpleModelChecker.check(). The fair states
+     * are computed once for the model and shared by the queries.
+     * @param fairness fairness constraints, null for all paths
+     * */
+    public void setFairness(Fairness fairness) {
+        this.satSetComputer.setFairness(fairness);
+        this.fair = fairness != null;
+    }
+
+    /**
+     * Check all queries under a constraint formula, see Fairness.of().
+     * @param constraint constraint formula, null for all paths
+     * */
+    public void setConstraint(StateFormula constraint) {
+        this.setFairness(constraint == null ? null : Fairness.of(constraint));
+    }
+
+    /**
+     * A formula to check, with the name it is reported under.
+     * */
+    public static class Query {
+        private final String name;
+        private final StateFormula formula;
+        private final String error;
+
+        public Query(String name, StateFormula formula) {
+            this(name, formula, null);
+        }
+
+        private Query(String name, StateFormula formula, String error) {
+            this.name = name;
+            this.formula = formula;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public StateFormula getFormula() {
+            return formula;
+        }
+    }
+
+    /**
+     * The verdict on a query.
+     * */
+    public static class Result {
+        private final Query query;
+        private final boolean holds;
+        private final long nanos;
+        private final String error;
+
+        Result(Query query, boolean holds, long nanos, String error) {
+            this.query = query;
+            this.holds = holds;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public boolean holds() {
+            return holds;
+        }
+
+        /**
+         * Time to convert and evaluate the query, in nanoseconds.
+         * */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Message of the error that prevented the query from being parsed or checked, or null.
+         * */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String verdict = error != null ? "error: " + error : String.valueOf(holds);
+            return query.name + ": " + verdict + " (" + nanos / 1000000 + " ms)";
+        }
+    }
+
+    /**
+     * Read the queries from a directory of formula files, a formula file, or a file with a JSON array
+     * of formulas. A formula object may hold several formulas, which become one query each. A formula
+     * that cannot be parsed becomes a query that is reported as an error.
+     * @param path path of the directory or file
+     * @return the queries, ordered by file name or as in the array
+     * @throws IOException if the directory or file cannot be read
+     * */
+    public static List<Query> readQueries(String path) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        File file = new File(path);
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) {
+                throw new IOException("Cannot list " + path);
+            }
+            Arrays.sort(files);
+            for (File formulaFile : files) {
+                if (formulaFile.getName().endsWith(".json")) {
+                    String name = formulaFile.getName().substring(0, formulaFile.getName().length() - 5);
+                    addQueries(queries, name, readJson(formulaFile));
+                }
+            }
+            return queries;
+        }
+
+        JsonElement json = readJson(file);
+        if (!json.isJsonArray()) {
+            addQueries(queries, file.getName(), json);
+            return queries;
+        }
+        JsonArray array = json.getAsJsonArray();
+        for (int i = 0; i < array.size(); i++) {
+            JsonElement element = array.get(i);
+            String name = "#" + i;
+            if (element.isJsonObject() && element.getAsJsonObject().has("name")) {
+                name = element.getAsJsonObject().get("name").getAsString();
+            }
+            addQueries(queries, name, element);
+        }
+        return queries;
+    }
+
+    private static JsonElement readJson(File file) throws IOException {
+        try (FileReader in = new FileReader(file)) {
+            return new JsonParser().parse(in);
+        } catch (RuntimeException e) {
+            // malformed JSON
+            throw new IOException(file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add the queries of a formula object, one per formula, see FormulaParser.parseAll(). Several
+     * formulas in one object are named by their index after the name of the object.
+     * */
+    private static void addQueries(List<Query> queries, String name, JsonElement json) {
+        try {
+            if (!json.isJsonObject()) {
+                throw new IOException("not a formula object");
+            }
+            List<StateFormula> formulas = new FormulaParser(json.getAsJsonObject()).parseAll();
+            if (formulas.size() == 1) {
+                queries.add(new Query(name, formulas.get(0)));
+                return;
+            }
+            for (int i = 0; i < formulas.size(); i++) {
+                queries.add(new Query(name + "#" + i, formulas.get(i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            queries.add(new Query(name, null, e.getMessage()));
+        }
+    }
+
+    /**
+     * Check the queries on the thread pool.
+     * @param queries queries to check
+     * @return one result per query, in the same order
+     * */
+    public List<Result> check(List<Query> queries) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (final Query query : queries) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return BatchChecker.this.check(query);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(queries.get(i), false, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check one query on the calling thread.
+     * @param query query to check
+     * @return the result
+     * */
+    public Result check(Query query) {
+        if (query.error != null) {
+            return new Result(query, false, 0, query.error);
+        }
+        long start = System.nanoTime();
+        try {
+            // converters and factories are not shared between threads
+            ENFConverter converter = new ENFConverter();
+            converter.setKeepUniversal(nativeUniversal && !fair);
+            StateFormula enf = converter.convertToENF(query.formula);
+            if (simplify && !fair) {
+                enf = new FormulaSimplifier(converter.getFactory()).simplify(enf);
+            }
+            StateSet satSet = satSetComputer.share().computeSatSet(enf, states);
+            boolean holds = satSet.containsAll(model.getInitialStateSet());
+            return new Result(query, holds, System.nanoTime() - start, null);
+        } catch (RuntimeException e) {
+            return new Result(query, false, System.nanoTime() - start, e.toString());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java modelChecker.BatchChecker <model.json|model.snapshot> <formulas> [threads]");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        Model model = Model.load(args[0]);
+        List<Query> queries = readQueries(args[1]);
+        long loaded = System.nanoTime();
+
+        BatchChecker checker = new BatchChecker(model);
+        if (args.length == 3) {
+            checker.setThreads(Integer.parseInt(args[2]));
+        }
+        List<Result> results = checker.check(queries);
+
+        int holding = 0;
+        int errors = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            if (result.getError() != null) {
+                errors++;
+            } else if (result.holds()) {
+                holding++;
+            }
+        }
+        long end = System.nanoTime();
+        System.out.println(results.size() + " queries, " + holding + " hold, " + (results.size() - holding - errors)
+                + " do not hold, " + errors + " errors; loading " + (loaded - start) / 1000000
+                + " ms, checking " + (end - loaded) / 1000000 + " ms");
+        if (errors > 0) {
+            System.exit(2);
+        }
+    }
+}
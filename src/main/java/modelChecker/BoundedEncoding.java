@@ -0,0 +1,715 @@
+package modelChecker;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.Not;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import sat.SATSolver;
+import utils.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clauses whose solutions are witnesses of a state formula in ENF at an initial state, with
+ * paths of at most a bound of steps. The bound is raised with deepen(), which only adds clauses,
+ * so one solver is used for all bounds.
+ *
+ * A position of a path holds one state, chosen by one variable per candidate state (exactly one
+ * is true). The candidates are the states reachable from the initial states within the depth of
+ * the position. The states along a path are tied by the transitions, and every formula that has
+ * to hold at a position is a literal that implies the constraints of the formula there:
+ *  - EX: an edge to a new position, with the incoming and outgoing filters of the actions.
+ *  - EU: a path of left states to a right state, along the pairs of State.getPreStatesWithActions.
+ *  - EG: a path of states that cannot be removed by the counting of Algorithm 3, ending in a
+ *    state that is never removed or looping back to an earlier position.
+ *  - Other formulas, including negated EX, EU and EG, are computed explicitly and the state has
+ *    to be in the satisfaction set.
+ * These witnesses are exact for EX and EU. For EG they are sound, but states that need more than
+ * one successor to stay are not witnessed.
+ * */
+class BoundedEncoding {
+
+    private final Model model;
+    private final SATSolver solver;
+    private final int stateCount;
+    private final StateSet allStates;
+    private final int trueLiteral;
+
+    // states in breadth first order from the initial states, the first layerEnds[d] are reachable within d steps
+    private final int[] order;
+    private final int[] rank;
+    private final IntList layerEnds = new IntList();
+    private int reached;
+
+    // explicit engine for the formulas that are not witnessed by paths
+    private final IndexedSatSetComputer explicit;
+    private final Map<StateFormula, StateSet> satSets = new IdentityHashMap<>();
+    private final Map<StateFormula, StateSet> complements = new IdentityHashMap<>();
+
+    // per action set: states with an incoming / outgoing transition, and the sets of Always
+    private final Map<ActionMask, StateSet> withIncoming = new HashMap<>();
+    private final Map<ActionMask, StateSet> withOutgoing = new HashMap<>();
+    private final Map<ActionMask, StateSet[]> alwaysSets = new HashMap<>();
+
+    // scratch space for collecting distinct neighbours
+    private final Adjacency.Cursor predecessors;
+    private final Adjacency.Cursor successors;
+    private final StateSet marked;
+    private final StateSet blocked;
+
+    private final Position root;
+    private final List<Path> paths = new ArrayList<>();
+    private int bound;
+
+    /**
+     * A position on a path, holding one of the candidate states.
+     * */
+    private static class Position {
+        final int depth;
+        // variable of the first candidate
+        final int base;
+        final int count;
+        // literal that the position holds a state
+        final int used;
+
+        // literals of the formulas and state sets already encoded at this position
+        final Map<StateFormula, Integer> holds = new IdentityHashMap<>();
+        final Map<StateFormula, Integer> fails = new IdentityHashMap<>();
+        final Map<StateSet, Integer> leaves = new IdentityHashMap<>();
+
+        Position(int depth, int base, int count, int used) {
+            this.depth = depth;
+            this.base = base;
+            this.count = count;
+            this.used = used;
+        }
+    }
+
+    /**
+     * The witness path of an EX, EU or EG formula.
+     * For EU and EG, ends[t] is the literal that the witness ends at position t, continues[t]
+     * that it continues from t to t + 1, and for EG loops[t] the literals that position t is a
+     * copy of position j < t, which closes the loop.
+     * */
+    private static class Path {
+        final PathFormula formula;
+        final int guard;
+        final List<Position> positions = new ArrayList<>();
+        final IntList ends = new IntList();
+        final IntList continues = new IntList();
+        final List<IntList> loops = new ArrayList<>();
+
+        Path(PathFormula formula, int guard, Position start) {
+            this.formula = formula;
+            this.guard = guard;
+            this.positions.add(start);
+        }
+
+        boolean canDeepen() {
+            return !(formula instanceof Next);
+        }
+
+        int last() {
+            return positions.size() - 1;
+        }
+    }
+
+    /**
+     * Create the encoding for a model, with the root position at the initial states.
+     * @param model model to encode
+     * @param solver solver to add the variables and clauses to
+     * */
+    BoundedEncoding(Model model, SATSolver solver) {
+        this.model = model;
+        this.solver = solver;
+        this.stateCount = model.getStateCount();
+        this.allStates = StateSet.full(stateCount);
+        this.trueLiteral = SATSolver.pos(solver.newVar());
+        solver.addClause(trueLiteral);
+
+        this.order = new int[stateCount];
+        this.rank = new int[stateCount];
+        Arrays.fill(rank, -1);
+        StateSet initial = model.getInitialStateSet();
+        for (int s = initial.nextSetBit(0); s >= 0; s = initial.nextSetBit(s + 1)) {
+            rank[s] = reached;
+            order[reached++] = s;
+        }
+        layerEnds.add(reached);
+
+        this.explicit = new IndexedSatSetComputer(model);
+        this.predecessors = model.getPredecessors().cursor();
+        this.successors = model.getSuccessors().cursor();
+        this.marked = new StateSet(stateCount);
+        this.blocked = new StateSet(stateCount);
+
+        this.root = this.newPosition(0);
+        solver.addClause(root.used);
+    }
+
+    /**
+     * Returns the literal that the formula holds (or fails) at the initial state of the root.
+     * @param formula state formula in ENF
+     * @param positive true for the formula, false for its negation
+     * @return literal that implies the formula at an initial state
+     * */
+    int encodeRoot(StateFormula formula, boolean positive) {
+        return this.encode(formula, positive, root);
+    }
+
+    /**
+     * Returns the current bound on the number of steps of the paths.
+     * */
+    int getBound() {
+        return bound;
+    }
+
+    /**
+     * Returns whether raising the bound can find more witnesses.
+     * */
+    boolean canDeepen() {
+        for (Path path : paths) {
+            if (path.canDeepen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a fresh literal that, when assumed, keeps the paths within the current bound.
+     * */
+    int limit() {
+        int limit = SATSolver.pos(solver.newVar());
+        for (Path path : paths) {
+            if (path.canDeepen()) {
+                solver.addClause(SATSolver.not(limit), SATSolver.not(path.continues.get(path.last())));
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Raise the bound by one step: extend every path by a position, and encode the paths
+     * of the formulas at the new positions up to the new bound.
+     * */
+    void deepen() {
+        bound++;
+        // paths created on the way are added to the list and extended by the same loop
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            while (path.canDeepen() && path.last() < bound) {
+                this.extend(path);
+            }
+        }
+    }
+
+    /**
+     * Read the witness of the outermost path formula from the last solution of the solver.
+     * @return names of the states along the witness, starting with the initial state
+     * */
+    String[] trace() {
+        List<String> trace = new ArrayList<>();
+        trace.add(model.getStateName(this.stateAt(root)));
+        for (Path path : paths) {
+            if (path.positions.get(0) != root || !solver.modelLiteral(path.guard)) {
+                continue;
+            }
+            if (path.formula instanceof Next) {
+                trace.add(model.getStateName(this.stateAt(path.positions.get(1))));
+                break;
+            }
+            for (int t = 0; t <= path.last(); t++) {
+                if (t > 0) {
+                    trace.add(model.getStateName(this.stateAt(path.positions.get(t))));
+                }
+                if (this.closesLoop(path, t) || solver.modelLiteral(path.ends.get(t))) {
+                    break;
+                }
+            }
+            break;
+        }
+        return trace.toArray(new String[0]);
+    }
+
+    private boolean closesLoop(Path path, int t) {
+        if (t >= path.loops.size()) {
+            return false;
+        }
+        IntList loops = path.loops.get(t);
+        for (int j = 0; j < loops.size(); j++) {
+            if (solver.modelLiteral(loops.get(j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int stateAt(Position position) {
+        for (int i = 0; i < position.count; i++) {
+            if (solver.modelValue(position.base + i)) {
+                return order[i];
+            }
+        }
+        throw new IllegalStateException("No state at position of depth " + position.depth);
+    }
+
+    /**
+     * Encode a formula at a position.
+     * @return literal that implies the formula (or its negation) at the state of the position
+     * */
+    private int encode(StateFormula formula, boolean positive, Position position) {
+        Map<StateFormula, Integer> cache = positive ? position.holds : position.fails;
+        Integer cached = cache.get(formula);
+        if (cached != null) {
+            return cached;
+        }
+
+        int literal;
+        if (formula instanceof Not) {
+            literal = this.encode(((Not) formula).stateFormula, !positive, position);
+        } else if (formula instanceof And && isTemporal(formula)) {
+            And and = (And) formula;
+            int left = this.encode(and.left, positive, position);
+            int right = this.encode(and.right, positive, position);
+            literal = positive ? this.conjunction(left, right) : this.disjunction(left, right);
+        } else if (formula instanceof ThereExists && positive) {
+            literal = this.witness(((ThereExists) formula).pathFormula, position);
+        } else {
+            // propositional, or a negated path formula: check against the explicit satisfaction set
+            literal = this.leaf(positive ? this.satSet(formula) : this.complement(formula), position);
+        }
+        cache.put(formula, literal);
+        return literal;
+    }
+
+    private static boolean isTemporal(StateFormula formula) {
+        if (formula instanceof And) {
+            return isTemporal(((And) formula).left) || isTemporal(((And) formula).right);
+        }
+        if (formula instanceof Not) {
+            return isTemporal(((Not) formula).stateFormula);
+        }
+        return !(formula instanceof AtomicProp || formula instanceof BoolProp);
+    }
+
+    private int conjunction(int left, int right) {
+        if (left == SATSolver.not(trueLiteral) || right == trueLiteral) {
+            return left;
+        }
+        if (right == SATSolver.not(trueLiteral) || left == trueLiteral) {
+            return right;
+        }
+        int literal = SATSolver.pos(solver.newVar());
+        this.implies(literal, left);
+        this.implies(literal, right);
+        return literal;
+    }
+
+    private int disjunction(int left, int right) {
+        if (left == trueLiteral || right == SATSolver.not(trueLiteral)) {
+            return left;
+        }
+        if (right == trueLiteral || left == SATSolver.not(trueLiteral)) {
+            return right;
+        }
+        int literal = SATSolver.pos(solver.newVar());
+        solver.addClause(SATSolver.not(literal), left, right);
+        return literal;
+    }
+
+    private void implies(int premise, int conclusion) {
+        if (conclusion != trueLiteral) {
+            solver.addClause(SATSolver.not(premise), conclusion);
+        }
+    }
+
+    /**
+     * Literal that the state of the position is in a set.
+     * */
+    private int leaf(StateSet states, Position position) {
+        Integer cached = position.leaves.get(states);
+        if (cached != null) {
+            return cached;
+        }
+        int inside = 0;
+        for (int i = 0; i < position.count; i++) {
+            if (states.contains(order[i])) {
+                inside++;
+            }
+        }
+
+        int literal;
+        if (inside == position.count) {
+            literal = trueLiteral;
+        } else if (inside == 0) {
+            literal = SATSolver.not(trueLiteral);
+        } else {
+            literal = SATSolver.pos(solver.newVar());
+            this.implies(literal, position.used);
+            // one state is chosen, so either name the states inside or exclude the ones outside
+            boolean listInside = inside <= position.count - inside;
+            IntList clause = new IntList();
+            clause.add(SATSolver.not(literal));
+            for (int i = 0; i < position.count; i++) {
+                boolean contained = states.contains(order[i]);
+                if (listInside && contained) {
+                    clause.add(SATSolver.pos(position.base + i));
+                } else if (!listInside && !contained) {
+                    solver.addClause(SATSolver.not(literal), SATSolver.neg(position.base + i));
+                }
+            }
+            if (listInside) {
+                solver.addClause(clause.toArray());
+            }
+        }
+        position.leaves.put(states, literal);
+        return literal;
+    }
+
+    /**
+     * Literal that a witness of the path formula starts at the state of the position.
+     * */
+    private int witness(PathFormula formula, Position position) {
+        int guard = SATSolver.pos(solver.newVar());
+        Path path = new Path(formula, guard, position);
+        paths.add(path);
+        this.implies(guard, position.used);
+
+        if (formula instanceof Next) {
+            Next next = (Next) formula;
+            ActionMask actions = this.compile(next.getActions());
+            Position target = this.newPosition(position.depth + 1);
+            path.positions.add(target);
+            this.implies(guard, target.used);
+            this.implies(guard, this.leaf(this.withOutgoing(actions), position));
+            this.implies(guard, this.leaf(this.withIncoming(actions), target));
+            this.implies(guard, this.encode(next.stateFormula, true, target));
+            this.step(position, target, null, null, guard);
+        } else {
+            this.constrain(path, 0);
+            solver.addClause(SATSolver.not(guard), path.ends.get(0), path.continues.get(0));
+        }
+        return guard;
+    }
+
+    /**
+     * Create the literals of position t of an EU or EG path, with the constraints that do not
+     * need the next position.
+     * */
+    private void constrain(Path path, int t) {
+        Position position = path.positions.get(t);
+        int end = SATSolver.pos(solver.newVar());
+        int next = SATSolver.pos(solver.newVar());
+        path.ends.add(end);
+        path.continues.add(next);
+        this.implies(end, position.used);
+        this.implies(next, position.used);
+
+        if (path.formula instanceof Until) {
+            Until until = (Until) path.formula;
+            StateSet right = this.withIncoming(this.compile(until.getRightActions()));
+            StateSet left = this.withOutgoing(this.compile(until.getLeftActions()));
+            this.implies(end, this.leaf(right, position));
+            this.implies(end, this.encode(until.right, true, position));
+            this.implies(next, this.leaf(left, position));
+            this.implies(next, this.encode(until.left, true, position));
+        } else {
+            Always always = (Always) path.formula;
+            StateSet[] sets = this.alwaysSets(this.compile(always.getActions()));
+            int holds = this.encode(always.stateFormula, true, position);
+            this.implies(end, this.leaf(sets[0], position));
+            this.implies(end, this.leaf(sets[1], position));
+            this.implies(end, holds);
+            this.implies(next, this.leaf(sets[0], position));
+            this.implies(next, this.leaf(sets[2], position));
+            this.implies(next, holds);
+
+            // position t may repeat an earlier position, which closes the loop
+            IntList loops = new IntList();
+            for (int j = 0; j < t; j++) {
+                int loop = SATSolver.pos(solver.newVar());
+                loops.add(loop);
+                this.implies(loop, position.used);
+                this.equal(position, path.positions.get(j), loop);
+            }
+            path.loops.add(loops);
+        }
+    }
+
+    /**
+     * Add a position to an EU or EG path.
+     * */
+    private void extend(Path path) {
+        int t = path.last();
+        Position from = path.positions.get(t);
+        Position to = this.newPosition(from.depth + 1);
+        path.positions.add(to);
+        int next = path.continues.get(t);
+
+        if (path.formula instanceof Until) {
+            ActionMask actions = this.compile(((Until) path.formula).getLeftActions());
+            this.step(from, to, actions, null, next);
+        } else {
+            ActionMask actions = this.compile(((Always) path.formula).getActions());
+            this.step(from, to, actions, this.alwaysSets(actions)[2], next);
+        }
+        this.constrain(path, t + 1);
+
+        // continuing from t leads to the end, a continuation or a loop at t + 1
+        IntList clause = new IntList();
+        clause.add(SATSolver.not(next));
+        clause.add(path.ends.get(t + 1));
+        clause.add(path.continues.get(t + 1));
+        if (path.formula instanceof Always) {
+            IntList loops = path.loops.get(t + 1);
+            for (int j = 0; j < loops.size(); j++) {
+                clause.add(loops.get(j));
+            }
+        }
+        solver.addClause(clause.toArray());
+    }
+
+    /**
+     * Create a position with the states reachable within a depth as candidates: at least one
+     * is chosen if the position is used, and at most one always.
+     * */
+    private Position newPosition(int depth) {
+        int count = this.candidateCount(depth);
+        int base = solver.getVarCount();
+        for (int i = 0; i < count; i++) {
+            solver.newVar();
+        }
+        Position position = new Position(depth, base, count, SATSolver.pos(solver.newVar()));
+
+        int[] atLeastOne = new int[count + 1];
+        atLeastOne[0] = SATSolver.not(position.used);
+        for (int i = 0; i < count; i++) {
+            atLeastOne[i + 1] = SATSolver.pos(base + i);
+        }
+        solver.addClause(atLeastOne);
+
+        // sequential counter: s_i is true if one of the first i + 1 candidates is chosen
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            int x = SATSolver.pos(base + i);
+            if (previous >= 0) {
+                solver.addClause(SATSolver.not(x), SATSolver.not(previous));
+            }
+            if (i < count - 1) {
+                int counter = SATSolver.pos(solver.newVar());
+                solver.addClause(SATSolver.not(x), counter);
+                if (previous >= 0) {
+                    solver.addClause(SATSolver.not(previous), counter);
+                }
+                previous = counter;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * If the guard holds, the state of "to" is a successor of the state of "from".
+     * @param actions null for any edge, otherwise all edges between the two states need one of the actions
+     * @param sources states the state of "from" has to be in, null for all
+     * */
+    private void step(Position from, Position to, ActionMask actions, StateSet sources, int guard) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        IntList clause = new IntList();
+        IntList candidates = new IntList();
+        for (int i = 0; i < to.count; i++) {
+            int w = order[i];
+            clause.clear();
+            clause.add(SATSolver.not(guard));
+            clause.add(SATSolver.neg(to.base + i));
+
+            candidates.clear();
+            for (predecessors.reset(w); predecessors.next(); ) {
+                int v = predecessors.neighbour();
+                if (rank[v] < 0 || rank[v] >= from.count || (sources != null && !sources.contains(v))) {
+                    continue;
+                }
+                if (actions != null && !edgeActions.matches(predecessors.edge(), actions)) {
+                    blocked.add(v);
+                }
+                if (marked.add(v)) {
+                    candidates.add(v);
+                }
+            }
+            for (int k = 0; k < candidates.size(); k++) {
+                int v = candidates.get(k);
+                marked.remove(v);
+                if (!blocked.remove(v)) {
+                    clause.add(SATSolver.pos(from.base + rank[v]));
+                }
+            }
+            solver.addClause(clause.toArray());
+        }
+    }
+
+    /**
+     * If the guard holds, position "copy" holds the same state as the earlier position "original".
+     * */
+    private void equal(Position copy, Position original, int guard) {
+        for (int i = 0; i < copy.count; i++) {
+            if (i < original.count) {
+                solver.addClause(SATSolver.not(guard), SATSolver.neg(copy.base + i), SATSolver.pos(original.base + i));
+            } else {
+                solver.addClause(SATSolver.not(guard), SATSolver.neg(copy.base + i));
+            }
+        }
+    }
+
+    /**
+     * Number of states reachable from the initial states within a number of steps.
+     * */
+    private int candidateCount(int depth) {
+        while (layerEnds.size() <= depth) {
+            int start = layerEnds.size() == 1 ? 0 : layerEnds.get(layerEnds.size() - 2);
+            int end = layerEnds.get(layerEnds.size() - 1);
+            for (int i = start; i < end; i++) {
+                for (successors.reset(order[i]); successors.next(); ) {
+                    int t = successors.neighbour();
+                    if (rank[t] < 0) {
+                        rank[t] = reached;
+                        order[reached++] = t;
+                    }
+                }
+            }
+            layerEnds.add(reached);
+        }
+        return layerEnds.get(depth);
+    }
+
+    private StateSet satSet(StateFormula formula) {
+        StateSet satSet = satSets.get(formula);
+        if (satSet == null) {
+            satSet = explicit.computeSatSet(formula, allStates);
+            satSets.put(formula, satSet);
+        }
+        return satSet;
+    }
+
+    private StateSet complement(StateFormula formula) {
+        StateSet complement = complements.get(formula);
+        if (complement == null) {
+            complement = allStates.copy().andNot(this.satSet(formula));
+            complements.put(formula, complement);
+        }
+        return complement;
+    }
+
+    private ActionMask compile(Set<String> actions) {
+        return model.getAlphabet().compile(actions);
+    }
+
+    private StateSet withIncoming(ActionMask actions) {
+        if (actions.isAny()) {
+            return allStates;
+        }
+        StateSet states = withIncoming.get(actions);
+        if (states == null) {
+            states = this.statesWithAction(predecessors, actions);
+            withIncoming.put(actions, states);
+        }
+        return states;
+    }
+
+    private StateSet withOutgoing(ActionMask actions) {
+        if (actions.isAny()) {
+            return allStates;
+        }
+        StateSet states = withOutgoing.get(actions);
+        if (states == null) {
+            states = this.statesWithAction(successors, actions);
+            withOutgoing.put(actions, states);
+        }
+        return states;
+    }
+
+    private StateSet statesWithAction(Adjacency.Cursor adjacency, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        StateSet result = new StateSet(stateCount);
+        for (int s = 0; s < stateCount; s++) {
+            for (adjacency.reset(s); adjacency.next(); ) {
+                if (edgeActions.matches(adjacency.edge(), actions)) {
+                    result.add(s);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The sets of Always for an action set, from the counting in IndexedSatSetComputer.removeWithoutSuccessors:
+     * a state of the filtered satisfaction set is removed once as many of its successors P, all of whose
+     * edges have one of the actions, are removed as it has counted successors Q with incoming and outgoing
+     * transitions via the actions.
+     * @return the filter of the satisfaction set (outgoing, and incoming or initial), the states that are never
+     *         removed (no Q or fewer P than Q), and the states that stay if one of their P stays (as many P as Q)
+     * */
+    private StateSet[] alwaysSets(ActionMask actions) {
+        StateSet[] sets = alwaysSets.get(actions);
+        if (sets != null) {
+            return sets;
+        }
+        StateSet incoming = this.withIncoming(actions);
+        StateSet outgoing = this.withOutgoing(actions);
+        StateSet start = incoming.copy().or(model.getInitialStateSet()).and(outgoing);
+        StateSet kept = new StateSet(stateCount);
+        StateSet removable = new StateSet(stateCount);
+
+        EdgeActions edgeActions = model.getEdgeActions();
+        IntList distinct = new IntList();
+        for (int s = 0; s < stateCount; s++) {
+            distinct.clear();
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (!edgeActions.matches(successors.edge(), actions)) {
+                    blocked.add(t);
+                }
+                if (marked.add(t)) {
+                    distinct.add(t);
+                }
+            }
+            int counted = 0;
+            int pairs = 0;
+            for (int k = 0; k < distinct.size(); k++) {
+                int t = distinct.get(k);
+                marked.remove(t);
+                if (!blocked.remove(t)) {
+                    pairs++;
+                }
+                if (incoming.contains(t) && outgoing.contains(t)) {
+                    counted++;
+                }
+            }
+            if (counted == 0 || pairs < counted) {
+                kept.add(s);
+            } else if (pairs == counted) {
+                removable.add(s);
+            }
+        }
+        sets = new StateSet[]{start, kept, removable};
+        alwaysSets.put(actions, sets);
+        return sets;
+    }
+}
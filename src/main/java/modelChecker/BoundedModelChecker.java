@@ -0,0 +1,123 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.StateSet;
+import sat.SATSolver;
+
+/**
+ * Bounded model checker: searches for a counterexample, an initial state with a witness of the
+ * negated query, by encoding the witnesses with paths of at most k steps as clauses for a SAT
+ * solver. k is raised from 0 to the maximum bound, on the same solver, so the clauses learned
+ * for smaller bounds are reused.
+ *
+ * A counterexample is found long before a full fixpoint would finish if it is close to the
+ * initial states, and is returned by getTrace(). If there is none within the bound, the query is
+ * checked by the explicit engine, unless that fallback is turned off; the answer is then true,
+ * but not conclusive.
+ *
+ * A check under a constraint is done by SimpleModelChecker, as the encoding does not take the fair
+ * paths, see Fairness. Its answer is conclusive, without a trace.
+ * */
+public class BoundedModelChecker implements ModelChecker {
+
+    private int maxBound = Integer.getInteger("bmc.bound", 20);
+    private boolean fallback = true;
+
+    private String[] trace;
+    private int bound = -1;
+    private boolean conclusive;
+
+    /**
+     * Set the maximum number of steps of the witness paths.
+     * @param maxBound maximum bound, at least 0
+     * */
+    public void setMaxBound(int maxBound) {
+        if (maxBound < 0) {
+            throw new IllegalArgumentException("Bound must not be negative: " + maxBound);
+        }
+        this.maxBound = maxBound;
+    }
+
+    /**
+     * Set whether the query is checked by the explicit engine if no counterexample is found within the bound.
+     * @param fallback true to fall back to the explicit engine
+     * */
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean check(Model model, StateFormula constraint, StateFormula query) {
+        trace = null;
+        bound = -1;
+
+        if (constraint != null) {
+            conclusive = true;
+            return new SimpleModelChecker().check(model, constraint, query);
+        }
+
+        // convert the formula ENF
+        ENFConverter enfConverter = new ENFConverter();
+        StateFormula enf = enfConverter.convertToENF(query);
+
+        // an initial state at which the query fails
+        SATSolver solver = new SATSolver();
+        BoundedEncoding encoding = new BoundedEncoding(model, solver);
+        solver.addClause(encoding.encodeRoot(enf, false));
+
+        for (int k = 0; k <= maxBound; k++) {
+            if (k > 0) {
+                encoding.deepen();
+            }
+            if (solver.solve(encoding.limit())) {
+                trace = encoding.trace();
+                bound = k;
+                conclusive = true;
+                return false;
+            }
+            // without paths the clauses are the same for every bound
+            if (!encoding.canDeepen()) {
+                break;
+            }
+        }
+
+        if (!fallback) {
+            conclusive = false;
+            return true;
+        }
+        IndexedSatSetComputer satSetComputer = new IndexedSatSetComputer(model);
+        StateSet satSet = satSetComputer.computeSatSet(enf, StateSet.full(model.getStateCount()));
+        conclusive = true;
+        return satSet.containsAll(model.getInitialStateSet());
+    }
+
+    /**
+     * Returns the bound at which the counterexample of the last check was found.
+     * @return number of steps, or -1 if none was found
+     * */
+    public int getBound() {
+        return bound;
+    }
+
+    /**
+     * Returns whether the answer of the last check is exact, i.e. a counterexample was found or the
+     * explicit engine was used.
+     * @return true if the answer is conclusive
+     * */
+    public boolean isConclusive() {
+        return conclusive;
+    }
+
+    /**
+     * Returns the counterexample of the last check: the names of the states along the witness of the
+     * outermost path formula of the negated query, starting with the initial state. A witness of EG
+     * that loops ends with the state it loops back to.
+     * @return trace, or null if no counterexample was found
+     * */
+    @Override
+    public String[] getTrace() {
+        return trace;
+    }
+}
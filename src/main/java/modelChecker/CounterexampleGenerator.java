@@ -1,9 +1,284 @@
 package modelChecker;
 
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import utils.IntList;
+import utils.IntQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Build counterexamples from what the fixpoints of a check recorded, see
+ * IndexedSatSetComputer.setRecording(), so the model is not searched again.
+ *
+ * A counterexample of a formula at a state is a witness of its negation: the formula is followed
+ * through negations and conjunctions down to the outermost path formula that holds, and its
+ * witness is read from the record:
+ * - EX: a successor in the satisfaction set of the formula,
+ * - EU: the parents of the backward search, a shortest path to the right formula,
+ * - EG: the parents of the walk back from the components to a component, and a cycle within it
+ *   that takes an edge meeting each fairness condition, as a lasso that ends with the state it
+ *   loops back to. A witness ends early at a state that stays without a cycle.
+ * A counterexample of a formula without such a path formula is the state alone.
+ * */
 public class CounterexampleGenerator {
-    public CounterexampleGenerator() {}
+    private final Model model;
+    private final FixpointRecord record;
+    private final IndexedSatSetComputer satSetComputer;
+    private final StateSet states;
+    private final Fairness.States fairness;
+    private final StateSet fairStates;
+    private final Adjacency.Cursor successors;
+
+    /**
+     * Create a generator for the last check of a computer that recorded it.
+     * @param model model that was checked
+     * @param record record of the check
+     * @param fairness fairness constraints of the check, or null
+     * */
+    CounterexampleGenerator(Model model, FixpointRecord record, Fairness fairness) {
+        this.model = model;
+        this.record = record;
+        this.satSetComputer = new IndexedSatSetComputer(model);
+        this.satSetComputer.setFairness(fairness);
+        this.states = StateSet.full(model.getStateCount());
+        this.fairness = fairness != null && fairness.size() > 0 ? fairness.getStates(model) : null;
+        this.fairStates = this.fairness != null ? this.fairness.fair : null;
+        this.successors = model.getSuccessors().cursor();
+    }
+
+    /**
+     * Build a counterexample of a formula at a state that does not satisfy it.
+     * @param formula the checked formula in ENF
+     * @param state id of the state
+     * @return the names of the states along the counterexample, each followed by the action taken
+     * to the next one
+     * */
+    public String[] generate(StateFormula formula, int state) {
+        List<String> trace = new ArrayList<>();
+        this.counterexample(formula, state, trace);
+        return trace.toArray(new String[0]);
+    }
+
+    /**
+     * Add a counterexample of a formula that the state does not satisfy.
+     * */
+    private void counterexample(StateFormula formula, int state, List<String> trace) {
+        if (formula instanceof Not) {
+            this.witness(((Not) formula).stateFormula, state, trace);
+        } else if (formula instanceof And) {
+            And and = (And) formula;
+            StateFormula failing = this.satSet(and.left).contains(state) ? and.right : and.left;
+            this.counterexample(failing, state, trace);
+        } else if (formula instanceof Or) {
+            this.counterexample(((Or) formula).left, state, trace);
+        } else {
+            trace.add(model.getStateName(state));
+        }
+    }
+
+    /**
+     * Add a witness of a formula that the state satisfies.
+     * */
+    private void witness(StateFormula formula, int state, List<String> trace) {
+        if (formula instanceof Not) {
+            this.counterexample(((Not) formula).stateFormula, state, trace);
+        } else if (formula instanceof And) {
+            And and = (And) formula;
+            this.witness(IndexedSatSetComputer.isTemporal(and.left) ? and.left : and.right, state, trace);
+        } else if (formula instanceof Or) {
+            Or or = (Or) formula;
+            this.witness(this.satSet(or.left).contains(state) ? or.left : or.right, state, trace);
+        } else if (formula instanceof ThereExists) {
+            this.pathWitness(((ThereExists) formula).pathFormula, state, trace);
+        } else {
+            trace.add(model.getStateName(state));
+        }
+    }
+
+    private void pathWitness(PathFormula formula, int state, List<String> trace) {
+        IntList path = new IntList();
+        path.add(state);
+        // actions of the steps, with the actions of the path formula for the ones not set
+        List<ActionMask> stepActions = new ArrayList<>();
+        ActionMask actions = ActionMask.ANY;
+        if (formula instanceof Next) {
+            Next next = (Next) formula;
+            actions = this.compile(next.getActions());
+            StateSet satSet = this.satSet(next.stateFormula);
+            if (fairStates != null) {
+                satSet = satSet.copy().and(fairStates);
+            }
+            int successor = this.nextWitness(state, satSet, actions);
+            if (successor >= 0) {
+                path.add(successor);
+            }
+        } else if (formula instanceof Until) {
+            Until until = (Until) formula;
+            actions = this.compile(until.getLeftActions());
+            int[] parent = record.untilParents.get(until);
+            for (int s = parent != null ? parent[state] : -1; s >= 0; s = parent[s]) {
+                path.add(s);
+            }
+        } else if (formula instanceof Always) {
+            actions = this.compile(((Always) formula).getActions());
+            FixpointRecord.AlwaysRecord alwaysRecord = record.always.get(formula);
+            if (alwaysRecord != null) {
+                this.lasso(alwaysRecord, state, path, stepActions);
+            }
+        }
+        this.addPath(path, stepActions, actions, trace);
+    }
+
+    /**
+     * A successor via an edge with one of the actions in the set, or any successor in the set.
+     * */
+    private int nextWitness(int state, StateSet satSet, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        int any = -1;
+        for (successors.reset(state); successors.next(); ) {
+            int t = successors.neighbour();
+            if (!satSet.contains(t)) {
+                continue;
+            }
+            if (edgeActions.matches(successors.edge(), actions)) {
+                return t;
+            }
+            any = any < 0 ? t : any;
+        }
+        return any;
+    }
+
+    /**
+     * Follow the parents of the walk to a component and go round a cycle within it.
+     * */
+    private void lasso(FixpointRecord.AlwaysRecord alwaysRecord, int state, IntList path, List<ActionMask> stepActions) {
+        int s = state;
+        while (alwaysRecord.parent[s] >= 0) {
+            s = alwaysRecord.parent[s];
+            path.add(s);
+        }
+        if (!alwaysRecord.components.getCyclicStates().contains(s)) {
+            return;
+        }
+
+        // the cycle takes an edge meeting each condition, or any cycle through the state
+        int component = alwaysRecord.components.getComponent(s);
+        int current = s;
+        if (alwaysRecord.fairSources != null) {
+            for (int c = 0; c < alwaysRecord.fairSources.length; c++) {
+                int source = alwaysRecord.fairSources[c][component];
+                if (current != source && !this.pathWithin(alwaysRecord, current, source, path)) {
+                    return;
+                }
+                current = alwaysRecord.fairTargets[c][component];
+                path.add(current);
+                while (stepActions.size() < path.size() - 2) {
+                    stepActions.add(null);
+                }
+                stepActions.add(fairness.actions[c]);
+            }
+            if (current == s) {
+                return;
+            }
+        }
+        this.pathWithin(alwaysRecord, current, s, path);
+    }
+
+    /**
+     * Add a shortest path of P edges from one state to another within their component and the
+     * satisfaction set of Always, without the first state. A path from a state to itself is a cycle.
+     * @return false if there is none
+     * */
+    private boolean pathWithin(FixpointRecord.AlwaysRecord alwaysRecord, int from, int to, IntList path) {
+        SCCDecomposition components = alwaysRecord.components;
+        int component = components.getComponent(to);
+        int[] next = new int[model.getStateCount()];
+        Arrays.fill(next, -1);
+
+        // walk back from the target until the source is reached
+        IntQueue E = new IntQueue();
+        E.add(to);
+        while (!E.isEmpty() && next[from] < 0) {
+            int t = E.poll();
+            for (int i = alwaysRecord.reverse.start(t); i < alwaysRecord.reverse.end(t); i++) {
+                int s = alwaysRecord.reverse.neighbour(i);
+                if (next[s] < 0 && components.getComponent(s) == component && alwaysRecord.satSet.contains(s)) {
+                    next[s] = t;
+                    E.add(s);
+                }
+            }
+        }
+        if (next[from] < 0) {
+            return false;
+        }
+        int s = from;
+        do {
+            s = next[s];
+            path.add(s);
+        } while (s != to);
+        return true;
+    }
+
+    /**
+     * Add the names of the states of a path, with an action of an edge between each two of them.
+     * */
+    private void addPath(IntList path, List<ActionMask> stepActions, ActionMask actions, List<String> trace) {
+        trace.add(model.getStateName(path.get(0)));
+        for (int k = 1; k < path.size(); k++) {
+            ActionMask step = k - 1 < stepActions.size() ? stepActions.get(k - 1) : null;
+            trace.add(this.action(path.get(k - 1), path.get(k), step != null ? step : actions));
+            trace.add(model.getStateName(path.get(k)));
+        }
+    }
+
+    /**
+     * An action of an edge from one state to another, one of the given actions if there is such an edge.
+     * */
+    private String action(int source, int target, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        String any = "";
+        for (successors.reset(source); successors.next(); ) {
+            if (successors.neighbour() != target) {
+                continue;
+            }
+            for (int action : edgeActions.getActions(successors.edge())) {
+                if (actions.contains(action)) {
+                    return model.getAlphabet().getAction(action);
+                }
+                if (any.isEmpty()) {
+                    any = model.getAlphabet().getAction(action);
+                }
+            }
+        }
+        return any;
+    }
+
+    private StateSet satSet(StateFormula formula) {
+        StateSet satSet = record.satSets.get(formula);
+        if (satSet == null) {
+            satSet = satSetComputer.computeSatSet(formula, states, record.satSets);
+            record.satSets.put(formula, satSet);
+        }
+        return satSet;
+    }
 
-    public void generate() {
-        throw new UnsupportedOperationException("Not implemented.");
+    private ActionMask compile(Set<String> actions) {
+        return model.getAlphabet().compile(actions);
     }
 }
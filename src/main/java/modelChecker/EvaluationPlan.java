@@ -0,0 +1,333 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.Subformulas;
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.StateSet;
+import utils.IntList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A formula in ENF compiled to a flat list of operations over numbered set registers, which
+ * IndexedSatSetComputer.computeSatSet() runs in one loop instead of visiting the formula.
+ *
+ * The operations are the distinct subformulas in topological order, so equal subformulas are
+ * computed once. The formula is converted and walked without recursion, however deep it is. A register is
+ * free again after the last operation that reads it, and an operation whose operand is read for
+ * the last time writes its result over it: negation, conjunction and disjunction in place, Next and
+ * Until by handing the operand to the fixpoint, which modifies it. The other operations reuse the
+ * bitmap of a free register. The formula is compiled via its ENF, so the universal operators
+ * are computed as negated existential ones.
+ *
+ * A plan only refers to labels and action names, so the same plan can be run on any model.
+ * toString() lists the operations.
+ * */
+public class EvaluationPlan {
+
+    /**
+     * Operations of a plan.
+     * */
+    enum Op {
+        TRUE, LABEL, NOT, AND, OR, NEXT, UNTIL, ALWAYS
+    }
+
+    private final StateFormula formula;
+    private final Op[] ops;
+    private final int[] targets;
+    // registers of the operands, -1 for none, and whether they are read for the last time
+    private final int[] lefts;
+    private final int[] rights;
+    private final boolean[] leftLast;
+    private final boolean[] rightLast;
+    private final String[] labels;
+    private final List<Set<String>> leftActions;
+    private final List<Set<String>> rightActions;
+    private int registers;
+
+    private EvaluationPlan(StateFormula formula, int size) {
+        this.formula = formula;
+        this.ops = new Op[size];
+        this.targets = new int[size];
+        this.lefts = new int[size];
+        this.rights = new int[size];
+        this.leftLast = new boolean[size];
+        this.rightLast = new boolean[size];
+        this.labels = new String[size];
+        this.leftActions = new ArrayList<>(Collections.<Set<String>>nCopies(size, null));
+        this.rightActions = new ArrayList<>(Collections.<Set<String>>nCopies(size, null));
+    }
+
+    /**
+     * Compile a formula.
+     * @param formula state formula, which is converted to ENF
+     * @return the plan
+     * */
+    public static EvaluationPlan compile(StateFormula formula) {
+        // the ENF is hash-consed, so equal subformulas are one node
+        StateFormula root = new ENFConverter().convertToENF(formula);
+
+        // the distinct subformulas, each after its operands
+        List<StateFormula> nodes = Subformulas.postorder(root);
+        Map<StateFormula, Integer> index = new IdentityHashMap<>();
+        List<StateFormula[]> operands = new ArrayList<>();
+        for (StateFormula node : nodes) {
+            index.put(node, index.size());
+            operands.add(Subformulas.of(node));
+        }
+
+        EvaluationPlan plan = new EvaluationPlan(root, nodes.size());
+        plan.fill(nodes, operands, index);
+        return plan;
+    }
+
+    /**
+     * Set the operations of the nodes, with the operand registers still numbered by node.
+     * */
+    private void fill(List<StateFormula> nodes, List<StateFormula[]> operands, Map<StateFormula, Integer> index) {
+        for (int i = 0; i < nodes.size(); i++) {
+            StateFormula node = nodes.get(i);
+            StateFormula[] children = operands.get(i);
+            lefts[i] = children.length > 0 ? index.get(children[0]) : -1;
+            rights[i] = children.length > 1 ? index.get(children[1]) : -1;
+            if (node instanceof BoolProp) {
+                ops[i] = Op.TRUE;
+            } else if (node instanceof AtomicProp) {
+                ops[i] = Op.LABEL;
+                labels[i] = ((AtomicProp) node).label;
+            } else if (node instanceof Not) {
+                ops[i] = Op.NOT;
+            } else if (node instanceof And) {
+                ops[i] = Op.AND;
+            } else if (node instanceof Or) {
+                ops[i] = Op.OR;
+            } else {
+                PathFormula pathFormula = ((ThereExists) node).pathFormula;
+                if (pathFormula instanceof Next) {
+                    ops[i] = Op.NEXT;
+                    leftActions.set(i, ((Next) pathFormula).getActions());
+                } else if (pathFormula instanceof Until) {
+                    ops[i] = Op.UNTIL;
+                    leftActions.set(i, ((Until) pathFormula).getLeftActions());
+                    rightActions.set(i, ((Until) pathFormula).getRightActions());
+                } else {
+                    ops[i] = Op.ALWAYS;
+                    leftActions.set(i, ((Always) pathFormula).getActions());
+                }
+            }
+        }
+        this.assignRegisters();
+    }
+
+    /**
+     * Replace the node numbers of the operands by registers, reusing the registers of the values
+     * that are not read again.
+     * */
+    private void assignRegisters() {
+        int size = ops.length;
+        int[] lastUse = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (lefts[i] >= 0) {
+                lastUse[lefts[i]] = i;
+            }
+            if (rights[i] >= 0) {
+                lastUse[rights[i]] = i;
+            }
+        }
+        // the result is read after the last operation
+        lastUse[size - 1] = size;
+
+        int[] register = new int[size];
+        IntList free = new IntList();
+        for (int i = 0; i < size; i++) {
+            int left = lefts[i];
+            int right = rights[i];
+            boolean leftDies = left >= 0 && lastUse[left] == i;
+            boolean rightDies = right >= 0 && right != left && lastUse[right] == i;
+            lefts[i] = left >= 0 ? register[left] : -1;
+            rights[i] = right >= 0 ? register[right] : -1;
+            // a fixpoint may modify an operand it is handed, so an operand read twice is copied
+            leftLast[i] = leftDies && right != left;
+            rightLast[i] = rightDies;
+
+            // write over an operand that dies, or take a free register
+            int target;
+            if (leftDies && ops[i] != Op.ALWAYS) {
+                target = lefts[i];
+            } else if (rightDies && ops[i] != Op.ALWAYS) {
+                target = rights[i];
+            } else if (!free.isEmpty()) {
+                target = free.removeLast();
+            } else {
+                target = registers++;
+            }
+            if (leftDies && lefts[i] != target) {
+                free.add(lefts[i]);
+            }
+            if (rightDies && rights[i] != target) {
+                free.add(rights[i]);
+            }
+            register[i] = target;
+            targets[i] = target;
+        }
+    }
+
+    /**
+     * Returns the number of registers the plan uses.
+     * @return number of registers
+     * */
+    public int getRegisterCount() {
+        return registers;
+    }
+
+    /**
+     * Returns the number of operations.
+     * @return number of operations
+     * */
+    public int size() {
+        return ops.length;
+    }
+
+    public StateFormula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Run the plan.
+     * @param computer computer of the model to run the fixpoints on
+     * @param states states to compute the satisfaction set over
+     * @return set of states satisfying the formula
+     * */
+    StateSet execute(IndexedSatSetComputer computer, StateSet states) {
+        StateSet[] r = new StateSet[registers];
+        for (int i = 0; i < ops.length; i++) {
+            int target = targets[i];
+            int left = lefts[i];
+            int right = rights[i];
+            switch (ops[i]) {
+                case TRUE:
+                    this.buffer(r, target, states).assign(states);
+                    break;
+                case LABEL:
+                    this.buffer(r, target, states).assign(computer.labelled(labels[i])).and(states);
+                    break;
+                case NOT:
+                    if (target != left) {
+                        this.buffer(r, target, states).assign(r[left]);
+                    }
+                    r[target].xor(states);
+                    break;
+                case AND:
+                case OR:
+                    int other = target == left ? right : left;
+                    if (target != left && target != right) {
+                        this.buffer(r, target, states).assign(r[left]);
+                        other = right;
+                    }
+                    if (ops[i] == Op.AND) {
+                        r[target].and(r[other]);
+                    } else {
+                        r[target].or(r[other]);
+                    }
+                    break;
+                case NEXT:
+                    StateSet operand = this.take(r, left, leftLast[i]);
+                    r[target] = computer.next(operand, computer.compile(leftActions.get(i)));
+                    break;
+                case UNTIL:
+                    StateSet satSetLeft = this.take(r, left, leftLast[i]);
+                    StateSet satSetRight = this.take(r, right, rightLast[i]);
+                    r[target] = computer.until(satSetLeft, satSetRight, computer.compile(leftActions.get(i)),
+                            computer.compile(rightActions.get(i)), null);
+                    break;
+                default:
+                    r[target] = computer.always(r[left], states, computer.compile(leftActions.get(i)), null);
+            }
+        }
+        return r[targets[ops.length - 1]];
+    }
+
+    /**
+     * The bitmap of a register, allocated on its first use.
+     * */
+    private StateSet buffer(StateSet[] r, int register, StateSet states) {
+        if (r[register] == null) {
+            r[register] = new StateSet(states.size());
+        }
+        return r[register];
+    }
+
+    /**
+     * An operand for a fixpoint that modifies it: the register itself if it is read for the last
+     * time, which gives up its bitmap, or a copy.
+     * */
+    private StateSet take(StateSet[] r, int register, boolean last) {
+        if (!last) {
+            return r[register].copy();
+        }
+        StateSet operand = r[register];
+        r[register] = null;
+        return operand;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("plan of ").append(ops.length).append(" operations on ").append(registers)
+                .append(" registers for ").append(formula).append('\n');
+        for (int i = 0; i < ops.length; i++) {
+            buffer.append(String.format("%4d  r%d = ", i, targets[i]));
+            switch (ops[i]) {
+                case TRUE:
+                    buffer.append("true");
+                    break;
+                case LABEL:
+                    buffer.append("label ").append(labels[i]);
+                    break;
+                case NOT:
+                case NEXT:
+                case ALWAYS:
+                    buffer.append(ops[i].name().toLowerCase());
+                    this.appendActions(buffer, leftActions.get(i));
+                    buffer.append(" r").append(lefts[i]);
+                    break;
+                default:
+                    buffer.append(ops[i].name().toLowerCase());
+                    this.appendActions(buffer, leftActions.get(i));
+                    this.appendActions(buffer, rightActions.get(i));
+                    buffer.append(" r").append(lefts[i]).append(", r").append(rights[i]);
+            }
+            if (leftLast[i] || rightLast[i]) {
+                buffer.append("  (last read of");
+                buffer.append(leftLast[i] ? " r" + lefts[i] : "");
+                buffer.append(rightLast[i] ? " r" + rights[i] : "");
+                buffer.append(')');
+            }
+            buffer.append('\n');
+        }
+        buffer.append("      result r").append(targets[ops.length - 1]).append('\n');
+        return buffer.toString();
+    }
+
+    private void appendActions(StringBuilder buffer, Set<String> actions) {
+        if (actions != null && !actions.isEmpty()) {
+            buffer.append(new TreeSet<>(actions));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.pathFormula.Eventually;
+import formula.pathFormula.PathFormula;
+import formula.stateFormula.And;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Model;
+import model.StateSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Fairness constraints, which restrict the path quantifiers of a check to the fair paths: the
+ * infinite paths that meet each condition infinitely often. A condition is either a formula,
+ * met in the states that satisfy it, or a formula and actions, met by a transition with one of
+ * the actions into a state that satisfies the formula.
+ *
+ * A constraint formula, as passed to ModelChecker.check(), is read as a condition that holds all
+ * along a fair path:
+ * - E F_b phi or A F_b phi, without left actions, is the condition phi and actions b, so
+ *   "infinitely often act1" is AF_{act1} true,
+ * - a conjunction of those is one condition per conjunct, as G distributes over it,
+ * - any other formula phi is the condition phi, i.e. infinitely often phi.
+ *
+ * The formulas of the conditions are evaluated without fairness. Their satisfaction sets and the
+ * fair states, the states with a fair path, are computed once per model and kept with the
+ * constraints, so checking several queries under the same Fairness on a model computes them once.
+ * */
+public class Fairness {
+    private final List<StateFormula> formulas = new ArrayList<>();
+    private final List<Set<String>> actionSets = new ArrayList<>();
+
+    // evaluated conditions per model
+    private final Map<Model, States> states = new WeakHashMap<>();
+
+    /**
+     * The conditions evaluated on a model, with the fair states.
+     * */
+    static class States {
+        final StateSet[] targets;
+        final ActionMask[] actions;
+        StateSet fair;
+
+        States(StateSet[] targets, ActionMask[] actions) {
+            this.targets = targets;
+            this.actions = actions;
+        }
+    }
+
+    /**
+     * Read a constraint formula as fairness constraints, see the class comment.
+     * @param constraint constraint formula
+     * @return the fairness constraints
+     * */
+    public static Fairness of(StateFormula constraint) {
+        Fairness fairness = new Fairness();
+        fairness.add(constraint);
+        return fairness;
+    }
+
+    private void add(StateFormula constraint) {
+        if (isEventually(constraint)) {
+            Eventually eventually = (Eventually) pathFormula(constraint);
+            this.infinitelyOften(eventually.stateFormula, eventually.getRightActions());
+        } else if (constraint instanceof And && isConjunctionOfEventually(constraint)) {
+            this.add(((And) constraint).left);
+            this.add(((And) constraint).right);
+        } else {
+            this.infinitelyOften(constraint);
+        }
+    }
+
+    private static boolean isConjunctionOfEventually(StateFormula formula) {
+        if (formula instanceof And) {
+            return isConjunctionOfEventually(((And) formula).left) && isConjunctionOfEventually(((And) formula).right);
+        }
+        return isEventually(formula);
+    }
+
+    /**
+     * Whether a formula is E F_b phi or A F_b phi without left actions.
+     * */
+    private static boolean isEventually(StateFormula formula) {
+        PathFormula pathFormula = pathFormula(formula);
+        return pathFormula instanceof Eventually && ((Eventually) pathFormula).getLeftActions().isEmpty();
+    }
+
+    private static PathFormula pathFormula(StateFormula formula) {
+        if (formula instanceof ThereExists) {
+            return ((ThereExists) formula).pathFormula;
+        }
+        if (formula instanceof ForAll) {
+            return ((ForAll) formula).pathFormula;
+        }
+        return null;
+    }
+
+    /**
+     * Add the condition that a fair path visits the states satisfying a formula infinitely often.
+     * @param formula state formula
+     * @return this
+     * */
+    public Fairness infinitelyOften(StateFormula formula) {
+        return this.infinitelyOften(formula, Collections.<String>emptySet());
+    }
+
+    /**
+     * Add the condition that a fair path takes a transition with one of the actions into a state
+     * satisfying a formula infinitely often.
+     * @param formula state formula
+     * @param actions actions of the transition, empty for any
+     * @return this
+     * */
+    public synchronized Fairness infinitelyOften(StateFormula formula, Set<String> actions) {
+        formulas.add(formula);
+        actionSets.add(Collections.unmodifiableSet(new HashSet<>(actions)));
+        states.clear();
+        return this;
+    }
+
+    /**
+     * Returns the number of conditions.
+     * @return number of conditions
+     * */
+    public int size() {
+        return formulas.size();
+    }
+
+    /**
+     * Returns the states of a model that have a fair path.
+     * @param model model
+     * @return the fair states, shared and not to be modified
+     * */
+    public StateSet getFairStates(Model model) {
+        return this.getStates(model).fair;
+    }
+
+    /**
+     * Evaluate the conditions on a model and compute its fair states, or return them if they have been.
+     * */
+    synchronized States getStates(Model model) {
+        States result = states.get(model);
+        if (result != null) {
+            return result;
+        }
+        IndexedSatSetComputer satSetComputer = new IndexedSatSetComputer(model);
+        StateSet all = StateSet.full(model.getStateCount());
+        StateSet[] targets = new StateSet[formulas.size()];
+        ActionMask[] actions = new ActionMask[formulas.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = satSetComputer.computeSatSet(new ENFConverter().convertToENF(formulas.get(i)), all);
+            actions[i] = model.getAlphabet().compile(actionSets.get(i));
+        }
+        result = new States(targets, actions);
+
+        // the fair states satisfy fair EG true
+        result.fair = satSetComputer.fairAlways(all, ActionMask.ANY, result, null);
+        states.put(model, result);
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package modelChecker;
+
+import formula.pathFormula.PathFormula;
+import formula.stateFormula.StateFormula;
+import model.Adjacency;
+import model.StateSet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the fixpoints of a check left behind for the witnesses of its path formulas, recorded by
+ * IndexedSatSetComputer if recording is on, and read by CounterexampleGenerator.
+ * */
+class FixpointRecord {
+
+    // satisfaction sets of the subformulas other than propositions
+    Map<StateFormula, StateSet> satSets;
+
+    // per Until, the state each state was added to the fixpoint from, -1 for the states of the right formula
+    final Map<PathFormula, int[]> untilParents = new ConcurrentHashMap<>();
+
+    // per Always, the subgraph its fixpoint ran on
+    final Map<PathFormula, AlwaysRecord> always = new ConcurrentHashMap<>();
+
+    /**
+     * The fixpoint of an Always formula over the strongly connected components of its P edges, see
+     * IndexedSatSetComputer.keepReachingCycles().
+     * */
+    static class AlwaysRecord {
+        // the states that remain
+        StateSet satSet;
+        // the P edge each state was reached by walking back from the components, -1 for the
+        // states the walk started from and the states it did not reach
+        int[] parent;
+        SCCDecomposition components;
+        Adjacency reverse;
+        // per fairness condition and component, an edge within the component that meets the
+        // condition, if the fixpoint was restricted to fair paths
+        int[][] fairSources;
+        int[][] fairTargets;
+    }
+}
@@ -0,0 +1,389 @@
+package modelChecker;
+
+import model.Adjacency;
+import model.StateSet;
+import utils.IntList;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Parallel decomposition of a graph into strongly connected components with the forward-backward
+ * algorithm on a ForkJoinPool.
+ *
+ * Every state carries the color of the partition it is in. A partition is first trimmed of the
+ * states without predecessors or successors in it, which are components of their own. Then the
+ * states reachable forwards and backwards from a pivot are colored: those reached both ways are
+ * the component of the pivot, and the rest falls apart into the states reached forwards only,
+ * backwards only and not at all. No component crosses these three partitions, so they are
+ * decomposed as independent tasks. Large frontiers of the searches are expanded in parallel too,
+ * claiming states by compare and set on their colors; small partitions are left to Tarjan, and
+ * so is the rest of a partition if its pivot reached only a small part of it, as the rest then
+ * tends to consist of many small components that would each cost a search over all of it.
+ *
+ * A partition task forks its children without waiting for them, so that a long chain of small
+ * components does not nest joins as deep as the chain; the decomposition is complete when the
+ * count of pending tasks drops to zero.
+ *
+ * The arrays indexed by state are shared by all tasks, each of which only writes the states of
+ * its own partition.
+ * */
+class ForwardBackwardSCC {
+    private static final int DONE = -2;
+
+    private final Adjacency graph;
+    private final Adjacency reverse;
+
+    // partitions of at most this many states are decomposed by Tarjan's algorithm
+    int sequentialSize = 4096;
+    // frontiers of at least this many states are expanded in parallel
+    int parallelFrontier = 8192;
+    // a pivot that reaches less than this fraction of its partition leaves the rest to Tarjan
+    private static final int FRAGMENTED = 16;
+
+    private int[] components;
+    private int[] index;
+    private int[] low;
+    private int[] inDegrees;
+    private int[] outDegrees;
+    private boolean[] cyclic;
+    private AtomicIntegerArray colors;
+    private final AtomicInteger colorCount = new AtomicInteger();
+    private final AtomicInteger componentCount = new AtomicInteger();
+
+    // partition tasks not finished yet, and the first failure of one
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    ForwardBackwardSCC(Adjacency graph, Adjacency reverse) {
+        this.graph = graph;
+        this.reverse = reverse;
+    }
+
+    /**
+     * Decompose the subgraph over the given states on a pool of its own.
+     * @param vertices states of the graph
+     * @param threads number of threads
+     * @return the decomposition
+     * */
+    SCCDecomposition decompose(StateSet vertices, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return this.decompose(vertices, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Decompose the subgraph over the given states on a pool, which may be the one of the calling thread.
+     * @param vertices states of the graph
+     * @param pool pool to run the tasks on
+     * @return the decomposition
+     * */
+    SCCDecomposition decompose(StateSet vertices, ForkJoinPool pool) {
+        int stateCount = graph.getStateCount();
+        components = new int[stateCount];
+        Arrays.fill(components, SCCDecomposition.NONE);
+        index = new int[stateCount];
+        Arrays.fill(index, SCCDecomposition.NONE);
+        low = new int[stateCount];
+        inDegrees = new int[stateCount];
+        outDegrees = new int[stateCount];
+        cyclic = new boolean[stateCount];
+        colors = new AtomicIntegerArray(stateCount);
+
+        int color = colorCount.getAndIncrement();
+        int[] members = new int[vertices.cardinality()];
+        int k = 0;
+        for (int s = 0; s < stateCount; s++) {
+            if (vertices.contains(s)) {
+                members[k++] = s;
+            } else {
+                colors.set(s, DONE);
+            }
+        }
+
+        // a worker of the pool that waits lets the pool make up for it with another thread
+        pending.set(1);
+        pool.execute(new Partition(members, members.length, color, false));
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    done.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return done.getCount() == 0;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decomposing", e);
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Decomposition failed", failure);
+        }
+        return new SCCDecomposition(components, componentCount.get(), SCCDecomposition.cyclicStates(cyclic));
+    }
+
+    /**
+     * Decomposes the states of one color.
+     * */
+    private class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] members;
+        private final int size;
+        private final int color;
+        private final boolean fragmented;
+
+        Partition(int[] members, int size, int color, boolean fragmented) {
+            this.members = members;
+            this.size = size;
+            this.color = color;
+            this.fragmented = fragmented;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (failure == null) {
+                    this.decomposePartition();
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void decomposePartition() {
+            int remaining = trim(members, size, color);
+            if (remaining == 0) {
+                return;
+            }
+            if (remaining <= sequentialSize || fragmented) {
+                SCCDecomposition.tarjan(members, size, graph, colors, color,
+                        index, low, components, cyclic, componentCount);
+                return;
+            }
+
+            // a pivot spread over the partition, so that chains of components are split in the middle
+            int pivot = SCCDecomposition.NONE;
+            int first = (int) (((color * 0x9e3779b97f4a7c15L) >>> 33) % size);
+            for (int i = 0; pivot == SCCDecomposition.NONE; i++) {
+                int s = members[(first + i) % size];
+                if (colors.get(s) == color) {
+                    pivot = s;
+                }
+            }
+
+            // forwards from the pivot, then backwards through the forward and the unreached states
+            int forward = colorCount.getAndIncrement();
+            int backward = colorCount.getAndIncrement();
+            int both = colorCount.getAndIncrement();
+            colors.set(pivot, forward);
+            search(graph, pivot, color, forward, SCCDecomposition.NONE, SCCDecomposition.NONE);
+            colors.set(pivot, both);
+            search(reverse, pivot, forward, both, color, backward);
+
+            // the component of the pivot and the three partitions left
+            IntList component = new IntList();
+            IntList forwardOnly = new IntList();
+            IntList backwardOnly = new IntList();
+            IntList unreached = new IntList();
+            for (int i = 0; i < size; i++) {
+                int s = members[i];
+                int c = colors.get(s);
+                if (c == both) {
+                    component.add(s);
+                } else if (c == forward) {
+                    forwardOnly.add(s);
+                } else if (c == backward) {
+                    backwardOnly.add(s);
+                } else if (c == color) {
+                    unreached.add(s);
+                }
+            }
+            int number = componentCount.getAndIncrement();
+            boolean hasCycle = component.size() > 1 || SCCDecomposition.hasSelfLoop(graph, pivot);
+            for (int i = 0; i < component.size(); i++) {
+                components[component.get(i)] = number;
+                cyclic[component.get(i)] = hasCycle;
+            }
+            // many small components peeled one at a time would make the search quadratic
+            boolean fragmented = (remaining - unreached.size()) * FRAGMENTED < remaining;
+            this.forkPartition(forwardOnly, forward, false);
+            this.forkPartition(backwardOnly, backward, false);
+            this.forkPartition(unreached, color, fragmented);
+        }
+
+        private void forkPartition(IntList states, int color, boolean fragmented) {
+            if (!states.isEmpty()) {
+                pending.incrementAndGet();
+                new Partition(states.toArray(), states.size(), color, fragmented).fork();
+            }
+        }
+    }
+
+    /**
+     * Remove the states without predecessors or successors of the same color, repeatedly, as
+     * components of their own.
+     * @return number of states left with the color
+     * */
+    private int trim(int[] members, int size, int color) {
+        IntList queue = new IntList();
+        for (int i = 0; i < size; i++) {
+            int s = members[i];
+            int in = 0;
+            int out = 0;
+            for (int p = reverse.start(s); p < reverse.end(s); p++) {
+                if (colors.get(reverse.neighbour(p)) == color) {
+                    in++;
+                }
+            }
+            for (int p = graph.start(s); p < graph.end(s); p++) {
+                if (colors.get(graph.neighbour(p)) == color) {
+                    out++;
+                }
+            }
+            inDegrees[s] = in;
+            outDegrees[s] = out;
+        }
+        for (int i = 0; i < size; i++) {
+            int s = members[i];
+            if (inDegrees[s] == 0 || outDegrees[s] == 0) {
+                queue.add(s);
+            }
+        }
+        for (int i = 0; i < queue.size(); i++) {
+            colors.set(queue.get(i), DONE);
+        }
+
+        // a trimmed state has no self loop, so its component is acyclic
+        for (int i = 0; i < queue.size(); i++) {
+            int s = queue.get(i);
+            components[s] = componentCount.getAndIncrement();
+            for (int p = graph.start(s); p < graph.end(s); p++) {
+                int t = graph.neighbour(p);
+                if (colors.get(t) == color && --inDegrees[t] == 0) {
+                    colors.set(t, DONE);
+                    queue.add(t);
+                }
+            }
+            for (int p = reverse.start(s); p < reverse.end(s); p++) {
+                int t = reverse.neighbour(p);
+                if (colors.get(t) == color && --outDegrees[t] == 0) {
+                    colors.set(t, DONE);
+                    queue.add(t);
+                }
+            }
+        }
+        return size - queue.size();
+    }
+
+    /**
+     * Breadth first search from a state over the states of one or two colors, which are recolored
+     * when they are reached.
+     * @param edges edges to follow
+     * @param start state to start from
+     * @param from first color to search
+     * @param to new color of the states of the first color
+     * @param otherFrom second color to search, or -1
+     * @param otherTo new color of the states of the second color
+     * */
+    private void search(Adjacency edges, int start, int from, int to, int otherFrom, int otherTo) {
+        IntList frontier = new IntList();
+        frontier.add(start);
+        int chunk = Math.max(1, parallelFrontier / 4);
+        while (!frontier.isEmpty()) {
+            int[] states = frontier.toArray();
+            if (states.length < parallelFrontier) {
+                frontier = expand(edges, states, 0, states.length, from, to, otherFrom, otherTo);
+                continue;
+            }
+
+            // expand chunks of the frontier in parallel and concatenate what they found
+            IntList[] found = new IntList[(states.length + chunk - 1) / chunk];
+            new Expansion(edges, states, chunk, 0, found.length, from, to, otherFrom, otherTo, found).invoke();
+            frontier = new IntList();
+            for (IntList part : found) {
+                for (int i = 0; i < part.size(); i++) {
+                    frontier.add(part.get(i));
+                }
+            }
+        }
+    }
+
+    private IntList expand(Adjacency edges, int[] frontier, int begin, int end,
+                           int from, int to, int otherFrom, int otherTo) {
+        IntList next = new IntList();
+        for (int i = begin; i < end; i++) {
+            int s = frontier[i];
+            for (int p = edges.start(s); p < edges.end(s); p++) {
+                int t = edges.neighbour(p);
+                int c = colors.get(t);
+                if ((c == from && colors.compareAndSet(t, from, to))
+                        || (c == otherFrom && c != SCCDecomposition.NONE && colors.compareAndSet(t, otherFrom, otherTo))) {
+                    next.add(t);
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Expands a range of chunks of a frontier, splitting it in halves while it has more than one.
+     * */
+    private class Expansion extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Adjacency edges;
+        private final int[] frontier;
+        private final int chunk;
+        private final int begin;
+        private final int end;
+        private final int from;
+        private final int to;
+        private final int otherFrom;
+        private final int otherTo;
+        private final IntList[] found;
+
+        Expansion(Adjacency edges, int[] frontier, int chunk, int begin, int end,
+                  int from, int to, int otherFrom, int otherTo, IntList[] found) {
+            this.edges = edges;
+            this.frontier = frontier;
+            this.chunk = chunk;
+            this.begin = begin;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+            this.otherFrom = otherFrom;
+            this.otherTo = otherTo;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin == 1) {
+                found[begin] = expand(edges, frontier, begin * chunk, Math.min(frontier.length, (begin + 1) * chunk),
+                        from, to, otherFrom, otherTo);
+                return;
+            }
+            int middle = (begin + end) >>> 1;
+            invokeAll(new Expansion(edges, frontier, chunk, begin, middle, from, to, otherFrom, otherTo, found),
+                    new Expansion(edges, frontier, chunk, middle, end, from, to, otherFrom, otherTo, found));
+        }
+    }
+}
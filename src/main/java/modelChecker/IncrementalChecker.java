@@ -0,0 +1,643 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.FormulaFactory;
+import formula.FormulaSimplifier;
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.Not;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.MutableModel;
+import model.StateSet;
+import utils.IntList;
+import utils.IntQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Check formulas against a MutableModel again after it has been edited, recomputing only the
+ * states that the edits can affect.
+ *
+ * The satisfaction set of every node of the ENF is kept, on a FormulaFactory shared by all
+ * formulas checked, so each node is computed once per version of the model. After edits, a node
+ * is evaluated against its set on the previous version, given the states at which its
+ * subformulas changed and the end points of the edited transitions (the dirty states):
+ * - propositions are looked up again,
+ * - Not and And are recomputed at the states where a subformula changed,
+ * - EX at the changed states and their predecessors,
+ * - EU by delete and rederive, over the ranks the fixpoint gave its states,
+ * - EG by adding the states that may have become true to its previous set, and continuing the
+ *   counting fixpoint from there.
+ * Other nodes, and the nodes that were not checked on the previous version, are computed in full.
+ * The sets are the same as a full check of the edited model with IndexedSatSetComputer.
+ *
+ * The checker owns the dirty states of the model, and clears them when it picks up the edits.
+ * */
+public class IncrementalChecker {
+    private final MutableModel mutableModel;
+    private final FormulaFactory factory = new FormulaFactory();
+    private final ENFConverter converter = new ENFConverter(factory);
+    private final FormulaSimplifier simplifier = new FormulaSimplifier(factory);
+
+    private Model model;
+    private IndexedSatSetComputer satSetComputer;
+    private StateSet states;
+    private StateSet edgeDirty;
+
+    // sets of the nodes on the current version of the model, and on the previous one
+    private Map<StateFormula, StateSet> satSets = new HashMap<>();
+    private Map<StateFormula, StateSet> previous = new HashMap<>();
+    // states at which a node changed from the previous version
+    private final Map<StateFormula, StateSet> changed = new HashMap<>();
+    // ranks of the states satisfying the EU nodes, see computeUntil()
+    private Map<StateFormula, int[]> ranks = new HashMap<>();
+    private Map<StateFormula, int[]> previousRanks = new HashMap<>();
+
+    // states recomputed and states evaluated by the last check
+    private long recomputed;
+    private long evaluated;
+
+    // scratch space
+    private Adjacency.Cursor successors;
+    private Adjacency.Cursor predecessors;
+    // for the action filters, which are tested while the other two are in use
+    private Adjacency.Cursor incoming;
+    private Adjacency.Cursor outgoing;
+    private int[] count;
+    private StateSet marked;
+    private StateSet blocked;
+    private final IntList preBuffer = new IntList();
+
+    public IncrementalChecker(MutableModel mutableModel) {
+        this.mutableModel = mutableModel;
+    }
+
+    /**
+     * Check a formula on the model with the edits so far.
+     * @param query formula to check
+     * @return true if all initial states satisfy the formula
+     * */
+    public boolean check(StateFormula query) {
+        StateSet satSet = this.computeSatSet(query);
+        return satSet.containsAll(model.getInitialStateSet());
+    }
+
+    /**
+     * Compute the satisfaction set of a formula on the model with the edits so far.
+     * @param query formula to check
+     * @return set of states satisfying the formula
+     * */
+    public StateSet computeSatSet(StateFormula query) {
+        this.refresh();
+        recomputed = 0;
+        evaluated = 0;
+        StateFormula enf = simplifier.simplify(converter.convertToENF(query));
+        return this.evaluate(enf).copy();
+    }
+
+    /**
+     * Returns the model the last check ran on.
+     * @return model, or null before the first check
+     * */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Fraction of the states of the nodes evaluated by the last check that were recomputed,
+     * 1 for a check from scratch. Nodes already computed on this version count as neither.
+     * @return recomputed states over evaluated states
+     * */
+    public double getRecomputedFraction() {
+        return evaluated == 0 ? 0 : (double) recomputed / evaluated;
+    }
+
+    /**
+     * Pick up the edits of the model: the sets of this version become the previous ones.
+     * */
+    private void refresh() {
+        if (model != null && !mutableModel.isDirty()) {
+            return;
+        }
+        if (model != null) {
+            edgeDirty = mutableModel.getEdgeDirtyStates();
+            previous = satSets;
+            satSets = new HashMap<>();
+            previousRanks = ranks;
+            ranks = new HashMap<>();
+            changed.clear();
+        }
+        model = mutableModel.toModel();
+        mutableModel.clearDirty();
+
+        int stateCount = model.getStateCount();
+        satSetComputer = new IndexedSatSetComputer(model);
+        satSetComputer.setThreads(1);
+        states = StateSet.full(stateCount);
+        successors = model.getSuccessors().cursor();
+        predecessors = model.getPredecessors().cursor();
+        incoming = model.getPredecessors().cursor();
+        outgoing = model.getSuccessors().cursor();
+        count = new int[stateCount];
+        marked = new StateSet(stateCount);
+        blocked = new StateSet(stateCount);
+    }
+
+    /**
+     * Satisfaction set of a node on this version, computed if it is new. The set is shared and
+     * must not be modified.
+     * */
+    private StateSet evaluate(StateFormula formula) {
+        StateSet satSet = satSets.get(formula);
+        if (satSet != null) {
+            return satSet;
+        }
+        List<StateFormula> children = children(formula);
+        for (StateFormula child : children) {
+            this.evaluate(child);
+        }
+        evaluated += states.size();
+
+        StateSet old = previous.get(formula);
+        if (old == null) {
+            satSet = this.computeFully(formula, children);
+            changed.put(formula, states);
+        } else {
+            satSet = this.recompute(formula, children, old);
+            changed.put(formula, satSet.copy().andNot(old).or(old.copy().andNot(satSet)));
+        }
+        satSets.put(formula, satSet);
+        return satSet;
+    }
+
+    private StateSet computeFully(StateFormula formula, List<StateFormula> children) {
+        Map<StateFormula, StateSet> known = new HashMap<>();
+        for (StateFormula child : children) {
+            known.put(child, satSets.get(child));
+        }
+        recomputed += states.size();
+        if (formula instanceof ThereExists && ((ThereExists) formula).pathFormula instanceof Until) {
+            return this.computeUntil((ThereExists) formula);
+        }
+        return satSetComputer.computeSatSet(formula, states, known);
+    }
+
+    private StateSet recompute(StateFormula formula, List<StateFormula> children, StateSet old) {
+        if (formula instanceof AtomicProp || formula instanceof BoolProp) {
+            StateSet satSet = satSetComputer.computeSatSet(formula, states);
+            recomputed += satSet.copy().andNot(old).or(old.copy().andNot(satSet)).cardinality();
+            return satSet;
+        }
+        if (formula instanceof Not) {
+            return this.recomputeNot((Not) formula, old);
+        }
+        if (formula instanceof And) {
+            return this.recomputeAnd((And) formula, old);
+        }
+        if (formula instanceof ThereExists) {
+            PathFormula pathFormula = ((ThereExists) formula).pathFormula;
+            if (pathFormula instanceof Next) {
+                return this.recomputeNext((Next) pathFormula, old);
+            }
+            if (pathFormula instanceof Until) {
+                return this.recomputeUntil((ThereExists) formula, old);
+            }
+            if (pathFormula instanceof Always) {
+                return this.recomputeAlways((Always) pathFormula, old);
+            }
+        }
+        return this.computeFully(formula, children);
+    }
+
+    private StateSet recomputeNot(Not formula, StateSet old) {
+        StateSet child = satSets.get(formula.stateFormula);
+        StateSet region = changed.get(formula.stateFormula);
+        StateSet satSet = old.copy();
+        for (int s = region.nextSetBit(0); s >= 0; s = region.nextSetBit(s + 1)) {
+            set(satSet, s, !child.contains(s));
+        }
+        recomputed += region.cardinality();
+        return satSet;
+    }
+
+    private StateSet recomputeAnd(And formula, StateSet old) {
+        StateSet left = satSets.get(formula.left);
+        StateSet right = satSets.get(formula.right);
+        StateSet region = changed.get(formula.left).copy().or(changed.get(formula.right));
+        StateSet satSet = old.copy();
+        for (int s = region.nextSetBit(0); s >= 0; s = region.nextSetBit(s + 1)) {
+            set(satSet, s, left.contains(s) && right.contains(s));
+        }
+        recomputed += region.cardinality();
+        return satSet;
+    }
+
+    /**
+     * EX: a state changes if it has an edited transition, or a successor that changed.
+     * */
+    private StateSet recomputeNext(Next formula, StateSet old) {
+        ActionMask actions = this.compile(formula);
+        StateSet child = satSets.get(formula.stateFormula);
+        StateSet seeds = changed.get(formula.stateFormula).copy().or(edgeDirty);
+        StateSet region = edgeDirty.copy();
+        for (int t = seeds.nextSetBit(0); t >= 0; t = seeds.nextSetBit(t + 1)) {
+            for (predecessors.reset(t); predecessors.next(); ) {
+                region.add(predecessors.neighbour());
+            }
+        }
+
+        StateSet satSet = old.copy();
+        for (int s = region.nextSetBit(0); s >= 0; s = region.nextSetBit(s + 1)) {
+            boolean sat = false;
+            if (this.hasOutgoing(s, actions)) {
+                for (successors.reset(s); successors.next() && !sat; ) {
+                    int t = successors.neighbour();
+                    sat = child.contains(t) && this.hasIncoming(t, actions);
+                }
+            }
+            set(satSet, s, sat);
+        }
+        recomputed += region.cardinality();
+        return satSet;
+    }
+
+    /**
+     * EU computed from scratch as in IndexedSatSetComputer, keeping the rank of every satisfying
+     * state: 0 for the filtered right states, and one more than the successor it was reached from
+     * for the others.
+     * */
+    private StateSet computeUntil(ThereExists formula) {
+        Until until = (Until) formula.pathFormula;
+        ActionMask rightActions = model.getAlphabet().compile(until.getRightActions());
+        StateSet right = satSets.get(until.right);
+
+        int[] rank = new int[states.size()];
+        StateSet T = new StateSet(states.size());
+        IntQueue E = new IntQueue();
+        for (int s = right.nextSetBit(0); s >= 0; s = right.nextSetBit(s + 1)) {
+            if (this.hasIncoming(s, rightActions)) {
+                T.add(s);
+                E.add(s);
+            }
+        }
+        this.extendUntil(until, T, rank, E);
+        ranks.put(formula, rank);
+        return T;
+    }
+
+    /**
+     * The backward fixpoint of EU from the states in the worklist, ranking the states it adds.
+     * @return number of states added
+     * */
+    private int extendUntil(Until formula, StateSet T, int[] rank, IntQueue E) {
+        ActionMask leftActions = model.getAlphabet().compile(formula.getLeftActions());
+        StateSet left = satSets.get(formula.left);
+        int added = 0;
+        while (!E.isEmpty()) {
+            int t = E.poll();
+            int preCount = this.preStatesWithActions(t, leftActions);
+            for (int k = 0; k < preCount; k++) {
+                int s = preBuffer.get(k);
+                if (!T.contains(s) && left.contains(s) && this.hasOutgoing(s, leftActions)) {
+                    T.add(s);
+                    rank[s] = rank[t] + 1;
+                    E.add(s);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * EU by delete and rederive. A satisfying state that is not dirty keeps its value as long as
+     * a successor of lower rank does, so the states are deleted in the order of their ranks,
+     * starting from the dirty ones, only if no such successor is left. The fixpoint then grows
+     * again from the deleted and dirty states, ranking the states it adds.
+     * */
+    private StateSet recomputeUntil(ThereExists formula, StateSet old) {
+        Until until = (Until) formula.pathFormula;
+        ActionMask leftActions = model.getAlphabet().compile(until.getLeftActions());
+        ActionMask rightActions = model.getAlphabet().compile(until.getRightActions());
+        StateSet right = satSets.get(until.right);
+        int[] oldRank = previousRanks.get(formula);
+        StateSet dirty = changed.get(until.left).copy().or(changed.get(until.right)).or(edgeDirty);
+
+        // delete the dirty states, then the states that lost all their successors of lower rank
+        StateSet deleted = old.copy().and(dirty);
+        StateSet checked = new StateSet(states.size());
+        PriorityQueue<Long> byRank = new PriorityQueue<>();
+        for (int s = deleted.nextSetBit(0); s >= 0; s = deleted.nextSetBit(s + 1)) {
+            this.addPredecessors(byRank, s, old, deleted, oldRank);
+        }
+        while (!byRank.isEmpty()) {
+            int s = (int) (long) byRank.poll();
+            if (deleted.contains(s) || !checked.add(s)) {
+                continue;
+            }
+            if (!this.hasLowerSuccessor(s, old, deleted, oldRank, leftActions)) {
+                deleted.add(s);
+                this.addPredecessors(byRank, s, old, deleted, oldRank);
+            }
+        }
+
+        // rederive from the right states among them, and from the satisfying successors
+        StateSet T = old.copy().andNot(deleted);
+        int[] rank = oldRank.clone();
+        StateSet candidates = deleted.copy().or(dirty);
+        StateSet seeded = new StateSet(states.size());
+        IntQueue E = new IntQueue();
+        for (int s = candidates.nextSetBit(0); s >= 0; s = candidates.nextSetBit(s + 1)) {
+            if (right.contains(s) && this.hasIncoming(s, rightActions)) {
+                T.add(s);
+                rank[s] = 0;
+                seeded.add(s);
+                E.add(s);
+            }
+        }
+        for (int s = candidates.nextSetBit(0); s >= 0; s = candidates.nextSetBit(s + 1)) {
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (T.contains(t) && seeded.add(t)) {
+                    E.add(t);
+                }
+            }
+        }
+        int added = this.extendUntil(until, T, rank, E);
+        ranks.put(formula, rank);
+        recomputed += candidates.cardinality() + checked.cardinality() + added;
+        return T;
+    }
+
+    /**
+     * Queue the satisfying predecessors of a deleted state that may have depended on it.
+     * */
+    private void addPredecessors(PriorityQueue<Long> byRank, int t, StateSet old, StateSet deleted, int[] rank) {
+        for (predecessors.reset(t); predecessors.next(); ) {
+            int s = predecessors.neighbour();
+            if (old.contains(s) && !deleted.contains(s) && rank[s] > rank[t]) {
+                byRank.add(((long) rank[s] << 32) | s);
+            }
+        }
+    }
+
+    /**
+     * Whether a satisfying state that is not dirty still has a satisfying successor of lower rank,
+     * all of whose transitions from the state have one of the left actions.
+     * */
+    private boolean hasLowerSuccessor(int s, StateSet old, StateSet deleted, int[] rank, ActionMask leftActions) {
+        if (rank[s] == 0) {
+            // a right state
+            return true;
+        }
+        EdgeActions edgeActions = model.getEdgeActions();
+        for (successors.reset(s); successors.next(); ) {
+            if (!edgeActions.matches(successors.edge(), leftActions)) {
+                blocked.add(successors.neighbour());
+            }
+        }
+        boolean found = false;
+        for (successors.reset(s); successors.next() && !found; ) {
+            int t = successors.neighbour();
+            found = old.contains(t) && !deleted.contains(t) && rank[t] < rank[s] && !blocked.contains(t);
+        }
+        for (successors.reset(s); successors.next(); ) {
+            blocked.remove(successors.neighbour());
+        }
+        return found;
+    }
+
+    /**
+     * EG: a state can only become true if it reaches a dirty state backwards through filtered
+     * states that were false, so those are added to the old set, and the counting fixpoint of
+     * IndexedSatSetComputer continues from there. The successors of a state are only counted
+     * once the fixpoint reaches it.
+     * */
+    private StateSet recomputeAlways(Always formula, StateSet old) {
+        ActionMask actions = this.compile(formula);
+        StateSet phi = satSets.get(formula.stateFormula);
+        StateSet initialStates = model.getInitialStateSet();
+        StateSet dirty = changed.get(formula.stateFormula).copy().or(edgeDirty);
+
+        // the states that may become true
+        StateSet gained = dirty.copy();
+        IntQueue E = new IntQueue();
+        for (int s = dirty.nextSetBit(0); s >= 0; s = dirty.nextSetBit(s + 1)) {
+            E.add(s);
+        }
+        while (!E.isEmpty()) {
+            int t = E.poll();
+            for (predecessors.reset(t); predecessors.next(); ) {
+                int s = predecessors.neighbour();
+                if (!gained.contains(s) && !old.contains(s) && this.isFilteredAlways(s, phi, initialStates, actions)) {
+                    gained.add(s);
+                    E.add(s);
+                }
+            }
+        }
+        StateSet T = old.copy().andNot(dirty);
+        for (int s = gained.nextSetBit(0); s >= 0; s = gained.nextSetBit(s + 1)) {
+            if (this.isFilteredAlways(s, phi, initialStates, actions)) {
+                T.add(s);
+            }
+        }
+
+        // count the states whose successors changed, then remove the ones without successors left
+        StateSet toCount = gained.copy();
+        for (int t = dirty.nextSetBit(0); t >= 0; t = dirty.nextSetBit(t + 1)) {
+            for (predecessors.reset(t); predecessors.next(); ) {
+                toCount.add(predecessors.neighbour());
+            }
+        }
+        toCount.and(T);
+        StateSet counted = new StateSet(states.size());
+        StateSet pending = new StateSet(states.size());
+        IntList removed = new IntList();
+        for (int s = toCount.nextSetBit(0); s >= 0; s = toCount.nextSetBit(s + 1)) {
+            if (this.countRemaining(s, T, pending, counted, actions)) {
+                removed.add(s);
+            }
+        }
+        for (int k = 0; k < removed.size(); k++) {
+            T.remove(removed.get(k));
+            pending.add(removed.get(k));
+            E.add(removed.get(k));
+        }
+        while (!E.isEmpty()) {
+            int t = E.poll();
+            pending.remove(t);
+            int preCount = this.preStatesWithActions(t, actions);
+            for (int k = 0; k < preCount; k++) {
+                int s = preBuffer.get(k);
+                if (!T.contains(s)) {
+                    continue;
+                }
+                boolean remove = counted.contains(s) ? --count[s] == 0 : this.countRemaining(s, T, pending, counted, actions);
+                if (remove) {
+                    T.remove(s);
+                    pending.add(s);
+                    E.add(s);
+                }
+            }
+        }
+
+        for (int s = counted.nextSetBit(0); s >= 0; s = counted.nextSetBit(s + 1)) {
+            count[s] = 0;
+        }
+        recomputed += gained.cardinality() + counted.cardinality();
+        return T;
+    }
+
+    /**
+     * Count the successors of a state as countSuccessors() does, less the ones removeWithoutSuccessors()
+     * has taken out of the set so far, into count[].
+     * @return whether the state has to be removed
+     * */
+    private boolean countRemaining(int s, StateSet T, StateSet pending, StateSet counted, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        for (successors.reset(s); successors.next(); ) {
+            if (!edgeActions.matches(successors.edge(), actions)) {
+                blocked.add(successors.neighbour());
+            }
+        }
+        int total = 0;
+        int removedCount = 0;
+        for (successors.reset(s); successors.next(); ) {
+            int t = successors.neighbour();
+            if (!marked.add(t)) {
+                continue;
+            }
+            if (this.hasIncoming(t, actions) && this.hasOutgoing(t, actions)) {
+                total++;
+            }
+            // t has been taken out, and s is one of the predecessors it decrements
+            if (!T.contains(t) && !pending.contains(t) && !blocked.contains(t)) {
+                removedCount++;
+            }
+        }
+        for (successors.reset(s); successors.next(); ) {
+            marked.remove(successors.neighbour());
+            blocked.remove(successors.neighbour());
+        }
+        counted.add(s);
+        count[s] = total - removedCount;
+        return total > 0 && count[s] <= 0;
+    }
+
+    /**
+     * Whether a state is in the set the fixpoint of EG starts from, see IndexedSatSetComputer.filterAlways().
+     * */
+    private boolean isFilteredAlways(int s, StateSet phi, StateSet initialStates, ActionMask actions) {
+        return phi.contains(s) && (initialStates.contains(s) || this.hasIncoming(s, actions))
+                && this.hasOutgoing(s, actions);
+    }
+
+    /**
+     * Whether a state has an incoming transition with one of the actions; always true for ANY,
+     * as the filters of IndexedSatSetComputer do nothing then.
+     * */
+    private boolean hasIncoming(int s, ActionMask actions) {
+        return actions.isAny() || this.hasEdge(incoming, s, actions);
+    }
+
+    /**
+     * Whether a state has an outgoing transition with one of the actions; always true for ANY.
+     * */
+    private boolean hasOutgoing(int s, ActionMask actions) {
+        return actions.isAny() || this.hasEdge(outgoing, s, actions);
+    }
+
+    private boolean hasEdge(Adjacency.Cursor adjacency, int s, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        for (adjacency.reset(s); adjacency.next(); ) {
+            if (edgeActions.matches(adjacency.edge(), actions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The distinct predecessors of a state whose transitions into it all have one of the actions,
+     * into preBuffer, as in IndexedSatSetComputer.
+     * */
+    private int preStatesWithActions(int target, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        preBuffer.clear();
+        for (predecessors.reset(target); predecessors.next(); ) {
+            int s = predecessors.neighbour();
+            if (!edgeActions.matches(predecessors.edge(), actions)) {
+                blocked.add(s);
+            }
+            if (marked.add(s)) {
+                preBuffer.add(s);
+            }
+        }
+        int kept = 0;
+        for (int k = 0; k < preBuffer.size(); k++) {
+            int s = preBuffer.get(k);
+            marked.remove(s);
+            if (!blocked.remove(s)) {
+                preBuffer.set(kept++, s);
+            }
+        }
+        return kept;
+    }
+
+    private ActionMask compile(Next formula) {
+        return model.getAlphabet().compile(formula.getActions());
+    }
+
+    private ActionMask compile(Always formula) {
+        return model.getAlphabet().compile(formula.getActions());
+    }
+
+    private static void set(StateSet satSet, int s, boolean value) {
+        if (value) {
+            satSet.add(s);
+        } else {
+            satSet.remove(s);
+        }
+    }
+
+    /**
+     * The state subformulas a node is computed from.
+     * */
+    private static List<StateFormula> children(StateFormula formula) {
+        List<StateFormula> children = new ArrayList<>(2);
+        if (formula instanceof Not) {
+            children.add(((Not) formula).stateFormula);
+        } else if (formula instanceof And) {
+            children.add(((And) formula).left);
+            children.add(((And) formula).right);
+        } else if (formula instanceof ThereExists) {
+            PathFormula pathFormula = ((ThereExists) formula).pathFormula;
+            if (pathFormula instanceof Next) {
+                children.add(((Next) pathFormula).stateFormula);
+            } else if (pathFormula instanceof Until) {
+                children.add(((Until) pathFormula).left);
+                children.add(((Until) pathFormula).right);
+            } else if (pathFormula instanceof Always) {
+                children.add(((Always) pathFormula).stateFormula);
+            }
+        } else if (!(formula instanceof AtomicProp) && !(formula instanceof BoolProp)) {
+            throw new IllegalArgumentException("Not in ENF: " + formula);
+        }
+        return children.isEmpty() ? Collections.<StateFormula>emptyList() : children;
+    }
+}
@@ -0,0 +1,1275 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.StateSetVisitor;
+import formula.Visitable;
+import formula.pathFormula.Always;
+import formula.pathFormula.Eventually;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import utils.IntList;
+import utils.IntQueue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compute satisfaction sets for a model over state id bitmaps.
+ * Runs the same algorithms as SatSetComputer, but the sets are StateSets and the
+ * fixpoint worklists are int queues, so no state objects or hash sets are created.
+ *
+ * Every visit method returns a fresh set that the caller is free to modify.
+ *
+ * With more than one thread, a check runs on a ForkJoinPool of that many threads, on which the
+ * two sides of And and Until are evaluated as separate tasks if both contain a temporal
+ * operator, and the fixpoints of Until and Always run in parallel. A forked side gets a computer
+ * of its own with its own scratch space; the caches of action filters and Always subgraphs are
+ * shared, and the model is only read.
+ * */
+public class IndexedSatSetComputer implements StateSetVisitor {
+
+    /**
+     * Algorithm for the fixpoint of Always: the counting worklist of Algorithm 3, or a strongly
+     * connected component decomposition of the filtered satisfaction set. Both give the same sets.
+     * */
+    public enum AlwaysAlgorithm {
+        COUNTING, SCC
+    }
+
+    private final Model model;
+    private final int stateCount;
+
+    // states with an incoming / outgoing transition via one of the actions, per action set
+    private final Map<ActionMask, StateSet> withIncoming;
+    private final Map<ActionMask, StateSet> withOutgoing;
+
+    // scratch space for collecting the distinct predecessors of a state
+    private final int[] preBuffer;
+    private final StateSet marked;
+    private final StateSet blocked;
+
+    // cursors over the neighbours, which may be decoded on the fly for compressed models
+    private final Adjacency.Cursor successors;
+    private final Adjacency.Cursor predecessors;
+
+    private AlwaysAlgorithm alwaysAlgorithm =
+            AlwaysAlgorithm.valueOf(System.getProperty("always.algorithm", "counting").toUpperCase());
+    private int threads = Integer.getInteger("checker.threads", 1);
+    // levels of Until with at least this many states are expanded in parallel
+    int parallelFrontier = 4096;
+
+    // subgraphs of Always with their components, per filtered satisfaction set and action set
+    private final Map<AlwaysKey, AlwaysGraph> alwaysGraphs;
+
+    // pool of the check that is running, null outside of a check or with one thread
+    private ForkJoinPool pool;
+
+    // satisfaction sets of the subformulas of the check that is running, null outside of a check
+    private Map<StateFormula, StateSet> satSets;
+    private StateSet checkedStates;
+
+    // fairness constraints, and their sets on the model once a check has started
+    private Fairness fairness;
+    private Fairness.States fairStates;
+
+    // metadata of the fixpoints for witnesses, of the check that is running and of the last one
+    private boolean recording;
+    private FixpointRecord record;
+    private FixpointRecord lastRecord;
+
+    public IndexedSatSetComputer(Model model) {
+        this.model = model;
+        this.stateCount = model.getStateCount();
+
+        int maxInDegree = 0;
+        for (int s = 0; s < stateCount; s++) {
+            maxInDegree = Math.max(maxInDegree, model.getPredecessors().degree(s));
+        }
+        this.preBuffer = new int[maxInDegree];
+        this.marked = new StateSet(stateCount);
+        this.blocked = new StateSet(stateCount);
+        this.successors = model.getSuccessors().cursor();
+        this.predecessors = model.getPredecessors().cursor();
+        this.withIncoming = new ConcurrentHashMap<>();
+        this.withOutgoing = new ConcurrentHashMap<>();
+        this.alwaysGraphs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create a computer for a subformula forked off by another one, with its own scratch space
+     * and the same caches, settings and pool.
+     * */
+    private IndexedSatSetComputer(IndexedSatSetComputer parent) {
+        this.model = parent.model;
+        this.stateCount = parent.stateCount;
+        this.preBuffer = new int[parent.preBuffer.length];
+        this.marked = new StateSet(stateCount);
+        this.blocked = new StateSet(stateCount);
+        this.successors = model.getSuccessors().cursor();
+        this.predecessors = model.getPredecessors().cursor();
+        this.withIncoming = parent.withIncoming;
+        this.withOutgoing = parent.withOutgoing;
+        this.alwaysGraphs = parent.alwaysGraphs;
+        this.alwaysAlgorithm = parent.alwaysAlgorithm;
+        this.threads = parent.threads;
+        this.parallelFrontier = parent.parallelFrontier;
+        this.pool = parent.pool;
+        this.satSets = parent.satSets;
+        this.checkedStates = parent.checkedStates;
+        this.fairness = parent.fairness;
+        this.fairStates = parent.fairStates;
+        this.recording = parent.recording;
+        this.record = parent.record;
+    }
+
+    /**
+     * Create a computer that can check on another thread while this one does, with its own scratch
+     * space and the same caches and settings, e.g. for the queries of a BatchChecker.
+     * @return computer sharing the caches of this one
+     * */
+    IndexedSatSetComputer share() {
+        assert (satSets == null);
+        return new IndexedSatSetComputer(this);
+    }
+
+    /**
+     * Set the algorithm for the fixpoint of Always, e.g. to compare the two on the same query.
+     * The default can be set with -Dalways.algorithm=scc.
+     * @param alwaysAlgorithm algorithm to use
+     * */
+    public void setAlwaysAlgorithm(AlwaysAlgorithm alwaysAlgorithm) {
+        this.alwaysAlgorithm = alwaysAlgorithm;
+    }
+
+    public AlwaysAlgorithm getAlwaysAlgorithm() {
+        return alwaysAlgorithm;
+    }
+
+    /**
+     * Set the number of threads a check runs on: independent subformulas are evaluated as separate
+     * tasks, the backward search of Until runs level by level (ParallelUntil), and the components
+     * of Always are decomposed in parallel instead of by Tarjan's algorithm. The parallel
+     * decomposition does a few more passes over the graph, so it pays off only with several cores;
+     * the default is 1, i.e. everything runs on the calling thread, or -Dchecker.threads.
+     * @param threads number of threads
+     * */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Restrict the path quantifiers to the fair paths of the constraints, see Fairness.
+     * EX and EU only hold via states with a fair path, and EG is computed over the fair
+     * components. The sets of the constraints are computed on the first check of the model.
+     * @param fairness fairness constraints, null for all paths
+     * */
+    public void setFairness(Fairness fairness) {
+        this.fairness = fairness;
+        this.fairStates = null;
+    }
+
+    public Fairness getFairness() {
+        return fairness;
+    }
+
+    /**
+     * Set whether the fixpoints record what CounterexampleGenerator needs to build witnesses: the
+     * state each state of Until was added from, and the components of the P edges of Always, whose
+     * fixpoint is then computed over them as with AlwaysAlgorithm.SCC. Off by default. A check that
+     * records runs on the calling thread.
+     * @param recording true to record the fixpoints of the following checks
+     * */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Returns what the fixpoints of the last check recorded.
+     * @return the record, or null if the last check did not record
+     * */
+    FixpointRecord getRecord() {
+        return lastRecord;
+    }
+
+    /**
+     * Compute satisfaction set for a state formula.
+     * Formula is assumed to be in ENF.
+     *
+     * During a check, the set of every subformula other than a proposition is computed once and
+     * kept until the check ends, so equal subformulas, e.g. the shared nodes of an ENF from
+     * ENFConverter, are not evaluated again.
+     * @param formula state formula
+     * @param states states to compute the satisfaction set over
+     * @return set of states satisfying the formula
+     * */
+    public StateSet computeSatSet(StateFormula formula, StateSet states) {
+        assert (formula instanceof Visitable);
+        if (satSets != null) {
+            return this.lookUp(formula, states);
+        }
+
+        satSets = new ConcurrentHashMap<>();
+        checkedStates = states;
+        this.evaluateFairness();
+        record = recording ? new FixpointRecord() : null;
+        try {
+            if (threads <= 1 || recording) {
+                return this.visit((Visitable) formula, states);
+            }
+
+            // the whole check runs on one pool, which bounds the number of threads
+            pool = new ForkJoinPool(threads);
+            try {
+                return pool.invoke(new SatSetTask(this, formula, states));
+            } finally {
+                pool.shutdown();
+                pool = null;
+            }
+        } finally {
+            if (record != null) {
+                record.satSets = satSets;
+            }
+            lastRecord = record;
+            record = null;
+            satSets = null;
+            checkedStates = null;
+        }
+    }
+
+    /**
+     * Compute the satisfaction set of a formula on the calling thread, given the sets of some of its
+     * subformulas, e.g. the ones IncrementalChecker has kept from an earlier check.
+     * @param formula state formula
+     * @param states states to compute the satisfaction set over
+     * @param known satisfaction sets of subformulas over the states, which are not modified
+     * @return set of states satisfying the formula
+     * */
+    StateSet computeSatSet(StateFormula formula, StateSet states, Map<StateFormula, StateSet> known) {
+        assert (satSets == null);
+        satSets = new ConcurrentHashMap<>(known);
+        checkedStates = states;
+        this.evaluateFairness();
+        try {
+            return this.visit((Visitable) formula, states);
+        } finally {
+            satSets = null;
+            checkedStates = null;
+        }
+    }
+
+    /**
+     * Compute the satisfaction set of a compiled formula, see EvaluationPlan.
+     * @param plan plan of the formula
+     * @param states states to compute the satisfaction set over
+     * @return set of states satisfying the formula
+     * */
+    public StateSet computeSatSet(EvaluationPlan plan, StateSet states) {
+        assert (satSets == null);
+        this.evaluateFairness();
+        return plan.execute(this, states);
+    }
+
+    /**
+     * Returns the states labelled with an atomic proposition.
+     * @return shared set, not to be modified
+     * */
+    StateSet labelled(String label) {
+        return model.getLabelIndex().getStates(label);
+    }
+
+    /**
+     * Look up the sets of the fairness constraints on the model, if there are constraints.
+     * */
+    private void evaluateFairness() {
+        if (fairness != null && fairStates == null && fairness.size() > 0) {
+            fairStates = fairness.getStates(model);
+        }
+    }
+
+    /**
+     * Compute the satisfaction set of a subformula within a check, or copy it if it has been computed.
+     * Two tasks may compute the same subformula at the same time, which gives the same set twice.
+     * */
+    private StateSet lookUp(StateFormula formula, StateSet states) {
+        // propositions are looked up in the label index anyway
+        if (states != checkedStates || formula instanceof AtomicProp || formula instanceof BoolProp) {
+            return this.visit((Visitable) formula, states);
+        }
+        StateSet satSet = satSets.get(formula);
+        if (satSet == null) {
+            satSet = this.visit((Visitable) formula, states);
+            satSets.put(formula, satSet);
+        }
+        return satSet.copy();
+    }
+
+    /**
+     * Start computing the satisfaction set of a subformula as a separate task, if it is worth it.
+     * @return the running task, or null if the caller should compute the set itself
+     * */
+    private SatSetTask fork(StateFormula formula, StateFormula other, StateSet states) {
+        if (pool == null || !isTemporal(formula) || !isTemporal(other)) {
+            return null;
+        }
+        SatSetTask task = new SatSetTask(new IndexedSatSetComputer(this), formula, states);
+        task.fork();
+        return task;
+    }
+
+    /**
+     * Whether a formula has a path formula, i.e. takes more than a pass over the states.
+     * */
+    static boolean isTemporal(StateFormula formula) {
+        if (formula instanceof ThereExists || formula instanceof ForAll) {
+            return true;
+        }
+        if (formula instanceof And) {
+            return isTemporal(((And) formula).left) || isTemporal(((And) formula).right);
+        }
+        if (formula instanceof Or) {
+            return isTemporal(((Or) formula).left) || isTemporal(((Or) formula).right);
+        }
+        if (formula instanceof Not) {
+            return isTemporal(((Not) formula).stateFormula);
+        }
+        return false;
+    }
+
+    /**
+     * Method for the visitor interface.
+     * Delegates to the appropriate method for the formula.
+     * */
+    @Override
+    public StateSet visit(Visitable visitable, StateSet states) {
+        return visitable.accept(this, states);
+    }
+
+    /**
+     * Sat Set for boolean proposition.
+     * This is true in ENF.
+     * SatSet = {S}
+     * */
+    @Override
+    public StateSet visitBoolProp(BoolProp formula, StateSet states) {
+        // in ENF, this is always true
+        return states.copy();
+    }
+
+    /**
+     * Sat Set for atomic proposition.
+     * SatSet = {s in S | a in L(s)}.
+     * */
+    @Override
+    public StateSet visitAtomicProp(AtomicProp formula, StateSet states) {
+        // look up the labelled states in the index
+        return model.getLabelIndex().getStates(formula.label).copy().and(states);
+    }
+
+    /**
+     * Sat Set for conjunction.
+     * SatSet = {Sat(left) and Sat(right)}
+     * */
+    @Override
+    public StateSet visitAnd(And formula, StateSet states) {
+        SatSetTask left = this.fork(formula.left, formula.right, states);
+        StateSet satSetRight = computeSatSet(formula.right, states);
+        StateSet satSetLeft = left != null ? left.join() : computeSatSet(formula.left, states);
+        return satSetLeft.and(satSetRight);
+    }
+
+    /**
+     * Sat Set for negation.
+     * SatSet = S w/o Sat(phi)
+     * */
+    @Override
+    public StateSet visitNot(Not formula, StateSet states) {
+        StateSet satSet = computeSatSet(formula.stateFormula, states);
+        return states.copy().andNot(satSet);
+    }
+
+    /**
+     * Sat Set for There Exists.
+     * */
+    @Override
+    public StateSet visitThereExists(ThereExists formula, StateSet states) {
+        PathFormula pathFormula = formula.pathFormula;
+
+        // must be one of the following
+        assert (pathFormula instanceof Next || pathFormula instanceof Until || pathFormula instanceof Always);
+
+        // delegate to the appropriate path formula visitor
+        return this.visit((Visitable) pathFormula, states);
+    }
+
+    /**
+     * Sat Set for For All, if ENFConverter kept it.
+     * Each operator is computed directly, with at most one complement, and gives the same set as
+     * its ENF.
+     * */
+    @Override
+    public StateSet visitForAll(ForAll formula, StateSet states) {
+        // the direct computations quantify over all paths
+        if (fairStates != null) {
+            return this.computeSatSet(new ENFConverter().convertToENF(formula), states);
+        }
+        PathFormula pathFormula = formula.pathFormula;
+        if (pathFormula instanceof Next) {
+            return this.forAllNext((Next) pathFormula, states);
+        }
+        if (pathFormula instanceof Until) {
+            return this.forAllUntil((Until) pathFormula, states);
+        }
+        if (pathFormula instanceof Always) {
+            return this.forAllAlways((Always) pathFormula, states);
+        }
+        assert (pathFormula instanceof Eventually);
+        return this.forAllEventually((Eventually) pathFormula, states);
+    }
+
+    /**
+     * Sat Set for AX, as !EX !phi: all states but those with a transition via the actions and a
+     * successor that can be reached via the actions and does not satisfy the formula.
+     * */
+    private StateSet forAllNext(Next formula, StateSet states) {
+        ActionMask actions = this.compile(formula.getActions());
+        StateSet violating = states.copy().andNot(computeSatSet(formula.stateFormula, states));
+        this.filterIncoming(violating, actions);
+
+        StateSet preSet = new StateSet(stateCount);
+        for (int s = violating.nextSetBit(0); s >= 0; s = violating.nextSetBit(s + 1)) {
+            for (predecessors.reset(s); predecessors.next(); ) {
+                preSet.add(predecessors.neighbour());
+            }
+        }
+        this.filterOutgoing(preSet, actions);
+        return states.copy().andNot(preSet);
+    }
+
+    /**
+     * Sat Set for AG, as ENFConverter reads it: !E (true U phi), all states from which no state
+     * satisfying the formula and reachable via the actions can be reached.
+     * */
+    private StateSet forAllAlways(Always formula, StateSet states) {
+        StateSet reaching = computeSatSet(formula.stateFormula, states);
+        this.filterIncoming(reaching, formula.getActions());
+
+        IntQueue E = new IntQueue();
+        for (int s = reaching.nextSetBit(0); s >= 0; s = reaching.nextSetBit(s + 1)) {
+            E.add(s);
+        }
+        while (!E.isEmpty()) {
+            int sPrime = E.poll();
+            for (predecessors.reset(sPrime); predecessors.next(); ) {
+                int s = predecessors.neighbour();
+                if (states.contains(s) && reaching.add(s)) {
+                    E.add(s);
+                }
+            }
+        }
+        return states.copy().andNot(reaching);
+    }
+
+    /**
+     * Sat Set for AF, as !EG !phi over the right actions: the complement of the fixpoint of Always,
+     * counted up from the states that cannot stay outside the satisfaction set.
+     * */
+    private StateSet forAllEventually(Eventually formula, StateSet states) {
+        ActionMask actions = this.compile(formula.getRightActions());
+        StateSet satSet = computeSatSet(formula.stateFormula, states);
+        StateSet avoiding = this.filterAlways(states.copy().andNot(satSet), actions);
+        return this.addWithoutSuccessors(avoiding, states, actions);
+    }
+
+    /**
+     * Sat Set for AU, as !E (!phi2 U (!phi1 & !phi2)) & !EG !phi2.
+     *
+     * Without actions, this is the least fixpoint of the states that satisfy phi2, or satisfy phi1
+     * and have successors, all of which are in the set: one backward pass that counts down the
+     * successors of every state. With actions, the two parts filter different edges, so they are
+     * computed as the two fixpoints of the ENF, but over the satisfaction sets of phi1 and phi2
+     * computed once.
+     * */
+    private StateSet forAllUntil(Until formula, StateSet states) {
+        ActionMask leftActions = this.compile(formula.getLeftActions());
+        ActionMask rightActions = this.compile(formula.getRightActions());
+        SatSetTask left = this.fork(formula.left, formula.right, states);
+        StateSet satSetRight = this.computeSatSet(formula.right, states);
+        StateSet satSetLeft = left != null ? left.join() : this.computeSatSet(formula.left, states);
+
+        if (leftActions.isAny() && rightActions.isAny()) {
+            StateSet contenders = satSetLeft.andNot(satSetRight);
+            int[] count = this.countSuccessors(contenders, rightActions);
+
+            StateSet T = satSetRight;
+            IntQueue E = new IntQueue();
+            for (int s = T.nextSetBit(0); s >= 0; s = T.nextSetBit(s + 1)) {
+                E.add(s);
+            }
+            while (!E.isEmpty()) {
+                int sPrime = E.poll();
+                int preCount = this.preStatesWithActions(sPrime, leftActions);
+                for (int k = 0; k < preCount; k++) {
+                    int s = preBuffer[k];
+                    if (contenders.contains(s) && --count[s] == 0) {
+                        contenders.remove(s);
+                        T.add(s);
+                        E.add(s);
+                    }
+                }
+            }
+            return T;
+        }
+
+        // E (!phi2 U (!phi1 & !phi2))
+        StateSet notRight = states.copy().andNot(satSetRight);
+        StateSet untilRight = notRight.copy().andNot(satSetLeft);
+        this.filterIncoming(untilRight, rightActions);
+        StateSet untilLeft = notRight.copy();
+        this.filterOutgoing(untilLeft, leftActions);
+        StateSet violating = this.untilFixpoint(untilLeft, untilRight, leftActions, null);
+
+        // !EG !phi2
+        StateSet T = this.addWithoutSuccessors(this.filterAlways(notRight, rightActions), states, rightActions);
+        return T.andNot(violating);
+    }
+
+    /**
+     * Sat Set for Next.
+     * SatSet = {s in S | Post(s) intersect Sat(formula) != {}}
+     * */
+    @Override
+    public StateSet visitNext(Next formula, StateSet states) {
+        return this.next(computeSatSet(formula.stateFormula, states), this.compile(formula.getActions()));
+    }
+
+    /**
+     * The states satisfying Next over the satisfaction set of its formula.
+     * @param satSet satisfaction set of the formula, modified in place
+     * @param actions actions of the formula
+     * @return the states satisfying Next
+     * */
+    StateSet next(StateSet satSet, ActionMask actions) {
+
+        // remove from the sat set the states that cannot be reached via the pre-actions
+        if (fairStates != null) {
+            satSet.and(fairStates.fair);
+        }
+        this.filterIncoming(satSet, actions);
+
+        // all predecessors of the states in the sat set
+        StateSet preSet = new StateSet(stateCount);
+        for (int s = satSet.nextSetBit(0); s >= 0; s = satSet.nextSetBit(s + 1)) {
+            for (predecessors.reset(s); predecessors.next(); ) {
+                preSet.add(predecessors.neighbour());
+            }
+        }
+
+        this.filterOutgoing(preSet, actions);
+        return preSet;
+    }
+
+    /**
+     * Sat Set for Until.
+     *
+     * See Algorithm 2 in the report.
+     * */
+    @Override
+    public StateSet visitUntil(Until formula, StateSet states) {
+
+        // satisfaction set of left and right formulae filtered by the actions
+        SatSetTask left = this.fork(formula.left, formula.right, states);
+        StateSet satSetRight = this.computeSatSet(formula.right, states);
+        StateSet satSetLeft = left != null ? left.join() : this.computeSatSet(formula.left, states);
+        int[] parent = record != null ? newParents() : null;
+        StateSet T = this.until(satSetLeft, satSetRight,
+                this.compile(formula.getLeftActions()), this.compile(formula.getRightActions()), parent);
+        if (parent != null) {
+            record.untilParents.put(formula, parent);
+        }
+        return T;
+    }
+
+    /**
+     * The states satisfying Until over the satisfaction sets of its formulas.
+     * @param satSetLeft satisfaction set of the left formula, modified in place
+     * @param satSetRight satisfaction set of the right formula, modified in place
+     * @param leftActions actions of the left formula
+     * @param rightActions actions of the right formula
+     * @param parent if not null, set to the state each state was added from
+     * @return the states satisfying Until
+     * */
+    StateSet until(StateSet satSetLeft, StateSet satSetRight, ActionMask leftActions, ActionMask rightActions,
+                   int[] parent) {
+        if (fairStates != null) {
+            satSetRight.and(fairStates.fair);
+        }
+        this.filterIncoming(satSetRight, rightActions);
+        this.filterOutgoing(satSetLeft, leftActions);
+        return this.untilFixpoint(satSetLeft, satSetRight, leftActions, parent);
+    }
+
+    /**
+     * The backward fixpoint of Until over the filtered satisfaction sets, in parallel on the pool of
+     * the check if there is one.
+     * @param satSetLeft filtered satisfaction set of the left formula
+     * @param satSetRight filtered satisfaction set of the right formula, modified in place
+     * @param leftActions actions of the left formula
+     * @param parent if not null, set to the state each state was added from
+     * @return the states satisfying the Until formula
+     * */
+    private StateSet untilFixpoint(StateSet satSetLeft, StateSet satSetRight, ActionMask leftActions, int[] parent) {
+        if (pool != null && parent == null) {
+            ParallelUntil until = new ParallelUntil(model, satSetLeft, leftActions, pool);
+            until.parallelFrontier = parallelFrontier;
+            return until.compute(satSetRight);
+        }
+
+        // all states in satSetRight initially support formula and are contenders
+        StateSet T = satSetRight;
+        IntQueue E = new IntQueue();
+        for (int s = T.nextSetBit(0); s >= 0; s = T.nextSetBit(s + 1)) {
+            E.add(s);
+        }
+
+        // repeat until no more contenders
+        while (!E.isEmpty()) {
+            int sPrime = E.poll();
+
+            // direct predecessors of sPrime that can reach sPrime via A action
+            int preCount = this.preStatesWithActions(sPrime, leftActions);
+            for (int k = 0; k < preCount; k++) {
+                int s = preBuffer[k];
+                // must also satisfy left formula and not already in T
+                if (satSetLeft.contains(s) && T.add(s)) {
+                    if (parent != null) {
+                        parent[s] = sPrime;
+                    }
+                    E.add(s);
+                }
+            }
+        }
+        return T;
+    }
+
+    /**
+     * Sat Set for Always.
+     *
+     * See Algorithm 3 in the report.
+     * */
+    @Override
+    public StateSet visitAlways(Always formula, StateSet states) {
+        return this.always(computeSatSet(formula.stateFormula, states), states,
+                this.compile(formula.getActions()), this.recordAlways(formula));
+    }
+
+    /**
+     * The states satisfying Always over the satisfaction set of its formula.
+     * @param satSetOrig satisfaction set of the formula, which is not modified
+     * @param states states the satisfaction set is computed over
+     * @param actions actions of the formula
+     * @param alwaysRecord record of the fixpoint to fill in, or null
+     * @return the states satisfying Always
+     * */
+    StateSet always(StateSet satSetOrig, StateSet states, ActionMask actions, FixpointRecord.AlwaysRecord alwaysRecord) {
+        // satisfaction set barring the actions
+        StateSet satSet = this.filterAlways(satSetOrig, actions);
+        if (fairStates != null) {
+            return this.fairAlways(satSet, actions, fairStates, alwaysRecord);
+        }
+        if (alwaysAlgorithm == AlwaysAlgorithm.SCC || alwaysRecord != null) {
+            return this.keepReachingCycles(satSet, states, actions, alwaysRecord);
+        }
+        return this.removeWithoutSuccessors(satSet, states, actions);
+    }
+
+    /**
+     * Filter the satisfaction set of the formula of Always by the actions.
+     * @param satSetOrig satisfaction set barring the actions
+     * @param actions actions of the formula
+     * @return the states the fixpoint starts from
+     * */
+    private StateSet filterAlways(StateSet satSetOrig, ActionMask actions) {
+        // filter incoming, but keep the initial states
+        StateSet satSet = satSetOrig.copy();
+        this.filterIncoming(satSet, actions);
+        StateSet initialStates = model.getInitialStateSet();
+        satSet.or(initialStates.and(satSetOrig));
+
+        // filter outgoing
+        this.filterOutgoing(satSet, actions);
+        return satSet;
+    }
+
+    /**
+     * The fixpoint of Always: repeatedly remove the states of the filtered satisfaction set whose
+     * successors have all been removed, counting the successors as in Algorithm 3.
+     * @param satSet filtered satisfaction set, modified in place
+     * @param states states the satisfaction set is computed over
+     * @param actions actions of the formula
+     * @return the states that remain
+     * */
+    StateSet removeWithoutSuccessors(StateSet satSet, StateSet states, ActionMask actions) {
+
+        // unvisited states that *do not* satisfy the formula
+        IntQueue E = new IntQueue();
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            if (!satSet.contains(s)) {
+                E.add(s);
+            }
+        }
+        // superset of final satisfaction set with contender states -> will iteratively remove from this
+        StateSet T = satSet;
+        int[] count = this.countSuccessors(T, actions);
+
+        // repeat until no more contenders
+        while (!E.isEmpty()) {
+            int sPrime = E.poll();
+
+            // direct predecessors of sPrime that can reach sPrime via A action
+            int preCount = this.preStatesWithActions(sPrime, actions);
+            for (int k = 0; k < preCount; k++) {
+                int s = preBuffer[k];
+                // s has no successors via A in T -> remove
+                if (T.contains(s) && --count[s] == 0) {
+                    T.remove(s);
+                    E.add(s);
+                }
+            }
+        }
+
+        return T;
+    }
+
+    /**
+     * Number of distinct successors with correct incoming and outgoing actions, per state of a set.
+     * */
+    private int[] countSuccessors(StateSet satSet, ActionMask actions) {
+        StateSet actionStates = StateSet.full(stateCount);
+        this.filterIncoming(actionStates, actions);
+        this.filterOutgoing(actionStates, actions);
+        int[] count = new int[stateCount];
+        for (int s = satSet.nextSetBit(0); s >= 0; s = satSet.nextSetBit(s + 1)) {
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (actionStates.contains(t) && marked.add(t)) {
+                    count[s]++;
+                }
+            }
+            for (successors.reset(s); successors.next(); ) {
+                marked.remove(successors.neighbour());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The complement of the fixpoint of Always within the states, built up instead of torn down:
+     * starting from the states outside the filtered satisfaction set, add the states of it whose
+     * counted successors have all been added. The same single pass as removeWithoutSuccessors,
+     * giving states without removeWithoutSuccessors(satSet, states, actions).
+     * @param satSet filtered satisfaction set
+     * @param states states the satisfaction set is computed over
+     * @param actions actions of the formula
+     * @return the states that do not remain
+     * */
+    private StateSet addWithoutSuccessors(StateSet satSet, StateSet states, ActionMask actions) {
+        StateSet W = states.copy().andNot(satSet);
+        IntQueue E = new IntQueue();
+        for (int s = W.nextSetBit(0); s >= 0; s = W.nextSetBit(s + 1)) {
+            E.add(s);
+        }
+        int[] count = this.countSuccessors(satSet, actions);
+
+        while (!E.isEmpty()) {
+            int sPrime = E.poll();
+            int preCount = this.preStatesWithActions(sPrime, actions);
+            for (int k = 0; k < preCount; k++) {
+                int s = preBuffer[k];
+                if (satSet.contains(s) && !W.contains(s) && --count[s] == 0) {
+                    W.add(s);
+                    E.add(s);
+                }
+            }
+        }
+        return W;
+    }
+
+    /**
+     * The fixpoint of Always over the strongly connected components of the filtered satisfaction set.
+     *
+     * removeWithoutSuccessors removes a state s once |P(s) and removed| reaches |Q(s)|, where P(s) are
+     * the successors all of whose edges have one of the actions and Q(s) the counted successors. So s
+     * is never removed if Q(s) is empty or smaller than P(s), and if P(s) and Q(s) are equally large,
+     * s stays as long as one successor in P(s) stays. On the graph of these P edges, the states that
+     * stay are the ones that reach a state that is never removed or a cycle. If a state has more P than
+     * Q successors, it needs more than one to stay; the states that reach a cycle are then only a
+     * superset, which the counting reduces to the same fixpoint.
+     * @param satSet filtered satisfaction set
+     * @param states states the satisfaction set is computed over
+     * @param actions actions of the formula
+     * @return the states that remain
+     * */
+    StateSet keepReachingCycles(StateSet satSet, StateSet states, ActionMask actions) {
+        return this.keepReachingCycles(satSet, states, actions, null);
+    }
+
+    /**
+     * The fixpoint of Always over the components, recording the walk if the record is not null.
+     * With counting, the walk is done again within the states that remain.
+     * */
+    private StateSet keepReachingCycles(StateSet satSet, StateSet states, ActionMask actions,
+                                        FixpointRecord.AlwaysRecord alwaysRecord) {
+        AlwaysKey key = new AlwaysKey(satSet, states, actions);
+        AlwaysGraph graph = alwaysGraphs.get(key);
+        if (graph == null) {
+            graph = this.alwaysGraph(satSet, states, actions);
+            alwaysGraphs.put(new AlwaysKey(satSet.copy(), states.copy(), actions), graph);
+        }
+
+        // walk the P edges backwards from the states that stay in any case
+        StateSet start = graph.kept.copy().or(graph.components.getCyclicStates());
+        int[] parent = alwaysRecord != null ? newParents() : null;
+        StateSet T = this.walkBack(start, graph.reverse, null, parent);
+
+        if (graph.needsCounting) {
+            T = this.removeWithoutSuccessors(T, states, actions);
+            if (parent != null) {
+                parent = newParents();
+                this.walkBack(start.and(T), graph.reverse, T, parent);
+            }
+        }
+        if (alwaysRecord != null) {
+            alwaysRecord.satSet = T.copy();
+            alwaysRecord.parent = parent;
+            alwaysRecord.components = graph.components;
+            alwaysRecord.reverse = graph.reverse;
+        }
+        return T;
+    }
+
+    /**
+     * Walk edges backwards from a set of states.
+     * @param start states to start from
+     * @param reverse the edges, reversed
+     * @param within states the walk may enter, null for all
+     * @param parent if not null, set to the state each state was reached from
+     * @return the states reached, including the start
+     * */
+    private StateSet walkBack(StateSet start, Adjacency reverse, StateSet within, int[] parent) {
+        StateSet T = start.copy();
+        IntQueue E = new IntQueue();
+        for (int s = T.nextSetBit(0); s >= 0; s = T.nextSetBit(s + 1)) {
+            E.add(s);
+        }
+        while (!E.isEmpty()) {
+            int t = E.poll();
+            for (int i = reverse.start(t); i < reverse.end(t); i++) {
+                int s = reverse.neighbour(i);
+                if ((within == null || within.contains(s)) && T.add(s)) {
+                    if (parent != null) {
+                        parent[s] = t;
+                    }
+                    E.add(s);
+                }
+            }
+        }
+        return T;
+    }
+
+    /**
+     * Start the record of an Always formula, if the check records.
+     * */
+    private FixpointRecord.AlwaysRecord recordAlways(Always formula) {
+        if (record == null) {
+            return null;
+        }
+        FixpointRecord.AlwaysRecord alwaysRecord = new FixpointRecord.AlwaysRecord();
+        record.always.put(formula, alwaysRecord);
+        return alwaysRecord;
+    }
+
+    /**
+     * An array of parents, -1 for none.
+     * */
+    private int[] newParents() {
+        int[] parent = new int[stateCount];
+        Arrays.fill(parent, -1);
+        return parent;
+    }
+
+    /**
+     * Build the graph of P edges between the states of the filtered satisfaction set and decompose it.
+     * */
+    private AlwaysGraph alwaysGraph(StateSet satSet, StateSet states, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        StateSet actionStates = StateSet.full(stateCount);
+        this.filterIncoming(actionStates, actions);
+        this.filterOutgoing(actionStates, actions);
+
+        StateSet kept = new StateSet(stateCount);
+        boolean needsCounting = false;
+        IntList from = new IntList();
+        IntList to = new IntList();
+        IntList distinct = new IntList();
+        IntList pairs = new IntList();
+        for (int s = satSet.nextSetBit(0); s >= 0; s = satSet.nextSetBit(s + 1)) {
+            distinct.clear();
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (!edgeActions.matches(successors.edge(), actions)) {
+                    blocked.add(t);
+                }
+                if (marked.add(t)) {
+                    distinct.add(t);
+                }
+            }
+
+            // P successors within the states, and the number of counted successors
+            int pairCount = 0;
+            int counted = 0;
+            pairs.clear();
+            for (int k = 0; k < distinct.size(); k++) {
+                int t = distinct.get(k);
+                marked.remove(t);
+                if (actionStates.contains(t)) {
+                    counted++;
+                }
+                if (!blocked.remove(t) && states.contains(t)) {
+                    pairCount++;
+                    if (satSet.contains(t)) {
+                        pairs.add(t);
+                    }
+                }
+            }
+
+            if (counted == 0 || pairCount < counted) {
+                kept.add(s);
+                continue;
+            }
+            needsCounting |= pairCount > counted;
+            for (int k = 0; k < pairs.size(); k++) {
+                from.add(s);
+                to.add(pairs.get(k));
+            }
+        }
+
+        int[] sources = from.toArray();
+        int[] targets = to.toArray();
+        Adjacency forward = Adjacency.build(stateCount, sources, targets);
+        Adjacency reverse = Adjacency.build(stateCount, targets, sources);
+        SCCDecomposition components = pool != null
+                ? new ForwardBackwardSCC(forward, reverse).decompose(satSet, pool)
+                : SCCDecomposition.tarjan(satSet, forward);
+        return new AlwaysGraph(kept, needsCounting, reverse, components);
+    }
+
+    /**
+     * The fixpoint of Always restricted to the fair paths: the states with an infinite path of P edges
+     * within the filtered satisfaction set that meets every fairness condition infinitely often.
+     *
+     * This evaluates the Emerson-Lei fixpoint nu Z. phi & EX E (phi U (Z & F_1)) & ... over the
+     * strongly connected components of the P edges, as in keepReachingCycles: a cyclic component is
+     * fair if it has, for every condition, an edge within it into a target state of the condition
+     * via one of its actions, as a path can then stay in the component and take all of these edges
+     * infinitely often. The states that reach a fair component are the fixpoint.
+     * @param satSet filtered satisfaction set
+     * @param actions actions of the formula
+     * @param conditions sets of the fairness conditions on the model
+     * @param alwaysRecord record of the fixpoint to fill in, or null
+     * @return the states that remain
+     * */
+    StateSet fairAlways(StateSet satSet, ActionMask actions, Fairness.States conditions,
+                        FixpointRecord.AlwaysRecord alwaysRecord) {
+        EdgeActions edgeActions = model.getEdgeActions();
+
+        // P edges within the satisfaction set
+        IntList from = new IntList();
+        IntList to = new IntList();
+        IntList distinct = new IntList();
+        for (int s = satSet.nextSetBit(0); s >= 0; s = satSet.nextSetBit(s + 1)) {
+            distinct.clear();
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (!edgeActions.matches(successors.edge(), actions)) {
+                    blocked.add(t);
+                }
+                if (marked.add(t)) {
+                    distinct.add(t);
+                }
+            }
+            for (int k = 0; k < distinct.size(); k++) {
+                int t = distinct.get(k);
+                marked.remove(t);
+                if (!blocked.remove(t) && satSet.contains(t)) {
+                    from.add(s);
+                    to.add(t);
+                }
+            }
+        }
+        int[] sources = from.toArray();
+        int[] targets = to.toArray();
+        Adjacency forward = Adjacency.build(stateCount, sources, targets);
+        Adjacency reverse = Adjacency.build(stateCount, targets, sources);
+        SCCDecomposition components = pool != null
+                ? new ForwardBackwardSCC(forward, reverse).decompose(satSet, pool)
+                : SCCDecomposition.tarjan(satSet, forward);
+
+        // the conditions met by the edges within each cyclic component
+        int conditionCount = conditions.targets.length;
+        boolean[][] met = new boolean[conditionCount][components.getComponentCount()];
+        if (alwaysRecord != null) {
+            alwaysRecord.fairSources = new int[conditionCount][components.getComponentCount()];
+            alwaysRecord.fairTargets = new int[conditionCount][components.getComponentCount()];
+        }
+        StateSet cyclic = components.getCyclicStates();
+        for (int s = cyclic.nextSetBit(0); s >= 0; s = cyclic.nextSetBit(s + 1)) {
+            int component = components.getComponent(s);
+            for (int i = forward.start(s); i < forward.end(s); i++) {
+                if (components.getComponent(forward.neighbour(i)) == component) {
+                    marked.add(forward.neighbour(i));
+                }
+            }
+            for (successors.reset(s); successors.next(); ) {
+                int t = successors.neighbour();
+                if (!marked.contains(t)) {
+                    continue;
+                }
+                for (int c = 0; c < conditionCount; c++) {
+                    if (!met[c][component] && conditions.targets[c].contains(t)
+                            && edgeActions.matches(successors.edge(), conditions.actions[c])) {
+                        met[c][component] = true;
+                        if (alwaysRecord != null) {
+                            alwaysRecord.fairSources[c][component] = s;
+                            alwaysRecord.fairTargets[c][component] = t;
+                        }
+                    }
+                }
+            }
+            for (int i = forward.start(s); i < forward.end(s); i++) {
+                marked.remove(forward.neighbour(i));
+            }
+        }
+
+        // walk the P edges backwards from the fair components
+        StateSet fairComponents = new StateSet(stateCount);
+        for (int s = cyclic.nextSetBit(0); s >= 0; s = cyclic.nextSetBit(s + 1)) {
+            boolean fair = true;
+            for (int c = 0; c < conditionCount && fair; c++) {
+                fair = met[c][components.getComponent(s)];
+            }
+            if (fair) {
+                fairComponents.add(s);
+            }
+        }
+        int[] parent = alwaysRecord != null ? newParents() : null;
+        StateSet T = this.walkBack(fairComponents, reverse, null, parent);
+        if (alwaysRecord != null) {
+            alwaysRecord.satSet = T.copy();
+            alwaysRecord.parent = parent;
+            alwaysRecord.components = components;
+            alwaysRecord.reverse = reverse;
+        }
+        return T;
+    }
+
+    /**
+     * Returns the decomposition of the Always subgraph cached for a filtered satisfaction set.
+     * @return the components, or null if the subgraph has not been decomposed
+     * */
+    SCCDecomposition getComponents(StateSet satSet, StateSet states, ActionMask actions) {
+        AlwaysGraph graph = alwaysGraphs.get(new AlwaysKey(satSet, states, actions));
+        return graph == null ? null : graph.components;
+    }
+
+    /**
+     * Computes a satisfaction set on a pool.
+     * */
+    private static class SatSetTask extends RecursiveTask<StateSet> {
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedSatSetComputer computer;
+        private final StateFormula formula;
+        private final StateSet states;
+
+        SatSetTask(IndexedSatSetComputer computer, StateFormula formula, StateSet states) {
+            this.computer = computer;
+            this.formula = formula;
+            this.states = states;
+        }
+
+        @Override
+        protected StateSet compute() {
+            return computer.computeSatSet(formula, states);
+        }
+    }
+
+    /**
+     * Key of the cached Always subgraphs.
+     * */
+    private static class AlwaysKey {
+        private final StateSet satSet;
+        private final StateSet states;
+        private final ActionMask actions;
+
+        AlwaysKey(StateSet satSet, StateSet states, ActionMask actions) {
+            this.satSet = satSet;
+            this.states = states;
+            this.actions = actions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AlwaysKey)) {
+                return false;
+            }
+            AlwaysKey other = (AlwaysKey) o;
+            return satSet.equals(other.satSet) && states.equals(other.states) && actions.equals(other.actions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * satSet.hashCode() + states.hashCode()) + actions.hashCode();
+        }
+    }
+
+    /**
+     * The P edges of an Always subgraph, backwards, with the states that are never removed and
+     * the components of the forward edges.
+     * */
+    private static class AlwaysGraph {
+        private final StateSet kept;
+        private final boolean needsCounting;
+        private final Adjacency reverse;
+        private final SCCDecomposition components;
+
+        AlwaysGraph(StateSet kept, boolean needsCounting, Adjacency reverse, SCCDecomposition components) {
+            this.kept = kept;
+            this.needsCounting = needsCounting;
+            this.reverse = reverse;
+            this.components = components;
+        }
+    }
+
+    /**
+     * Compile a set of actions of a formula against the alphabet of the model.
+     * */
+    ActionMask compile(Set<String> actions) {
+        return model.getAlphabet().compile(actions);
+    }
+
+    /**
+     * Retains all states that can be reached via the pre-actions.
+     * @param states set of states, modified in place
+     * @param actions set of actions from the pre-actions
+     * */
+    private void filterIncoming(StateSet states, Set<String> actions) {
+        this.filterIncoming(states, this.compile(actions));
+    }
+
+    private void filterIncoming(StateSet states, ActionMask actions) {
+        // nothing to do if there are no pre-actions
+        if (actions.isAny()) {
+            return;
+        }
+        StateSet reachable = withIncoming.get(actions);
+        if (reachable == null) {
+            reachable = this.statesWithAction(predecessors, actions);
+            withIncoming.put(actions, reachable);
+        }
+        states.and(reachable);
+    }
+
+    /**
+     * Retains all states that have any outgoing transitions via the post-actions.
+     * @param states set of states, modified in place
+     * @param actions set of post-actions
+     * */
+    private void filterOutgoing(StateSet states, Set<String> actions) {
+        this.filterOutgoing(states, this.compile(actions));
+    }
+
+    private void filterOutgoing(StateSet states, ActionMask actions) {
+        // nothing to do if there are no post-actions
+        if (actions.isAny()) {
+            return;
+        }
+        StateSet leaving = withOutgoing.get(actions);
+        if (leaving == null) {
+            leaving = this.statesWithAction(successors, actions);
+            withOutgoing.put(actions, leaving);
+        }
+        states.and(leaving);
+    }
+
+    /**
+     * States that have at least one edge in the adjacency with one of the actions.
+     * */
+    private StateSet statesWithAction(Adjacency.Cursor adjacency, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+        StateSet result = new StateSet(stateCount);
+        for (int s = 0; s < stateCount; s++) {
+            for (adjacency.reset(s); adjacency.next(); ) {
+                if (edgeActions.matches(adjacency.edge(), actions)) {
+                    result.add(s);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collect the distinct predecessors of a state into preBuffer, as in State.getPreStatesWithActions:
+     * a predecessor is dropped if any of its transitions into the state has none of the actions.
+     * @param target state id
+     * @param actions actions to reach the state, ANY for any action
+     * @return number of predecessors written to preBuffer
+     * */
+    private int preStatesWithActions(int target, ActionMask actions) {
+        EdgeActions edgeActions = model.getEdgeActions();
+
+        int count = 0;
+        for (predecessors.reset(target); predecessors.next(); ) {
+            int s = predecessors.neighbour();
+            if (!edgeActions.matches(predecessors.edge(), actions)) {
+                blocked.add(s);
+            }
+            if (marked.add(s)) {
+                preBuffer[count++] = s;
+            }
+        }
+
+        // reset the scratch sets and drop the blocked predecessors
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            int s = preBuffer[k];
+            marked.remove(s);
+            if (!blocked.remove(s)) {
+                preBuffer[kept++] = s;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,508 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.FormulaSimplifier;
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.PathFormula;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import utils.IntList;
+import utils.IntQueue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks a query at the initial states only, evaluating each subformula at the states it is asked
+ * for instead of computing its satisfaction set, so only the states needed to decide the initial
+ * states are explored. The check stops at the first initial state that does not satisfy the query.
+ *
+ * The results are the same as those of SimpleModelChecker, action filters included:
+ * - EX holds at a state if it has a transition via the actions, and a successor that satisfies the
+ *   formula and can be reached via the actions.
+ * - EU is a breadth-first search from the state along the edges of Algorithm 2 through the states
+ *   of the left formula. If it reaches a state of the right formula, the states on the path to it
+ *   hold, otherwise every state it visited fails.
+ * - EG is a depth-first search along the P edges of the filtered satisfaction set, see
+ *   IndexedSatSetComputer.keepReachingCycles(). A cycle on the search stack, or a state that is
+ *   never removed, makes the states on the stack hold, and an exhausted search fails all states it
+ *   visited. If a state needs more than one successor to stay, the fixpoint is counted over all
+ *   states reachable from the state instead.
+ * Every result is kept per subformula and state for the rest of the check.
+ *
+ * A check under a constraint is done by SimpleModelChecker, as the fair states are a property of
+ * the whole model.
+ * */
+public class LocalModelChecker implements ModelChecker {
+
+    private boolean simplify = !"false".equals(System.getProperty("checker.simplify"));
+
+    // state of the check that is running
+    private Model model;
+    private StateSet initialStates;
+    private EdgeActions edgeActions;
+    private Adjacency.Cursor successors;
+    private Adjacency.Cursor predecessors;
+    private StateSet marked;
+    private StateSet blocked;
+    private Map<PathFormula, Values> values;
+    private StateSet explored;
+
+    /**
+     * Results of a path formula at the states it has been evaluated at, with scratch space for its searches.
+     * */
+    private static class Values {
+        final StateSet holds;
+        final StateSet fails;
+        final StateSet visited;
+        final StateSet onStack;
+        // position of a state in the states of countAlways(), -1 for the others, allocated by it
+        int[] index;
+
+        Values(int stateCount) {
+            this.holds = new StateSet(stateCount);
+            this.fails = new StateSet(stateCount);
+            this.visited = new StateSet(stateCount);
+            this.onStack = new StateSet(stateCount);
+        }
+
+        boolean isKnown(int state) {
+            return holds.contains(state) || fails.contains(state);
+        }
+    }
+
+    /**
+     * Set whether the ENF is simplified before it is evaluated, see SimpleModelChecker.setSimplify().
+     * */
+    public void setSimplify(boolean simplify) {
+        this.simplify = simplify;
+    }
+
+    @Override
+    public boolean check(Model model, StateFormula constraint, StateFormula query) {
+        if (constraint != null) {
+            return new SimpleModelChecker().check(model, constraint, query);
+        }
+
+        // convert the formula ENF
+        ENFConverter enfConverter = new ENFConverter();
+        StateFormula enf = enfConverter.convertToENF(query);
+        if (simplify) {
+            enf = new FormulaSimplifier(enfConverter.getFactory()).simplify(enf);
+        }
+
+        int stateCount = model.getStateCount();
+        this.model = model;
+        this.initialStates = model.getInitialStateSet();
+        this.edgeActions = model.getEdgeActions();
+        this.successors = model.getSuccessors().cursor();
+        this.predecessors = model.getPredecessors().cursor();
+        this.marked = new StateSet(stateCount);
+        this.blocked = new StateSet(stateCount);
+        this.values = new HashMap<>();
+        this.explored = new StateSet(stateCount);
+        try {
+            for (int s = initialStates.nextSetBit(0); s >= 0; s = initialStates.nextSetBit(s + 1)) {
+                if (!this.holds(enf, s)) {
+                    System.out.println("Model is not valid");
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            this.values = null;
+        }
+    }
+
+    /**
+     * Returns the number of states the last check evaluated a formula at or looked at the
+     * transitions of.
+     * @return number of states
+     * */
+    public int getExploredCount() {
+        return explored == null ? 0 : explored.cardinality();
+    }
+
+    @Override
+    public String[] getTrace() {
+        return null;
+    }
+
+    /**
+     * Evaluate a formula in ENF at a state.
+     * */
+    private boolean holds(StateFormula formula, int state) {
+        explored.add(state);
+        if (formula instanceof AtomicProp) {
+            return model.getLabelIndex().getStates(((AtomicProp) formula).label).contains(state);
+        }
+        if (formula instanceof BoolProp) {
+            // in ENF, this is always true
+            return true;
+        }
+        if (formula instanceof Not) {
+            return !this.holds(((Not) formula).stateFormula, state);
+        }
+        if (formula instanceof And) {
+            return this.holds(((And) formula).left, state) && this.holds(((And) formula).right, state);
+        }
+        if (formula instanceof Or) {
+            return this.holds(((Or) formula).left, state) || this.holds(((Or) formula).right, state);
+        }
+        assert (formula instanceof ThereExists);
+        PathFormula pathFormula = ((ThereExists) formula).pathFormula;
+        Values result = values.get(pathFormula);
+        if (result == null) {
+            result = new Values(model.getStateCount());
+            values.put(pathFormula, result);
+        }
+        if (!result.isKnown(state)) {
+            if (pathFormula instanceof Next) {
+                this.next((Next) pathFormula, state, result);
+            } else if (pathFormula instanceof Until) {
+                this.until((Until) pathFormula, state, result);
+            } else {
+                assert (pathFormula instanceof Always);
+                this.always((Always) pathFormula, state, result);
+            }
+        }
+        return result.holds.contains(state);
+    }
+
+    private void next(Next formula, int state, Values result) {
+        ActionMask actions = this.compile(formula);
+        boolean holds = false;
+        if (this.hasOutgoing(state, actions)) {
+            IntList targets = this.successorsOf(state, null);
+            for (int k = 0; k < targets.size() && !holds; k++) {
+                int t = targets.get(k);
+                holds = this.hasIncoming(t, actions) && this.holds(formula.stateFormula, t);
+            }
+        }
+        (holds ? result.holds : result.fails).add(state);
+    }
+
+    /**
+     * Search for a path to a state of the right formula through states of the left formula.
+     * */
+    private void until(Until formula, int state, Values result) {
+        ActionMask leftActions = model.getAlphabet().compile(formula.getLeftActions());
+        ActionMask rightActions = model.getAlphabet().compile(formula.getRightActions());
+
+        // the states visited, and the position of the one each was reached from, queued by position
+        IntList visited = new IntList();
+        IntList parents = new IntList();
+        IntQueue E = new IntQueue();
+        visited.add(state);
+        parents.add(-1);
+        result.visited.add(state);
+        E.add(0);
+        int found = -1;
+        while (!E.isEmpty() && found < 0) {
+            int position = E.poll();
+            int s = visited.get(position);
+            if (result.holds.contains(s)
+                    || this.holds(formula.right, s) && this.hasIncoming(s, rightActions)) {
+                found = position;
+                break;
+            }
+            if (result.fails.contains(s) || !this.hasOutgoing(s, leftActions) || !this.holds(formula.left, s)) {
+                continue;
+            }
+            IntList targets = this.successorsOf(s, leftActions);
+            for (int k = 0; k < targets.size(); k++) {
+                int t = targets.get(k);
+                if (result.visited.add(t)) {
+                    E.add(visited.size());
+                    visited.add(t);
+                    parents.add(position);
+                }
+            }
+        }
+
+        if (found >= 0) {
+            // the path to the state found holds
+            for (int position = found; position >= 0; position = parents.get(position)) {
+                result.holds.add(visited.get(position));
+            }
+        }
+        for (int k = 0; k < visited.size(); k++) {
+            int s = visited.get(k);
+            result.visited.remove(s);
+            if (found < 0) {
+                result.fails.add(s);
+            }
+        }
+    }
+
+    /**
+     * Search for a cycle of P edges within the filtered satisfaction set, or a state that stays.
+     * */
+    private void always(Always formula, int state, Values result) {
+        ActionMask actions = this.compile(formula);
+        if (!this.inFilteredSet(formula, state, actions)) {
+            result.fails.add(state);
+            return;
+        }
+
+        // depth-first, with the unvisited successors of the states on the stack
+        IntList stack = new IntList();
+        IntList pending = new IntList();
+        IntList bases = new IntList();
+        IntList visited = new IntList();
+        boolean found = false;
+        boolean counting = false;
+        int next = state;
+        while (true) {
+            if (next >= 0) {
+                // the state is in the filtered set and has not been visited
+                result.visited.add(next);
+                visited.add(next);
+                IntList targets = this.successorsOf(next, actions);
+                int need = this.need(next, targets.size(), actions);
+                if (need <= 0) {
+                    result.holds.add(next);
+                    found = true;
+                    break;
+                }
+                if (need > 1) {
+                    counting = true;
+                    break;
+                }
+                result.onStack.add(next);
+                stack.add(next);
+                bases.add(pending.size());
+                for (int k = 0; k < targets.size(); k++) {
+                    pending.add(targets.get(k));
+                }
+                next = -1;
+            }
+            if (stack.isEmpty()) {
+                break;
+            }
+            if (pending.size() == bases.get(bases.size() - 1)) {
+                // all successors of the top of the stack have been visited
+                result.onStack.remove(stack.removeLast());
+                bases.removeLast();
+                continue;
+            }
+            int t = pending.removeLast();
+            if (result.holds.contains(t) || result.onStack.contains(t)) {
+                found = true;
+                break;
+            }
+            if (result.fails.contains(t) || result.visited.contains(t)) {
+                continue;
+            }
+            if (!this.inFilteredSet(formula, t, actions)) {
+                result.fails.add(t);
+                continue;
+            }
+            next = t;
+        }
+
+        for (int k = 0; k < stack.size(); k++) {
+            result.onStack.remove(stack.get(k));
+            if (found) {
+                result.holds.add(stack.get(k));
+            }
+        }
+        for (int k = 0; k < visited.size(); k++) {
+            int s = visited.get(k);
+            result.visited.remove(s);
+            if (!found && !counting && !result.holds.contains(s)) {
+                result.fails.add(s);
+            }
+        }
+        if (counting) {
+            this.countAlways(formula, state, actions, result);
+        }
+    }
+
+    /**
+     * The fixpoint of Always counted over the states reachable from a state by P edges, which
+     * decides all of them.
+     * */
+    private void countAlways(Always formula, int state, ActionMask actions, Values result) {
+        // per formula, as the formula of Always may count the fixpoint of another one
+        if (result.index == null) {
+            result.index = new int[model.getStateCount()];
+            Arrays.fill(result.index, -1);
+        }
+        int[] index = result.index;
+
+        // the unknown states reachable by P edges through the filtered set, and their P successors
+        IntList states = new IntList();
+        IntList offsets = new IntList();
+        IntList targets = new IntList();
+        IntList alive = new IntList();
+        index[state] = 0;
+        states.add(state);
+        for (int i = 0; i < states.size(); i++) {
+            int s = states.get(i);
+            boolean inSet = i == 0 || this.inFilteredSet(formula, s, actions);
+            offsets.add(targets.size());
+            if (!inSet) {
+                alive.add(0);
+                continue;
+            }
+            IntList successorList = this.successorsOf(s, actions);
+            alive.add(1);
+            for (int k = 0; k < successorList.size(); k++) {
+                int t = successorList.get(k);
+                targets.add(t);
+                if (!result.isKnown(t) && index[t] < 0) {
+                    index[t] = states.size();
+                    states.add(t);
+                }
+            }
+        }
+        offsets.add(targets.size());
+
+        // the successors that stay, the ones each state needs, and who depends on whom
+        int n = states.size();
+        int[] good = new int[n];
+        int[] need = new int[n];
+        IntList[] dependents = new IntList[n];
+        IntQueue E = new IntQueue();
+        for (int i = 0; i < n; i++) {
+            if (alive.get(i) == 0) {
+                E.add(i);
+                continue;
+            }
+            int s = states.get(i);
+            need[i] = this.need(s, offsets.get(i + 1) - offsets.get(i), actions);
+            for (int k = offsets.get(i); k < offsets.get(i + 1); k++) {
+                int t = targets.get(k);
+                int j = index[t];
+                if (j < 0) {
+                    good[i] += result.holds.contains(t) ? 1 : 0;
+                    continue;
+                }
+                if (dependents[j] == null) {
+                    dependents[j] = new IntList();
+                }
+                dependents[j].add(i);
+                good[i]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (alive.get(i) == 1 && need[i] > 0 && good[i] < need[i]) {
+                alive.set(i, 0);
+                E.add(i);
+            }
+        }
+
+        // remove the states that lose the successors they need
+        while (!E.isEmpty()) {
+            int j = E.poll();
+            if (dependents[j] == null) {
+                continue;
+            }
+            for (int k = 0; k < dependents[j].size(); k++) {
+                int i = dependents[j].get(k);
+                if (alive.get(i) == 1 && need[i] > 0 && --good[i] < need[i]) {
+                    alive.set(i, 0);
+                    E.add(i);
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            (alive.get(i) == 1 ? result.holds : result.fails).add(states.get(i));
+            index[states.get(i)] = -1;
+        }
+    }
+
+    /**
+     * Whether a state is in the satisfaction set of the formula of Always filtered by the actions,
+     * see IndexedSatSetComputer.filterAlways().
+     * */
+    private boolean inFilteredSet(Always formula, int state, ActionMask actions) {
+        return (this.hasIncoming(state, actions) || initialStates.contains(state))
+                && this.hasOutgoing(state, actions) && this.holds(formula.stateFormula, state);
+    }
+
+    /**
+     * The number of P successors a state of the filtered set needs in the fixpoint of Always to
+     * stay: one more than it has beyond its counted successors, at most 0 if it always stays.
+     * */
+    private int need(int state, int pSuccessorCount, ActionMask actions) {
+        IntList targets = this.successorsOf(state, null);
+        int counted = 0;
+        for (int k = 0; k < targets.size(); k++) {
+            int t = targets.get(k);
+            if (this.hasIncoming(t, actions) && this.hasOutgoing(t, actions)) {
+                counted++;
+            }
+        }
+        return counted == 0 ? 0 : pSuccessorCount - counted + 1;
+    }
+
+    /**
+     * The distinct successors of a state, or with actions, those all of whose edges from the state
+     * have one of the actions.
+     * */
+    private IntList successorsOf(int state, ActionMask actions) {
+        explored.add(state);
+        IntList distinct = new IntList();
+        for (successors.reset(state); successors.next(); ) {
+            int t = successors.neighbour();
+            if (actions != null && !edgeActions.matches(successors.edge(), actions)) {
+                blocked.add(t);
+            }
+            if (marked.add(t)) {
+                distinct.add(t);
+            }
+        }
+        IntList result = new IntList();
+        for (int k = 0; k < distinct.size(); k++) {
+            int t = distinct.get(k);
+            marked.remove(t);
+            if (!blocked.remove(t)) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    private boolean hasIncoming(int state, ActionMask actions) {
+        return this.hasEdge(predecessors, state, actions);
+    }
+
+    private boolean hasOutgoing(int state, ActionMask actions) {
+        return this.hasEdge(successors, state, actions);
+    }
+
+    private boolean hasEdge(Adjacency.Cursor adjacency, int state, ActionMask actions) {
+        if (actions.isAny()) {
+            return true;
+        }
+        for (adjacency.reset(state); adjacency.next(); ) {
+            if (edgeActions.matches(adjacency.edge(), actions)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ActionMask compile(Next formula) {
+        return model.getAlphabet().compile(formula.getActions());
+    }
+
+    private ActionMask compile(Always formula) {
+        return model.getAlphabet().compile(formula.getActions());
+    }
+}
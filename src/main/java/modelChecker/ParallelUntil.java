@@ -0,0 +1,163 @@
+package modelChecker;
+
+import model.ActionMask;
+import model.Adjacency;
+import model.ConcurrentStateSet;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import utils.IntList;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The backward fixpoint of Until, level by level on the ForkJoinPool of a check.
+ *
+ * Starting from the filtered satisfaction set of the right formula, every level adds the
+ * predecessors of the previous level that satisfy the left formula and reach it via the left
+ * actions only, as preStatesWithActions in IndexedSatSetComputer. The states found so far are a
+ * ConcurrentStateSet, so a state is put into the next level by exactly one worker. Large levels
+ * are cut into chunks that the workers expand into frontier buffers of their own, which are then
+ * concatenated. The result is the least fixpoint, the same set as the sequential worklist.
+ * */
+class ParallelUntil {
+    private final Model model;
+    private final StateSet left;
+    private final ActionMask leftActions;
+    private final ForkJoinPool pool;
+
+    // levels of at least this many states are expanded in parallel, in chunks of a quarter of that
+    int parallelFrontier = 4096;
+
+    private ConcurrentStateSet found;
+
+    ParallelUntil(Model model, StateSet left, ActionMask leftActions, ForkJoinPool pool) {
+        this.model = model;
+        this.left = left;
+        this.leftActions = leftActions;
+        this.pool = pool;
+    }
+
+    /**
+     * Compute the fixpoint.
+     * @param right filtered satisfaction set of the right formula
+     * @return the states satisfying the Until formula
+     * */
+    StateSet compute(StateSet right) {
+        found = new ConcurrentStateSet(right);
+        IntList frontier = new IntList();
+        for (int s = right.nextSetBit(0); s >= 0; s = right.nextSetBit(s + 1)) {
+            frontier.add(s);
+        }
+
+        Worker worker = new Worker();
+        int chunk = Math.max(1, parallelFrontier / 4);
+        while (!frontier.isEmpty()) {
+            int[] states = frontier.toArray();
+            if (states.length < parallelFrontier) {
+                frontier = worker.expand(states, 0, states.length);
+                continue;
+            }
+
+            // expand chunks of the level in parallel and concatenate what they found
+            IntList[] next = new IntList[(states.length + chunk - 1) / chunk];
+            Expansion expansion = new Expansion(states, chunk, 0, next.length, next);
+            if (ForkJoinTask.getPool() == pool) {
+                expansion.invoke();
+            } else {
+                pool.invoke(expansion);
+            }
+            frontier = new IntList();
+            for (IntList part : next) {
+                for (int i = 0; i < part.size(); i++) {
+                    frontier.add(part.get(i));
+                }
+            }
+        }
+        return found.toStateSet();
+    }
+
+    /**
+     * Scratch space of one thread: a cursor over the predecessors and the blocked predecessors of a state.
+     * */
+    private class Worker {
+        private final Adjacency.Cursor predecessors = model.getPredecessors().cursor();
+        private final EdgeActions edgeActions = model.getEdgeActions();
+        private final IntList blocked = new IntList();
+
+        /**
+         * Add the new predecessors of a slice of a level.
+         * @return the states added
+         * */
+        IntList expand(int[] level, int begin, int end) {
+            IntList next = new IntList();
+            for (int i = begin; i < end; i++) {
+                int target = level[i];
+
+                // a predecessor with a transition into the target via none of the actions is dropped
+                int[] blockedSources = null;
+                if (!leftActions.isAny()) {
+                    blocked.clear();
+                    for (predecessors.reset(target); predecessors.next(); ) {
+                        if (!edgeActions.matches(predecessors.edge(), leftActions)) {
+                            blocked.add(predecessors.neighbour());
+                        }
+                    }
+                    if (!blocked.isEmpty()) {
+                        blockedSources = blocked.toArray();
+                        Arrays.sort(blockedSources);
+                    }
+                }
+
+                for (predecessors.reset(target); predecessors.next(); ) {
+                    int s = predecessors.neighbour();
+                    if (!left.contains(s) || found.contains(s)) {
+                        continue;
+                    }
+                    if (blockedSources != null && Arrays.binarySearch(blockedSources, s) >= 0) {
+                        continue;
+                    }
+                    if (found.add(s)) {
+                        next.add(s);
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Expands a range of chunks of a level, splitting it in halves while it has more than one.
+     * */
+    private class Expansion extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] level;
+        private final int chunk;
+        private final int begin;
+        private final int end;
+        private final IntList[] next;
+
+        Expansion(int[] level, int chunk, int begin, int end, IntList[] next) {
+            this.level = level;
+            this.chunk = chunk;
+            this.begin = begin;
+            this.end = end;
+            this.next = next;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin == 1) {
+                next[begin] = new Worker().expand(level, begin * chunk, Math.min(level.length, (begin + 1) * chunk));
+                return;
+            }
+            int middle = (begin + end) >>> 1;
+            invokeAll(new Expansion(level, chunk, begin, middle, next),
+                    new Expansion(level, chunk, middle, end, next));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package modelChecker;
+
+import model.Adjacency;
+import model.StateSet;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Strongly connected components of a graph over state ids, e.g. the subgraph of a model that
+ * an EG formula is evaluated on.
+ *
+ * Components are found with Tarjan's algorithm, run on explicit stacks instead of recursion,
+ * so that long paths in large models do not overflow the call stack. Components are numbered
+ * in the order Tarjan completes them, which is a reverse topological order. On several threads
+ * the components are found with ForwardBackwardSCC instead.
+ * */
+public class SCCDecomposition {
+    static final int NONE = -1;
+
+    private final int[] components;
+    private final int componentCount;
+    private final StateSet cyclicStates;
+
+    SCCDecomposition(int[] components, int componentCount, StateSet cyclicStates) {
+        this.components = components;
+        this.componentCount = componentCount;
+        this.cyclicStates = cyclicStates;
+    }
+
+    /**
+     * Decompose a graph into its strongly connected components.
+     * @param vertices states of the graph
+     * @param graph edges of the graph, which must stay within the vertices
+     * @return the decomposition
+     * */
+    public static SCCDecomposition tarjan(StateSet vertices, Adjacency graph) {
+        int stateCount = graph.getStateCount();
+        int[] components = new int[stateCount];
+        Arrays.fill(components, NONE);
+        int[] index = new int[stateCount];
+        int[] low = new int[stateCount];
+        Arrays.fill(index, NONE);
+        boolean[] cyclic = new boolean[stateCount];
+        AtomicInteger componentCount = new AtomicInteger();
+
+        int vertexCount = vertices.cardinality();
+        int[] roots = new int[vertexCount];
+        int k = 0;
+        for (int s = vertices.nextSetBit(0); s >= 0; s = vertices.nextSetBit(s + 1)) {
+            roots[k++] = s;
+        }
+        tarjan(roots, vertexCount, graph, null, 0, index, low, components, cyclic, componentCount);
+        return new SCCDecomposition(components, componentCount.get(), cyclicStates(cyclic));
+    }
+
+    /**
+     * Decompose a graph into its strongly connected components on several threads, see ForwardBackwardSCC.
+     * The components are the same as those of tarjan(), but numbered in no particular order.
+     * @param vertices states of the graph
+     * @param graph edges of the graph, which must stay within the vertices
+     * @param reverse the edges of the graph reversed
+     * @param threads number of threads, 1 to run tarjan()
+     * @return the decomposition
+     * */
+    public static SCCDecomposition parallel(StateSet vertices, Adjacency graph, Adjacency reverse, int threads) {
+        if (threads <= 1) {
+            return tarjan(vertices, graph);
+        }
+        return new ForwardBackwardSCC(graph, reverse).decompose(vertices, threads);
+    }
+
+    /**
+     * Tarjan's algorithm from the given roots. If colors are given, only the states with the given
+     * color are visited. The arrays are indexed by state and may be shared by calls on disjoint
+     * sets of states on different threads.
+     * @param roots states to start from
+     * @param rootCount number of roots
+     * @param graph edges of the graph
+     * @param colors color of every state, or null to visit every state reachable from the roots
+     * @param color color of the states to visit
+     * @param index discovery index of every state, -1 if it has not been visited
+     * @param low lowest index reachable from every state
+     * @param components receives the component of every visited state, must be -1 before
+     * @param cyclic receives whether the component of a state has a cycle
+     * @param componentCount hands out the component numbers
+     * */
+    static void tarjan(int[] roots, int rootCount, Adjacency graph, AtomicIntegerArray colors, int color,
+                       int[] index, int[] low, int[] components, boolean[] cyclic, AtomicInteger componentCount) {
+        int[] stack = new int[rootCount];
+        int stackSize = 0;
+
+        // explicit call stack: the state and the position of the next edge to follow
+        int[] callStates = new int[rootCount];
+        int[] callPositions = new int[rootCount];
+        int callSize = 0;
+
+        // visited states without a component are exactly those on the stack
+        int counter = 0;
+        for (int r = 0; r < rootCount; r++) {
+            int root = roots[r];
+            if (index[root] != NONE || (colors != null && colors.get(root) != color)) {
+                continue;
+            }
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            callStates[callSize] = root;
+            callPositions[callSize++] = graph.start(root);
+
+            while (callSize > 0) {
+                int v = callStates[callSize - 1];
+                int position = callPositions[callSize - 1];
+                int end = graph.end(v);
+                int lowLink = low[v];
+                int next = NONE;
+                while (position < end) {
+                    int w = graph.neighbour(position++);
+                    if (colors != null && colors.get(w) != color) {
+                        continue;
+                    }
+                    if (index[w] == NONE) {
+                        next = w;
+                        break;
+                    }
+                    if (components[w] == NONE) {
+                        lowLink = Math.min(lowLink, index[w]);
+                    }
+                }
+                low[v] = lowLink;
+                callPositions[callSize - 1] = position;
+                if (next != NONE) {
+                    // descend into the unvisited successor
+                    index[next] = low[next] = counter++;
+                    stack[stackSize++] = next;
+                    callStates[callSize] = next;
+                    callPositions[callSize++] = graph.start(next);
+                    continue;
+                }
+
+                // all edges of v followed: v is the root of a component or passes its low link up
+                callSize--;
+                if (low[v] == index[v]) {
+                    int component = componentCount.getAndIncrement();
+                    int size = 0;
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        components[w] = component;
+                        size++;
+                    } while (w != v);
+                    if (size > 1 || hasSelfLoop(graph, v)) {
+                        for (int i = stackSize; i < stackSize + size; i++) {
+                            cyclic[stack[i]] = true;
+                        }
+                    }
+                }
+                if (callSize > 0) {
+                    int u = callStates[callSize - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+            }
+        }
+    }
+
+    static StateSet cyclicStates(boolean[] cyclic) {
+        StateSet states = new StateSet(cyclic.length);
+        for (int s = 0; s < cyclic.length; s++) {
+            if (cyclic[s]) {
+                states.add(s);
+            }
+        }
+        return states;
+    }
+
+    static boolean hasSelfLoop(Adjacency graph, int state) {
+        for (int i = graph.start(state); i < graph.end(state); i++) {
+            if (graph.neighbour(i) == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the component of a state.
+     * @param state state id
+     * @return component number, or -1 if the state is not a vertex of the graph
+     * */
+    public int getComponent(int state) {
+        return components[state];
+    }
+
+    /**
+     * Returns the number of components.
+     * @return number of components
+     * */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the states of the components that contain a cycle: more than one state, or a self loop.
+     * @return states on cycles of the graph
+     * */
+    public StateSet getCyclicStates() {
+        return cyclicStates;
+    }
+
+    /**
+     * Whether two decompositions have the same components, regardless of their numbering.
+     * @param other decomposition of the same graph
+     * @return true if every pair of states is in one component in both or in neither
+     * */
+    public boolean samePartition(SCCDecomposition other) {
+        if (componentCount != other.componentCount || components.length != other.components.length) {
+            return false;
+        }
+        // the components must map one to one
+        int[] mapping = new int[componentCount];
+        int[] reverse = new int[componentCount];
+        Arrays.fill(mapping, NONE);
+        Arrays.fill(reverse, NONE);
+        for (int s = 0; s < components.length; s++) {
+            int a = components[s];
+            int b = other.components[s];
+            if ((a == NONE) != (b == NONE)) {
+                return false;
+            }
+            if (a == NONE) {
+                continue;
+            }
+            if (mapping[a] == NONE && reverse[b] == NONE) {
+                mapping[a] = b;
+                reverse[b] = a;
+            } else if (mapping[a] != b) {
+                return false;
+            }
+        }
+        return cyclicStates.equals(other.cyclicStates);
+    }
+}
@@ -1,5 +1,6 @@
 package modelChecker;
 
+import formula.ENFConverter;
 import formula.Visitable;
 import formula.Visitor;
 import formula.pathFormula.Always;
@@ -9,15 +10,18 @@ import formula.pathFormula.Until;
 import formula.stateFormula.And;
 import formula.stateFormula.AtomicProp;
 import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
 import formula.stateFormula.Not;
 import formula.stateFormula.ThereExists;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
 import model.Model;
 import model.State;
+import model.StateSet;
 
 import formula.stateFormula.StateFormula;
-import model.Transition;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -77,8 +81,10 @@ public class SatSetComputer implements Visitor {
         Set<State> filtered = new HashSet<>();
 
         // retain all states where the labels include the atomic proposition
-        for (State s : states) {
-            if (Arrays.asList(s.getLabel()).contains(formula.label)) {
+        StateSet labelled = model.getLabelIndex().getStates(formula.label);
+        for (int i = labelled.nextSetBit(0); i >= 0; i = labelled.nextSetBit(i + 1)) {
+            State s = model.getState(i);
+            if (states.contains(s)) {
                 filtered.add(s);
             }
         }
@@ -123,6 +129,15 @@ public class SatSetComputer implements Visitor {
         return this.visit((Visitable) pathFormula, states);
     }
 
+    /**
+     * Sat Set for For All, which is only left in a formula that is not fully in ENF:
+     * computed as the satisfaction set of its ENF.
+     * */
+    @Override
+    public Set<State> visitForAll(ForAll formula, Set<State> states) {
+        return computeSatSet(new ENFConverter().convertToENF(formula), states);
+    }
+
     /**
      * Sat Set for Next.
      * SatSet = {s in S | Post(s) intersect Sat(formula) != {}}
@@ -173,9 +188,10 @@ public class SatSetComputer implements Visitor {
 
             for (State s : preSPrime) {
                 // must also satisfy left formula and not already in T
-                if (satSetLeft.contains(s) && !T.contains(s))
+                if (satSetLeft.contains(s) && !T.contains(s)) {
                     E.add(s);
                     T.add(s);
+                }
             }
         }
         return T;
@@ -209,13 +225,15 @@ public class SatSetComputer implements Visitor {
         // superset of final satisfaction set with contender states -> will iteratively remove from this
         Set<State> T = new HashSet<>(satSet);
 
+        // states with correct incoming and outgoing actions, computed once for all successor counts
+        Set<State> actionStates = this.computeSatSetOut(
+                this.computeSatSetIn(model.getStatesSet(), formula.getActions()), formula.getActions());
+
         // hashmap to keep track of number of successors of each state
         HashMap<State, Integer> count = new HashMap<>();
         for (State s : satSet) {
-            // successors with correct incoming actions
-            Set<State> postS = this.computeSatSetIn(s.getPostStates(model), formula.getActions());
-            // successors with correct outgoing actions
-            postS = this.computeSatSetOut(postS, formula.getActions());
+            // successors with correct incoming and outgoing actions
+            Set<State> postS = setIntersection(s.getPostStates(model), actionStates);
             count.put(s, postS.size());
         }
 
@@ -260,25 +278,19 @@ public class SatSetComputer implements Visitor {
         }
 
         // subset of states that is reachable via the pre-actions
+        ActionMask mask = model.getAlphabet().compile(actions);
+        EdgeActions edgeActions = model.getEdgeActions();
+        Adjacency.Cursor predecessors = model.getPredecessors().cursor();
         Set<State> filteredStates = new HashSet<>();
         for (State state : states) {
 
-            // get the incoming transitions into the current state
-            Set<Transition> incomingTransitions = state.getIncomingTransitions(model);
-
-            // retain only those transitions that are in the set of actions
-            boolean retain = false;
-
-            for (Transition transition : incomingTransitions) {
-                // if transition contains correct action, then we're done
-                if (!Collections.disjoint(actions, transition.getActionsSet())) {
-                    retain = true;
+            // retain the state if any incoming transition has one of the actions
+            for (predecessors.reset(state.getId()); predecessors.next(); ) {
+                if (edgeActions.matches(predecessors.edge(), mask)) {
+                    filteredStates.add(state);
                     break;
                 }
             }
-            if (retain) {
-                filteredStates.add(state);
-            }
         }
 
         return filteredStates;
@@ -298,26 +310,19 @@ public class SatSetComputer implements Visitor {
         }
 
         // subset of states that has includes the post-actions
+        ActionMask mask = model.getAlphabet().compile(actions);
+        EdgeActions edgeActions = model.getEdgeActions();
+        Adjacency.Cursor successors = model.getSuccessors().cursor();
         Set<State> filteredStates = new HashSet<>();
-
         for (State state : states) {
 
-            // get the outgoing transitions from the current state
-            Set<Transition> outgoingTransitions = state.getOutgoingTransitions(model);
-
-            // retain only those transitions that are in the set of actions
-            boolean retain = false;
-            for (Transition transition : outgoingTransitions) {
-
-                // if transition contains correct action, then we're done
-                if (!Collections.disjoint(actions, transition.getActionsSet())) {
-                    retain = true;
+            // retain the state if any outgoing transition has one of the actions
+            for (successors.reset(state.getId()); successors.next(); ) {
+                if (edgeActions.matches(successors.edge(), mask)) {
+                    filteredStates.add(state);
                     break;
                 }
             }
-            if (retain) {
-                filteredStates.add(state);
-            }
         }
         return filteredStates;
     }
@@ -1,33 +1,145 @@
 package modelChecker;
 
 import formula.ENFConverter;
-import formula.stateFormula.And;
+import formula.FormulaSimplifier;
 import formula.stateFormula.StateFormula;
 import model.Model;
-import model.State;
+import model.ReachableSubmodel;
+import model.StateSet;
 
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 
 public class SimpleModelChecker implements ModelChecker {
 
+    private boolean restrictToReachable = Boolean.getBoolean("model.reachable");
+    private int threads = Integer.getInteger("checker.threads", 1);
+    private boolean nativeUniversal = Boolean.getBoolean("checker.nativeUniversal");
+    private boolean simplify = !"false".equals(System.getProperty("checker.simplify"));
+    private boolean plan = !"false".equals(System.getProperty("checker.plan"));
+
+    private boolean traces = Boolean.getBoolean("checker.traces");
+    private String[] trace;
+
+    // fairness per constraint, which keeps the fair states of the models checked under it
+    private final Map<StateFormula, Fairness> fairness = new HashMap<>();
+    // compiled formulas, which are not bound to a model
+    private final Map<StateFormula, EvaluationPlan> plans = new HashMap<>();
+
+    /**
+     * Set whether the model is restricted to the states reachable from the initial states before
+     * the sat sets are computed, see ReachableSubmodel.
+     * @param restrictToReachable true to check the reachable submodel
+     * */
+    public void setRestrictToReachable(boolean restrictToReachable) {
+        this.restrictToReachable = restrictToReachable;
+    }
+
+    /**
+     * Set the maximum number of threads a check runs on, see IndexedSatSetComputer.setThreads().
+     * @param threads number of threads, 1 to check on the calling thread
+     * */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set whether AX, AF, AG and AU are computed directly instead of via their ENF, see
+     * ENFConverter.setKeepUniversal(). Both give the same result.
+     * @param nativeUniversal true to compute the universal operators directly
+     * */
+    public void setNativeUniversal(boolean nativeUniversal) {
+        this.nativeUniversal = nativeUniversal;
+    }
+
+    /**
+     * Set whether the ENF is simplified before it is evaluated, see FormulaSimplifier.
+     * On by default, can be turned off with -Dchecker.simplify=false.
+     * @param simplify true to simplify the formula
+     * */
+    public void setSimplify(boolean simplify) {
+        this.simplify = simplify;
+    }
+
+    /**
+     * Set whether the ENF is compiled to an EvaluationPlan, which is kept for further checks of
+     * the formula, instead of visiting it. On by default, can be turned off with
+     * -Dchecker.plan=false. Checks on more than one thread, with traces or with the universal
+     * operators computed directly visit the formula.
+     * @param plan true to run compiled formulas
+     * */
+    public void setPlan(boolean plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Set whether a counterexample is built when a check fails, see getTrace(). The fixpoints then
+     * record what the counterexample is built from, so it is off by default, or -Dchecker.traces.
+     * A check with traces runs on the calling thread and through the ENF of the universal operators.
+     * @param traces true to build counterexamples
+     * */
+    public void setTraces(boolean traces) {
+        this.traces = traces;
+    }
+
+    /**
+     * Check a query, with the constraint as fairness constraints on the paths, see Fairness.of().
+     * The fair states of a model are computed on the first check under a constraint and reused
+     * by the following checks of the model under an equal constraint.
+     * @param model model
+     * @param constraint fairness constraint, null to quantify over all paths
+     * @param query query
+     * @return true if all initial states satisfy the query
+     * */
     @Override
     public boolean check(Model model, StateFormula constraint, StateFormula query) {
+        trace = null;
 
         // handle constraint
+        Fairness pathFairness = null;
         if (constraint != null) {
-            query = new And(constraint, query);
+            pathFairness = fairness.get(constraint);
+            if (pathFairness == null) {
+                pathFairness = Fairness.of(constraint);
+                fairness.put(constraint, pathFairness);
+            }
         }
 
-        // convert the formula ENF
+        // convert the formula ENF; under fairness, the universal operators are not computed
+        // directly and the ENF is not simplified, as E (phi U true) no longer equals true
         ENFConverter enfConverter = new ENFConverter();
+        boolean keepUniversal = nativeUniversal && pathFairness == null && !traces;
+        enfConverter.setKeepUniversal(keepUniversal);
         StateFormula enf = enfConverter.convertToENF(query);
+        if (simplify && pathFairness == null) {
+            enf = new FormulaSimplifier(enfConverter.getFactory()).simplify(enf);
+        }
+
+        // only the reachable states can matter for the initial states
+        if (restrictToReachable) {
+            model = ReachableSubmodel.of(model).getSubmodel();
+        }
 
         // get satisfying set
-        SatSetComputer satSetComputer = new SatSetComputer(model);
-        Set<State> satSet = satSetComputer.computeSatSet(enf, model.getStatesSet());
+        IndexedSatSetComputer satSetComputer = new IndexedSatSetComputer(model);
+        satSetComputer.setThreads(threads);
+        satSetComputer.setFairness(pathFairness);
+        satSetComputer.setRecording(traces);
+        StateSet states = StateSet.full(model.getStateCount());
+        StateSet satSet;
+        if (plan && threads <= 1 && !traces && !keepUniversal) {
+            EvaluationPlan evaluationPlan = plans.get(enf);
+            if (evaluationPlan == null) {
+                evaluationPlan = EvaluationPlan.compile(enf);
+                plans.put(enf, evaluationPlan);
+            }
+            satSet = satSetComputer.computeSatSet(evaluationPlan, states);
+        } else {
+            satSet = satSetComputer.computeSatSet(enf, states);
+        }
 
         // compare satSet to initial states
-        boolean check = satSet.containsAll(model.getInitialStates());
+        boolean check = satSet.containsAll(model.getInitialStateSet());
 
         // model is valid
         if (check) {
@@ -38,17 +150,27 @@ public class SimpleModelChecker implements ModelChecker {
 
         System.out.println("Model is not valid");
 
-        CounterexampleGenerator counterexampleGenerator = new CounterexampleGenerator();
-        // todo not implemented!
-        // counterexampleGenerator.generate();
+        // counterexample at the first initial state that does not satisfy the query
+        if (traces) {
+            StateSet violating = model.getInitialStateSet().copy().andNot(satSet);
+            CounterexampleGenerator counterexampleGenerator =
+                    new CounterexampleGenerator(model, satSetComputer.getRecord(), pathFairness);
+            trace = counterexampleGenerator.generate(enf, violating.nextSetBit(0));
+        }
 
         return false;
     }
 
+    /**
+     * Returns the counterexample of the last check, if traces are on, see CounterexampleGenerator:
+     * the names of the states from an initial state that does not satisfy the query along the
+     * witness of its negation, each followed by the action taken to the next state. A lasso
+     * ends with the state it loops back to.
+     * @return trace, or null if the check held or traces are off
+     * */
     @Override
     public String[] getTrace() {
-        // TODO Auto-generated method stub
-        return null;
+        return trace;
     }
 
 }
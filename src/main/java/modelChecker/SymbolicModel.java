@@ -0,0 +1,398 @@
+package modelChecker;
+
+import bdd.BDDManager;
+import model.ActionMask;
+import model.Adjacency;
+import model.EdgeActions;
+import model.Model;
+import model.StateSet;
+import utils.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding of a model as BDDs, for the symbolic engine.
+ *
+ * A state is the binary number of its id over the current-state variables x, and over the
+ * next-state variables y when it is the target of a transition. The action set of a transition
+ * is dictionary-coded, and its code is a binary number over the action variables a, so the
+ * action-labelled transition relation is a single BDD T(a, x, y). The action variables come
+ * first in the order, then x and y interleaved, most significant bit first.
+ *
+ * The BDDs derived from the relation for an action set are cached; all cached BDDs are
+ * referenced, so they survive garbage collection.
+ * */
+public class SymbolicModel {
+    private final Model model;
+    private final BDDManager manager;
+    private final int stateCount;
+
+    // variables, most significant bit first
+    private final int[] codeVars;
+    private final int[] xVars;
+    private final int[] yVars;
+    private final int[] pairVars;
+
+    // action ids of every distinct action set, indexed by code
+    private final int[][] codeActions;
+
+    private final int all;
+    private final int initial;
+    private final int relation;
+    private final int pairs;
+
+    private final int codeCube;
+    private final int codeXCube;
+    private final int codeYCube;
+    private final int yCube;
+    private final int toX;
+    private final int toY;
+
+    private final Map<String, Integer> labels = new HashMap<>();
+    private final Map<ActionMask, Integer> incoming = new HashMap<>();
+    private final Map<ActionMask, Integer> outgoing = new HashMap<>();
+    private final Map<ActionMask, Integer> preRelations = new HashMap<>();
+
+    public SymbolicModel(Model model) {
+        this.model = model;
+        this.stateCount = model.getStateCount();
+        int edgeCount = model.getSuccessors().getEdgeCount();
+
+        // dictionary-code the action sets of the transitions
+        EdgeActions edgeActions = model.getEdgeActions();
+        Map<List<Integer>, Integer> codes = new HashMap<>();
+        List<int[]> sets = new ArrayList<>();
+        int[] edgeCodes = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int[] actions = edgeActions.getActions(e);
+            List<Integer> key = new ArrayList<>(actions.length);
+            for (int action : actions) {
+                key.add(action);
+            }
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = sets.size();
+                codes.put(key, code);
+                sets.add(actions);
+            }
+            edgeCodes[e] = code;
+        }
+        this.codeActions = sets.toArray(new int[sets.size()][]);
+
+        int codeBits = bits(codeActions.length);
+        int stateBits = Math.max(1, bits(stateCount));
+        this.codeVars = new int[codeBits];
+        this.xVars = new int[stateBits];
+        this.yVars = new int[stateBits];
+        this.pairVars = new int[2 * stateBits];
+        int[] toXMap = new int[codeBits + 2 * stateBits];
+        int[] toYMap = new int[codeBits + 2 * stateBits];
+        for (int i = 0; i < toXMap.length; i++) {
+            toXMap[i] = i;
+            toYMap[i] = i;
+        }
+        for (int i = 0; i < codeBits; i++) {
+            codeVars[i] = i;
+        }
+        for (int i = 0; i < stateBits; i++) {
+            xVars[i] = codeBits + 2 * i;
+            yVars[i] = codeBits + 2 * i + 1;
+            pairVars[2 * i] = xVars[i];
+            pairVars[2 * i + 1] = yVars[i];
+            toXMap[yVars[i]] = xVars[i];
+            toYMap[xVars[i]] = yVars[i];
+        }
+
+        this.manager = new BDDManager(codeBits + 2 * stateBits, 4 * edgeCount + 1024);
+        this.toX = manager.registerMap(toXMap);
+        this.toY = manager.registerMap(toYMap);
+        this.codeCube = manager.ref(manager.cube(codeVars));
+        this.yCube = manager.ref(manager.cube(yVars));
+        this.codeXCube = manager.ref(manager.cube(concat(codeVars, xVars)));
+        this.codeYCube = manager.ref(manager.cube(concat(codeVars, yVars)));
+
+        long[] ids = new long[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            ids[s] = s;
+        }
+        this.all = manager.ref(build(ids, 0, stateCount, xVars, 0));
+        this.initial = manager.ref(this.fromStateSet(model.getInitialStateSet()));
+
+        // group the transitions by the code of their action set, as interleaved (x, y) keys
+        int[] offsets = new int[codeActions.length + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[edgeCodes[e] + 1]++;
+        }
+        for (int c = 0; c < codeActions.length; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] cursor = Arrays.copyOf(offsets, codeActions.length);
+        long[] keys = new long[edgeCount];
+        Adjacency.Cursor successors = model.getSuccessors().cursor();
+        for (int s = 0; s < stateCount; s++) {
+            for (successors.reset(s); successors.next(); ) {
+                keys[cursor[edgeCodes[successors.edge()]]++] = interleave(s, successors.neighbour(), stateBits);
+            }
+        }
+        int[] byCode = new int[codeActions.length];
+        for (int c = 0; c < codeActions.length; c++) {
+            Arrays.sort(keys, offsets[c], offsets[c + 1]);
+            byCode[c] = manager.ref(build(keys, offsets[c], offsets[c + 1], pairVars, 0));
+        }
+        this.relation = manager.ref(byCodes(byCode, 0, 0));
+        for (int c = 0; c < byCode.length; c++) {
+            manager.deref(byCode[c]);
+        }
+        this.pairs = manager.ref(manager.exists(relation, codeCube));
+        manager.gc();
+    }
+
+    private static int bits(int values) {
+        return values <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(values - 1);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static long interleave(int x, int y, int bits) {
+        long key = 0;
+        for (int b = bits - 1; b >= 0; b--) {
+            key = (key << 2) | ((x >>> b) & 1) << 1 | ((y >>> b) & 1);
+        }
+        return key;
+    }
+
+    /**
+     * BDD of the sorted keys in [from, to), bit vars.length - 1 - depth of a key being variable vars[depth].
+     * */
+    private int build(long[] keys, int from, int to, int[] vars, int depth) {
+        if (from == to) {
+            return BDDManager.FALSE;
+        }
+        if (depth == vars.length) {
+            return BDDManager.TRUE;
+        }
+        // first key with the bit set, the keys agree on all bits above it
+        long bit = 1L << (vars.length - 1 - depth);
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((keys[middle] & bit) == 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int lo = build(keys, from, low, vars, depth + 1);
+        int hi = build(keys, low, to, vars, depth + 1);
+        return manager.mk(vars[depth], lo, hi);
+    }
+
+    /**
+     * Combine the relations of the codes with the given prefix into one BDD over the action variables.
+     * */
+    private int byCodes(int[] byCode, int prefix, int depth) {
+        if (depth == codeVars.length) {
+            return prefix < byCode.length ? byCode[prefix] : BDDManager.FALSE;
+        }
+        int lo = byCodes(byCode, prefix << 1, depth + 1);
+        int hi = byCodes(byCode, (prefix << 1) | 1, depth + 1);
+        return manager.mk(codeVars[depth], lo, hi);
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    public BDDManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the states of the model, i.e. the ids below the state count.
+     * @return BDD over x
+     * */
+    public int all() {
+        return all;
+    }
+
+    /**
+     * Returns the initial states.
+     * @return BDD over x
+     * */
+    public int initial() {
+        return initial;
+    }
+
+    /**
+     * Returns the pairs of states connected by a transition, whatever its actions.
+     * @return BDD over x and y
+     * */
+    public int pairs() {
+        return pairs;
+    }
+
+    /**
+     * Returns the states labelled with an atomic proposition.
+     * @param label atomic proposition
+     * @return BDD over x
+     * */
+    public int label(String label) {
+        Integer result = labels.get(label);
+        if (result == null) {
+            result = manager.ref(this.fromStateSet(model.getLabelIndex().getStates(label)));
+            labels.put(label, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the states with an incoming transition via one of the actions, like SatSetComputer's
+     * computeSatSetIn. For ANY this is TRUE, as there is nothing to filter.
+     * @param actions compiled action set
+     * @return BDD over x
+     * */
+    public int incoming(ActionMask actions) {
+        if (actions.isAny()) {
+            return BDDManager.TRUE;
+        }
+        Integer result = incoming.get(actions);
+        if (result == null) {
+            int targets = manager.relProd(relation, this.matching(actions), codeXCube);
+            result = manager.ref(manager.replace(targets, toX));
+            incoming.put(actions, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the states with an outgoing transition via one of the actions, like SatSetComputer's
+     * computeSatSetOut. For ANY this is TRUE, as there is nothing to filter.
+     * @param actions compiled action set
+     * @return BDD over x
+     * */
+    public int outgoing(ActionMask actions) {
+        if (actions.isAny()) {
+            return BDDManager.TRUE;
+        }
+        Integer result = outgoing.get(actions);
+        if (result == null) {
+            result = manager.ref(manager.relProd(relation, this.matching(actions), codeYCube));
+            outgoing.put(actions, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pairs (s, s') such that s is in State.getPreStatesWithActions of s':
+     * s has a transition to s', and none of its transitions to s' lacks the actions.
+     * @param actions compiled action set
+     * @return BDD over x and y
+     * */
+    public int preRelation(ActionMask actions) {
+        if (actions.isAny()) {
+            return pairs;
+        }
+        Integer result = preRelations.get(actions);
+        if (result == null) {
+            int blocked = manager.relProd(relation, manager.not(this.matching(actions)), codeCube);
+            result = manager.ref(manager.diff(pairs, blocked));
+            preRelations.put(actions, result);
+        }
+        return result;
+    }
+
+    // codes of the action sets that share an action with the mask
+    private int matching(ActionMask actions) {
+        IntList codes = new IntList();
+        for (int c = 0; c < codeActions.length; c++) {
+            for (int action : codeActions[c]) {
+                if (actions.contains(action)) {
+                    codes.add(c);
+                    break;
+                }
+            }
+        }
+        long[] keys = new long[codes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = codes.get(i);
+        }
+        return build(keys, 0, keys.length, codeVars, 0);
+    }
+
+    /**
+     * Returns the states with a successor in a set, via the pairs of a relation.
+     * @param states BDD over x
+     * @param relation BDD over x and y
+     * @return exists y. relation(x, y) and states(y)
+     * */
+    public int preImage(int states, int relation) {
+        return manager.relProd(relation, this.toNext(states), yCube);
+    }
+
+    /**
+     * Rename a set of states from the current-state to the next-state variables.
+     * @param states BDD over x
+     * @return the same states over y
+     * */
+    public int toNext(int states) {
+        return manager.replace(states, toY);
+    }
+
+    /**
+     * Returns the states that have a successor via the relation, and all of them in a set.
+     * @param states BDD over x
+     * @param relation BDD over x and y
+     * @return (exists y. relation(x, y)) and not (exists y. relation(x, y) and not states(y))
+     * */
+    public int allSuccessorsIn(int states, int relation) {
+        int escaping = manager.relProd(relation, this.toNext(manager.not(states)), yCube);
+        return manager.diff(manager.exists(relation, yCube), escaping);
+    }
+
+    /**
+     * Returns the set of states as a BDD.
+     * @param states state ids
+     * @return BDD over x
+     * */
+    public int fromStateSet(StateSet states) {
+        long[] ids = new long[states.cardinality()];
+        int i = 0;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            ids[i++] = s;
+        }
+        return build(ids, 0, ids.length, xVars, 0);
+    }
+
+    /**
+     * Returns the states of a BDD over x.
+     * @param f BDD over x
+     * @return state ids
+     * */
+    public StateSet toStateSet(int f) {
+        StateSet states = new StateSet(stateCount);
+        this.collect(f, 0, 0, states);
+        return states;
+    }
+
+    private void collect(int f, int depth, long prefix, StateSet states) {
+        // prune everything at or above the state count
+        if (f == BDDManager.FALSE || prefix << (xVars.length - depth) >= stateCount) {
+            return;
+        }
+        if (depth == xVars.length) {
+            states.add((int) prefix);
+            return;
+        }
+        boolean split = manager.var(f) == xVars[depth];
+        this.collect(split ? manager.low(f) : f, depth + 1, prefix << 1, states);
+        this.collect(split ? manager.high(f) : f, depth + 1, (prefix << 1) | 1, states);
+    }}
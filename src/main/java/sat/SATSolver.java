@@ -0,0 +1,628 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Incremental CDCL SAT solver in the style of MiniSat.
+ *
+ * Clauses are watched by two literals, decisions follow VSIDS activities with phase saving,
+ * conflicts are analysed to the first unique implication point, searches restart on the Luby
+ * sequence and half of the learned clauses are dropped when there are too many of them.
+ *
+ * The solver is incremental: clauses can be added between calls to solve(), and solve() takes
+ * assumptions, literals that are fixed for that call only. Learned clauses follow from the
+ * clauses alone, so they are kept from one call to the next.
+ *
+ * A variable is an int from 0; its positive literal is 2 * var and its negative one 2 * var + 1.
+ * */
+public class SATSolver {
+    private static final int UNDEF = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = -1;
+
+    private static final int RESTART_BASE = 100;
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    private int varCount;
+    private boolean ok = true;
+
+    // per variable
+    private int[] assigns = new int[0];
+    private int[] levels = new int[0];
+    private Clause[] reasons = new Clause[0];
+    private boolean[] polarity = new boolean[0];
+    private double[] activity = new double[0];
+    private double varIncrement = 1;
+
+    // per literal, the clauses watching it
+    private List<List<Clause>> watches = new ArrayList<>();
+
+    private final List<Clause> clauses = new ArrayList<>();
+    private final List<Clause> learnts = new ArrayList<>();
+    private double clauseIncrement = 1;
+    private int maxLearnts = 10000;
+
+    // assignment trail, with the start of every decision level
+    private int[] trail = new int[0];
+    private int trailSize;
+    private int propagated;
+    private int[] levelStarts = new int[16];
+    private int decisionLevel;
+
+    private final VarHeap order = new VarHeap();
+    private boolean[] seen = new boolean[0];
+    private boolean[] model = new boolean[0];
+
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+
+    /**
+     * A clause; the literals at positions 0 and 1 are the watched ones, and the literal at
+     * position 0 is the implied one if the clause is the reason of an assignment.
+     * */
+    private static class Clause {
+        final int[] lits;
+        final boolean learnt;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    public static int pos(int var) {
+        return var << 1;
+    }
+
+    public static int neg(int var) {
+        return (var << 1) | 1;
+    }
+
+    public static int not(int lit) {
+        return lit ^ 1;
+    }
+
+    public static int var(int lit) {
+        return lit >>> 1;
+    }
+
+    /**
+     * Create a new variable.
+     * @return index of the variable
+     * */
+    public int newVar() {
+        int v = varCount++;
+        if (v == assigns.length) {
+            int capacity = Math.max(16, assigns.length * 2);
+            assigns = Arrays.copyOf(assigns, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            polarity = Arrays.copyOf(polarity, capacity);
+            activity = Arrays.copyOf(activity, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+        // prefer false, most encodings are satisfied by leaving things out
+        polarity[v] = true;
+        watches.add(new ArrayList<Clause>());
+        watches.add(new ArrayList<Clause>());
+        order.insert(v);
+        return v;
+    }
+
+    public int getVarCount() {
+        return varCount;
+    }
+
+    public int getClauseCount() {
+        return clauses.size();
+    }
+
+    public int getLearntCount() {
+        return learnts.size();
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    private int value(int lit) {
+        int v = assigns[var(lit)];
+        return (lit & 1) == 0 ? v : -v;
+    }
+
+    /**
+     * Add a clause, the disjunction of its literals.
+     * Must not be called during solve(); the solver is back at level 0 between calls.
+     * @param lits literals of the clause
+     * @return false if the clauses are now unsatisfiable
+     * */
+    public boolean addClause(int... lits) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+
+        // drop false and duplicate literals, skip satisfied and tautological clauses
+        int[] sorted = lits.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        int previous = -1;
+        for (int lit : sorted) {
+            int value = value(lit);
+            if (value == TRUE || lit == not(previous)) {
+                return true;
+            }
+            if (value != FALSE && lit != previous) {
+                sorted[size++] = lit;
+                previous = lit;
+            }
+        }
+
+        if (size == 0) {
+            ok = false;
+            return false;
+        }
+        if (size == 1) {
+            enqueue(sorted[0], null);
+            ok = propagate() == null;
+            return ok;
+        }
+        Clause clause = new Clause(Arrays.copyOf(sorted, size), false);
+        clauses.add(clause);
+        watch(clause);
+        return true;
+    }
+
+    private void watch(Clause clause) {
+        watches.get(not(clause.lits[0])).add(clause);
+        watches.get(not(clause.lits[1])).add(clause);
+    }
+
+    /**
+     * Search for a satisfying assignment of the clauses together with the assumptions.
+     * @param assumptions literals that must be true in this call only
+     * @return true if satisfiable, the assignment is then available through modelValue()
+     * */
+    public boolean solve(int... assumptions) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+        for (int restart = 0; ; restart++) {
+            int status = search(RESTART_BASE * luby(restart), assumptions);
+            if (status != UNDEF) {
+                cancelUntil(0);
+                return status == TRUE;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a variable in the last satisfying assignment.
+     * @param var variable
+     * @return true if the variable is true
+     * */
+    public boolean modelValue(int var) {
+        return var < model.length && model[var];
+    }
+
+    /**
+     * Returns the value of a literal in the last satisfying assignment.
+     * @param lit literal
+     * @return true if the literal is true
+     * */
+    public boolean modelLiteral(int lit) {
+        return modelValue(var(lit)) == ((lit & 1) == 0);
+    }
+
+    // 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...
+    private static int luby(int i) {
+        int size = 1;
+        int sequence = 0;
+        while (size < i + 1) {
+            sequence++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            sequence--;
+            i = i % size;
+        }
+        return 1 << sequence;
+    }
+
+    private int search(long conflictLimit, int[] assumptions) {
+        long conflictCount = 0;
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                conflictCount++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return FALSE;
+                }
+                int[] learnt = analyze(conflict);
+                cancelUntil(learnt.length == 1 ? 0 : levels[var(learnt[1])]);
+                if (learnt.length == 1) {
+                    enqueue(learnt[0], null);
+                } else {
+                    Clause clause = new Clause(learnt, true);
+                    learnts.add(clause);
+                    watch(clause);
+                    bumpClause(clause);
+                    enqueue(learnt[0], clause);
+                }
+                varIncrement /= VAR_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+                continue;
+            }
+
+            if (conflictCount >= conflictLimit) {
+                cancelUntil(0);
+                return UNDEF;
+            }
+            if (learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+            }
+
+            // decide the assumptions first, one level each
+            int next = -1;
+            while (decisionLevel < assumptions.length) {
+                int p = assumptions[decisionLevel];
+                if (value(p) == TRUE) {
+                    newDecisionLevel();
+                } else if (value(p) == FALSE) {
+                    return FALSE;
+                } else {
+                    next = p;
+                    break;
+                }
+            }
+            if (next == -1) {
+                next = pickBranchLiteral();
+                if (next == -1) {
+                    model = new boolean[varCount];
+                    for (int v = 0; v < varCount; v++) {
+                        model[v] = assigns[v] == TRUE;
+                    }
+                    return TRUE;
+                }
+                decisions++;
+            }
+            newDecisionLevel();
+            enqueue(next, null);
+        }
+    }
+
+    private void newDecisionLevel() {
+        if (decisionLevel + 1 == levelStarts.length) {
+            levelStarts = Arrays.copyOf(levelStarts, levelStarts.length * 2);
+        }
+        levelStarts[++decisionLevel] = trailSize;
+    }
+
+    private int pickBranchLiteral() {
+        while (!order.isEmpty()) {
+            int v = order.removeMax();
+            if (assigns[v] == UNDEF) {
+                return polarity[v] ? neg(v) : pos(v);
+            }
+        }
+        return -1;
+    }
+
+    private void enqueue(int lit, Clause reason) {
+        int v = var(lit);
+        assigns[v] = (lit & 1) == 0 ? TRUE : FALSE;
+        levels[v] = decisionLevel;
+        reasons[v] = reason;
+        trail[trailSize++] = lit;
+    }
+
+    private void cancelUntil(int level) {
+        if (decisionLevel <= level) {
+            return;
+        }
+        for (int i = trailSize - 1; i >= levelStarts[level + 1]; i--) {
+            int v = var(trail[i]);
+            polarity[v] = (trail[i] & 1) == 1;
+            assigns[v] = UNDEF;
+            reasons[v] = null;
+            order.insert(v);
+        }
+        trailSize = levelStarts[level + 1];
+        propagated = Math.min(propagated, trailSize);
+        decisionLevel = level;
+    }
+
+    /**
+     * Propagate the assignments on the trail through the watched clauses.
+     * @return a conflicting clause, or null
+     * */
+    private Clause propagate() {
+        while (propagated < trailSize) {
+            int p = trail[propagated++];
+            propagations++;
+            int falseLit = not(p);
+            List<Clause> watching = watches.get(p);
+            int kept = 0;
+            int i = 0;
+            Clause conflict = null;
+            for (; i < watching.size(); i++) {
+                Clause clause = watching.get(i);
+                if (clause.deleted) {
+                    continue;
+                }
+                int[] lits = clause.lits;
+                // make sure the false literal is at position 1
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (value(lits[0]) == TRUE) {
+                    watching.set(kept++, clause);
+                    continue;
+                }
+                // look for a new literal to watch
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (value(lits[k]) != FALSE) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watches.get(not(lits[1])).add(clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                // unit or conflicting
+                watching.set(kept++, clause);
+                if (value(lits[0]) == FALSE) {
+                    conflict = clause;
+                    propagated = trailSize;
+                    i++;
+                    break;
+                }
+                enqueue(lits[0], clause);
+            }
+            // keep the watches that were not looked at after a conflict
+            for (; i < watching.size(); i++) {
+                watching.set(kept++, watching.get(i));
+            }
+            while (watching.size() > kept) {
+                watching.remove(watching.size() - 1);
+            }
+            if (conflict != null) {
+                return conflict;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Analyse a conflict to the first unique implication point.
+     * @return learned clause, the asserting literal first and a literal of the backtrack level second
+     * */
+    private int[] analyze(Clause conflict) {
+        List<Integer> learnt = new ArrayList<>();
+        learnt.add(-1);
+        int pathCount = 0;
+        int p = -1;
+        int index = trailSize - 1;
+        Clause reason = conflict;
+        do {
+            if (reason.learnt) {
+                bumpClause(reason);
+            }
+            for (int j = p == -1 ? 0 : 1; j < reason.lits.length; j++) {
+                int q = reason.lits[j];
+                int v = var(q);
+                if (!seen[v] && levels[v] > 0) {
+                    bumpVar(v);
+                    seen[v] = true;
+                    if (levels[v] >= decisionLevel) {
+                        pathCount++;
+                    } else {
+                        learnt.add(q);
+                    }
+                }
+            }
+            // next literal of the current level on the trail
+            while (!seen[var(trail[index])]) {
+                index--;
+            }
+            p = trail[index--];
+            reason = reasons[var(p)];
+            seen[var(p)] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt.set(0, not(p));
+
+        // drop literals implied by the others
+        int size = 1;
+        for (int i = 1; i < learnt.size(); i++) {
+            int q = learnt.get(i);
+            Clause r = reasons[var(q)];
+            boolean redundant = r != null;
+            if (r != null) {
+                for (int j = 1; j < r.lits.length; j++) {
+                    int v = var(r.lits[j]);
+                    if (!seen[v] && levels[v] > 0) {
+                        redundant = false;
+                        break;
+                    }
+                }
+            }
+            if (!redundant) {
+                learnt.set(size++, q);
+            }
+        }
+        for (int i = 1; i < learnt.size(); i++) {
+            seen[var(learnt.get(i))] = false;
+        }
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = learnt.get(i);
+        }
+        // a literal of the highest remaining level goes to position 1
+        if (size > 1) {
+            int max = 1;
+            for (int i = 2; i < size; i++) {
+                if (levels[var(result[i])] > levels[var(result[max])]) {
+                    max = i;
+                }
+            }
+            int t = result[1];
+            result[1] = result[max];
+            result[max] = t;
+        }
+        return result;
+    }
+
+    private void bumpVar(int v) {
+        activity[v] += varIncrement;
+        if (activity[v] > 1e100) {
+            for (int i = 0; i < varCount; i++) {
+                activity[i] *= 1e-100;
+            }
+            varIncrement *= 1e-100;
+        }
+        order.update(v);
+    }
+
+    private void bumpClause(Clause clause) {
+        clause.activity += clauseIncrement;
+        if (clause.activity > 1e20) {
+            for (Clause learnt : learnts) {
+                learnt.activity *= 1e-20;
+            }
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    // drop the less active half of the learned clauses that are not the reason of an assignment
+    private void reduceLearnts() {
+        Collections.sort(learnts, new Comparator<Clause>() {
+            @Override
+            public int compare(Clause a, Clause b) {
+                return Double.compare(a.activity, b.activity);
+            }
+        });
+        List<Clause> kept = new ArrayList<>();
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            boolean locked = reasons[var(clause.lits[0])] == clause && value(clause.lits[0]) == TRUE;
+            if (i < learnts.size() / 2 && clause.lits.length > 2 && !locked) {
+                clause.deleted = true;
+            } else {
+                kept.add(clause);
+            }
+        }
+        learnts.clear();
+        learnts.addAll(kept);
+        maxLearnts += maxLearnts / 10;
+    }
+
+    /**
+     * Binary max heap of the unassigned variables by activity.
+     * */
+    private class VarHeap {
+        private int[] heap = new int[16];
+        private int[] indices = new int[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void insert(int v) {
+            if (v >= indices.length) {
+                int old = indices.length;
+                indices = Arrays.copyOf(indices, Math.max(v + 1, old * 2));
+                Arrays.fill(indices, old, indices.length, -1);
+            } else if (indices[v] >= 0 && indices[v] < size && heap[indices[v]] == v) {
+                return;
+            }
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size] = v;
+            indices[v] = size;
+            up(size++);
+        }
+
+        void update(int v) {
+            if (v < indices.length && indices[v] >= 0 && indices[v] < size && heap[indices[v]] == v) {
+                up(indices[v]);
+            }
+        }
+
+        int removeMax() {
+            int v = heap[0];
+            heap[0] = heap[--size];
+            indices[heap[0]] = 0;
+            indices[v] = -1;
+            if (size > 0) {
+                down(0);
+            }
+            return v;
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (activity[heap[parent]] >= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                indices[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            indices[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+                    child++;
+                }
+                if (activity[heap[child]] <= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                indices[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            indices[v] = i;
+        }
+    }
+}
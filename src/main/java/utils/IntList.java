@@ -0,0 +1,75 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, so that ids can be collected without boxing.
+ * */
+public class IntList {
+    private int[] items;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        this.items = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Append an element to the list.
+     * @param value element to add
+     * */
+    public void add(int value) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+        }
+        items[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return items[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        items[index] = value;
+    }
+
+    /**
+     * Remove the last element, e.g. to use the list as a stack.
+     * @return the element removed
+     * */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        return items[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the elements as an array of exactly size() elements.
+     * @return copy of the elements
+     * */
+    public int[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+}
@@ -0,0 +1,69 @@
+package utils;
+
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue of primitive ints backed by a growing ring buffer.
+ * Used as worklist for the fixpoint computations, so that state ids are not boxed.
+ * */
+public class IntQueue {
+    private int[] items;
+    private int head;
+    private int count;
+
+    public IntQueue() {
+        this(16);
+    }
+
+    public IntQueue(int capacity) {
+        this.items = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add an element to the end of the queue.
+     * @param value element to add
+     * */
+    public void add(int value) {
+        if (count == items.length) {
+            grow();
+        }
+        items[(head + count) % items.length] = value;
+        count++;
+    }
+
+    /**
+     * Remove and return the element at the front of the queue.
+     * @return first element
+     * */
+    public int poll() {
+        if (count == 0) {
+            throw new NoSuchElementException("Queue is empty.");
+        }
+        int value = items[head];
+        head = (head + 1) % items.length;
+        count--;
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    private void grow() {
+        int[] larger = new int[items.length * 2];
+        for (int i = 0; i < count; i++) {
+            larger[i] = items[(head + i) % items.length];
+        }
+        items = larger;
+        head = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package bdd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the BDD operations and garbage collection.
+ * */
+public class BDDManagerTest {
+
+    @Test
+    public void canonical_operations() {
+        BDDManager manager = new BDDManager(4, 16);
+        int a = manager.ithVar(0);
+        int b = manager.ithVar(1);
+        int c = manager.ithVar(2);
+
+        // same function, same node
+        assertEquals(manager.and(a, b), manager.and(b, a));
+        assertEquals(manager.not(manager.and(a, b)), manager.or(manager.not(a), manager.not(b)));
+        assertEquals(manager.diff(a, b), manager.and(a, manager.nithVar(1)));
+        assertEquals(BDDManager.TRUE, manager.or(c, manager.not(c)));
+        assertEquals(BDDManager.FALSE, manager.and(c, manager.not(c)));
+
+        // exists b. (a and b) or (b and c) = a or c
+        int f = manager.or(manager.and(a, b), manager.and(b, c));
+        int cube = manager.cube(new int[]{1});
+        assertEquals(manager.or(a, c), manager.exists(f, cube));
+        assertEquals(manager.exists(manager.and(f, manager.not(a)), cube), manager.relProd(f, manager.not(a), cube));
+
+        // rename variable 2 to 3
+        int map = manager.registerMap(new int[]{0, 1, 3, 3});
+        assertEquals(manager.and(a, manager.ithVar(3)), manager.replace(manager.and(a, c), map));
+    }
+
+    @Test
+    public void garbage_collection() {
+        BDDManager manager = new BDDManager(16, 16);
+        int kept = BDDManager.FALSE;
+        for (int v = 0; v < 16; v += 2) {
+            kept = manager.or(kept, manager.and(manager.ithVar(v), manager.ithVar(v + 1)));
+        }
+        manager.ref(kept);
+        int nodes = manager.nodeCount(kept);
+
+        // garbage that is not referenced
+        for (int v = 0; v < 15; v++) {
+            manager.and(manager.not(manager.ithVar(v)), manager.ithVar(v + 1));
+        }
+        manager.gc();
+        assertEquals(1, manager.getGcCount());
+        assertEquals(nodes + 2, manager.getNodeCount());
+        assertEquals(nodes, manager.nodeCount(kept));
+
+        // the kept function is still found in the unique table
+        int again = BDDManager.FALSE;
+        for (int v = 0; v < 16; v += 2) {
+            again = manager.or(again, manager.and(manager.ithVar(v), manager.ithVar(v + 1)));
+        }
+        assertEquals(kept, again);
+
+        manager.deref(kept);
+        manager.gc();
+        assertEquals(2, manager.getNodeCount());
+    }
+}
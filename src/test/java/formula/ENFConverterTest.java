@@ -289,4 +289,51 @@ public class ENFConverterTest {
         assert converter.convertToENF(formula).toString().equals(formula.toString());
     }
 
+    @Test
+    public void testConvertOrNested() {
+        ENFConverter converter = new ENFConverter();
+
+        // the sides of Or are converted as well
+        AtomicProp p = new AtomicProp("p");
+        AtomicProp q = new AtomicProp("q");
+        StateFormula formula = new Or(new ForAll(new Next(p, new HashSet<String>())), q);
+        StateFormula ax = new Not(new ThereExists(new Next(new Not(p), new HashSet<String>())));
+        StateFormula expected = new Not(new And(new Not(ax), new Not(q)));
+        assert converter.convertToENF(formula).equals(expected);
+    }
+
+    @Test
+    public void testEquals() {
+        Set<String> actions = new HashSet<>();
+        actions.add("a");
+        StateFormula first = new ThereExists(new Until(new AtomicProp("p"), new AtomicProp("q"), actions, new HashSet<String>()));
+        StateFormula second = new ThereExists(new Until(new AtomicProp("p"), new AtomicProp("q"), new HashSet<>(actions), new HashSet<String>()));
+        StateFormula other = new ThereExists(new Until(new AtomicProp("p"), new AtomicProp("q"), new HashSet<String>(), actions));
+        assert first.equals(second);
+        assert first.hashCode() == second.hashCode();
+        assert !first.equals(other);
+        assert !new And(new AtomicProp("p"), new AtomicProp("q")).equals(new Or(new AtomicProp("p"), new AtomicProp("q")));
+    }
+
+    @Test
+    public void testSharedSubformulas() {
+        ENFConverter converter = new ENFConverter();
+
+        // A (p U A (p U ... q)): every level refers to the ENF of the level below three times
+        StateFormula formula = new AtomicProp("q");
+        for (int i = 0; i < 30; i++) {
+            formula = new ForAll(new Until(new AtomicProp("p"), formula, new HashSet<String>(), new HashSet<String>()));
+        }
+        And enf = (And) converter.convertToENF(formula);
+
+        // so the ENF is a DAG with a few nodes per level
+        assert converter.getFactory().size() < 30 * 12;
+        Until until = (Until) ((ThereExists) ((Not) enf.left).stateFormula).pathFormula;
+        Always always = (Always) ((ThereExists) ((Not) enf.right).stateFormula).pathFormula;
+        assert until.left == always.stateFormula;
+        assert ((And) until.right).right == until.left;
+
+        // converting again gives the same nodes
+        assert converter.convertToENF(formula) == enf;
+    }
 }
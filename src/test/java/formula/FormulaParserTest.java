@@ -0,0 +1,99 @@
+package formula;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import formula.pathFormula.Next;
+import formula.pathFormula.Until;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.Not;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FormulaParserTest {
+
+    private static FormulaParser parser(String json) throws IOException {
+        return new FormulaParser(new JsonParser().parse(json).getAsJsonObject());
+    }
+
+    @Test
+    public void several_formulas() {
+        try {
+            List<StateFormula> formulas = parser("{\"formula\": \"E (a pUq b); (a && b) ;\\n A pG c\","
+                    + " \"p\": [\"act1\"], \"q\": [\"act1\"]}").parseAll();
+            assertEquals(3, formulas.size());
+            assertEquals(FormulaParser.parseRawFormulaString("(a && b)"), formulas.get(1));
+
+            // equal action sets are one object
+            Until until = (Until) ((ThereExists) formulas.get(0)).pathFormula;
+            assertSame(until.getLeftActions(), until.getRightActions());
+
+            formulas = parser("{\"formula\": [\"a\", \"!b\"]}").parseAll();
+            assertEquals(2, formulas.size());
+            assertEquals(new Not(new AtomicProp("b")), formulas.get(1));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void error_position() {
+        try {
+            parser("{\"formula\": [\"(a && b)\", \"E pX\", \"(a ## b)\"]}").parseAll();
+            fail("parsed a malformed formula");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Error at line 2, column 5:"));
+        }
+        try {
+            // what follows a formula without a separator is not read
+            assertEquals(1, parser("{\"formula\": \"(a &&\\n  b ))\\n(a ## b)\"}").parseAll().size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+        try {
+            parser("{\"formula\": \"(a &&\\n  b );\\n(a ## b)\"}").parseAll();
+            fail("parsed a malformed formula");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Error at line 3, column 4:"));
+        }
+    }
+
+    @Test
+    public void deep_formula() {
+        try {
+            int depth = 100000;
+            StringBuilder formula = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                formula.append(i % 2 == 0 ? "!" : "E pX (");
+            }
+            formula.append('a');
+            for (int i = 0; i < depth / 2; i++) {
+                formula.append(')');
+            }
+            JsonObject json = new JsonObject();
+            json.addProperty("formula", formula.toString());
+            StateFormula parsed = new FormulaParser(json).parse();
+
+            int nots = 0;
+            while (!(parsed instanceof AtomicProp)) {
+                if (parsed instanceof Not) {
+                    nots++;
+                    parsed = ((Not) parsed).stateFormula;
+                } else {
+                    parsed = ((Next) ((ThereExists) parsed).pathFormula).stateFormula;
+                }
+            }
+            assertEquals(depth / 2, nots);
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
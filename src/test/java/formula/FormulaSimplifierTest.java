@@ -0,0 +1,69 @@
+package formula;
+
+import formula.pathFormula.Next;
+import formula.pathFormula.Until;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.Or;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class FormulaSimplifierTest {
+
+    private static StateFormula simplify(StateFormula formula) {
+        ENFConverter converter = new ENFConverter();
+        return new FormulaSimplifier(converter.getFactory()).simplify(converter.convertToENF(formula));
+    }
+
+    @Test
+    public void testBoolean() {
+        AtomicProp p = new AtomicProp("p");
+        AtomicProp q = new AtomicProp("q");
+
+        assert simplify(new Not(new Not(p))).equals(p);
+        assert simplify(new And(p, new BoolProp(true))).equals(p);
+        assert simplify(new And(new And(p, q), p)).equals(new And(p, q));
+        assert simplify(new And(p, new Or(p, q))).equals(p);
+        assert simplify(new And(p, new Not(p))).equals(new Not(new BoolProp(true)));
+        assert simplify(new Or(p, new BoolProp(false))).equals(p);
+    }
+
+    @Test
+    public void testTemporal() {
+        AtomicProp p = new AtomicProp("p");
+        Set<String> none = new HashSet<>();
+        Set<String> actions = new HashSet<>();
+        actions.add("a");
+
+        StateFormula falseProp = new Not(new BoolProp(true));
+        assert simplify(new ThereExists(new Until(p, new BoolProp(false), actions, actions))).equals(falseProp);
+        assert simplify(new ThereExists(new Next(new BoolProp(false), actions))).equals(falseProp);
+        assert simplify(new ThereExists(new Until(new BoolProp(false), p, none, none))).equals(p);
+
+        // the right actions filter the right formula, so this one stays
+        StateFormula filtered = new ThereExists(new Until(new BoolProp(false), p, none, actions));
+        assert simplify(filtered).toString().equals(new ENFConverter().convertToENF(filtered).toString());
+
+        // AX true = !EX !true = !EX false = !false = true
+        assert simplify(new ForAll(new Next(new BoolProp(true), actions))).equals(new BoolProp(true));
+    }
+
+    @Test
+    public void testRemovedCount() {
+        AtomicProp p = new AtomicProp("p");
+        ENFConverter converter = new ENFConverter();
+        FormulaSimplifier simplifier = new FormulaSimplifier(converter.getFactory());
+
+        // !!p has three nodes, p one
+        StateFormula simplified = simplifier.simplify(converter.convertToENF(new Not(new Not(p))));
+        assert simplified.equals(p);
+        assert simplifier.getRemovedCount() == 2;
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming JSON loader.
+ * */
+public class ModelLoaderTest {
+
+    private static final String TRANSITIONS_FIRST = "{\"transitions\": [" +
+            "{\"source\": \"s0\", \"target\": \"s1\", \"actions\": [\"act1\"]}," +
+            "{\"source\": \"s1\", \"target\": \"s0\", \"actions\": []}]," +
+            "\"states\": [" +
+            "{\"init\": true, \"name\": \"s0\", \"label\": [\"p\"]}," +
+            "{\"init\": false, \"name\": \"s1\"}]}";
+
+    private static File write(String json, boolean gzip) throws IOException {
+        File file = File.createTempFile("model", gzip ? ".json.gz" : ".json");
+        file.deleteOnExit();
+        try (OutputStream out = gzip ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+            out.write(json.getBytes("UTF-8"));
+        }
+        return file;
+    }
+
+    @Test
+    public void transitions_before_states() {
+        try {
+            Model model = new ModelLoader().setThreads(2).load(write(TRANSITIONS_FIRST, false).getPath());
+            assertEquals(2, model.getStateCount());
+            assertEquals(2, model.getTransitions().length);
+            assertEquals("s0", model.getTransition(0).getSource());
+            assertEquals("s1", model.getTransition(0).getTarget());
+            assertArrayEquals(new String[]{"act1"}, model.getTransition(0).getActions());
+            assertTrue(model.getStateByName("s0").isInit());
+            assertEquals(0, model.getStateByName("s1").getLabel().length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void gzipped_model() {
+        try {
+            Model model = Model.load(write(TRANSITIONS_FIRST, true).getPath());
+            assertEquals(2, model.getStateCount());
+            assertEquals(1, model.getLabelIndex().getCount("p"));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void unknown_state() {
+        String json = "{\"states\": [{\"init\": true, \"name\": \"s0\"}]," +
+                "\"transitions\": [{\"source\": \"s0\", \"target\": \"s9\", \"actions\": []}]}";
+        try {
+            new ModelLoader().load(write(json, false).getPath());
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("s0->s9"));
+        }
+    }
+
+    @Test
+    public void truncated_gzip_header() {
+        try {
+            File file = File.createTempFile("model", ".json.gz");
+            file.deleteOnExit();
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{0x1f, (byte) 0x8b, 0x08});
+            }
+            try {
+                new ModelLoader().load(file.getPath());
+                fail("expected an IOException");
+            } catch (IOException e) {
+                // the file was closed, so it can be deleted, also where open files cannot
+                assertTrue(file.delete());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
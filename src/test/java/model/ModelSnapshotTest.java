@@ -0,0 +1,100 @@
+package model;
+
+import formula.ENFConverter;
+import formula.stateFormula.StateFormula;
+import modelChecker.Differential;
+import modelChecker.IndexedSatSetComputer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for writing models to binary snapshots and opening them again.
+ * */
+public class ModelSnapshotTest {
+
+    private static Model roundTrip(Model model) throws IOException {
+        File file = File.createTempFile("model", ".snapshot");
+        file.deleteOnExit();
+        ModelSnapshot.write(model, file.getPath());
+        return Model.load(file.getPath());
+    }
+
+    @Test
+    public void same_states_and_transitions() {
+        try {
+            for (String modelName : Differential.MODELS) {
+                Model model = Differential.loadModel(modelName);
+                Model snapshot = roundTrip(model);
+
+                assertEquals(model.getStateCount(), snapshot.getStateCount());
+                assertEquals(model.getInitialStateSet(), snapshot.getInitialStateSet());
+                for (int i = 0; i < model.getStateCount(); i++) {
+                    State expected = model.getState(i);
+                    State actual = snapshot.getState(i);
+                    assertEquals(expected.getName(), actual.getName());
+                    assertEquals(expected.isInit(), actual.isInit());
+                    assertEquals(new HashSet<>(Arrays.asList(expected.getLabel())),
+                            new HashSet<>(Arrays.asList(actual.getLabel())));
+                    assertSame(actual, snapshot.getStateByName(expected.getName()));
+                }
+
+                assertEquals(model.getTransitions().length, snapshot.getTransitions().length);
+                for (int e = 0; e < model.getTransitions().length; e++) {
+                    Transition expected = model.getTransition(e);
+                    Transition actual = snapshot.getTransition(e);
+                    assertEquals(expected.getSource(), actual.getSource());
+                    assertEquals(expected.getTarget(), actual.getTarget());
+                    assertEquals(expected.getActionsSet(), actual.getActionsSet());
+                }
+
+                for (String label : model.getLabelIndex().getLabels()) {
+                    assertEquals(model.getLabelIndex().getStates(label), snapshot.getLabelIndex().getStates(label));
+                    assertEquals(model.getLabelIndex().getCount(label), snapshot.getLabelIndex().getCount(label));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void same_sat_sets() {
+        new Differential() {
+            Model snapshot;
+            IndexedSatSetComputer expected;
+            IndexedSatSetComputer actual;
+
+            @Override
+            protected void setUp(Model model) throws IOException {
+                snapshot = roundTrip(model);
+                expected = new IndexedSatSetComputer(model);
+                actual = new IndexedSatSetComputer(snapshot);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                assertEquals(name, expected.computeSatSet(enf, StateSet.full(model.getStateCount())),
+                        actual.computeSatSet(enf, StateSet.full(snapshot.getStateCount())));
+            }
+        }.run();
+    }
+
+    @Test
+    public void load_detects_json() {
+        try {
+            Model model = Model.load("src/test/resources/test-models/model.json");
+            assertEquals(4, model.getStateCount());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package model;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the indexes built when a model is loaded.
+ * */
+public class ModelTest {
+
+    private static Model load(String modelName) throws IOException {
+        return Model.parseModel("src/test/resources/test-models/" + modelName + ".json");
+    }
+
+    private static Set<String> names(Set<State> states) {
+        Set<String> names = new HashSet<>();
+        for (State s : states) {
+            names.add(s.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void state_by_name() {
+        try {
+            Model model = load("model");
+            for (int i = 0; i < model.getStates().length; i++) {
+                State s = model.getStates()[i];
+                assertSame(s, model.getStateByName(s.getName()));
+                assertEquals(i, s.getId());
+            }
+            assertNull(model.getStateByName("unknown"));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void adjacency_matches_transitions() {
+        try {
+            Model model = load("model");
+            Adjacency successors = model.getSuccessors();
+            Adjacency predecessors = model.getPredecessors();
+            assertEquals(model.getTransitions().length, successors.getEdgeCount());
+            assertEquals(model.getTransitions().length, predecessors.getEdgeCount());
+
+            for (State s : model.getStates()) {
+                for (int i = successors.start(s.getId()); i < successors.end(s.getId()); i++) {
+                    Transition t = model.getTransitions()[successors.edge(i)];
+                    assertEquals(s.getName(), t.getSource());
+                    assertEquals(model.getState(successors.neighbour(i)).getName(), t.getTarget());
+                }
+                for (int i = predecessors.start(s.getId()); i < predecessors.end(s.getId()); i++) {
+                    Transition t = model.getTransitions()[predecessors.edge(i)];
+                    assertEquals(s.getName(), t.getTarget());
+                    assertEquals(model.getState(predecessors.neighbour(i)).getName(), t.getSource());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void neighbour_sets() {
+        try {
+            Model model = load("model");
+            State s0 = model.getStateByName("s0");
+            State s1 = model.getStateByName("s1");
+            State s3 = model.getStateByName("s3");
+
+            assertEquals(new HashSet<>(Arrays.asList("s1", "s2")), names(s0.getPostStates(model)));
+            assertEquals(new HashSet<>(Arrays.asList("s0", "s2")), names(s1.getPreStates(model)));
+            assertEquals(new HashSet<>(Arrays.asList("s1", "s3")), names(s3.getPreStates(model)));
+            assertEquals(2, s1.getOutgoingTransitions(model).size());
+            assertEquals(2, s3.getIncomingTransitions(model).size());
+
+            // s0 -> s1 has act1 and s2 -> s1 only act2
+            Set<String> act1 = new HashSet<>(Arrays.asList("act1"));
+            assertEquals(new HashSet<>(Arrays.asList("s0")), names(s1.getPreStatesWithActions(model, act1)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void action_masks() {
+        try {
+            Model model = load("model");
+            ActionAlphabet alphabet = model.getAlphabet();
+            EdgeActions edgeActions = model.getEdgeActions();
+            assertEquals(5, alphabet.size());
+            assertTrue(edgeActions.isSingleWord());
+
+            ActionMask act1 = alphabet.compile(new HashSet<>(Arrays.asList("act1")));
+            ActionMask unknown = alphabet.compile(new HashSet<>(Arrays.asList("act9")));
+            assertSame(ActionMask.ANY, alphabet.compile(new HashSet<String>()));
+            for (int e = 0; e < model.getTransitions().length; e++) {
+                Transition t = model.getTransitions()[e];
+                assertEquals(t.getActionsSet().contains("act1"), edgeActions.matches(e, act1));
+                assertFalse(edgeActions.matches(e, unknown));
+                assertTrue(edgeActions.matches(e, ActionMask.ANY));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void action_arrays_for_large_alphabets() {
+        // 100 actions do not fit into one mask: transition i has the actions i and i + 1
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 99; i++) {
+            json.append(i == 0 ? "" : ",");
+            json.append("{\"source\":\"s\",\"target\":\"s\",\"actions\":[\"a").append(i + 1)
+                    .append("\",\"a").append(i).append("\"]}");
+        }
+        Transition[] transitions = new Gson().fromJson(json.append("]").toString(), Transition[].class);
+
+        ActionAlphabet alphabet = new ActionAlphabet();
+        EdgeActions edgeActions = EdgeActions.build(alphabet, transitions);
+        assertEquals(100, alphabet.size());
+        assertFalse(edgeActions.isSingleWord());
+        assertArrayEquals(new int[]{0, 1}, edgeActions.getActions(0));
+
+        ActionMask a70 = alphabet.compile(new HashSet<>(Arrays.asList("a70")));
+        for (int e = 0; e < transitions.length; e++) {
+            assertEquals(e == 69 || e == 70, edgeActions.matches(e, a70));
+        }
+    }
+
+    @Test
+    public void compressed_transitions() {
+        try {
+            for (String modelName : new String[]{"model", "model1", "model2"}) {
+                Model model = load(modelName);
+                Model compressed = model.compress();
+                assertTrue(compressed.isCompressed());
+                assertSame(compressed, compressed.compress());
+
+                Adjacency[] plain = {model.getSuccessors(), model.getPredecessors()};
+                Adjacency[] packed = {compressed.getSuccessors(), compressed.getPredecessors()};
+                for (int d = 0; d < plain.length; d++) {
+                    assertEquals(plain[d].getEdgeCount(), packed[d].getEdgeCount());
+                    Adjacency.Cursor cursor = packed[d].cursor();
+                    for (int s = 0; s < model.getStateCount(); s++) {
+                        assertEquals(plain[d].degree(s), packed[d].degree(s));
+                        Set<Long> expected = new HashSet<>();
+                        for (int i = plain[d].start(s); i < plain[d].end(s); i++) {
+                            expected.add(((long) plain[d].neighbour(i) << 32) | plain[d].edge(i));
+                        }
+                        Set<Long> actual = new HashSet<>();
+                        int i = packed[d].start(s);
+                        for (cursor.reset(s); cursor.next(); i++) {
+                            actual.add(((long) cursor.neighbour() << 32) | cursor.edge());
+                            assertEquals(cursor.neighbour(), packed[d].neighbour(i));
+                            assertEquals(cursor.edge(), packed[d].edge(i));
+                        }
+                        assertEquals(expected, actual);
+                    }
+                }
+
+                for (int e = 0; e < model.getTransitions().length; e++) {
+                    assertEquals(model.getTransition(e).getSource(), compressed.getTransition(e).getSource());
+                    assertEquals(model.getTransition(e).getTarget(), compressed.getTransition(e).getTarget());
+                    assertArrayEquals(model.getEdgeActions().getActions(e), compressed.getEdgeActions().getActions(e));
+                }
+                assertTrue(compressed.getEdgeActions().getDictionarySize() <= model.getTransitions().length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void label_index() {
+        try {
+            Model model = load("model");
+            LabelIndex index = model.getLabelIndex();
+
+            assertEquals(new HashSet<>(Arrays.asList("a", "b", "d")), index.getLabels());
+            assertEquals(new HashSet<>(Arrays.asList("s0", "s1", "s3")), names(index.getStates("a").toStates(model)));
+            assertEquals(3, index.getCount("a"));
+            assertEquals(0.25, index.getSelectivity("d"), 1e-9);
+
+            assertTrue(index.getStates("c").isEmpty());
+            assertEquals(0, index.getCount("c"));
+            assertEquals(0.0, index.getSelectivity("c"), 1e-9);
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
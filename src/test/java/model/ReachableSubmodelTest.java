@@ -0,0 +1,114 @@
+package model;
+
+import formula.pathFormula.Always;
+import formula.pathFormula.Next;
+import formula.pathFormula.Until;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import modelChecker.SimpleModelChecker;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for restricting a model to its reachable states.
+ * */
+public class ReachableSubmodelTest {
+
+    // s2 and s3 are not reachable, but s2 gives s1 an incoming b transition
+    private static final String MODEL = "{\"states\": [" +
+            "{\"init\": true, \"name\": \"s0\", \"label\": []}," +
+            "{\"init\": false, \"name\": \"s1\", \"label\": [\"p\"]}," +
+            "{\"init\": false, \"name\": \"s2\", \"label\": [\"p\"]}," +
+            "{\"init\": false, \"name\": \"s3\", \"label\": []}]," +
+            "\"transitions\": [" +
+            "{\"source\": \"s0\", \"target\": \"s1\", \"actions\": [\"a\"]}," +
+            "{\"source\": \"s1\", \"target\": \"s1\", \"actions\": [\"a\"]}," +
+            "{\"source\": \"s2\", \"target\": \"s1\", \"actions\": [\"b\"]}," +
+            "{\"source\": \"s3\", \"target\": \"s1\", \"actions\": [\"c\"]}," +
+            "{\"source\": \"s3\", \"target\": \"s2\", \"actions\": [\"c\"]}]}";
+
+    private static Model load() throws IOException {
+        File file = File.createTempFile("model", ".json");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(MODEL.getBytes("UTF-8"));
+        }
+        return Model.parseModel(file.getPath());
+    }
+
+    private static Set<String> actions(String... actions) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, actions);
+        return set;
+    }
+
+    @Test
+    public void reachable_states() {
+        try {
+            Model model = load();
+            ReachableSubmodel reachable = ReachableSubmodel.of(model);
+            Model submodel = reachable.getSubmodel();
+            assertTrue(reachable.isReduced());
+            assertEquals(2, reachable.getReachableCount());
+            assertEquals(3, submodel.getStateCount());
+            assertEquals("s0", submodel.getStateName(0));
+            assertEquals("s1", submodel.getStateName(1));
+            assertEquals(model.getStateId("s1"), reachable.getOriginalId(1));
+            assertEquals(-1, reachable.getOriginalId(2));
+            assertEquals(1, submodel.getLabelIndex().getCount("p"));
+
+            // the unreachable transitions into s1 are merged into one from the extra state
+            Transition[] transitions = submodel.getTransitions();
+            assertEquals(3, transitions.length);
+            assertEquals(submodel.getStateName(2), transitions[2].getSource());
+            assertEquals("s1", transitions[2].getTarget());
+            assertEquals(actions("b", "c"), transitions[2].getActionsSet());
+
+            StateSet states = new StateSet(3);
+            states.add(1);
+            states.add(2);
+            StateSet original = reachable.toOriginal(states);
+            assertEquals(1, original.cardinality());
+            assertTrue(original.contains(model.getStateId("s1")));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void same_answers() {
+        try {
+            Model model = load();
+            StateFormula[] queries = {
+                    new ThereExists(new Next(new AtomicProp("p"), actions("b"))),
+                    new ThereExists(new Until(new BoolProp(true), new AtomicProp("p"), actions(), actions("b"))),
+                    new ThereExists(new Until(new BoolProp(true), new AtomicProp("p"), actions(), actions("c"))),
+                    new ThereExists(new Always(new AtomicProp("p"), actions("b"))),
+                    new ThereExists(new Always(new BoolProp(true), actions("a")))
+            };
+            SimpleModelChecker full = new SimpleModelChecker();
+            full.setRestrictToReachable(false);
+            SimpleModelChecker restricted = new SimpleModelChecker();
+            restricted.setRestrictToReachable(true);
+            for (StateFormula query : queries) {
+                assertEquals(query.toString(), full.check(model, null, query),
+                        restricted.check(model, null, query));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import formula.pathFormula.Next;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import modelChecker.SimpleModelChecker;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for exploring a state space given by a successor function.
+ * */
+public class StateSpaceExplorerTest {
+
+    /**
+     * Counter modulo n that is incremented, or reset from any state but 0.
+     * */
+    private static class Counter implements StateSpace<Integer> {
+        private final int n;
+
+        Counter(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public Collection<Integer> getInitialStates() {
+            return Arrays.asList(0, 0);
+        }
+
+        @Override
+        public String getName(Integer state) {
+            return "c" + state;
+        }
+
+        @Override
+        public String[] getLabels(Integer state) {
+            if (state == 0) {
+                return new String[]{"zero", "even"};
+            }
+            return state % 2 == 0 ? new String[]{"even"} : new String[0];
+        }
+
+        @Override
+        public void getSuccessors(Integer state, Successors<Integer> successors) {
+            successors.add((state + 1) % n, "inc");
+            if (state != 0) {
+                successors.add(0, "reset");
+            }
+        }
+    }
+
+    @Test
+    public void explored_model() {
+        Model model = Model.explore(new Counter(5));
+        assertEquals(5, model.getStateCount());
+        assertEquals(9, model.getTransitions().length);
+        assertEquals(Collections.singleton(model.getStateByName("c0")), model.getInitialStates());
+        assertEquals(3, model.getLabelIndex().getStates("even").cardinality());
+
+        // same layout as a loaded model
+        Adjacency successors = model.getSuccessors();
+        for (State s : model.getStates()) {
+            for (int i = successors.start(s.getId()); i < successors.end(s.getId()); i++) {
+                Transition t = model.getTransitions()[successors.edge(i)];
+                assertEquals(s.getName(), t.getSource());
+                assertEquals(model.getState(successors.neighbour(i)).getName(), t.getTarget());
+            }
+        }
+        HashSet<String> actions = new HashSet<>();
+        int c3 = model.getStateId("c3");
+        for (int i = successors.start(c3); i < successors.end(c3); i++) {
+            actions.addAll(Arrays.asList(model.getTransitions()[successors.edge(i)].getActions()));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("inc", "reset")), actions);
+
+        // the only increment from 0 does not lead back to 0
+        ForAll query = new ForAll(new Next(new Not(new AtomicProp("zero")), Collections.singleton("inc")));
+        assertTrue(new SimpleModelChecker().check(model, null, query));
+    }
+
+    @Test
+    public void expand_on_demand() {
+        StateSpaceExplorer<Integer> explorer = new StateSpaceExplorer<>(new Counter(1000));
+        assertEquals(1, explorer.getStateCount());
+        assertFalse(explorer.isExpanded(0));
+
+        explorer.expand(0);
+        explorer.expand(0);
+        assertEquals(2, explorer.getStateCount());
+        assertEquals(1, explorer.getExpandedCount());
+        assertEquals(1, explorer.getTransitionCount());
+        int transition = explorer.getFirstTransition(0);
+        assertEquals(transition + 1, explorer.getEndTransition(0));
+        assertEquals(Integer.valueOf(1), explorer.getState(explorer.getTarget(transition)));
+        assertArrayEquals(new String[]{"inc"}, explorer.getActions(transition));
+        assertFalse(explorer.isExpanded(1));
+        assertEquals(-1, explorer.getId(2));
+
+        assertEquals(1000, explorer.exploreAll());
+        assertEquals(1999, explorer.getTransitionCount());
+        assertEquals(500, explorer.getId(500));
+    }
+}
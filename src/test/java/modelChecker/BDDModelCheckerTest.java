@@ -0,0 +1,57 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.StateSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests comparing the symbolic engine to the explicit one.
+ * */
+public class BDDModelCheckerTest {
+
+    @Test
+    public void same_sat_sets_as_indexed_sat_set_computer() {
+        new Differential() {
+            IndexedSatSetComputer expected;
+            SymbolicModel symbolicModel;
+            BDDSatSetComputer actual;
+
+            @Override
+            protected void setUp(Model model) {
+                expected = new IndexedSatSetComputer(model);
+                symbolicModel = new SymbolicModel(model);
+                actual = new BDDSatSetComputer(symbolicModel);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                int satSet = actual.computeSatSet(enf, symbolicModel.all());
+                assertEquals(name, expected.computeSatSet(enf, StateSet.full(model.getStateCount())),
+                        symbolicModel.toStateSet(satSet));
+                symbolicModel.getManager().deref(satSet);
+            }
+        }.run();
+    }
+
+    @Test
+    public void same_answers_as_simple_model_checker() {
+        new Differential() {
+            BDDModelChecker checker;
+
+            @Override
+            protected void setUp(Model model) {
+                checker = new BDDModelChecker();
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                assertEquals(name, new SimpleModelChecker().check(model, null, query), checker.check(model, null, query));
+            }
+        }.run();
+    }
+}
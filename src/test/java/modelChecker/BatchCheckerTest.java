@@ -0,0 +1,69 @@
+package modelChecker;
+
+import formula.FormulaParser;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for checking many formulas against one model.
+ * */
+public class BatchCheckerTest {
+
+    @Test
+    public void same_verdicts_as_simple_checker() {
+        try {
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            List<BatchChecker.Query> queries = BatchChecker.readQueries("src/test/resources/test-formulae");
+            BatchChecker checker = new BatchChecker(model);
+            checker.setThreads(4);
+            List<BatchChecker.Result> results = checker.check(queries);
+            assertEquals(queries.size(), results.size());
+
+            for (BatchChecker.Result result : results) {
+                String name = result.getQuery().getName();
+                assertNull(name, result.getError());
+                StateFormula query = new FormulaParser("src/test/resources/test-formulae/" + name + ".json").parse();
+                assertEquals(name, new SimpleModelChecker().check(model, null, query), result.holds());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void json_array() {
+        try {
+            File file = File.createTempFile("queries", ".json");
+            file.deleteOnExit();
+            String json = "[{\"name\": \"until\", \"formula\": \"E (a pUq d)\", \"p\": [\"act1\"], \"q\": [\"act4\"]},"
+                    + "{\"formula\": \"E (a pUq d)\", \"p\": [\"act1\"], \"q\": [\"act2\"]},"
+                    + "{\"formula\": \"E (a\"}]";
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(json.getBytes("UTF-8"));
+            }
+
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            List<BatchChecker.Result> results = new BatchChecker(model).check(BatchChecker.readQueries(file.getPath()));
+            assertEquals(3, results.size());
+            assertEquals("until", results.get(0).getQuery().getName());
+            assertTrue(results.get(0).holds());
+            assertEquals("#1", results.get(1).getQuery().getName());
+            assertFalse(results.get(1).holds());
+            // a formula that does not parse is reported, not thrown
+            assertNotNull(results.get(2).getError());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
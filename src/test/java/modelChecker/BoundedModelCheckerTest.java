@@ -0,0 +1,70 @@
+package modelChecker;
+
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.Transition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests comparing the bounded model checker to the explicit one.
+ * */
+public class BoundedModelCheckerTest {
+
+    @Test
+    public void same_answers_as_simple_model_checker() {
+        new Differential() {
+            BoundedModelChecker checker;
+
+            @Override
+            protected void setUp(Model model) {
+                checker = new BoundedModelChecker();
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                assertEquals(name, new SimpleModelChecker().check(model, null, query), checker.check(model, null, query));
+                assertTrue(checker.isConclusive());
+            }
+        }.run();
+    }
+
+    @Test
+    public void counterexamples_are_paths() {
+        new Differential() {
+            BoundedModelChecker checker;
+
+            @Override
+            protected void setUp(Model model) {
+                checker = new BoundedModelChecker();
+                checker.setFallback(false);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                if (checker.check(model, null, query)) {
+                    assertNull(checker.getTrace());
+                    return;
+                }
+
+                // starts at an initial state and follows the transitions
+                String[] trace = checker.getTrace();
+                assertNotNull(trace);
+                assertTrue(model.getStateByName(trace[0]).isInit());
+                for (int i = 1; i < trace.length; i++) {
+                    assertTrue(name, hasTransition(model, trace[i - 1], trace[i]));
+                }
+            }
+        }.run();
+    }
+
+    private static boolean hasTransition(Model model, String source, String target) {
+        for (Transition transition : model.getTransitions()) {
+            if (transition.getSource().equals(source) && transition.getTarget().equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package modelChecker;
+
+import formula.pathFormula.Eventually;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.Transition;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the counterexamples of SimpleModelChecker.
+ * */
+public class CounterexampleGeneratorTest {
+
+    @Test
+    public void counterexamples_are_paths() {
+        new Differential() {
+            SimpleModelChecker checker;
+
+            @Override
+            protected void setUp(Model model) {
+                checker = new SimpleModelChecker();
+                checker.setTraces(true);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                if (checker.check(model, null, query)) {
+                    assertNull(checker.getTrace());
+                    return;
+                }
+
+                // starts at an initial state and follows the transitions via their actions
+                String[] trace = checker.getTrace();
+                assertNotNull(trace);
+                assertEquals(1, trace.length % 2);
+                assertTrue(model.getStateByName(trace[0]).isInit());
+                for (int i = 2; i < trace.length; i += 2) {
+                    assertTrue(name, hasTransition(model, trace[i - 2], trace[i - 1], trace[i]));
+                }
+            }
+        }.run();
+    }
+
+    @Test
+    public void lasso() {
+        try {
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            Set<String> any = Collections.emptySet();
+            StateFormula forAllEventuallyD = new ForAll(new Eventually(new AtomicProp("d"), any, any));
+            SimpleModelChecker checker = new SimpleModelChecker();
+
+            assertFalse(checker.check(model, null, forAllEventuallyD));
+            assertNull(checker.getTrace());
+
+            // s0 and s1 avoid d forever
+            checker.setTraces(true);
+            assertFalse(checker.check(model, null, forAllEventuallyD));
+            assertArrayEquals(new String[]{"s0", "act1", "s1", "act2", "s0"}, checker.getTrace());
+
+            // the fair cycle takes act5 from s0 to s1
+            StateFormula infinitelyOftenAct5 = new ForAll(new Eventually(
+                    new AtomicProp("a"), any, Collections.singleton("act5")));
+            assertFalse(checker.check(model, infinitelyOftenAct5, forAllEventuallyD));
+            assertArrayEquals(new String[]{"s0", "act5", "s1", "act2", "s0"}, checker.getTrace());
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    private static boolean hasTransition(Model model, String source, String action, String target) {
+        for (Transition transition : model.getTransitions()) {
+            if (transition.getSource().equals(source) && transition.getTarget().equals(target)
+                    && transition.getActionsSet().contains(action)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
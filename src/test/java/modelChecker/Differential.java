@@ -0,0 +1,77 @@
+package modelChecker;
+
+import formula.FormulaParser;
+import formula.stateFormula.StateFormula;
+import model.Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks every test formula on every test model, for the tests that compare an engine to another
+ * one. Subclasses set up the engines per model in setUp() and compare them in check().
+ * */
+public abstract class Differential {
+
+    public static final String[] MODELS = {"model", "model1", "model2"};
+
+    public static Model loadModel(String modelName) throws IOException {
+        return Model.parseModel("src/test/resources/test-models/" + modelName + ".json");
+    }
+
+    /**
+     * Parse the test formulae.
+     * @return the formulas by file name, sorted by name
+     * */
+    public static Map<String, StateFormula> loadFormulae() throws IOException {
+        File[] formulaFiles = new File("src/test/resources/test-formulae").listFiles();
+        assertNotNull(formulaFiles);
+        Arrays.sort(formulaFiles);
+        Map<String, StateFormula> formulae = new LinkedHashMap<>();
+        for (File formulaFile : formulaFiles) {
+            formulae.put(formulaFile.getName(), new FormulaParser(formulaFile.getPath()).parse());
+        }
+        return formulae;
+    }
+
+    /**
+     * Call check() for each pair of test model and test formula. The formulas are parsed once, so
+     * a formula is the same object on every model.
+     * */
+    public void run() {
+        try {
+            Map<String, StateFormula> formulae = loadFormulae();
+            for (String modelName : MODELS) {
+                Model model = loadModel(modelName);
+                this.setUp(model);
+                for (Map.Entry<String, StateFormula> formula : formulae.entrySet()) {
+                    this.check(model, formula.getValue(), modelName + " " + formula.getKey());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    /**
+     * Called once per model, before the formulas are checked on it.
+     * @param model test model
+     * */
+    protected void setUp(Model model) throws IOException {
+    }
+
+    /**
+     * Compare the engines on one formula.
+     * @param model test model
+     * @param query test formula
+     * @param name model and file name of the formula, for the assertion messages
+     * */
+    protected abstract void check(Model model, StateFormula query, String name) throws IOException;
+}
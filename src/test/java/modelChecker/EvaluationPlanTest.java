@@ -0,0 +1,100 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.FormulaParser;
+import formula.pathFormula.Next;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.Not;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import model.StateSet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for compiled formulas.
+ * */
+public class EvaluationPlanTest {
+
+    @Test
+    public void same_sets_as_visitor() {
+        new Differential() {
+            // one plan for all models, as a formula is the same object on every model
+            final Map<StateFormula, EvaluationPlan> plans = new IdentityHashMap<>();
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                EvaluationPlan plan = plans.get(query);
+                if (plan == null) {
+                    plan = EvaluationPlan.compile(enf);
+                    assertTrue(plan.getRegisterCount() <= plan.size());
+                    assertFalse(plan.toString().isEmpty());
+                    plans.put(query, plan);
+                }
+
+                StateSet states = StateSet.full(model.getStateCount());
+                assertEquals(name, new IndexedSatSetComputer(model).computeSatSet(enf, states),
+                        new IndexedSatSetComputer(model).computeSatSet(plan, states));
+            }
+        }.run();
+    }
+
+    @Test
+    public void deep_formula() {
+        try {
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            StateFormula formula = new AtomicProp("a");
+            for (int i = 0; i < 20000; i++) {
+                formula = i % 2 == 0 ? new Not(formula) : new And(formula, new AtomicProp("b"));
+            }
+            EvaluationPlan plan = EvaluationPlan.compile(formula);
+
+            // the chain ends in a & b and only needs the register of the chain and the one of b
+            assertEquals(2, plan.getRegisterCount());
+            StateSet states = StateSet.full(model.getStateCount());
+            StateSet expected = new IndexedSatSetComputer(model).computeSatSet(
+                    EvaluationPlan.compile(new And(new AtomicProp("a"), new AtomicProp("b"))), states);
+            assertEquals(expected, new IndexedSatSetComputer(model).computeSatSet(plan, states));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void deep_formula_end_to_end() {
+        try {
+            // on a ring, AX reads the next state, so (!AX)^k safe holds at r0 iff r(k mod 7) is safe xor k is odd
+            Model model = Model.explore(new Ring(7));
+            for (int k : new int[]{6000, 6003}) {
+                StringBuilder text = new StringBuilder();
+                StateFormula built = new AtomicProp("safe");
+                for (int i = 0; i < k; i++) {
+                    text.append("!AX ");
+                    built = new Not(new ForAll(new Next(built, Collections.<String>emptySet())));
+                }
+                text.append("safe");
+                StateFormula parsed = FormulaParser.parseRawFormulaString(text.toString());
+                boolean expected = (k % 7 != 3) ^ (k % 2 == 1);
+
+                SimpleModelChecker checker = new SimpleModelChecker();
+                assertEquals(expected, checker.check(model, null, parsed));
+                assertEquals(expected, checker.check(model, null, built));
+                checker.setSimplify(false);
+                assertEquals(expected, checker.check(model, null, parsed));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+}
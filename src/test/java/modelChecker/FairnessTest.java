@@ -0,0 +1,123 @@
+package modelChecker;
+
+import formula.FormulaParser;
+import formula.pathFormula.Eventually;
+import formula.stateFormula.And;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.BoolProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.StateFormula;
+import formula.stateFormula.ThereExists;
+import model.Model;
+import model.StateSet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for checking under fairness constraints.
+ * */
+public class FairnessTest {
+
+    private static final Set<String> ANY = Collections.emptySet();
+
+    private static Eventually eventually(StateFormula formula, Set<String> actions) {
+        return new Eventually(formula, ANY, actions);
+    }
+
+    private static StateFormula infinitelyOften(String action) {
+        return new ForAll(eventually(new BoolProp(true), Collections.singleton(action)));
+    }
+
+    @Test
+    public void fair_paths_only() {
+        try {
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            StateFormula existsEventuallyD = new ThereExists(eventually(new AtomicProp("d"), ANY));
+            StateFormula forAllEventuallyD = new ForAll(eventually(new AtomicProp("d"), ANY));
+            SimpleModelChecker checker = new SimpleModelChecker();
+
+            assertTrue(checker.check(model, null, existsEventuallyD));
+            assertFalse(checker.check(model, null, forAllEventuallyD));
+
+            // the only path to d stays in s3, which never takes act2
+            assertFalse(checker.check(model, infinitelyOften("act2"), existsEventuallyD));
+
+            // the paths that take act3 infinitely often all reach s3
+            assertTrue(checker.check(model, infinitelyOften("act3"), forAllEventuallyD));
+            assertTrue(checker.check(model, new AtomicProp("d"), forAllEventuallyD));
+
+            // without act3, cycling between s0 and s1 avoids d
+            checker.setNativeUniversal(true);
+            assertFalse(checker.check(model, infinitelyOften("act1"), forAllEventuallyD));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void fair_states_computed_once() {
+        try {
+            Model model = Model.parseModel("src/test/resources/test-models/model.json");
+            Fairness fairness = Fairness.of(infinitelyOften("act2"));
+            assertEquals(1, fairness.size());
+
+            StateSet fair = fairness.getFairStates(model);
+            assertSame(fair, fairness.getFairStates(model));
+            StateSet expected = new StateSet(model.getStateCount());
+            expected.add(model.getStateId("s0"));
+            expected.add(model.getStateId("s1"));
+            expected.add(model.getStateId("s2"));
+            assertEquals(expected, fair);
+
+            // one condition per conjunct
+            Set<String> actions = new HashSet<>();
+            actions.add("act2");
+            actions.add("act3");
+            Fairness both = Fairness.of(new And(
+                    infinitelyOften("act2"), infinitelyOften("act3")));
+            assertEquals(2, both.size());
+            assertTrue(both.getFairStates(model).isEmpty());
+            assertEquals(StateSet.full(model.getStateCount()),
+                    Fairness.of(new ForAll(eventually(new BoolProp(true), actions))).getFairStates(model));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void same_answers_on_every_engine() {
+        new Differential() {
+            StateFormula[] constraints;
+            ModelChecker[] checkers;
+
+            @Override
+            protected void setUp(Model model) throws IOException {
+                constraints = new StateFormula[]{
+                        new FormulaParser("src/test/resources/test-constraints/constraint1.json").parse(),
+                        new FormulaParser("src/test/resources/test-constraints/constraint2.json").parse(),
+                        infinitelyOften("act2")};
+                checkers = new ModelChecker[]{
+                        new LocalModelChecker(), new BDDModelChecker(), new BoundedModelChecker()};
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                for (StateFormula constraint : constraints) {
+                    boolean expected = new SimpleModelChecker().check(model, constraint, query);
+                    for (ModelChecker checker : checkers) {
+                        assertEquals(name + " " + checker.getClass().getSimpleName() + " under " + constraint,
+                                expected, checker.check(model, constraint, query));
+                    }
+                }
+            }
+        }.run();
+    }
+}
@@ -0,0 +1,134 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.FormulaParser;
+import formula.stateFormula.StateFormula;
+import model.Adjacency;
+import model.Model;
+import model.MutableModel;
+import model.StateSet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests comparing incremental checks after edits to checks from scratch.
+ * */
+public class IncrementalCheckerTest {
+
+    private static final String[] ACTIONS = {"act1", "act2", "act3", "act4", "new"};
+    private static final String[] LABELS = {"a", "b", "c", "d"};
+
+    @Test
+    public void same_sat_sets_as_full_check() {
+        try {
+            // the models are edited between the rounds, so each model is checked in rounds
+            Map<String, StateFormula> formulae = Differential.loadFormulae();
+            Random random = new Random(7);
+            for (String modelName : Differential.MODELS) {
+                MutableModel mutableModel = new MutableModel(Differential.loadModel(modelName));
+                IncrementalChecker checker = new IncrementalChecker(mutableModel);
+
+                for (int round = 0; round < 20; round++) {
+                    for (Map.Entry<String, StateFormula> formula : formulae.entrySet()) {
+                        StateSet actual = checker.computeSatSet(formula.getValue());
+                        Model model = checker.getModel();
+                        StateFormula enf = new ENFConverter().convertToENF(formula.getValue());
+                        StateSet expected = new IndexedSatSetComputer(model)
+                                .computeSatSet(enf, StateSet.full(model.getStateCount()));
+                        assertEquals(modelName + " round " + round + " " + formula.getKey(), expected, actual);
+                    }
+                    edit(mutableModel, random);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void recomputed_fraction() {
+        try {
+            MutableModel mutableModel = new MutableModel(Model.parseModel("src/test/resources/test-models/model.json"));
+            IncrementalChecker checker = new IncrementalChecker(mutableModel);
+            StateFormula query = new FormulaParser("src/test/resources/test-formulae/exists_a_until_d.json").parse();
+
+            boolean holds = checker.check(query);
+            assertEquals(1.0, checker.getRecomputedFraction(), 0.0);
+            // nothing changed
+            assertEquals(holds, checker.check(query));
+            assertEquals(0.0, checker.getRecomputedFraction(), 0.0);
+
+            // a label that the formula does not mention
+            mutableModel.addLabel(mutableModel.getStateId("s2"), "z");
+            assertTrue(mutableModel.isDirty());
+            assertEquals(holds, checker.check(query));
+            assertFalse(mutableModel.isDirty());
+            assertEquals(0.0, checker.getRecomputedFraction(), 0.0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void edit_transitions() {
+        try {
+            MutableModel mutableModel = new MutableModel(Model.parseModel("src/test/resources/test-models/model.json"));
+            int s0 = mutableModel.getStateId("s0");
+            int s1 = mutableModel.getStateId("s1");
+            int s2 = mutableModel.getStateId("s2");
+            int s3 = mutableModel.getStateId("s3");
+
+            assertTrue(mutableModel.removeTransition(s0, s1));
+            assertFalse(mutableModel.removeTransition(s0, s1));
+            assertTrue(mutableModel.removeTransition(s0, s2));
+            mutableModel.addTransition(s0, s3, "new");
+            assertEquals("{" + s0 + ", " + s1 + ", " + s2 + ", " + s3 + "}", mutableModel.getEdgeDirtyStates().toString());
+
+            Model model = mutableModel.toModel();
+            Adjacency.Cursor cursor = model.getSuccessors().cursor();
+            List<Integer> targets = new ArrayList<>();
+            for (cursor.reset(s0); cursor.next(); ) {
+                targets.add(cursor.neighbour());
+                assertEquals("new", model.getAlphabet().getAction(model.getEdgeActions().getActions(cursor.edge())[0]));
+            }
+            assertEquals(1, targets.size());
+            assertEquals(s3, (int) targets.get(0));
+        } catch (IOException e) {
+            e.printStackTrace();
+            fail(e.toString());
+        }
+    }
+
+    /**
+     * A few random edits of transitions and labels.
+     * */
+    private static void edit(MutableModel model, Random random) {
+        int stateCount = model.getStateCount();
+        for (int k = random.nextInt(3) + 1; k > 0; k--) {
+            int s = random.nextInt(stateCount);
+            int t = random.nextInt(stateCount);
+            switch (random.nextInt(4)) {
+                case 0:
+                    model.addTransition(s, t, ACTIONS[random.nextInt(ACTIONS.length)]);
+                    break;
+                case 1:
+                    model.removeTransition(s, t);
+                    break;
+                case 2:
+                    model.addLabel(s, LABELS[random.nextInt(LABELS.length)]);
+                    break;
+                default:
+                    model.removeLabel(s, LABELS[random.nextInt(LABELS.length)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package modelChecker;
+
+import formula.ENFConverter;
+import formula.stateFormula.StateFormula;
+import model.Adjacency;
+import model.Model;
+import model.State;
+import model.StateSet;
+import org.junit.Test;
+import utils.IntList;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests comparing the bitmap based satisfaction sets to the ones of SatSetComputer.
+ * */
+public class IndexedSatSetComputerTest {
+
+    @Test
+    public void same_sat_sets_as_sat_set_computer() {
+        new Differential() {
+            SatSetComputer expected;
+            IndexedSatSetComputer actual;
+
+            @Override
+            protected void setUp(Model model) {
+                expected = new SatSetComputer(model);
+                actual = new IndexedSatSetComputer(model);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                Set<State> expectedSet = expected.computeSatSet(enf, model.getStatesSet());
+                StateSet actualSet = actual.computeSatSet(enf, StateSet.full(model.getStateCount()));
+                assertEquals(name, expectedSet, actualSet.toStates(model));
+            }
+        }.run();
+    }
+
+    @Test
+    public void scc_always_same_as_counting() {
+        new Differential() {
+            IndexedSatSetComputer counting;
+            IndexedSatSetComputer scc;
+
+            @Override
+            protected void setUp(Model model) {
+                counting = new IndexedSatSetComputer(model);
+                counting.setAlwaysAlgorithm(IndexedSatSetComputer.AlwaysAlgorithm.COUNTING);
+                scc = new IndexedSatSetComputer(model);
+                scc.setAlwaysAlgorithm(IndexedSatSetComputer.AlwaysAlgorithm.SCC);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                StateSet states = StateSet.full(model.getStateCount());
+
+                // twice, the second time with the cached components
+                StateSet expected = counting.computeSatSet(enf, states);
+                assertEquals(name, expected, scc.computeSatSet(enf, states));
+                assertEquals(name, expected, scc.computeSatSet(enf, states));
+            }
+        }.run();
+    }
+
+    @Test
+    public void parallel_check_same_as_sequential() {
+        new Differential() {
+            IndexedSatSetComputer sequential;
+            IndexedSatSetComputer parallel;
+
+            @Override
+            protected void setUp(Model model) {
+                sequential = new IndexedSatSetComputer(model);
+                sequential.setThreads(1);
+                // independent subformulas as tasks, and every level of Until expanded in parallel
+                parallel = new IndexedSatSetComputer(model);
+                parallel.setThreads(4);
+                parallel.parallelFrontier = 1;
+                parallel.setAlwaysAlgorithm(IndexedSatSetComputer.AlwaysAlgorithm.SCC);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                StateSet states = StateSet.full(model.getStateCount());
+                assertEquals(name, sequential.computeSatSet(enf, states), parallel.computeSatSet(enf, states));
+            }
+        }.run();
+    }
+
+    @Test
+    public void native_universal_same_as_enf() {
+        new Differential() {
+            IndexedSatSetComputer satSetComputer;
+
+            @Override
+            protected void setUp(Model model) {
+                satSetComputer = new IndexedSatSetComputer(model);
+            }
+
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                StateFormula enf = new ENFConverter().convertToENF(query);
+                ENFConverter converter = new ENFConverter();
+                converter.setKeepUniversal(true);
+                StateFormula universal = converter.convertToENF(query);
+                StateSet states = StateSet.full(model.getStateCount());
+                assertEquals(name, satSetComputer.computeSatSet(enf, states), satSetComputer.computeSatSet(universal, states));
+            }
+        }.run();
+    }
+
+    @Test
+    public void scc_decomposition() {
+        // cycle 0 -> 1 -> 2 -> 0, then 2 -> 3 with a self loop on 3, and 4 on its own
+        Adjacency graph = Adjacency.build(5, new int[]{0, 1, 2, 2, 3}, new int[]{1, 2, 0, 3, 3});
+        SCCDecomposition components = SCCDecomposition.tarjan(StateSet.full(5), graph);
+
+        assertEquals(3, components.getComponentCount());
+        assertEquals(components.getComponent(0), components.getComponent(1));
+        assertEquals(components.getComponent(0), components.getComponent(2));
+        assertNotEquals(components.getComponent(2), components.getComponent(3));
+        // the components are numbered in reverse topological order
+        assertTrue(components.getComponent(3) < components.getComponent(0));
+
+        StateSet cyclic = new StateSet(5);
+        cyclic.add(0);
+        cyclic.add(1);
+        cyclic.add(2);
+        cyclic.add(3);
+        assertEquals(cyclic, components.getCyclicStates());
+        assertTrue(components.samePartition(SCCDecomposition.tarjan(StateSet.full(5), graph)));
+    }
+
+    @Test
+    public void parallel_scc_same_as_tarjan() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // short cycles linked by random edges, on a random subset of the states
+            int stateCount = 500 + random.nextInt(2000);
+            StateSet vertices = new StateSet(stateCount);
+            for (int s = 0; s < stateCount; s++) {
+                if (random.nextInt(10) != 0) {
+                    vertices.add(s);
+                }
+            }
+            IntList from = new IntList();
+            IntList to = new IntList();
+            for (int s = vertices.nextSetBit(0); s >= 0; s = vertices.nextSetBit(s + 1)) {
+                int t = s + 1 + random.nextInt(3);
+                if (t < stateCount && vertices.contains(t)) {
+                    from.add(s);
+                    to.add(random.nextInt(8) == 0 ? s - random.nextInt(20) : t);
+                }
+                int u = random.nextInt(stateCount);
+                if (random.nextInt(4) == 0 && vertices.contains(u)) {
+                    from.add(s);
+                    to.add(u);
+                }
+            }
+            for (int i = 0; i < to.size(); i++) {
+                if (to.get(i) < 0 || !vertices.contains(to.get(i))) {
+                    to.set(i, from.get(i));
+                }
+            }
+            Adjacency graph = Adjacency.build(stateCount, from.toArray(), to.toArray());
+            Adjacency reverse = Adjacency.build(stateCount, to.toArray(), from.toArray());
+
+            SCCDecomposition expected = SCCDecomposition.tarjan(vertices, graph);
+            ForwardBackwardSCC forwardBackward = new ForwardBackwardSCC(graph, reverse);
+            forwardBackward.sequentialSize = 4;
+            forwardBackward.parallelFrontier = 8;
+            assertTrue(expected.samePartition(forwardBackward.decompose(vertices, 4)));
+            assertTrue(expected.samePartition(SCCDecomposition.parallel(vertices, graph, reverse, 4)));
+        }
+    }
+
+    @Test
+    public void parallel_scc_on_large_graph() {
+        // the graph of SCCBenchmark, big enough for the default thresholds to decompose in parallel
+        int stateCount = 200000;
+        Adjacency[] graphs = SCCBenchmark.randomGraph(stateCount, 3, new Random(1));
+        Adjacency graph = graphs[0];
+        Adjacency reverse = graphs[1];
+        StateSet vertices = StateSet.full(stateCount);
+
+        SCCDecomposition expected = SCCDecomposition.tarjan(vertices, graph);
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            assertTrue(expected.samePartition(new ForwardBackwardSCC(graph, reverse).decompose(vertices, threads)));
+        }
+    }
+
+    @Test
+    public void state_set_operations() {
+        StateSet a = new StateSet(130);
+        StateSet b = new StateSet(130);
+        a.add(0);
+        a.add(64);
+        a.add(129);
+        b.add(64);
+        b.add(100);
+
+        assertEquals(3, a.cardinality());
+        assertEquals(130, StateSet.full(130).cardinality());
+        assertEquals("{64}", a.copy().and(b).toString());
+        assertEquals("{0, 129}", a.copy().andNot(b).toString());
+        assertEquals("{0, 64, 100, 129}", a.copy().or(b).toString());
+        assertTrue(StateSet.full(130).containsAll(a));
+        assertFalse(a.containsAll(b));
+        assertEquals(129, a.nextSetBit(65));
+        assertEquals(-1, a.nextSetBit(130));
+    }
+}
@@ -0,0 +1,39 @@
+package modelChecker;
+
+import formula.pathFormula.Always;
+import formula.stateFormula.AtomicProp;
+import formula.stateFormula.ForAll;
+import formula.stateFormula.StateFormula;
+import model.Model;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests comparing the local model checker to the global one.
+ * */
+public class LocalModelCheckerTest {
+
+    @Test
+    public void same_answers_as_simple_model_checker() {
+        new Differential() {
+            @Override
+            protected void check(Model model, StateFormula query, String name) {
+                assertEquals(name, new SimpleModelChecker().check(model, null, query),
+                        new LocalModelChecker().check(model, null, query));
+            }
+        }.run();
+    }
+
+    @Test
+    public void stops_near_initial_states() {
+        Model model = Model.explore(new Ring(100000));
+        StateFormula alwaysSafe = new ForAll(new Always(new AtomicProp("safe"), Collections.<String>emptySet()));
+        LocalModelChecker checker = new LocalModelChecker();
+
+        assertFalse(checker.check(model, null, alwaysSafe));
+        assertTrue(checker.getExploredCount() < 10);
+    }
+}
@@ -0,0 +1,37 @@
+package modelChecker;
+
+import model.StateSpace;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A ring of n states, all of them safe but the one at 3.
+ * */
+class Ring implements StateSpace<Integer> {
+    private final int n;
+
+    Ring(int n) {
+        this.n = n;
+    }
+
+    @Override
+    public Collection<Integer> getInitialStates() {
+        return Collections.singleton(0);
+    }
+
+    @Override
+    public String getName(Integer state) {
+        return "r" + state;
+    }
+
+    @Override
+    public String[] getLabels(Integer state) {
+        return state == 3 ? new String[0] : new String[]{"safe"};
+    }
+
+    @Override
+    public void getSuccessors(Integer state, Successors<Integer> successors) {
+        successors.add((state + 1) % n, "step");
+    }
+}
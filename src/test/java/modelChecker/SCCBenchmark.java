@@ -0,0 +1,75 @@
+package modelChecker;
+
+import model.Adjacency;
+import model.StateSet;
+
+import java.util.Random;
+
+/**
+ * Speedup of the parallel SCC decomposition over Tarjan's algorithm on a random graph.
+ *
+ * Usage: SCCBenchmark [states] [edges per state] [max threads], or
+ * gradle sccBenchmark -PbenchmarkArgs="[states] [edges per state] [max threads]".
+ * The graph consists of small cycles joined by random edges, the shape of the Always subgraph
+ * of a large model; the decomposition is repeated for 1, 2, 4, ... threads.
+ * */
+public class SCCBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int stateCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int degree = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        int edgeCount = stateCount * degree;
+        Adjacency[] graphs = randomGraph(stateCount, degree, new Random(1));
+        Adjacency graph = graphs[0];
+        Adjacency reverse = graphs[1];
+        StateSet vertices = StateSet.full(stateCount);
+
+        SCCDecomposition expected = null;
+        long sequential = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            expected = SCCDecomposition.tarjan(vertices, graph);
+            sequential = Math.min(sequential, System.nanoTime() - start);
+        }
+        System.out.println("states: " + stateCount + ", edges: " + edgeCount
+                + ", components: " + expected.getComponentCount());
+        System.out.println("tarjan: " + sequential / 1000000 + " ms");
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                SCCDecomposition components = new ForwardBackwardSCC(graph, reverse).decompose(vertices, threads);
+                best = Math.min(best, System.nanoTime() - start);
+                if (!components.samePartition(expected)) {
+                    throw new IllegalStateException("Components differ from Tarjan with " + threads + " threads");
+                }
+            }
+            System.out.println("forward-backward, " + threads + " threads: " + best / 1000000 + " ms, speedup "
+                    + String.format("%.2f", (double) sequential / best));
+        }
+    }
+
+    /**
+     * A graph of small cycles joined by random edges.
+     * @param stateCount number of states
+     * @param degree number of edges per state
+     * @param random source of the edges
+     * @return the graph and its reverse
+     * */
+    static Adjacency[] randomGraph(int stateCount, int degree, Random random) {
+        int[] from = new int[stateCount * degree];
+        int[] to = new int[stateCount * degree];
+        for (int e = 0; e < from.length; e++) {
+            int s = e / degree;
+            from[e] = s;
+            // mostly local edges, which close into cycles, and a few long ones
+            to[e] = random.nextInt(16) == 0 ? random.nextInt(stateCount)
+                    : Math.max(0, Math.min(stateCount - 1, s + random.nextInt(9) - 5));
+        }
+        return new Adjacency[]{Adjacency.build(stateCount, from, to), Adjacency.build(stateCount, to, from)};
+    }
+}
@@ -0,0 +1,66 @@
+package sat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the CDCL solver.
+ * */
+public class SATSolverTest {
+
+    // variable of pigeon p in hole h
+    private static int pigeon(int p, int h, int holes) {
+        return p * holes + h;
+    }
+
+    @Test
+    public void pigeonhole() {
+        int holes = 5;
+        SATSolver solver = new SATSolver();
+        for (int v = 0; v < (holes + 1) * holes; v++) {
+            solver.newVar();
+        }
+        // every pigeon has a hole
+        for (int p = 0; p <= holes; p++) {
+            int[] clause = new int[holes];
+            for (int h = 0; h < holes; h++) {
+                clause[h] = SATSolver.pos(pigeon(p, h, holes));
+            }
+            solver.addClause(clause);
+        }
+        // no two pigeons share a hole, except for the extra pigeon if it is turned on
+        int extra = solver.newVar();
+        for (int h = 0; h < holes; h++) {
+            for (int p = 0; p <= holes; p++) {
+                for (int q = p + 1; q <= holes; q++) {
+                    if (q == holes) {
+                        solver.addClause(SATSolver.neg(extra), SATSolver.neg(pigeon(p, h, holes)), SATSolver.neg(pigeon(q, h, holes)));
+                    } else {
+                        solver.addClause(SATSolver.neg(pigeon(p, h, holes)), SATSolver.neg(pigeon(q, h, holes)));
+                    }
+                }
+            }
+        }
+
+        // without the constraint on the extra pigeon there is a solution
+        assertTrue(solver.solve(SATSolver.not(SATSolver.pos(extra))));
+        for (int h = 0; h < holes; h++) {
+            int count = 0;
+            for (int p = 0; p < holes; p++) {
+                count += solver.modelValue(pigeon(p, h, holes)) ? 1 : 0;
+            }
+            assertTrue(count <= 1);
+        }
+
+        // with it there is none, and learned clauses do not change the first answer
+        assertFalse(solver.solve(SATSolver.pos(extra)));
+        assertTrue(solver.getConflicts() > 0);
+        assertTrue(solver.solve(SATSolver.neg(extra)));
+
+        // as a clause, it makes the whole problem unsatisfiable
+        solver.addClause(SATSolver.pos(extra));
+        assertFalse(solver.solve());
+        assertFalse(solver.addClause(SATSolver.pos(0)));
+    }
+}